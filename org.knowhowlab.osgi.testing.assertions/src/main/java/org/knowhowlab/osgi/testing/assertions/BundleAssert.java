@@ -19,7 +19,6 @@ package org.knowhowlab.osgi.testing.assertions;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleEvent;
 import org.osgi.framework.Version;
-import org.osgi.service.packageadmin.PackageAdmin;
 
 import java.util.concurrent.TimeUnit;
 
@@ -29,8 +28,7 @@ import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.knowhowlab.osgi.testing.utils.BundleUtils.findBundle;
 import static org.knowhowlab.osgi.testing.utils.BundleUtils.waitForBundleEvent;
-import static org.knowhowlab.osgi.testing.utils.ServiceUtils.getService;
-import static org.osgi.service.packageadmin.PackageAdmin.BUNDLE_TYPE_FRAGMENT;
+import static org.knowhowlab.osgi.testing.utils.WiringUtils.isFragment;
 
 /**
  * A set of OSGi Bundle specific assertion methods useful for writing tests.
@@ -401,10 +399,7 @@ public class BundleAssert extends OSGiAssert {
     public static void assertFragment(String message, long bundleId) {
         Bundle bundle = findBundle(getBundleContext(), bundleId);
         assertThat(format("Unknown bundle with ID: %d", bundleId), bundle, notNullValue());
-        PackageAdmin packageAdmin = getService(getBundleContext(), PackageAdmin.class);
-        assertThat("PackageAdmin is unavailable", packageAdmin, notNullValue());
-        int type = packageAdmin.getBundleType(bundle);
-        assertThat(message, type & BUNDLE_TYPE_FRAGMENT, is(not(0)));
+        assertThat(message, isFragment(bundle), is(true));
     }
 
     /**
@@ -430,10 +425,7 @@ public class BundleAssert extends OSGiAssert {
         assertThat("SymbolicName is null", symbolicName, notNullValue());
         Bundle bundle = findBundle(getBundleContext(), symbolicName);
         assertThat(format("Unknown bundle with SymbolicName: %s", symbolicName), bundle, notNullValue());
-        PackageAdmin packageAdmin = getService(getBundleContext(), PackageAdmin.class);
-        assertThat("PackageAdmin is unavailable", packageAdmin, notNullValue());
-        int type = packageAdmin.getBundleType(bundle);
-        assertThat(message, type & BUNDLE_TYPE_FRAGMENT, is(not(0)));
+        assertThat(message, isFragment(bundle), is(true));
     }
 
     /**
@@ -461,10 +453,7 @@ public class BundleAssert extends OSGiAssert {
         assertThat("SymbolicName is null", symbolicName, notNullValue());
         Bundle bundle = findBundle(getBundleContext(), symbolicName, version);
         assertThat(format("Unknown bundle with SymbolicName: %s and version: %s", symbolicName, version), bundle, notNullValue());
-        PackageAdmin packageAdmin = getService(getBundleContext(), PackageAdmin.class);
-        assertThat("PackageAdmin is unavailable", packageAdmin, notNullValue());
-        int type = packageAdmin.getBundleType(bundle);
-        assertThat(message, type & BUNDLE_TYPE_FRAGMENT, is(not(0)));
+        assertThat(message, isFragment(bundle), is(true));
     }
 
     /**
@@ -489,10 +478,7 @@ public class BundleAssert extends OSGiAssert {
     public static void assertNotFragment(String message, long bundleId) {
         Bundle bundle = findBundle(getBundleContext(), bundleId);
         assertThat(format("Unknown bundle with ID: %d", bundleId), bundle, notNullValue());
-        PackageAdmin packageAdmin = getService(getBundleContext(), PackageAdmin.class);
-        assertThat("PackageAdmin is unavailable", packageAdmin, notNullValue());
-        int type = packageAdmin.getBundleType(bundle);
-        assertThat(message, type & BUNDLE_TYPE_FRAGMENT, is(not(0)));
+        assertThat(message, isFragment(bundle), is(false));
     }
 
     /**
@@ -518,10 +504,7 @@ public class BundleAssert extends OSGiAssert {
         assertThat("SymbolicName is null", symbolicName, notNullValue());
         Bundle bundle = findBundle(getBundleContext(), symbolicName);
         assertThat(format("Unknown bundle with SymbolicName: %s", symbolicName), bundle, notNullValue());
-        PackageAdmin packageAdmin = getService(getBundleContext(), PackageAdmin.class);
-        assertThat("PackageAdmin is unavailable", packageAdmin, notNullValue());
-        int type = packageAdmin.getBundleType(bundle);
-        assertThat(message, type & BUNDLE_TYPE_FRAGMENT, is(not(0)));
+        assertThat(message, isFragment(bundle), is(false));
     }
 
     /**
@@ -549,10 +532,7 @@ public class BundleAssert extends OSGiAssert {
         assertThat("SymbolicName is null", symbolicName, notNullValue());
         Bundle bundle = findBundle(getBundleContext(), symbolicName, version);
         assertThat(format("Unknown bundle with SymbolicName: %s and version: %s", symbolicName, version), bundle, notNullValue());
-        PackageAdmin packageAdmin = getService(getBundleContext(), PackageAdmin.class);
-        assertThat("PackageAdmin is unavailable", packageAdmin, notNullValue());
-        int type = packageAdmin.getBundleType(bundle);
-        assertThat(message, type & BUNDLE_TYPE_FRAGMENT, is(not(0)));
+        assertThat(message, isFragment(bundle), is(false));
     }
 
     /**
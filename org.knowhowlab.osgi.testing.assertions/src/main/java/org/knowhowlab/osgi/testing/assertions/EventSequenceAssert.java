@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.assertions;
+
+import org.knowhowlab.osgi.testing.utils.event.EventSequence;
+import org.knowhowlab.osgi.testing.utils.event.EventStep;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.knowhowlab.osgi.testing.utils.async.Promises.waitFor;
+import static org.knowhowlab.osgi.testing.utils.event.EventHub.getEventHub;
+
+/**
+ * A set of ordered event sequence assertion methods useful for writing tests.
+ * <p/>
+ * Steps of the sequence are created by event channels, e.g.
+ * {@link org.knowhowlab.osgi.testing.utils.event.BundleEventChannel#step(String, org.osgi.framework.Version, int)},
+ * {@link org.knowhowlab.osgi.testing.utils.event.ServiceEventChannel#step(String, org.osgi.framework.Filter, int, boolean)},
+ * {@link org.knowhowlab.osgi.testing.utils.event.FrameworkEventChannel#step(String, org.osgi.framework.Version, int)},
+ * {@link org.knowhowlab.osgi.testing.utils.cmpn.EventAdminChannel#step(String[], org.osgi.framework.Filter)} and
+ * {@link org.knowhowlab.osgi.testing.utils.cmpn.ConfigurationEventChannel#step(int, String, String, String)}.
+ * All steps are checked by one sequence wait, so steps do not wait for each other.
+ * <p/>
+ * Before use it could be initialized with default BundleContext
+ * {@link OSGiAssert#setDefaultBundleContext(org.osgi.framework.BundleContext)}
+ *
+ * @see java.lang.AssertionError
+ * @see org.knowhowlab.osgi.testing.assertions.OSGiAssert
+ * @see org.knowhowlab.osgi.testing.utils.event.EventHub#awaitSequence(java.util.List, long, java.util.concurrent.TimeUnit)
+ */
+public class EventSequenceAssert extends OSGiAssert {
+    /**
+     * Utility class. Only static methods are available.
+     */
+    private EventSequenceAssert() {
+    }
+
+    /**
+     * Asserts that events of all steps will be fired in given order within given timeout. If it not as expected
+     * {@link AssertionError} is thrown
+     *
+     * @param timeout  time interval to wait. If zero, the method will wait indefinitely.
+     * @param timeUnit time unit for the time interval
+     * @param steps    steps of the sequence
+     * @since 1.3
+     */
+    public static void assertEventSequence(long timeout, TimeUnit timeUnit, EventStep<?>... steps) {
+        assertEventSequence(null, timeout, timeUnit, steps);
+    }
+
+    /**
+     * Asserts that events of all steps will be fired in given order within given timeout. If it not as expected
+     * {@link AssertionError} is thrown with the given message
+     *
+     * @param message  message
+     * @param timeout  time interval to wait. If zero, the method will wait indefinitely.
+     * @param timeUnit time unit for the time interval
+     * @param steps    steps of the sequence
+     * @since 1.3
+     */
+    public static void assertEventSequence(String message, long timeout, TimeUnit timeUnit, EventStep<?>... steps) {
+        assertThat("TimeUnit is null", timeUnit, notNullValue());
+        assertThat("Steps are null", steps, notNullValue());
+        EventSequence sequence = getEventHub(getBundleContext()).awaitSequence(Arrays.asList(steps), 0, timeUnit);
+        List<Object> events = waitFor(sequence, timeout, timeUnit);
+        if (events == null) {
+            if (message == null) {
+                int step = Math.min(sequence.getCompletedSteps(), steps.length - 1);
+                message = format("Event sequence is incomplete within timeout: %s%s. Step %d of %d is not matched: %s",
+                        timeout, timeUnit, step + 1, steps.length, steps[step]);
+            }
+            fail(message);
+        }
+    }
+}
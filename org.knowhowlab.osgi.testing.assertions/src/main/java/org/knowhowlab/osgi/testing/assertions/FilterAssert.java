@@ -16,12 +16,12 @@
 
 package org.knowhowlab.osgi.testing.assertions;
 
+import org.knowhowlab.osgi.testing.utils.FilterCache;
 import org.osgi.framework.InvalidSyntaxException;
 
 import static java.lang.String.format;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
-import static org.osgi.framework.FrameworkUtil.createFilter;
 
 /**
  * A set of OSGi Filter specific assertion methods useful for writing tests.
@@ -62,7 +62,7 @@ public class FilterAssert extends OSGiAssert {
     public static void assertFilterCorrect(String message, String filter) {
         assertThat("Filter is null", filter, notNullValue());
         try {
-            createFilter(filter);
+            FilterCache.getCache().getFilter(filter);
         } catch (InvalidSyntaxException e) {
             fail(message);
         }
@@ -90,7 +90,7 @@ public class FilterAssert extends OSGiAssert {
     public static void assertFilterIncorrect(String message, String filter) {
         assertThat("Filter is null", filter, notNullValue());
         try {
-            createFilter(filter);
+            FilterCache.getCache().getFilter(filter);
             fail(message);
         } catch (InvalidSyntaxException e) {
             // do nothing
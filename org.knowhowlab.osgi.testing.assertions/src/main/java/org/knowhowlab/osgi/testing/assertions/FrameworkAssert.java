@@ -16,6 +16,8 @@
 
 package org.knowhowlab.osgi.testing.assertions;
 
+import org.knowhowlab.osgi.testing.utils.BundleBatchResult;
+import org.knowhowlab.osgi.testing.utils.SharedFramework;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.FrameworkEvent;
 import org.osgi.framework.Version;
@@ -24,6 +26,7 @@ import java.util.concurrent.TimeUnit;
 
 import static java.lang.String.format;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.knowhowlab.osgi.testing.utils.BundleUtils.findBundle;
@@ -227,4 +230,35 @@ public class FrameworkAssert extends OSGiAssert {
         FrameworkEvent event = waitForFrameworkEvent(getBundleContext(), symbolicName, version, eventTypeMask, timeout, timeUnit);
         assertThat(message, event, notNullValue());
     }
+
+    /**
+     * Resets shared framework of the default BundleContext to its captured state. If some bundle operations
+     * of the reset failed {@link AssertionError} is thrown
+     *
+     * @param timeout  time interval to wait for the refresh of changed bundles and for the framework start level change.
+     *                 If zero, the method will wait indefinitely.
+     * @param timeUnit time unit for the time interval
+     * @see SharedFramework#reset(long, TimeUnit)
+     * @since 1.3
+     */
+    public static void assertFrameworkReset(long timeout, TimeUnit timeUnit) {
+        assertFrameworkReset("Framework is not reset", timeout, timeUnit);
+    }
+
+    /**
+     * Resets shared framework of the default BundleContext to its captured state. If some bundle operations
+     * of the reset failed {@link AssertionError} is thrown with the given message and failures of the bundles
+     *
+     * @param message  message
+     * @param timeout  time interval to wait for the refresh of changed bundles and for the framework start level change.
+     *                 If zero, the method will wait indefinitely.
+     * @param timeUnit time unit for the time interval
+     * @see SharedFramework#reset(long, TimeUnit)
+     * @since 1.3
+     */
+    public static void assertFrameworkReset(String message, long timeout, TimeUnit timeUnit) {
+        assertThat("TimeUnit is null", timeUnit, notNullValue());
+        BundleBatchResult result = SharedFramework.getFramework(getBundleContext()).reset(timeout, timeUnit);
+        assertThat(format("%s: %s", message, result.getFailures()), result.isSuccessful(), is(true));
+    }
 }
@@ -18,6 +18,7 @@ package org.knowhowlab.osgi.testing.assertions;
 
 import org.osgi.framework.Filter;
 import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceReference;
 
 import java.util.concurrent.TimeUnit;
 
@@ -26,8 +27,9 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
-import static org.knowhowlab.osgi.testing.utils.ServiceUtils.getService;
+import static org.knowhowlab.osgi.testing.utils.ServiceUtils.getServiceReference;
 import static org.knowhowlab.osgi.testing.utils.ServiceUtils.waitForServiceEvent;
+import static org.knowhowlab.osgi.testing.utils.ServiceUtils.waitForServiceReference;
 
 /**
  * A set of OSGi services specific assertion methods useful for writing tests.
@@ -67,9 +69,8 @@ public class ServiceAssert extends OSGiAssert {
      */
     public static void assertServiceAvailable(String message, Class clazz) {
         assertThat("Class is null", clazz, notNullValue());
-        //noinspection unchecked
-        Object service = getService(getBundleContext(), clazz);
-        assertThat(message, service, notNullValue());
+        ServiceReference reference = getServiceReference(getBundleContext(), clazz);
+        assertThat(message, reference, notNullValue());
     }
 
     /**
@@ -123,9 +124,8 @@ public class ServiceAssert extends OSGiAssert {
     public static void assertServiceAvailable(String message, Class clazz, long timeout, TimeUnit timeUnit) {
         assertThat("Class is null", clazz, notNullValue());
         assertThat("TimeUnit is null", timeUnit, notNullValue());
-        //noinspection unchecked
-        Object service = getService(getBundleContext(), clazz, timeout, timeUnit);
-        assertThat(message, service, notNullValue());
+        ServiceReference reference = waitForServiceReference(getBundleContext(), clazz, timeout, timeUnit);
+        assertThat(message, reference, notNullValue());
     }
 
     /**
@@ -149,9 +149,8 @@ public class ServiceAssert extends OSGiAssert {
      */
     public static void assertServiceAvailable(String message, String className) {
         assertThat("Class name is null", className, notNullValue());
-        //noinspection unchecked
-        Object service = getService(getBundleContext(), className);
-        assertThat(message, service, notNullValue());
+        ServiceReference reference = getServiceReference(getBundleContext(), className);
+        assertThat(message, reference, notNullValue());
     }
 
     /**
@@ -205,9 +204,8 @@ public class ServiceAssert extends OSGiAssert {
     public static void assertServiceAvailable(String message, String className, long timeout, TimeUnit timeUnit) {
         assertThat("Class name is null", className, notNullValue());
         assertThat("TimeUnit is null", timeUnit, notNullValue());
-        //noinspection unchecked
-        Object service = getService(getBundleContext(), className, timeout, timeUnit);
-        assertThat(message, service, notNullValue());
+        ServiceReference reference = waitForServiceReference(getBundleContext(), className, timeout, timeUnit);
+        assertThat(message, reference, notNullValue());
     }
 
     /**
@@ -231,9 +229,8 @@ public class ServiceAssert extends OSGiAssert {
      */
     public static void assertServiceAvailable(String message, Filter filter) {
         assertThat("Filter is null", filter, notNullValue());
-        //noinspection unchecked
-        Object service = getService(getBundleContext(), filter);
-        assertThat(message, service, notNullValue());
+        ServiceReference reference = getServiceReference(getBundleContext(), filter);
+        assertThat(message, reference, notNullValue());
     }
 
     /**
@@ -287,9 +284,8 @@ public class ServiceAssert extends OSGiAssert {
     public static void assertServiceAvailable(String message, Filter filter, long timeout, TimeUnit timeUnit) {
         assertThat("Filter is null", filter, notNullValue());
         assertThat("TimeUnit is null", timeUnit, notNullValue());
-        //noinspection unchecked
-        Object service = getService(getBundleContext(), filter, timeout, timeUnit);
-        assertThat(message, service, notNullValue());
+        ServiceReference reference = waitForServiceReference(getBundleContext(), filter, timeout, timeUnit);
+        assertThat(message, reference, notNullValue());
     }
 
     /**
@@ -313,9 +309,8 @@ public class ServiceAssert extends OSGiAssert {
      */
     public static void assertServiceUnavailable(String message, Class clazz) {
         assertThat("Class is null", clazz, notNullValue());
-        //noinspection unchecked
-        Object service = getService(getBundleContext(), clazz);
-        assertThat(message, service, nullValue());
+        ServiceReference reference = getServiceReference(getBundleContext(), clazz);
+        assertThat(message, reference, nullValue());
     }
 
     /**
@@ -369,9 +364,8 @@ public class ServiceAssert extends OSGiAssert {
     public static void assertServiceUnavailable(String message, Class clazz, long timeout, TimeUnit timeUnit) {
         assertThat("Class is null", clazz, notNullValue());
         assertThat("TimeUnit is null", timeUnit, notNullValue());
-        //noinspection unchecked
-        Object service = getService(getBundleContext(), clazz, timeout, timeUnit);
-        assertThat(message, service, nullValue());
+        ServiceReference reference = waitForServiceReference(getBundleContext(), clazz, timeout, timeUnit);
+        assertThat(message, reference, nullValue());
     }
 
     /**
@@ -395,9 +389,8 @@ public class ServiceAssert extends OSGiAssert {
      */
     public static void assertServiceUnavailable(String message, String className) {
         assertThat("Class name is null", className, notNullValue());
-        //noinspection unchecked
-        Object service = getService(getBundleContext(), className);
-        assertThat(message, service, nullValue());
+        ServiceReference reference = getServiceReference(getBundleContext(), className);
+        assertThat(message, reference, nullValue());
     }
 
     /**
@@ -451,9 +444,8 @@ public class ServiceAssert extends OSGiAssert {
     public static void assertServiceUnavailable(String message, String className, long timeout, TimeUnit timeUnit) {
         assertThat("Class name is null", className, notNullValue());
         assertThat("TimeUnit is null", timeUnit, notNullValue());
-        //noinspection unchecked
-        Object service = getService(getBundleContext(), className, timeout, timeUnit);
-        assertThat(message, service, nullValue());
+        ServiceReference reference = waitForServiceReference(getBundleContext(), className, timeout, timeUnit);
+        assertThat(message, reference, nullValue());
     }
 
     /**
@@ -477,9 +469,8 @@ public class ServiceAssert extends OSGiAssert {
      */
     public static void assertServiceUnavailable(String message, Filter filter) {
         assertThat("Filter is null", filter, notNullValue());
-        //noinspection unchecked
-        Object service = getService(getBundleContext(), filter);
-        assertThat(message, service, nullValue());
+        ServiceReference reference = getServiceReference(getBundleContext(), filter);
+        assertThat(message, reference, nullValue());
     }
 
     /**
@@ -533,9 +524,8 @@ public class ServiceAssert extends OSGiAssert {
     public static void assertServiceUnavailable(String message, Filter filter, long timeout, TimeUnit timeUnit) {
         assertThat("Filter is null", filter, notNullValue());
         assertThat("TimeUnit is null", timeUnit, notNullValue());
-        //noinspection unchecked
-        Object service = getService(getBundleContext(), filter, timeout, timeUnit);
-        assertThat(message, service, nullValue());
+        ServiceReference reference = waitForServiceReference(getBundleContext(), filter, timeout, timeUnit);
+        assertThat(message, reference, nullValue());
     }
 
     /**
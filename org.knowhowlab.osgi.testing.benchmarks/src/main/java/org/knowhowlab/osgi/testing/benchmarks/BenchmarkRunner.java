@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.benchmarks;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.*;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Runs benchmarks and compares average times with a locally recorded baseline.
+ * <p/>
+ * Baseline is machine-specific, so it is not part of the sources: record it with {@link #RECORD_PROPERTY}
+ * system property set to <code>true</code> on the machine that compares results. Baseline file is set with
+ * {@link #BASELINE_PROPERTY} system property, <code>baseline.properties</code> of the working directory
+ * is used by default. Benchmark is reported as regression if its average time exceeds baseline
+ * by more than {@link #TOLERANCE_PROPERTY} percent (20 by default). Without baseline the results are
+ * only reported and no regressions are detected.
+ * Command line arguments are passed to JMH, benchmark patterns of the command line run only matching benchmarks.
+ */
+public class BenchmarkRunner {
+    /**
+     * Baseline file system property
+     */
+    public static final String BASELINE_PROPERTY = "benchmarks.baseline";
+    /**
+     * Regression tolerance in percent system property
+     */
+    public static final String TOLERANCE_PROPERTY = "benchmarks.tolerance";
+    /**
+     * Record baseline system property
+     */
+    public static final String RECORD_PROPERTY = "benchmarks.record";
+
+    /**
+     * Utility class. Only static methods are available.
+     */
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException, IOException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(commandLineOptions);
+        // benchmark patterns of the command line select benchmarks instead of all of them
+        if (commandLineOptions.getIncludes().isEmpty()) {
+            builder.include(BenchmarkRunner.class.getPackage().getName() + ".*Benchmark");
+        }
+        Options options = builder.build();
+        Map<String, Double> results = toScores(new Runner(options).run());
+
+        File baselineFile = new File(System.getProperty(BASELINE_PROPERTY, "baseline.properties"));
+        if (Boolean.getBoolean(RECORD_PROPERTY)) {
+            store(baselineFile, results);
+            System.out.println("Baseline is recorded: " + baselineFile);
+            return;
+        }
+        Map<String, Double> baseline = load(baselineFile);
+        if (baseline.isEmpty()) {
+            System.out.println(String.format("No baseline in %s, results are not compared. Record it with -D%s=true",
+                    baselineFile, RECORD_PROPERTY));
+        }
+        double tolerance = Double.parseDouble(System.getProperty(TOLERANCE_PROPERTY, "20")) / 100;
+        int regressions = 0;
+        for (Map.Entry<String, Double> entry : results.entrySet()) {
+            Double expected = baseline.get(entry.getKey());
+            if (expected == null) {
+                System.out.println(String.format("%-80s %12.3f us/op (no baseline)", entry.getKey(), entry.getValue()));
+            } else {
+                boolean regression = entry.getValue() > expected * (1 + tolerance);
+                if (regression) {
+                    regressions++;
+                }
+                System.out.println(String.format("%-80s %12.3f us/op (baseline %.3f, %+.1f%%)%s", entry.getKey(), entry.getValue(),
+                        expected, (entry.getValue() / expected - 1) * 100, regression ? " REGRESSION" : ""));
+            }
+        }
+        if (regressions > 0) {
+            System.err.println(String.format("%d benchmark(s) regressed by more than %.0f%%", regressions, tolerance * 100));
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Double> toScores(Collection<RunResult> results) {
+        Map<String, Double> scores = new TreeMap<String, Double>();
+        for (RunResult result : results) {
+            scores.put(result.getParams().getBenchmark(), result.getPrimaryResult().getScore());
+        }
+        return scores;
+    }
+
+    private static Map<String, Double> load(File file) throws IOException {
+        Map<String, Double> baseline = new TreeMap<String, Double>();
+        if (!file.exists()) {
+            return baseline;
+        }
+        Properties properties = new Properties();
+        InputStream input = new FileInputStream(file);
+        try {
+            properties.load(input);
+        } finally {
+            input.close();
+        }
+        for (String name : properties.stringPropertyNames()) {
+            baseline.put(name, Double.valueOf(properties.getProperty(name)));
+        }
+        return baseline;
+    }
+
+    private static void store(File file, Map<String, Double> results) throws IOException {
+        Properties properties = new Properties();
+        for (Map.Entry<String, Double> entry : results.entrySet()) {
+            properties.setProperty(entry.getKey(), String.format(Locale.ROOT, "%.3f", entry.getValue()));
+        }
+        OutputStream output = new FileOutputStream(file);
+        try {
+            properties.store(output, "Benchmark average time baseline, us/op. "
+                    + System.getProperty("java.vm.name") + " " + System.getProperty("java.version")
+                    + ", " + System.getProperty("os.name") + ", " + Runtime.getRuntime().availableProcessors() + " CPUs");
+        } finally {
+            output.close();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.benchmarks;
+
+import org.knowhowlab.osgi.testing.utils.BundleUtils;
+import org.openjdk.jmh.annotations.*;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Version;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BundleUtils} benchmarks
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BundleUtilsBenchmark {
+    private static final String SYMBOLIC_NAME = EmbeddedFramework.BUNDLE_PREFIX + (EmbeddedFramework.BUNDLES / 2);
+    private static final Version VERSION = new Version(1, 0, EmbeddedFramework.BUNDLES / 2);
+
+    @Benchmark
+    public Bundle findBundle(EmbeddedFramework framework) {
+        return BundleUtils.findBundle(framework.getBundleContext(), SYMBOLIC_NAME);
+    }
+
+    @Benchmark
+    public Bundle findBundle_withVersion(EmbeddedFramework framework) {
+        return BundleUtils.findBundle(framework.getBundleContext(), SYMBOLIC_NAME, VERSION);
+    }
+}
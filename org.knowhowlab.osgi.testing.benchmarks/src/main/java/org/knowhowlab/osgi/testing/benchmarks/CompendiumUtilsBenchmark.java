@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.benchmarks;
+
+import org.knowhowlab.osgi.testing.utils.async.Promise;
+import org.knowhowlab.osgi.testing.utils.cmpn.ConfigurationAdminUtils;
+import org.knowhowlab.osgi.testing.utils.cmpn.EventAdminUtils;
+import org.openjdk.jmh.annotations.*;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Filter;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.event.Event;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.knowhowlab.osgi.testing.utils.FilterUtils.eq;
+
+/**
+ * {@link EventAdminUtils} and {@link ConfigurationAdminUtils} benchmarks
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompendiumUtilsBenchmark {
+    private static final String TOPIC = "org/knowhowlab/osgi/testing/benchmarks/RoundTrip";
+
+    private Filter configurationFilter;
+
+    @Setup
+    public void setUp() throws InvalidSyntaxException {
+        configurationFilter = eq("index", EmbeddedFramework.CONFIGURATIONS / 2);
+    }
+
+    @Benchmark
+    public Event postEvent_waitForEvent_roundTrip(EmbeddedFramework framework) throws Exception {
+        BundleContext bc = framework.getBundleContext();
+        Promise<Event> event = EventAdminUtils.awaitEvent(bc, TOPIC, 1, TimeUnit.SECONDS);
+        EventAdminUtils.postEvent(bc, TOPIC, 0);
+        return event.get();
+    }
+
+    @Benchmark
+    public Configuration[] listConfigurations(EmbeddedFramework framework) throws IOException {
+        return ConfigurationAdminUtils.listConfigurations(framework.getBundleContext(), configurationFilter);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.launch.Framework;
+import org.osgi.framework.launch.FrameworkFactory;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.event.EventAdmin;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * In-process OSGi framework shared by benchmarks.
+ * <p/>
+ * The framework is populated with {@link #BUNDLES} manifest-only bundles, a benchmark service
+ * and stub EventAdmin and ConfigurationAdmin services with {@link #CONFIGURATIONS} configurations.
+ */
+@State(Scope.Benchmark)
+public class EmbeddedFramework {
+    /**
+     * Number of installed bundles
+     */
+    public static final int BUNDLES = 100;
+    /**
+     * Number of configurations
+     */
+    public static final int CONFIGURATIONS = 100;
+    /**
+     * Symbolic name prefix of installed bundles
+     */
+    public static final String BUNDLE_PREFIX = "org.knowhowlab.osgi.testing.benchmarks.bundle";
+
+    private File storage;
+    private Framework framework;
+    private StubEventAdmin eventAdmin;
+
+    /**
+     * Benchmark service interface
+     */
+    public interface BenchmarkService {
+    }
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        storage = File.createTempFile("framework", "");
+        if (!storage.delete() || !storage.mkdir()) {
+            throw new IOException("Unable to create framework storage: " + storage);
+        }
+        Map<String, String> config = new HashMap<String, String>();
+        config.put(Constants.FRAMEWORK_STORAGE, storage.getAbsolutePath());
+        config.put(Constants.FRAMEWORK_STORAGE_CLEAN, Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT);
+        config.put(Constants.FRAMEWORK_SYSTEMPACKAGES_EXTRA, "org.osgi.service.event;version=1.2.0,org.osgi.service.cm;version=1.3.0");
+        Iterator<FrameworkFactory> factories = ServiceLoader.load(FrameworkFactory.class).iterator();
+        if (!factories.hasNext()) {
+            throw new IllegalStateException("FrameworkFactory is not available");
+        }
+        framework = factories.next().newFramework(config);
+        framework.start();
+
+        BundleContext bc = getBundleContext();
+        for (int i = 0; i < BUNDLES; i++) {
+            bc.installBundle(BUNDLE_PREFIX + i, bundle(BUNDLE_PREFIX + i, "1.0." + i));
+        }
+        Hashtable<String, Object> properties = new Hashtable<String, Object>();
+        properties.put("benchmark", "true");
+        bc.registerService(BenchmarkService.class.getName(), new BenchmarkService() {
+        }, properties);
+
+        eventAdmin = new StubEventAdmin(bc);
+        bc.registerService(EventAdmin.class.getName(), eventAdmin, null);
+        StubConfigurationAdmin configurationAdmin = new StubConfigurationAdmin();
+        for (int i = 0; i < CONFIGURATIONS; i++) {
+            Hashtable<String, Object> configuration = new Hashtable<String, Object>();
+            configuration.put("index", i);
+            configurationAdmin.getConfiguration("benchmark.pid" + i).update(configuration);
+        }
+        bc.registerService(ConfigurationAdmin.class.getName(), configurationAdmin, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws Exception {
+        eventAdmin.close();
+        framework.stop();
+        framework.waitForStop(0);
+        delete(storage);
+    }
+
+    /**
+     * Get system BundleContext of the framework
+     *
+     * @return BundleContext
+     */
+    public BundleContext getBundleContext() {
+        return framework.getBundleContext();
+    }
+
+    private static InputStream bundle(String symbolicName, String version) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue(Constants.BUNDLE_MANIFESTVERSION, "2");
+        manifest.getMainAttributes().putValue(Constants.BUNDLE_SYMBOLICNAME, symbolicName);
+        manifest.getMainAttributes().putValue(Constants.BUNDLE_VERSION, version);
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        new JarOutputStream(content, manifest).close();
+        return new ByteArrayInputStream(content.toByteArray());
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.benchmarks;
+
+import org.knowhowlab.osgi.testing.utils.FilterBuilder;
+import org.knowhowlab.osgi.testing.utils.FilterMatcher;
+import org.knowhowlab.osgi.testing.utils.FilterUtils;
+import org.openjdk.jmh.annotations.*;
+import org.osgi.framework.Filter;
+import org.osgi.framework.InvalidSyntaxException;
+
+import java.util.Hashtable;
+import java.util.concurrent.TimeUnit;
+
+import static org.knowhowlab.osgi.testing.utils.FilterUtils.*;
+
+/**
+ * {@link FilterUtils} and {@link FilterBuilder} composition benchmarks
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class FilterUtilsBenchmark {
+    private Filter filter1;
+    private Filter filter2;
+    private Filter[] clauses;
+    private Filter selection;
+    private FilterMatcher compiledSelection;
+    private Hashtable<String, Object> properties;
+
+    @Setup
+    public void setUp() throws InvalidSyntaxException {
+        filter1 = create(EmbeddedFramework.BenchmarkService.class);
+        filter2 = eq("benchmark", "true");
+        clauses = new Filter[50];
+        for (int i = 0; i < clauses.length; i++) {
+            clauses[i] = eq("tenant" + i, i);
+        }
+        selection = and(create(EmbeddedFramework.BenchmarkService.class), ge("service.ranking", 5), present("benchmark"));
+        compiledSelection = compile(selection);
+        properties = new Hashtable<String, Object>();
+        properties.put("objectClass", new String[]{EmbeddedFramework.BenchmarkService.class.getName()});
+        properties.put("service.ranking", 10);
+        properties.put("benchmark", "true");
+    }
+
+    @Benchmark
+    public Filter and_filters() throws InvalidSyntaxException {
+        return and(filter1, filter2);
+    }
+
+    @Benchmark
+    public Filter or_filters() throws InvalidSyntaxException {
+        return or(filter1, filter2);
+    }
+
+    @Benchmark
+    public Filter and_or_nested() throws InvalidSyntaxException {
+        return and(create(EmbeddedFramework.BenchmarkService.class), or(eq("benchmark", "true"), present("service.ranking")));
+    }
+
+    @Benchmark
+    public Filter and_50_filters() throws InvalidSyntaxException {
+        return and(clauses);
+    }
+
+    @Benchmark
+    public Filter builder_50_clauses() throws InvalidSyntaxException {
+        FilterBuilder builder = FilterBuilder.and().objectClass(EmbeddedFramework.BenchmarkService.class);
+        for (int i = 0; i < 50; i++) {
+            builder = builder.eq("tenant" + i, i);
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public boolean match_filter() {
+        return selection.match(properties);
+    }
+
+    @Benchmark
+    public boolean match_compiled() {
+        return compiledSelection.match(properties);
+    }
+}
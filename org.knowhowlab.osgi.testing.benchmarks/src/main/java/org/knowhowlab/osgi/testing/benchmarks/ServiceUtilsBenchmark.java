@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.benchmarks;
+
+import org.knowhowlab.osgi.testing.benchmarks.EmbeddedFramework.BenchmarkService;
+import org.knowhowlab.osgi.testing.utils.ServiceUtils;
+import org.knowhowlab.osgi.testing.utils.async.Promise;
+import org.openjdk.jmh.annotations.*;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Filter;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceRegistration;
+
+import java.util.Hashtable;
+import java.util.concurrent.TimeUnit;
+
+import static org.knowhowlab.osgi.testing.utils.FilterUtils.and;
+import static org.knowhowlab.osgi.testing.utils.FilterUtils.create;
+import static org.knowhowlab.osgi.testing.utils.FilterUtils.eq;
+
+/**
+ * {@link ServiceUtils} benchmarks
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServiceUtilsBenchmark {
+    private Filter roundTripFilter;
+
+    /**
+     * Service that is registered and unregistered by round trip benchmark
+     */
+    public interface RoundTripService {
+    }
+
+    @Setup
+    public void setUp() throws InvalidSyntaxException {
+        roundTripFilter = and(create(RoundTripService.class), eq("benchmark", "roundTrip"));
+    }
+
+    @Benchmark
+    public BenchmarkService getService(EmbeddedFramework framework) {
+        return ServiceUtils.getService(framework.getBundleContext(), BenchmarkService.class);
+    }
+
+    @Benchmark
+    public BenchmarkService getService_withTimeout(EmbeddedFramework framework) {
+        return ServiceUtils.getService(framework.getBundleContext(), BenchmarkService.class, 1, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public ServiceEvent waitForServiceEvent_roundTrip(EmbeddedFramework framework) throws Exception {
+        BundleContext bc = framework.getBundleContext();
+        Promise<ServiceEvent> event = ServiceUtils.awaitServiceEvent(bc, roundTripFilter, ServiceEvent.REGISTERED, 1, TimeUnit.SECONDS);
+        Hashtable<String, Object> properties = new Hashtable<String, Object>();
+        properties.put("benchmark", "roundTrip");
+        ServiceRegistration registration = bc.registerService(RoundTripService.class.getName(), new RoundTripService() {
+        }, properties);
+        try {
+            return event.get();
+        } finally {
+            registration.unregister();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.benchmarks;
+
+import org.osgi.framework.Constants;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal in-memory ConfigurationAdmin. Configurations are not persisted
+ * and ManagedService or ManagedServiceFactory services are not notified.
+ */
+class StubConfigurationAdmin implements ConfigurationAdmin {
+    private final Map<String, StubConfiguration> configurations = new ConcurrentHashMap<String, StubConfiguration>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    public Configuration createFactoryConfiguration(String factoryPid) {
+        return createFactoryConfiguration(factoryPid, null);
+    }
+
+    public Configuration createFactoryConfiguration(String factoryPid, String location) {
+        String pid = factoryPid + "." + sequence.incrementAndGet();
+        StubConfiguration configuration = new StubConfiguration(pid, factoryPid, location);
+        configurations.put(pid, configuration);
+        return configuration;
+    }
+
+    public Configuration getConfiguration(String pid) {
+        return getConfiguration(pid, null);
+    }
+
+    public Configuration getConfiguration(String pid, String location) {
+        StubConfiguration configuration = configurations.get(pid);
+        if (configuration == null) {
+            configuration = new StubConfiguration(pid, null, location);
+            configurations.put(pid, configuration);
+        }
+        return configuration;
+    }
+
+    public Configuration[] listConfigurations(String filter) throws InvalidSyntaxException {
+        Filter configurationFilter = filter != null ? FrameworkUtil.createFilter(filter) : null;
+        List<Configuration> result = new ArrayList<Configuration>();
+        for (StubConfiguration configuration : configurations.values()) {
+            Dictionary properties = configuration.getProperties();
+            if (properties != null && (configurationFilter == null || configurationFilter.match(properties))) {
+                result.add(configuration);
+            }
+        }
+        return result.isEmpty() ? null : result.toArray(new Configuration[result.size()]);
+    }
+
+    private class StubConfiguration implements Configuration {
+        private final String pid;
+        private final String factoryPid;
+        private volatile String location;
+        private volatile Hashtable<Object, Object> properties;
+
+        private StubConfiguration(String pid, String factoryPid, String location) {
+            this.pid = pid;
+            this.factoryPid = factoryPid;
+            this.location = location;
+        }
+
+        public String getPid() {
+            return pid;
+        }
+
+        public Dictionary getProperties() {
+            Hashtable<Object, Object> current = properties;
+            return current != null ? new Hashtable<Object, Object>(current) : null;
+        }
+
+        public void update(Dictionary properties) {
+            Hashtable<Object, Object> copy = new Hashtable<Object, Object>();
+            for (Enumeration keys = properties.keys(); keys.hasMoreElements(); ) {
+                Object key = keys.nextElement();
+                copy.put(key, properties.get(key));
+            }
+            copy.put(Constants.SERVICE_PID, pid);
+            if (factoryPid != null) {
+                copy.put(SERVICE_FACTORYPID, factoryPid);
+            }
+            this.properties = copy;
+        }
+
+        public void delete() {
+            configurations.remove(pid);
+        }
+
+        public String getFactoryPid() {
+            return factoryPid;
+        }
+
+        public void update() {
+        }
+
+        public void setBundleLocation(String location) {
+            this.location = location;
+        }
+
+        public String getBundleLocation() {
+            return location;
+        }
+    }
+}
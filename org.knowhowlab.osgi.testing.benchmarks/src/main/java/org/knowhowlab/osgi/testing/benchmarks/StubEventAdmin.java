@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.benchmarks;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventAdmin;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
+import org.osgi.util.tracker.ServiceTracker;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Minimal EventAdmin that delivers events to EventHandler services registered in the framework.
+ * Topic wildcards and event filters are supported, handler blacklisting and ordering guarantees are not.
+ */
+class StubEventAdmin implements EventAdmin {
+    private final ServiceTracker tracker;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    StubEventAdmin(BundleContext bc) {
+        tracker = new ServiceTracker(bc, EventHandler.class.getName(), null);
+        tracker.open();
+    }
+
+    public void postEvent(final Event event) {
+        executor.execute(new Runnable() {
+            public void run() {
+                sendEvent(event);
+            }
+        });
+    }
+
+    public void sendEvent(Event event) {
+        ServiceReference[] references = tracker.getServiceReferences();
+        if (references == null) {
+            return;
+        }
+        for (ServiceReference reference : references) {
+            if (matches(reference, event)) {
+                EventHandler handler = (EventHandler) tracker.getService(reference);
+                if (handler != null) {
+                    handler.handleEvent(event);
+                }
+            }
+        }
+    }
+
+    void close() {
+        executor.shutdownNow();
+        tracker.close();
+    }
+
+    private static boolean matches(ServiceReference reference, Event event) {
+        Object topics = reference.getProperty(EventConstants.EVENT_TOPIC);
+        String[] patterns = topics instanceof String ? new String[]{(String) topics} : (String[]) topics;
+        if (patterns == null || !matchesTopic(patterns, event.getTopic())) {
+            return false;
+        }
+        Object filter = reference.getProperty(EventConstants.EVENT_FILTER);
+        if (filter == null) {
+            return true;
+        }
+        try {
+            Filter eventFilter = FrameworkUtil.createFilter((String) filter);
+            return event.matches(eventFilter);
+        } catch (InvalidSyntaxException e) {
+            return false;
+        }
+    }
+
+    private static boolean matchesTopic(String[] patterns, String topic) {
+        for (String pattern : patterns) {
+            if (pattern.equals("*") || pattern.equals(topic)
+                    || (pattern.endsWith("/*") && topic.startsWith(pattern.substring(0, pattern.length() - 1)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
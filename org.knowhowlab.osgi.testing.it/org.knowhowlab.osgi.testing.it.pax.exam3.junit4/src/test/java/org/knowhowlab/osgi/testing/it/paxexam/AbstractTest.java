@@ -16,16 +16,20 @@
 
 package org.knowhowlab.osgi.testing.it.paxexam;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.runner.RunWith;
+import org.knowhowlab.osgi.testing.assertions.FrameworkAssert;
 import org.knowhowlab.osgi.testing.assertions.OSGiAssert;
+import org.knowhowlab.osgi.testing.utils.SharedFramework;
 import org.ops4j.pax.exam.Option;
 import org.ops4j.pax.exam.junit.PaxExam;
 import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
-import org.ops4j.pax.exam.spi.reactors.PerMethod;
+import org.ops4j.pax.exam.spi.reactors.PerClass;
 import org.osgi.framework.BundleContext;
 
 import javax.inject.Inject;
+import java.util.concurrent.TimeUnit;
 
 import static org.ops4j.pax.exam.CoreOptions.*;
 import static org.ops4j.pax.exam.OptionUtils.combine;
@@ -36,8 +40,13 @@ import static org.ops4j.pax.exam.OptionUtils.combine;
  * @author dmytro.pishchukhin
  */
 @RunWith(PaxExam.class)
-@ExamReactorStrategy(PerMethod.class)
+@ExamReactorStrategy(PerClass.class)
 public abstract class AbstractTest {
+    /**
+     * Reset timeout in seconds
+     */
+    private static final long RESET_TIMEOUT = 10;
+
     /**
      * Injected BundleContext
      */
@@ -47,6 +56,13 @@ public abstract class AbstractTest {
     @Before
     public void init() {
         OSGiAssert.setDefaultBundleContext(bc);
+        // framework state is captured before the first test
+        SharedFramework.getFramework(bc);
+    }
+
+    @After
+    public void reset() {
+        FrameworkAssert.assertFrameworkReset(RESET_TIMEOUT, TimeUnit.SECONDS);
     }
 
     /**
@@ -16,16 +16,21 @@
 
 package org.knowhowlab.osgi.testing.it.paxexam;
 
+import org.knowhowlab.osgi.testing.assertions.FrameworkAssert;
 import org.knowhowlab.osgi.testing.assertions.OSGiAssert;
+import org.knowhowlab.osgi.testing.utils.SharedFramework;
 import org.ops4j.pax.exam.Option;
 import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
-import org.ops4j.pax.exam.spi.reactors.PerMethod;
+import org.ops4j.pax.exam.spi.reactors.PerClass;
 import org.ops4j.pax.exam.testng.listener.PaxExam;
 import org.osgi.framework.BundleContext;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Listeners;
 
 import javax.inject.Inject;
+import java.util.concurrent.TimeUnit;
 
 import static org.ops4j.pax.exam.CoreOptions.*;
 import static org.ops4j.pax.exam.OptionUtils.combine;
@@ -36,8 +41,13 @@ import static org.ops4j.pax.exam.OptionUtils.combine;
  * @author dmytro.pishchukhin
  */
 @Listeners(PaxExam.class)
-@ExamReactorStrategy(PerMethod.class)
+@ExamReactorStrategy(PerClass.class)
 public abstract class AbstractTest {
+    /**
+     * Reset timeout in seconds
+     */
+    private static final long RESET_TIMEOUT = 10;
+
     /**
      * Injected BundleContext
      */
@@ -49,6 +59,17 @@ public abstract class AbstractTest {
         OSGiAssert.setDefaultBundleContext(bc);
     }
 
+    @BeforeMethod
+    public void capture() {
+        // framework state is captured before the first test
+        SharedFramework.getFramework(bc);
+    }
+
+    @AfterMethod
+    public void reset() {
+        FrameworkAssert.assertFrameworkReset(RESET_TIMEOUT, TimeUnit.SECONDS);
+    }
+
     /**
      * Runner config
      *
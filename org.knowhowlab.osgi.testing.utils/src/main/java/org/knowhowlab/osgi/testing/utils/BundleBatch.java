@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils;
+
+import org.knowhowlab.osgi.testing.utils.async.DefaultAsyncExecutor;
+import org.knowhowlab.osgi.testing.utils.async.Promise;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleException;
+import org.osgi.service.startlevel.StartLevel;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.knowhowlab.osgi.testing.utils.ServiceUtils.getServiceHandle;
+
+/**
+ * Executor of batch bundle operations.
+ * <p/>
+ * Bundles are ordered by start level and by wiring dependencies within the start level.
+ * Bundles of one dependency layer do not depend on each other and are processed in parallel,
+ * at most {@link BundleUtils#BATCH_PARALLELISM_PROPERTY} bundles at a time.
+ * <p/>
+ * Operations are executed by a pool that is created for the batch and not by the shared
+ * {@link org.knowhowlab.osgi.testing.utils.async.AsyncExecutor}: the batch waits for its operations,
+ * so it would deadlock when it is called from a thread of the shared bounded pool.
+ */
+class BundleBatch {
+    /**
+     * Batch operations
+     */
+    enum Operation {
+        START, STOP, UPDATE, UNINSTALL
+    }
+
+    private final BundleContext bc;
+    private final Operation operation;
+
+    BundleBatch(BundleContext bc, Operation operation) {
+        this.bc = bc;
+        this.operation = operation;
+    }
+
+    static int getParallelism() {
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        try {
+            parallelism = Integer.parseInt(System.getProperty(BundleUtils.BATCH_PARALLELISM_PROPERTY, String.valueOf(parallelism)));
+        } catch (NumberFormatException e) {
+            // default value is used
+        }
+        return Math.max(1, parallelism);
+    }
+
+    /**
+     * Create executor of one batch with {@link #getParallelism()} platform threads.
+     * The executor must be shut down by the caller.
+     *
+     * @return batch executor
+     */
+    static DefaultAsyncExecutor createExecutor() {
+        return new DefaultAsyncExecutor(getParallelism(), false);
+    }
+
+    BundleBatchResult execute(Collection<Bundle> bundles) {
+        long start = System.nanoTime();
+        BundleBatchResult result = new BundleBatchResult();
+        if (operation == Operation.START) {
+            resolve(bundles);
+        }
+        DefaultAsyncExecutor executor = createExecutor();
+        try {
+            List<List<Bundle>> layers = plan(bundles);
+            for (int i = 0; i < layers.size(); i++) {
+                if (!execute(executor, layers.get(i), result)) {
+                    for (List<Bundle> layer : layers.subList(i + 1, layers.size())) {
+                        interrupted(layer, result);
+                    }
+                    break;
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        result.setTotalTime(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Execute operations of one layer and wait for them
+     *
+     * @return <code>false</code> if the waiting is interrupted. Operations that are not started yet are cancelled
+     *         and recorded as failed.
+     */
+    private boolean execute(DefaultAsyncExecutor executor, List<Bundle> layer, final BundleBatchResult result) {
+        Map<Bundle, Promise<?>> promises = new LinkedHashMap<Bundle, Promise<?>>();
+        for (final Bundle bundle : layer) {
+            try {
+                promises.put(bundle, executor.schedule(new Callable<Object>() {
+                    public Object call() throws Exception {
+                        long start = System.nanoTime();
+                        Throwable failure = null;
+                        try {
+                            apply(bundle);
+                        } catch (Throwable e) {
+                            failure = e;
+                        }
+                        result.record(bundle, System.nanoTime() - start, failure);
+                        return null;
+                    }
+                }, 0, MILLISECONDS));
+            } catch (RuntimeException e) {
+                result.record(bundle, 0, e);
+            }
+        }
+        for (Promise<?> promise : promises.values()) {
+            try {
+                promise.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                List<Bundle> cancelled = new ArrayList<Bundle>();
+                for (Map.Entry<Bundle, Promise<?>> entry : promises.entrySet()) {
+                    if (entry.getValue().cancel(false)) {
+                        cancelled.add(entry.getKey());
+                    }
+                }
+                interrupted(cancelled, result);
+                return false;
+            } catch (ExecutionException e) {
+                // failures are recorded by the task
+            }
+        }
+        return true;
+    }
+
+    private static void interrupted(List<Bundle> bundles, BundleBatchResult result) {
+        for (Bundle bundle : bundles) {
+            result.record(bundle, 0, new InterruptedException("Batch is interrupted"));
+        }
+    }
+
+    private void apply(Bundle bundle) throws BundleException {
+        switch (operation) {
+            case START:
+                bundle.start();
+                break;
+            case STOP:
+                bundle.stop();
+                break;
+            case UPDATE:
+                bundle.update();
+                break;
+            case UNINSTALL:
+                bundle.uninstall();
+                break;
+        }
+    }
+
+    private void resolve(Collection<Bundle> bundles) {
+        try {
+            WiringUtils.resolveBundles(bc, bundles);
+        } catch (IllegalStateException e) {
+            // bundles are resolved by start
+        }
+    }
+
+    /**
+     * Split bundles into layers. Bundles of the layer could be processed in parallel,
+     * layers are processed one by one.
+     *
+     * @param bundles bundles
+     * @return layers in processing order
+     */
+    List<List<Bundle>> plan(Collection<Bundle> bundles) {
+        List<List<Bundle>> layers = new ArrayList<List<Bundle>>();
+        if (operation == Operation.UPDATE) {
+            layers.add(new ArrayList<Bundle>(bundles));
+            return layers;
+        }
+        boolean reverse = operation != Operation.START;
+        Map<Bundle, Set<Bundle>> providers = WiringUtils.getProviders(bc, bundles);
+        for (List<Bundle> level : groupByStartLevel(bundles, reverse)) {
+            List<List<Bundle>> levelLayers = layers(level, providers);
+            if (reverse) {
+                Collections.reverse(levelLayers);
+            }
+            layers.addAll(levelLayers);
+        }
+        return layers;
+    }
+
+    private List<List<Bundle>> groupByStartLevel(Collection<Bundle> bundles, boolean reverse) {
+        TreeMap<Integer, List<Bundle>> levels = new TreeMap<Integer, List<Bundle>>();
+        ServiceHandle<StartLevel> handle = getServiceHandle(bc, StartLevel.class);
+        try {
+            for (Bundle bundle : bundles) {
+                int level = 1;
+                if (handle != null) {
+                    try {
+                        level = handle.getService().getBundleStartLevel(bundle);
+                    } catch (IllegalArgumentException e) {
+                        // bundle is uninstalled
+                    }
+                }
+                List<Bundle> list = levels.get(level);
+                if (list == null) {
+                    list = new ArrayList<Bundle>();
+                    levels.put(level, list);
+                }
+                list.add(bundle);
+            }
+        } finally {
+            if (handle != null) {
+                handle.close();
+            }
+        }
+        List<List<Bundle>> result = new ArrayList<List<Bundle>>(levels.values());
+        if (reverse) {
+            Collections.reverse(result);
+        }
+        return result;
+    }
+
+    private static List<List<Bundle>> layers(List<Bundle> bundles, Map<Bundle, Set<Bundle>> providers) {
+        List<List<Bundle>> layers = new ArrayList<List<Bundle>>();
+        Set<Bundle> remaining = new LinkedHashSet<Bundle>(bundles);
+        while (!remaining.isEmpty()) {
+            List<Bundle> layer = new ArrayList<Bundle>();
+            for (Bundle bundle : remaining) {
+                Set<Bundle> bundleProviders = providers.get(bundle);
+                if (bundleProviders == null || Collections.disjoint(bundleProviders, remaining)) {
+                    layer.add(bundle);
+                }
+            }
+            if (layer.isEmpty()) {
+                // dependency cycle, the rest is processed together
+                layer.addAll(remaining);
+            }
+            remaining.removeAll(layer);
+            layers.add(layer);
+        }
+        return layers;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils;
+
+import org.osgi.framework.Bundle;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Aggregated result of the batch bundle operation with per-bundle timing and failures
+ *
+ * @see BundleUtils#startBundles(org.osgi.framework.BundleContext, java.util.Collection)
+ * @since 1.3
+ */
+public class BundleBatchResult {
+    private final Map<Bundle, Long> durations = new LinkedHashMap<Bundle, Long>();
+    private final Map<Bundle, Throwable> failures = new LinkedHashMap<Bundle, Throwable>();
+    private long totalTime;
+
+    BundleBatchResult() {
+    }
+
+    /**
+     * Get processed bundles in completion order
+     *
+     * @return list of bundles
+     */
+    public synchronized List<Bundle> getBundles() {
+        return new ArrayList<Bundle>(durations.keySet());
+    }
+
+    /**
+     * Get failures of the bundles
+     *
+     * @return failure causes by bundles. Map is empty if all bundles are processed successfully.
+     */
+    public synchronized Map<Bundle, Throwable> getFailures() {
+        return new LinkedHashMap<Bundle, Throwable>(failures);
+    }
+
+    /**
+     * Check if all bundles are processed successfully
+     *
+     * @return <code>true</code> if there are no failures
+     */
+    public synchronized boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+
+    /**
+     * Get duration of the bundle operation
+     *
+     * @param bundle   bundle
+     * @param timeUnit time unit of the result
+     * @return duration or <code>-1</code> if the bundle is not processed
+     */
+    public synchronized long getDuration(Bundle bundle, TimeUnit timeUnit) {
+        Long duration = durations.get(bundle);
+        return duration != null ? timeUnit.convert(duration, NANOSECONDS) : -1;
+    }
+
+    /**
+     * Get wall-clock time of the whole batch
+     *
+     * @param timeUnit time unit of the result
+     * @return total time
+     */
+    public synchronized long getTotalTime(TimeUnit timeUnit) {
+        return timeUnit.convert(totalTime, NANOSECONDS);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("BundleBatchResult[bundles: %d, failures: %s, total time: %dms]",
+                durations.size(), failures, getTotalTime(TimeUnit.MILLISECONDS));
+    }
+
+    synchronized void record(Bundle bundle, long durationInNanos, Throwable failure) {
+        durations.put(bundle, durationInNanos);
+        if (failure != null) {
+            failures.put(bundle, failure);
+        }
+    }
+
+    void merge(BundleBatchResult other) {
+        Map<Bundle, Throwable> otherFailures = other.getFailures();
+        for (Bundle bundle : other.getBundles()) {
+            long duration = other.getDuration(bundle, NANOSECONDS);
+            synchronized (this) {
+                Long previous = durations.get(bundle);
+                durations.put(bundle, previous != null ? previous + duration : duration);
+                if (otherFailures.containsKey(bundle) && !failures.containsKey(bundle)) {
+                    failures.put(bundle, otherFailures.get(bundle));
+                }
+            }
+        }
+    }
+
+    synchronized void setTotalTime(long totalTimeInNanos) {
+        this.totalTime = totalTimeInNanos;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleException;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Content-addressed cache of bundles that are installed or updated by the utilities.
+ * <p/>
+ * Bundles are keyed by SHA-256 digest of their content. Bundle with identical content is reused
+ * instead of installation. Bundle with the same location and changed content is updated.
+ * Cache entries of bundles that are uninstalled or modified by others are dropped on lookup.
+ * Installations of identical content are serialized, so concurrent callers get one bundle.
+ */
+class BundleContentCache {
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final Map<BundleContext, BundleContentCache> caches = new HashMap<BundleContext, BundleContentCache>();
+
+    private final BundleContext bc;
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+    private final Map<String, DigestLock> locks = new HashMap<String, DigestLock>();
+
+    private BundleContentCache(BundleContext bc) {
+        this.bc = bc;
+    }
+
+    static BundleContentCache getCache(BundleContext bc) {
+        synchronized (caches) {
+            for (Iterator<BundleContentCache> iterator = caches.values().iterator(); iterator.hasNext(); ) {
+                if (!isValid(iterator.next().bc)) {
+                    iterator.remove();
+                }
+            }
+            BundleContentCache cache = caches.get(bc);
+            if (cache == null) {
+                cache = new BundleContentCache(bc);
+                caches.put(bc, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Install bundle content or reuse installed bundle with identical content
+     *
+     * @param location bundle location
+     * @param content  bundle content
+     * @return installed, updated or reused bundle
+     * @throws BundleException If installation or update failed
+     */
+    Bundle install(String location, ByteBuffer content) throws BundleException {
+        String digest = digest(content.duplicate());
+        DigestLock lock = acquireLock(digest);
+        try {
+            synchronized (lock) {
+                Bundle bundle = lookup(digest);
+                if (bundle != null) {
+                    return bundle;
+                }
+                bundle = BundleIndex.getIndex(bc).getBundleByLocation(location);
+                if (bundle != null) {
+                    bundle.update(new ByteBufferInputStream(content.duplicate()));
+                } else {
+                    bundle = bc.installBundle(location, new ByteBufferInputStream(content.duplicate()));
+                }
+                synchronized (this) {
+                    entries.put(digest, new Entry(bundle));
+                }
+                return bundle;
+            }
+        } finally {
+            releaseLock(digest, lock);
+        }
+    }
+
+    /**
+     * Get content digest of the bundle that is installed or updated by the cache
+     *
+     * @param bundle bundle
+     * @return SHA-256 digest or <code>null</code> if bundle content is unknown
+     */
+    synchronized String getDigest(Bundle bundle) {
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (entry.getValue().bundle.equals(bundle) && entry.getValue().lastModified == bundle.getLastModified()) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    private synchronized DigestLock acquireLock(String digest) {
+        DigestLock lock = locks.get(digest);
+        if (lock == null) {
+            lock = new DigestLock();
+            locks.put(digest, lock);
+        }
+        lock.users++;
+        return lock;
+    }
+
+    private synchronized void releaseLock(String digest, DigestLock lock) {
+        if (--lock.users == 0) {
+            locks.remove(digest);
+        }
+    }
+
+    private synchronized Bundle lookup(String digest) {
+        Entry entry = entries.get(digest);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.bundle.getState() == Bundle.UNINSTALLED || entry.bundle.getLastModified() != entry.lastModified) {
+            entries.remove(digest);
+            return null;
+        }
+        return entry.bundle;
+    }
+
+    private static String digest(ByteBuffer content) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Unable to create digest", e);
+        }
+        digest.update(content);
+        byte[] bytes = digest.digest();
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0x0F];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0x0F];
+        }
+        return new String(chars);
+    }
+
+    private static boolean isValid(BundleContext bc) {
+        try {
+            bc.getBundle();
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Lock of one content digest. Lock is dropped when it has no users.
+     */
+    private static class DigestLock {
+        private int users;
+    }
+
+    /**
+     * Cached bundle with its modification time at caching
+     */
+    private static class Entry {
+        private final Bundle bundle;
+        private final long lastModified;
+
+        private Entry(Bundle bundle) {
+            this.bundle = bundle;
+            this.lastModified = bundle.getLastModified();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils;
+
+import org.osgi.framework.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of installed bundles of the BundleContext.
+ * <p/>
+ * Index is kept current by one SynchronousBundleListener, so lookups by symbolic name and by location
+ * read prepared maps and do not touch the service registry or iterate all bundles.
+ * Bundles with the same symbolic name are sorted by version from the highest to the lowest,
+ * bundles with equal versions are sorted by bundle id.
+ * Indexes of BundleContexts that are no longer valid are closed automatically.
+ *
+ * @see BundleUtils#findBundle(BundleContext, String, Version)
+ * @since 1.3
+ */
+public class BundleIndex {
+    private static final Map<BundleContext, BundleIndex> indexes = new HashMap<BundleContext, BundleIndex>();
+    private static final Bundle[] EMPTY = new Bundle[0];
+    private static final Comparator<Bundle> VERSION_ORDER = new Comparator<Bundle>() {
+        public int compare(Bundle b1, Bundle b2) {
+            int result = getVersion(b2).compareTo(getVersion(b1));
+            if (result == 0) {
+                result = b1.getBundleId() < b2.getBundleId() ? -1 : (b1.getBundleId() == b2.getBundleId() ? 0 : 1);
+            }
+            return result;
+        }
+    };
+
+    private final BundleContext bc;
+    private final ConcurrentHashMap<String, Bundle[]> bySymbolicName = new ConcurrentHashMap<String, Bundle[]>();
+    private final ConcurrentHashMap<String, Bundle> byLocation = new ConcurrentHashMap<String, Bundle>();
+    private final Map<Long, Entry> entries = new HashMap<Long, Entry>();
+    private final SynchronousBundleListener listener = new SynchronousBundleListener() {
+        public void bundleChanged(BundleEvent event) {
+            switch (event.getType()) {
+                case BundleEvent.INSTALLED:
+                case BundleEvent.UPDATED:
+                    add(event.getBundle());
+                    break;
+                case BundleEvent.UNINSTALLED:
+                    remove(event.getBundle());
+                    break;
+            }
+        }
+    };
+
+    private BundleIndex(BundleContext bc) {
+        this.bc = bc;
+    }
+
+    /**
+     * Get bundle index of the BundleContext. Index is created and filled on the first call.
+     *
+     * @param bc BundleContext
+     * @return bundle index
+     * @throws NullPointerException  If <code>bc</code> is <code>null</code>
+     * @throws IllegalStateException If BundleContext is no longer valid
+     */
+    public static BundleIndex getIndex(BundleContext bc) {
+        if (bc == null) {
+            throw new NullPointerException("BundleContext is null");
+        }
+        synchronized (indexes) {
+            for (Iterator<BundleIndex> iterator = indexes.values().iterator(); iterator.hasNext(); ) {
+                if (!isValid(iterator.next().bc)) {
+                    iterator.remove();
+                }
+            }
+            BundleIndex index = indexes.get(bc);
+            if (index == null) {
+                index = new BundleIndex(bc);
+                index.open();
+                indexes.put(bc, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Get bundle with the highest version by symbolic name
+     *
+     * @param symbolicName symbolic name
+     * @return Bundle instance or <code>null</code>
+     * @throws NullPointerException If <code>symbolicName</code> is <code>null</code>
+     */
+    public Bundle getBundle(String symbolicName) {
+        return getBundle(symbolicName, null);
+    }
+
+    /**
+     * Get bundle with the highest version that is greater than or equal to the given version by symbolic name.
+     * This matches the version range semantics of <code>PackageAdmin.getBundles</code>.
+     *
+     * @param symbolicName symbolic name
+     * @param version      minimal version or <code>null</code> for any version
+     * @return Bundle instance or <code>null</code>
+     * @throws NullPointerException If <code>symbolicName</code> is <code>null</code>
+     */
+    public Bundle getBundle(String symbolicName, Version version) {
+        Bundle[] bundles = get(symbolicName);
+        if (bundles.length > 0 && (version == null || getVersion(bundles[0]).compareTo(version) >= 0)) {
+            return bundles[0];
+        }
+        return null;
+    }
+
+    /**
+     * Get bundles by symbolic name
+     *
+     * @param symbolicName symbolic name
+     * @return bundles sorted by version from the highest to the lowest. List is empty if there are no bundles.
+     * @throws NullPointerException If <code>symbolicName</code> is <code>null</code>
+     */
+    public List<Bundle> getBundles(String symbolicName) {
+        return Collections.unmodifiableList(Arrays.asList(get(symbolicName)));
+    }
+
+    /**
+     * Get bundle by location
+     *
+     * @param location bundle location
+     * @return Bundle instance or <code>null</code>
+     * @throws NullPointerException If <code>location</code> is <code>null</code>
+     */
+    public Bundle getBundleByLocation(String location) {
+        if (location == null) {
+            throw new NullPointerException("location is null");
+        }
+        return byLocation.get(location);
+    }
+
+    /**
+     * Stop index updates and remove index of the BundleContext.
+     * New index is created by the next {@link #getIndex(BundleContext)} call.
+     */
+    public void close() {
+        synchronized (indexes) {
+            if (indexes.get(bc) == this) {
+                indexes.remove(bc);
+            }
+        }
+        try {
+            bc.removeBundleListener(listener);
+        } catch (IllegalStateException e) {
+            // BundleContext is no longer valid
+        }
+    }
+
+    private void open() {
+        bc.addBundleListener(listener);
+        Bundle[] bundles = bc.getBundles();
+        if (bundles != null) {
+            for (Bundle bundle : bundles) {
+                if (bundle.getState() != Bundle.UNINSTALLED) {
+                    add(bundle);
+                }
+            }
+        }
+    }
+
+    private Bundle[] get(String symbolicName) {
+        if (symbolicName == null) {
+            throw new NullPointerException("symbolicName is null");
+        }
+        Bundle[] bundles = bySymbolicName.get(symbolicName);
+        return bundles != null ? bundles : EMPTY;
+    }
+
+    private synchronized void add(Bundle bundle) {
+        remove(bundle);
+        Entry entry = new Entry(bundle.getSymbolicName(), bundle.getLocation());
+        entries.put(bundle.getBundleId(), entry);
+        if (entry.location != null) {
+            byLocation.put(entry.location, bundle);
+        }
+        if (entry.symbolicName != null) {
+            Bundle[] current = get(entry.symbolicName);
+            Bundle[] bundles = new Bundle[current.length + 1];
+            System.arraycopy(current, 0, bundles, 0, current.length);
+            bundles[current.length] = bundle;
+            Arrays.sort(bundles, VERSION_ORDER);
+            bySymbolicName.put(entry.symbolicName, bundles);
+        }
+    }
+
+    private synchronized void remove(Bundle bundle) {
+        Entry entry = entries.remove(bundle.getBundleId());
+        if (entry == null) {
+            return;
+        }
+        if (entry.location != null) {
+            byLocation.remove(entry.location, bundle);
+        }
+        if (entry.symbolicName != null) {
+            List<Bundle> bundles = new ArrayList<Bundle>(Arrays.asList(get(entry.symbolicName)));
+            bundles.remove(bundle);
+            if (bundles.isEmpty()) {
+                bySymbolicName.remove(entry.symbolicName);
+            } else {
+                bySymbolicName.put(entry.symbolicName, bundles.toArray(new Bundle[bundles.size()]));
+            }
+        }
+    }
+
+    private static Version getVersion(Bundle bundle) {
+        Version version = bundle.getVersion();
+        return version != null ? version : Version.emptyVersion;
+    }
+
+    private static boolean isValid(BundleContext bc) {
+        try {
+            bc.getBundle();
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Keys under which the bundle is indexed. Kept to clean the index when the bundle is updated with
+     * a new symbolic name or location.
+     */
+    private static class Entry {
+        private final String symbolicName;
+        private final String location;
+
+        private Entry(String symbolicName, String location) {
+            this.symbolicName = symbolicName;
+            this.location = location;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils;
+
+import org.osgi.framework.Bundle;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Aggregated result of the batch bundle installation with per-bundle install times and failures
+ *
+ * @see BundleUtils#installBundles(org.osgi.framework.BundleContext, java.util.List)
+ * @since 1.3
+ */
+public class BundleInstallResult {
+    private final Map<String, Bundle> bundles = new LinkedHashMap<String, Bundle>();
+    private final Map<String, Throwable> failures = new LinkedHashMap<String, Throwable>();
+    private final Map<String, Long> durations = new LinkedHashMap<String, Long>();
+    private long totalTime;
+
+    BundleInstallResult() {
+    }
+
+    /**
+     * Get installed bundles in completion order
+     *
+     * @return bundles by locations
+     */
+    public synchronized Map<String, Bundle> getBundles() {
+        return new LinkedHashMap<String, Bundle>(bundles);
+    }
+
+    /**
+     * Get installation failures
+     *
+     * @return failure causes by locations. Map is empty if all bundles are installed.
+     */
+    public synchronized Map<String, Throwable> getFailures() {
+        return new LinkedHashMap<String, Throwable>(failures);
+    }
+
+    /**
+     * Check if all bundles are installed
+     *
+     * @return <code>true</code> if there are no failures
+     */
+    public synchronized boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+
+    /**
+     * Get install time of the bundle including reading of the bundle content
+     *
+     * @param location bundle location
+     * @param timeUnit time unit of the result
+     * @return install time or <code>-1</code> if the location is not processed
+     */
+    public synchronized long getDuration(String location, TimeUnit timeUnit) {
+        Long duration = durations.get(location);
+        return duration != null ? timeUnit.convert(duration, NANOSECONDS) : -1;
+    }
+
+    /**
+     * Get wall-clock time of the whole installation
+     *
+     * @param timeUnit time unit of the result
+     * @return total time
+     */
+    public synchronized long getTotalTime(TimeUnit timeUnit) {
+        return timeUnit.convert(totalTime, NANOSECONDS);
+    }
+
+    /**
+     * Get histogram of install times. Buckets are powers of two milliseconds.
+     *
+     * @return number of installations by the bucket upper bound in milliseconds
+     */
+    public synchronized SortedMap<Long, Integer> getHistogram() {
+        SortedMap<Long, Integer> histogram = new TreeMap<Long, Integer>();
+        for (Long duration : durations.values()) {
+            long millis = MILLISECONDS.convert(duration, NANOSECONDS);
+            long bucket = 1;
+            while (bucket < millis) {
+                bucket <<= 1;
+            }
+            Integer count = histogram.get(bucket);
+            histogram.put(bucket, count == null ? 1 : count + 1);
+        }
+        return histogram;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("BundleInstallResult[bundles: %d, failures: %s, total time: %dms, histogram (ms <= bucket: count): %s]",
+                bundles.size(), failures, getTotalTime(MILLISECONDS), getHistogram());
+    }
+
+    synchronized void record(String location, Bundle bundle, long durationInNanos, Throwable failure) {
+        durations.put(location, durationInNanos);
+        if (bundle != null) {
+            bundles.put(location, bundle);
+        }
+        if (failure != null) {
+            failures.put(location, failure);
+        }
+    }
+
+    synchronized void setTotalTime(long totalTimeInNanos) {
+        this.totalTime = totalTimeInNanos;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils;
+
+import org.knowhowlab.osgi.testing.utils.async.DefaultAsyncExecutor;
+import org.knowhowlab.osgi.testing.utils.async.Promise;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleException;
+
+import java.io.*;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Parallel installer of bundles.
+ * <p/>
+ * Content of <code>file:</code> locations is memory-mapped, other locations are read into memory once.
+ * Content is checked for manifest entry before installation, so locations that are not jars
+ * are rejected without framework calls. Manifest headers are validated by the framework.
+ * Bundles with already installed content are reused, see {@link BundleContentCache}.
+ * At most {@link BundleUtils#BATCH_PARALLELISM_PROPERTY} bundles are installed at a time
+ * by a pool that is created for the call, see {@link BundleBatch}.
+ */
+class BundleInstaller {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final BundleContext bc;
+
+    BundleInstaller(BundleContext bc) {
+        this.bc = bc;
+    }
+
+    BundleInstallResult install(List<URI> uris) {
+        long start = System.nanoTime();
+        final BundleInstallResult result = new BundleInstallResult();
+        List<Promise<?>> promises = new ArrayList<Promise<?>>(uris.size());
+        DefaultAsyncExecutor executor = BundleBatch.createExecutor();
+        try {
+            for (final URI uri : uris) {
+                final String location = uri.toString();
+                try {
+                    promises.add(executor.schedule(new Callable<Object>() {
+                        public Object call() throws Exception {
+                            long start = System.nanoTime();
+                            Bundle bundle = null;
+                            Throwable failure = null;
+                            try {
+                                bundle = install(uri, location);
+                            } catch (Throwable e) {
+                                failure = e;
+                            }
+                            result.record(location, bundle, System.nanoTime() - start, failure);
+                            return null;
+                        }
+                    }, 0, MILLISECONDS));
+                } catch (RuntimeException e) {
+                    result.record(location, null, 0, e);
+                }
+            }
+            for (Promise<?> promise : promises) {
+                try {
+                    promise.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (ExecutionException e) {
+                    // failures are recorded by the task
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        result.setTotalTime(System.nanoTime() - start);
+        return result;
+    }
+
+    private Bundle install(URI uri, String location) throws IOException, BundleException {
+        ByteBuffer content = read(uri);
+        if (!hasManifest(content)) {
+            throw new BundleException(String.format("Not an OSGi bundle: %s", location));
+        }
+        return BundleContentCache.getCache(bc).install(location, content);
+    }
+
+    /**
+     * Check if the content is a jar with manifest. Entries are looked up by name,
+     * manifest is not required to be the first entry.
+     *
+     * @param content jar content
+     * @return <code>true</code> if the content has manifest entry
+     * @throws IOException unable to read the content
+     */
+    static boolean hasManifest(ByteBuffer content) throws IOException {
+        ZipInputStream input = new ZipInputStream(new ByteBufferInputStream(content.duplicate()));
+        try {
+            ZipEntry entry;
+            while ((entry = input.getNextEntry()) != null) {
+                if (JarFile.MANIFEST_NAME.equalsIgnoreCase(entry.getName())) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            input.close();
+        }
+    }
+
+    static ByteBuffer read(URI uri) throws IOException {
+        if ("file".equals(uri.getScheme())) {
+            FileInputStream input = new FileInputStream(new File(uri));
+            try {
+                FileChannel channel = input.getChannel();
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } finally {
+                input.close();
+            }
+        }
+        return read(uri.toURL().openStream());
+    }
+
+    static ByteBuffer read(InputStream input) throws IOException {
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return ByteBuffer.wrap(output.toByteArray());
+        } finally {
+            input.close();
+        }
+    }
+}
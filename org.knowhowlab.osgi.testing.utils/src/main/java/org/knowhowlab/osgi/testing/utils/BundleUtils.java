@@ -16,23 +16,37 @@
 
 package org.knowhowlab.osgi.testing.utils;
 
+import org.knowhowlab.osgi.testing.utils.async.Promise;
+import org.knowhowlab.osgi.testing.utils.event.BundleEventChannel;
+import org.knowhowlab.osgi.testing.utils.event.EventMatcher;
+import org.knowhowlab.osgi.testing.utils.event.LookBack;
 import org.osgi.framework.*;
-import org.osgi.service.packageadmin.PackageAdmin;
 import org.osgi.util.tracker.BundleTracker;
 import org.osgi.util.tracker.BundleTrackerCustomizer;
 
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.*;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
-import static org.knowhowlab.osgi.testing.utils.ServiceUtils.getService;
+import static org.knowhowlab.osgi.testing.utils.BundleIndex.getIndex;
+import static org.knowhowlab.osgi.testing.utils.async.AsyncExecutors.schedule;
+import static org.knowhowlab.osgi.testing.utils.async.Promises.waitFor;
+import static org.knowhowlab.osgi.testing.utils.event.EventHub.getEventHub;
 
 /**
  * OSGi Bundles utilities class
  *
  * @author dpishchukhin
  * @see org.osgi.framework.Bundle
- * @see org.osgi.service.packageadmin.PackageAdmin
+ * @see BundleIndex
  * @see org.osgi.framework.BundleContext
  * @see org.osgi.framework.BundleEvent
  * @see org.osgi.framework.BundleListener
@@ -44,6 +58,14 @@ public class BundleUtils {
     public static final int ANY_STATE = Bundle.UNINSTALLED |
             Bundle.INSTALLED | Bundle.RESOLVED | Bundle.STARTING | Bundle.STOPPING | Bundle.ACTIVE;
 
+    /**
+     * System property with the maximal number of bundles that are processed in parallel by batch operations.
+     * Default value is the number of available processors.
+     *
+     * @since 1.3
+     */
+    public static final String BATCH_PARALLELISM_PROPERTY = "org.knowhowlab.osgi.testing.utils.bundleBatch.parallelism";
+
     /**
      * Utility class. Only static methods are available.
      */
@@ -77,7 +99,8 @@ public class BundleUtils {
     }
 
     /**
-     * Find bundle by SymbolicName and Version
+     * Find bundle by SymbolicName and Version. Bundle with the highest version that is greater than or equal
+     * to the given version is returned.
      *
      * @param bc           BundleContext
      * @param symbolicName symbolicName
@@ -87,14 +110,20 @@ public class BundleUtils {
      * @since 1.0
      */
     public static Bundle findBundle(BundleContext bc, String symbolicName, Version version) {
-        PackageAdmin packageAdmin = getService(bc, PackageAdmin.class);
-        if (packageAdmin != null) {
-            Bundle[] bundles = packageAdmin.getBundles(symbolicName, version != null ? version.toString() : null);
-            if (bundles != null && bundles.length > 0) {
-                return bundles[0];
-            }
-        }
-        return null;
+        return getIndex(bc).getBundle(symbolicName, version);
+    }
+
+    /**
+     * Find bundle by location
+     *
+     * @param bc       BundleContext
+     * @param location bundle location
+     * @return Bundle instance or <code>null</code>
+     * @throws NullPointerException If <code>bc</code> or <code>location</code> are <code>null</code>
+     * @since 1.3
+     */
+    public static Bundle findBundleByLocation(BundleContext bc, String location) {
+        return getIndex(bc).getBundleByLocation(location);
     }
 
     /**
@@ -232,6 +261,101 @@ public class BundleUtils {
         }
     }
 
+    /**
+     * Installs all <code>*.jar</code> bundles of the directory in parallel.
+     * Bundles are installed with <code>file:</code> URI locations.
+     *
+     * @param bc        BundleContext
+     * @param directory directory with bundles
+     * @return aggregated result with per-bundle install times and failures
+     * @throws IllegalArgumentException If <code>directory</code> is not a directory
+     * @throws NullPointerException     If <code>bc</code> or <code>directory</code> are <code>null</code>
+     * @see #installBundles(BundleContext, List)
+     * @since 1.3
+     */
+    public static BundleInstallResult installBundles(BundleContext bc, File directory) {
+        File[] files = directory.listFiles(new FileFilter() {
+            public boolean accept(File file) {
+                return file.isFile() && file.getName().endsWith(".jar");
+            }
+        });
+        if (files == null) {
+            throw new IllegalArgumentException(String.format("Not a directory: %s", directory));
+        }
+        Arrays.sort(files);
+        List<URI> uris = new ArrayList<URI>(files.length);
+        for (File file : files) {
+            uris.add(file.toURI());
+        }
+        return installBundles(bc, uris);
+    }
+
+    /**
+     * Installs bundles in parallel. Content of <code>file:</code> URIs is memory-mapped, content of other URIs
+     * is read once. Bundle manifest is checked before installation. Bundles are installed with
+     * {@link #installOrReuseBundle(BundleContext, URI)} rules. Failure of one bundle does not stop the batch.
+     *
+     * @param bc   BundleContext
+     * @param uris bundle URIs. URI string is used as bundle location.
+     * @return aggregated result with per-bundle install times and failures
+     * @throws NullPointerException If <code>bc</code> or <code>uris</code> are <code>null</code>
+     * @see #BATCH_PARALLELISM_PROPERTY
+     * @since 1.3
+     */
+    public static BundleInstallResult installBundles(BundleContext bc, List<URI> uris) {
+        if (bc == null) {
+            throw new NullPointerException("BundleContext is null");
+        }
+        if (uris == null) {
+            throw new NullPointerException("uris is null");
+        }
+        return new BundleInstaller(bc).install(uris);
+    }
+
+    /**
+     * Installs a bundle or reuses installed one with identical content. Content is identified by SHA-256 digest.
+     * Bundle that is installed with the same location and different content is updated.
+     * The framework is not called if bundle with identical content is already installed by this method.
+     *
+     * @param bc  BundleContext
+     * @param uri bundle URI. URI string is used as bundle location.
+     * @return installed, updated or reused bundle
+     * @throws BundleException      If installation or update failed
+     * @throws IOException          If bundle content could not be read
+     * @throws NullPointerException If <code>bc</code> or <code>uri</code> are <code>null</code>
+     * @since 1.3
+     */
+    public static Bundle installOrReuseBundle(BundleContext bc, URI uri) throws BundleException, IOException {
+        if (bc == null) {
+            throw new NullPointerException("BundleContext is null");
+        }
+        return BundleContentCache.getCache(bc).install(uri.toString(), BundleInstaller.read(uri));
+    }
+
+    /**
+     * Installs a bundle or reuses installed one with identical content. Content is identified by SHA-256 digest.
+     * Bundle that is installed with the same location and different content is updated.
+     * The framework is not called if bundle with identical content is already installed by this method.
+     *
+     * @param bc       BundleContext
+     * @param location bundle location
+     * @param input    bundle content. The stream is always closed when this method completes.
+     * @return installed, updated or reused bundle
+     * @throws BundleException      If installation or update failed
+     * @throws IOException          If bundle content could not be read
+     * @throws NullPointerException If <code>bc</code>, <code>location</code> or <code>input</code> are <code>null</code>
+     * @since 1.3
+     */
+    public static Bundle installOrReuseBundle(BundleContext bc, String location, InputStream input) throws BundleException, IOException {
+        if (bc == null) {
+            throw new NullPointerException("BundleContext is null");
+        }
+        if (location == null) {
+            throw new NullPointerException("location is null");
+        }
+        return BundleContentCache.getCache(bc).install(location, BundleInstaller.read(input));
+    }
+
     /**
      * Installs a bundle asynchronously
      *
@@ -240,7 +364,7 @@ public class BundleUtils {
      * @return A <code>Future&lt;Bundle&gt;</code> object of the installed bundle.
      * @since 1.1
      */
-    public static Future<Bundle> installBundleAsync(BundleContext bc, String location) {
+    public static Promise<Bundle> installBundleAsync(BundleContext bc, String location) {
         return installBundleAsync(bc, location, 0);
     }
 
@@ -257,7 +381,7 @@ public class BundleUtils {
      * @return A <code>Future&lt;Bundle&gt;</code> object of the installed bundle.
      * @since 1.1
      */
-    public static Future<Bundle> installBundleAsync(BundleContext bc, String location, InputStream input) {
+    public static Promise<Bundle> installBundleAsync(BundleContext bc, String location, InputStream input) {
         return installBundleAsync(bc, location, input, 0);
     }
 
@@ -270,7 +394,7 @@ public class BundleUtils {
      * @return A <code>Future&lt;Bundle&gt;</code> object of the installed bundle.
      * @since 1.1
      */
-    public static Future<Bundle> installBundleAsync(BundleContext bc, String location, long delayInMillis) {
+    public static Promise<Bundle> installBundleAsync(BundleContext bc, String location, long delayInMillis) {
         return installBundleAsync(bc, location, delayInMillis, MILLISECONDS);
     }
 
@@ -288,7 +412,7 @@ public class BundleUtils {
      * @return A <code>Future&lt;Bundle&gt;</code> object of the installed bundle.
      * @since 1.1
      */
-    public static Future<Bundle> installBundleAsync(BundleContext bc, String location, InputStream input, long delayInMillis) {
+    public static Promise<Bundle> installBundleAsync(BundleContext bc, String location, InputStream input, long delayInMillis) {
         return installBundleAsync(bc, location, input, delayInMillis, MILLISECONDS);
     }
 
@@ -302,7 +426,7 @@ public class BundleUtils {
      * @return A <code>Future&lt;Bundle&gt;</code> object of the installed bundle.
      * @since 1.1
      */
-    public static Future<Bundle> installBundleAsync(BundleContext bc, String location, long delay, TimeUnit timeUnit) {
+    public static Promise<Bundle> installBundleAsync(BundleContext bc, String location, long delay, TimeUnit timeUnit) {
         return installBundleAsync(bc, location, null, delay, timeUnit);
     }
 
@@ -321,8 +445,8 @@ public class BundleUtils {
      * @return A <code>Future&lt;Bundle&gt;</code> object of the installed bundle.
      * @since 1.1
      */
-    public static Future<Bundle> installBundleAsync(final BundleContext bc, final String location, final InputStream input, long delay, TimeUnit timeUnit) {
-        return Executors.newSingleThreadScheduledExecutor().schedule(new Callable<Bundle>() {
+    public static Promise<Bundle> installBundleAsync(final BundleContext bc, final String location, final InputStream input, long delay, TimeUnit timeUnit) {
+        return schedule(new Callable<Bundle>() {
             public Bundle call() throws Exception {
                 return bc.installBundle(location, input);
             }
@@ -336,7 +460,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> startBundleAsync(Bundle bundle) {
+    public static Promise<?> startBundleAsync(Bundle bundle) {
         return startBundleAsync(bundle, 0L);
     }
 
@@ -348,7 +472,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> startBundleAsync(BundleContext bc, long bundleId) {
+    public static Promise<?> startBundleAsync(BundleContext bc, long bundleId) {
         return startBundleAsync(bc, bundleId, 0L);
     }
 
@@ -360,7 +484,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> startBundleAsync(BundleContext bc, String symbolicName) {
+    public static Promise<?> startBundleAsync(BundleContext bc, String symbolicName) {
         return startBundleAsync(bc, symbolicName, 0L);
     }
 
@@ -373,7 +497,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> startBundleAsync(BundleContext bc, String symbolicName, Version version) {
+    public static Promise<?> startBundleAsync(BundleContext bc, String symbolicName, Version version) {
         return startBundleAsync(bc, symbolicName, version, 0L);
     }
 
@@ -387,7 +511,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> startBundleAsync(Bundle bundle, int options) {
+    public static Promise<?> startBundleAsync(Bundle bundle, int options) {
         return startBundleAsync(bundle, options, 0L);
     }
 
@@ -402,7 +526,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> startBundleAsync(BundleContext bc, long bundleId, int options) {
+    public static Promise<?> startBundleAsync(BundleContext bc, long bundleId, int options) {
         return startBundleAsync(bc, bundleId, options, 0L);
     }
 
@@ -417,7 +541,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> startBundleAsync(BundleContext bc, String symbolicName, int options) {
+    public static Promise<?> startBundleAsync(BundleContext bc, String symbolicName, int options) {
         return startBundleAsync(bc, symbolicName, options, 0L);
     }
 
@@ -433,7 +557,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> startBundleAsync(BundleContext bc, String symbolicName, Version version, int options) {
+    public static Promise<?> startBundleAsync(BundleContext bc, String symbolicName, Version version, int options) {
         return startBundleAsync(bc, symbolicName, version, options, 0L);
     }
 
@@ -445,7 +569,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> startBundleAsync(Bundle bundle, long delayInMillis) {
+    public static Promise<?> startBundleAsync(Bundle bundle, long delayInMillis) {
         return startBundleAsync(bundle, delayInMillis, MILLISECONDS);
     }
 
@@ -458,7 +582,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> startBundleAsync(BundleContext bc, long bundleId, long delayInMillis) {
+    public static Promise<?> startBundleAsync(BundleContext bc, long bundleId, long delayInMillis) {
         return startBundleAsync(bc, bundleId, delayInMillis, MILLISECONDS);
     }
 
@@ -471,7 +595,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> startBundleAsync(BundleContext bc, String symbolicName, long delayInMillis) {
+    public static Promise<?> startBundleAsync(BundleContext bc, String symbolicName, long delayInMillis) {
         return startBundleAsync(bc, symbolicName, delayInMillis, MILLISECONDS);
     }
 
@@ -485,7 +609,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> startBundleAsync(BundleContext bc, String symbolicName, Version version, long delayInMillis) {
+    public static Promise<?> startBundleAsync(BundleContext bc, String symbolicName, Version version, long delayInMillis) {
         return startBundleAsync(bc, symbolicName, version, delayInMillis, MILLISECONDS);
     }
 
@@ -500,7 +624,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> startBundleAsync(Bundle bundle, int options, long delayInMillis) {
+    public static Promise<?> startBundleAsync(Bundle bundle, int options, long delayInMillis) {
         return startBundleAsync(bundle, options, delayInMillis, MILLISECONDS);
     }
 
@@ -516,7 +640,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> startBundleAsync(BundleContext bc, long bundleId, int options, long delayInMillis) {
+    public static Promise<?> startBundleAsync(BundleContext bc, long bundleId, int options, long delayInMillis) {
         return startBundleAsync(bc, bundleId, options, delayInMillis, MILLISECONDS);
     }
 
@@ -532,7 +656,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> startBundleAsync(BundleContext bc, String symbolicName, int options, long delayInMillis) {
+    public static Promise<?> startBundleAsync(BundleContext bc, String symbolicName, int options, long delayInMillis) {
         return startBundleAsync(bc, symbolicName, options, delayInMillis, MILLISECONDS);
     }
 
@@ -549,7 +673,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> startBundleAsync(BundleContext bc, String symbolicName, Version version, int options, long delayInMillis) {
+    public static Promise<?> startBundleAsync(BundleContext bc, String symbolicName, Version version, int options, long delayInMillis) {
         return startBundleAsync(bc, symbolicName, version, options, delayInMillis, MILLISECONDS);
     }
 
@@ -562,7 +686,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> startBundleAsync(Bundle bundle, long delay, TimeUnit timeUnit) {
+    public static Promise<?> startBundleAsync(Bundle bundle, long delay, TimeUnit timeUnit) {
         return startBundleAsync(bundle, 0, delay, timeUnit);
     }
 
@@ -576,7 +700,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> startBundleAsync(BundleContext bc, long bundleId, long delay, TimeUnit timeUnit) {
+    public static Promise<?> startBundleAsync(BundleContext bc, long bundleId, long delay, TimeUnit timeUnit) {
         return startBundleAsync(findBundle(bc, bundleId), delay, timeUnit);
     }
 
@@ -590,7 +714,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> startBundleAsync(BundleContext bc, String symbolicName, long delay, TimeUnit timeUnit) {
+    public static Promise<?> startBundleAsync(BundleContext bc, String symbolicName, long delay, TimeUnit timeUnit) {
         return startBundleAsync(findBundle(bc, symbolicName), delay, timeUnit);
     }
 
@@ -605,7 +729,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> startBundleAsync(BundleContext bc, String symbolicName, Version version, long delay, TimeUnit timeUnit) {
+    public static Promise<?> startBundleAsync(BundleContext bc, String symbolicName, Version version, long delay, TimeUnit timeUnit) {
         return startBundleAsync(findBundle(bc, symbolicName, version), delay, timeUnit);
     }
 
@@ -621,8 +745,8 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> startBundleAsync(final Bundle bundle, final int options, long delay, TimeUnit timeUnit) {
-        return Executors.newSingleThreadScheduledExecutor().schedule(new Callable<Object>() {
+    public static Promise<?> startBundleAsync(final Bundle bundle, final int options, long delay, TimeUnit timeUnit) {
+        return schedule(new Callable<Object>() {
             public Object call() throws Exception {
                 bundle.start(options);
                 return null;
@@ -643,7 +767,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> startBundleAsync(BundleContext bc, long bundleId, int options, long delay, TimeUnit timeUnit) {
+    public static Promise<?> startBundleAsync(BundleContext bc, long bundleId, int options, long delay, TimeUnit timeUnit) {
         return startBundleAsync(findBundle(bc, bundleId), options, delay, timeUnit);
     }
 
@@ -660,7 +784,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> startBundleAsync(BundleContext bc, String symbolicName, int options, long delay, TimeUnit timeUnit) {
+    public static Promise<?> startBundleAsync(BundleContext bc, String symbolicName, int options, long delay, TimeUnit timeUnit) {
         return startBundleAsync(findBundle(bc, symbolicName), options, delay, timeUnit);
     }
 
@@ -678,7 +802,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> startBundleAsync(BundleContext bc, String symbolicName, Version version, int options, long delay, TimeUnit timeUnit) {
+    public static Promise<?> startBundleAsync(BundleContext bc, String symbolicName, Version version, int options, long delay, TimeUnit timeUnit) {
         return startBundleAsync(findBundle(bc, symbolicName, version), options, delay, timeUnit);
     }
 
@@ -689,7 +813,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> stopBundleAsync(Bundle bundle) {
+    public static Promise<?> stopBundleAsync(Bundle bundle) {
         return stopBundleAsync(bundle, 0L);
     }
 
@@ -701,7 +825,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> stopBundleAsync(BundleContext bc, long bundleId) {
+    public static Promise<?> stopBundleAsync(BundleContext bc, long bundleId) {
         return stopBundleAsync(bc, bundleId, 0L);
     }
 
@@ -713,7 +837,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> stopBundleAsync(BundleContext bc, String symbolicName) {
+    public static Promise<?> stopBundleAsync(BundleContext bc, String symbolicName) {
         return stopBundleAsync(bc, symbolicName, 0L);
     }
 
@@ -726,7 +850,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> stopBundleAsync(BundleContext bc, String symbolicName, Version version) {
+    public static Promise<?> stopBundleAsync(BundleContext bc, String symbolicName, Version version) {
         return stopBundleAsync(bc, symbolicName, version, 0L);
     }
 
@@ -740,7 +864,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> stopBundleAsync(Bundle bundle, int options) {
+    public static Promise<?> stopBundleAsync(Bundle bundle, int options) {
         return stopBundleAsync(bundle, options, 0L);
     }
 
@@ -755,7 +879,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> stopBundleAsync(BundleContext bc, long bundleId, int options) {
+    public static Promise<?> stopBundleAsync(BundleContext bc, long bundleId, int options) {
         return stopBundleAsync(bc, bundleId, options, 0L);
     }
 
@@ -770,7 +894,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> stopBundleAsync(BundleContext bc, String symbolicName, int options) {
+    public static Promise<?> stopBundleAsync(BundleContext bc, String symbolicName, int options) {
         return stopBundleAsync(bc, symbolicName, options, 0L);
     }
 
@@ -786,7 +910,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> stopBundleAsync(BundleContext bc, String symbolicName, Version version, int options) {
+    public static Promise<?> stopBundleAsync(BundleContext bc, String symbolicName, Version version, int options) {
         return stopBundleAsync(bc, symbolicName, version, options, 0L);
     }
 
@@ -798,7 +922,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> stopBundleAsync(Bundle bundle, long delayInMillis) {
+    public static Promise<?> stopBundleAsync(Bundle bundle, long delayInMillis) {
         return stopBundleAsync(bundle, delayInMillis, MILLISECONDS);
     }
 
@@ -811,7 +935,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> stopBundleAsync(BundleContext bc, long bundleId, long delayInMillis) {
+    public static Promise<?> stopBundleAsync(BundleContext bc, long bundleId, long delayInMillis) {
         return stopBundleAsync(bc, bundleId, delayInMillis, MILLISECONDS);
     }
 
@@ -824,7 +948,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> stopBundleAsync(BundleContext bc, String symbolicName, long delayInMillis) {
+    public static Promise<?> stopBundleAsync(BundleContext bc, String symbolicName, long delayInMillis) {
         return stopBundleAsync(bc, symbolicName, delayInMillis, MILLISECONDS);
     }
 
@@ -838,7 +962,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> stopBundleAsync(BundleContext bc, String symbolicName, Version version, long delayInMillis) {
+    public static Promise<?> stopBundleAsync(BundleContext bc, String symbolicName, Version version, long delayInMillis) {
         return stopBundleAsync(bc, symbolicName, version, delayInMillis, MILLISECONDS);
     }
 
@@ -853,7 +977,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> stopBundleAsync(Bundle bundle, int options, long delayInMillis) {
+    public static Promise<?> stopBundleAsync(Bundle bundle, int options, long delayInMillis) {
         return stopBundleAsync(bundle, options, delayInMillis, MILLISECONDS);
     }
 
@@ -869,7 +993,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> stopBundleAsync(BundleContext bc, long bundleId, int options, long delayInMillis) {
+    public static Promise<?> stopBundleAsync(BundleContext bc, long bundleId, int options, long delayInMillis) {
         return stopBundleAsync(bc, bundleId, options, delayInMillis, MILLISECONDS);
     }
 
@@ -885,7 +1009,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> stopBundleAsync(BundleContext bc, String symbolicName, int options, long delayInMillis) {
+    public static Promise<?> stopBundleAsync(BundleContext bc, String symbolicName, int options, long delayInMillis) {
         return stopBundleAsync(bc, symbolicName, options, delayInMillis, MILLISECONDS);
     }
 
@@ -902,7 +1026,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> stopBundleAsync(BundleContext bc, String symbolicName, Version version, int options, long delayInMillis) {
+    public static Promise<?> stopBundleAsync(BundleContext bc, String symbolicName, Version version, int options, long delayInMillis) {
         return stopBundleAsync(bc, symbolicName, version, options, delayInMillis, MILLISECONDS);
     }
 
@@ -915,7 +1039,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> stopBundleAsync(Bundle bundle, long delay, TimeUnit timeUnit) {
+    public static Promise<?> stopBundleAsync(Bundle bundle, long delay, TimeUnit timeUnit) {
         return stopBundleAsync(bundle, 0, delay, timeUnit);
     }
 
@@ -929,7 +1053,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> stopBundleAsync(BundleContext bc, long bundleId, long delay, TimeUnit timeUnit) {
+    public static Promise<?> stopBundleAsync(BundleContext bc, long bundleId, long delay, TimeUnit timeUnit) {
         return stopBundleAsync(findBundle(bc, bundleId), delay, timeUnit);
     }
 
@@ -943,7 +1067,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> stopBundleAsync(BundleContext bc, String symbolicName, long delay, TimeUnit timeUnit) {
+    public static Promise<?> stopBundleAsync(BundleContext bc, String symbolicName, long delay, TimeUnit timeUnit) {
         return stopBundleAsync(findBundle(bc, symbolicName), delay, timeUnit);
     }
 
@@ -958,7 +1082,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> stopBundleAsync(BundleContext bc, String symbolicName, Version version, long delay, TimeUnit timeUnit) {
+    public static Promise<?> stopBundleAsync(BundleContext bc, String symbolicName, Version version, long delay, TimeUnit timeUnit) {
         return stopBundleAsync(findBundle(bc, symbolicName, version), delay, timeUnit);
     }
 
@@ -974,8 +1098,8 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> stopBundleAsync(final Bundle bundle, final int options, long delay, TimeUnit timeUnit) {
-        return Executors.newSingleThreadScheduledExecutor().schedule(new Callable<Object>() {
+    public static Promise<?> stopBundleAsync(final Bundle bundle, final int options, long delay, TimeUnit timeUnit) {
+        return schedule(new Callable<Object>() {
             public Object call() throws Exception {
                 bundle.stop(options);
                 return null;
@@ -996,7 +1120,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> stopBundleAsync(BundleContext bc, long bundleId, int options, long delay, TimeUnit timeUnit) {
+    public static Promise<?> stopBundleAsync(BundleContext bc, long bundleId, int options, long delay, TimeUnit timeUnit) {
         return stopBundleAsync(findBundle(bc, bundleId), options, delay, timeUnit);
     }
 
@@ -1013,7 +1137,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> stopBundleAsync(BundleContext bc, String symbolicName, int options, long delay, TimeUnit timeUnit) {
+    public static Promise<?> stopBundleAsync(BundleContext bc, String symbolicName, int options, long delay, TimeUnit timeUnit) {
         return stopBundleAsync(findBundle(bc, symbolicName), options, delay, timeUnit);
     }
 
@@ -1031,7 +1155,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> stopBundleAsync(BundleContext bc, String symbolicName, Version version, int options, long delay, TimeUnit timeUnit) {
+    public static Promise<?> stopBundleAsync(BundleContext bc, String symbolicName, Version version, int options, long delay, TimeUnit timeUnit) {
         return stopBundleAsync(findBundle(bc, symbolicName, version), options, delay, timeUnit);
     }
 
@@ -1042,7 +1166,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> uninstallBundleAsync(Bundle bundle) {
+    public static Promise<?> uninstallBundleAsync(Bundle bundle) {
         return uninstallBundleAsync(bundle, 0L);
     }
 
@@ -1054,7 +1178,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> uninstallBundleAsync(BundleContext bc, long bundleId) {
+    public static Promise<?> uninstallBundleAsync(BundleContext bc, long bundleId) {
         return uninstallBundleAsync(bc, bundleId, 0L);
     }
 
@@ -1066,7 +1190,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> uninstallBundleAsync(BundleContext bc, String symbolicName) {
+    public static Promise<?> uninstallBundleAsync(BundleContext bc, String symbolicName) {
         return uninstallBundleAsync(bc, symbolicName, 0L);
     }
 
@@ -1079,7 +1203,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> uninstallBundleAsync(BundleContext bc, String symbolicName, Version version) {
+    public static Promise<?> uninstallBundleAsync(BundleContext bc, String symbolicName, Version version) {
         return uninstallBundleAsync(bc, symbolicName, version, 0L);
     }
 
@@ -1091,7 +1215,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> uninstallBundleAsync(Bundle bundle, long delayInMillis) {
+    public static Promise<?> uninstallBundleAsync(Bundle bundle, long delayInMillis) {
         return uninstallBundleAsync(bundle, delayInMillis, MILLISECONDS);
     }
 
@@ -1104,7 +1228,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> uninstallBundleAsync(BundleContext bc, long bundleId, long delayInMillis) {
+    public static Promise<?> uninstallBundleAsync(BundleContext bc, long bundleId, long delayInMillis) {
         return uninstallBundleAsync(bc, bundleId, delayInMillis, MILLISECONDS);
     }
 
@@ -1117,7 +1241,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> uninstallBundleAsync(BundleContext bc, String symbolicName, long delayInMillis) {
+    public static Promise<?> uninstallBundleAsync(BundleContext bc, String symbolicName, long delayInMillis) {
         return uninstallBundleAsync(bc, symbolicName, delayInMillis, MILLISECONDS);
     }
 
@@ -1131,7 +1255,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> uninstallBundleAsync(BundleContext bc, String symbolicName, Version version, long delayInMillis) {
+    public static Promise<?> uninstallBundleAsync(BundleContext bc, String symbolicName, Version version, long delayInMillis) {
         return uninstallBundleAsync(bc, symbolicName, version, delayInMillis, MILLISECONDS);
     }
 
@@ -1144,8 +1268,8 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> uninstallBundleAsync(final Bundle bundle, long delay, TimeUnit timeUnit) {
-        return Executors.newSingleThreadScheduledExecutor().schedule(new Callable<Object>() {
+    public static Promise<?> uninstallBundleAsync(final Bundle bundle, long delay, TimeUnit timeUnit) {
+        return schedule(new Callable<Object>() {
             public Object call() throws Exception {
                 bundle.uninstall();
                 return null;
@@ -1163,7 +1287,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> uninstallBundleAsync(BundleContext bc, long bundleId, long delay, TimeUnit timeUnit) {
+    public static Promise<?> uninstallBundleAsync(BundleContext bc, long bundleId, long delay, TimeUnit timeUnit) {
         return uninstallBundleAsync(findBundle(bc, bundleId), delay, timeUnit);
     }
 
@@ -1177,7 +1301,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> uninstallBundleAsync(BundleContext bc, String symbolicName, long delay, TimeUnit timeUnit) {
+    public static Promise<?> uninstallBundleAsync(BundleContext bc, String symbolicName, long delay, TimeUnit timeUnit) {
         return uninstallBundleAsync(findBundle(bc, symbolicName), delay, timeUnit);
     }
 
@@ -1192,7 +1316,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> uninstallBundleAsync(BundleContext bc, String symbolicName, Version version, long delay, TimeUnit timeUnit) {
+    public static Promise<?> uninstallBundleAsync(BundleContext bc, String symbolicName, Version version, long delay, TimeUnit timeUnit) {
         return uninstallBundleAsync(findBundle(bc, symbolicName, version), delay, timeUnit);
     }
 
@@ -1203,7 +1327,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> updateBundleAsync(Bundle bundle) {
+    public static Promise<?> updateBundleAsync(Bundle bundle) {
         return updateBundleAsync(bundle, 0L);
     }
 
@@ -1215,7 +1339,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> updateBundleAsync(BundleContext bc, long bundleId) {
+    public static Promise<?> updateBundleAsync(BundleContext bc, long bundleId) {
         return updateBundleAsync(bc, bundleId, 0L);
     }
 
@@ -1227,7 +1351,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> updateBundleAsync(BundleContext bc, String symbolicName) {
+    public static Promise<?> updateBundleAsync(BundleContext bc, String symbolicName) {
         return updateBundleAsync(bc, symbolicName, 0L);
     }
 
@@ -1240,7 +1364,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> updateBundleAsync(BundleContext bc, String symbolicName, Version version) {
+    public static Promise<?> updateBundleAsync(BundleContext bc, String symbolicName, Version version) {
         return updateBundleAsync(bc, symbolicName, version, 0L);
     }
 
@@ -1258,7 +1382,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> updateBundleAsync(Bundle bundle, InputStream input) {
+    public static Promise<?> updateBundleAsync(Bundle bundle, InputStream input) {
         return updateBundleAsync(bundle, input, 0L);
     }
 
@@ -1277,7 +1401,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> updateBundleAsync(BundleContext bc, long bundleId, InputStream input) {
+    public static Promise<?> updateBundleAsync(BundleContext bc, long bundleId, InputStream input) {
         return updateBundleAsync(bc, bundleId, input, 0L);
     }
 
@@ -1296,7 +1420,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> updateBundleAsync(BundleContext bc, String symbolicName, InputStream input) {
+    public static Promise<?> updateBundleAsync(BundleContext bc, String symbolicName, InputStream input) {
         return updateBundleAsync(bc, symbolicName, input, 0L);
     }
 
@@ -1316,7 +1440,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> updateBundleAsync(BundleContext bc, String symbolicName, Version version, InputStream input) {
+    public static Promise<?> updateBundleAsync(BundleContext bc, String symbolicName, Version version, InputStream input) {
         return updateBundleAsync(bc, symbolicName, version, input, 0L);
     }
 
@@ -1328,7 +1452,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> updateBundleAsync(Bundle bundle, long delayInMillis) {
+    public static Promise<?> updateBundleAsync(Bundle bundle, long delayInMillis) {
         return updateBundleAsync(bundle, delayInMillis, MILLISECONDS);
     }
 
@@ -1341,7 +1465,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> updateBundleAsync(BundleContext bc, long bundleId, long delayInMillis) {
+    public static Promise<?> updateBundleAsync(BundleContext bc, long bundleId, long delayInMillis) {
         return updateBundleAsync(bc, bundleId, delayInMillis, MILLISECONDS);
     }
 
@@ -1354,7 +1478,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> updateBundleAsync(BundleContext bc, String symbolicName, long delayInMillis) {
+    public static Promise<?> updateBundleAsync(BundleContext bc, String symbolicName, long delayInMillis) {
         return updateBundleAsync(bc, symbolicName, delayInMillis, MILLISECONDS);
     }
 
@@ -1368,7 +1492,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> updateBundleAsync(BundleContext bc, String symbolicName, Version version, long delayInMillis) {
+    public static Promise<?> updateBundleAsync(BundleContext bc, String symbolicName, Version version, long delayInMillis) {
         return updateBundleAsync(bc, symbolicName, version, delayInMillis, MILLISECONDS);
     }
 
@@ -1387,7 +1511,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> updateBundleAsync(Bundle bundle, InputStream input, long delayInMillis) {
+    public static Promise<?> updateBundleAsync(Bundle bundle, InputStream input, long delayInMillis) {
         return updateBundleAsync(bundle, input, delayInMillis, MILLISECONDS);
     }
 
@@ -1407,7 +1531,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> updateBundleAsync(BundleContext bc, long bundleId, InputStream input, long delayInMillis) {
+    public static Promise<?> updateBundleAsync(BundleContext bc, long bundleId, InputStream input, long delayInMillis) {
         return updateBundleAsync(bc, bundleId, input, delayInMillis, MILLISECONDS);
     }
 
@@ -1427,7 +1551,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> updateBundleAsync(BundleContext bc, String symbolicName, InputStream input, long delayInMillis) {
+    public static Promise<?> updateBundleAsync(BundleContext bc, String symbolicName, InputStream input, long delayInMillis) {
         return updateBundleAsync(bc, symbolicName, input, delayInMillis, MILLISECONDS);
     }
 
@@ -1448,7 +1572,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> updateBundleAsync(BundleContext bc, String symbolicName, Version version, InputStream input, long delayInMillis) {
+    public static Promise<?> updateBundleAsync(BundleContext bc, String symbolicName, Version version, InputStream input, long delayInMillis) {
         return updateBundleAsync(bc, symbolicName, version, input, delayInMillis, MILLISECONDS);
     }
 
@@ -1461,7 +1585,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> updateBundleAsync(Bundle bundle, long delay, TimeUnit timeUnit) {
+    public static Promise<?> updateBundleAsync(Bundle bundle, long delay, TimeUnit timeUnit) {
         return updateBundleAsync(bundle, null, delay, timeUnit);
     }
 
@@ -1475,7 +1599,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> updateBundleAsync(BundleContext bc, long bundleId, long delay, TimeUnit timeUnit) {
+    public static Promise<?> updateBundleAsync(BundleContext bc, long bundleId, long delay, TimeUnit timeUnit) {
         return updateBundleAsync(findBundle(bc, bundleId), delay, timeUnit);
     }
 
@@ -1489,7 +1613,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> updateBundleAsync(BundleContext bc, String symbolicName, long delay, TimeUnit timeUnit) {
+    public static Promise<?> updateBundleAsync(BundleContext bc, String symbolicName, long delay, TimeUnit timeUnit) {
         return updateBundleAsync(findBundle(bc, symbolicName), delay, timeUnit);
     }
 
@@ -1504,7 +1628,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> updateBundleAsync(BundleContext bc, String symbolicName, Version version, long delay, TimeUnit timeUnit) {
+    public static Promise<?> updateBundleAsync(BundleContext bc, String symbolicName, Version version, long delay, TimeUnit timeUnit) {
         return updateBundleAsync(findBundle(bc, symbolicName, version), delay, timeUnit);
     }
 
@@ -1524,8 +1648,8 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> updateBundleAsync(final Bundle bundle, final InputStream input, long delay, TimeUnit timeUnit) {
-        return Executors.newSingleThreadScheduledExecutor().schedule(new Callable<Object>() {
+    public static Promise<?> updateBundleAsync(final Bundle bundle, final InputStream input, long delay, TimeUnit timeUnit) {
+        return schedule(new Callable<Object>() {
             public Object call() throws Exception {
                 bundle.update(input);
                 return null;
@@ -1550,7 +1674,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> updateBundleAsync(BundleContext bc, long bundleId, InputStream input, long delay, TimeUnit timeUnit) {
+    public static Promise<?> updateBundleAsync(BundleContext bc, long bundleId, InputStream input, long delay, TimeUnit timeUnit) {
         return updateBundleAsync(findBundle(bc, bundleId), input, delay, timeUnit);
     }
 
@@ -1571,7 +1695,7 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> updateBundleAsync(BundleContext bc, String symbolicName, InputStream input, long delay, TimeUnit timeUnit) {
+    public static Promise<?> updateBundleAsync(BundleContext bc, String symbolicName, InputStream input, long delay, TimeUnit timeUnit) {
         return updateBundleAsync(findBundle(bc, symbolicName), input, delay, timeUnit);
     }
 
@@ -1593,10 +1717,71 @@ public class BundleUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> updateBundleAsync(BundleContext bc, String symbolicName, Version version, InputStream input, long delay, TimeUnit timeUnit) {
+    public static Promise<?> updateBundleAsync(BundleContext bc, String symbolicName, Version version, InputStream input, long delay, TimeUnit timeUnit) {
         return updateBundleAsync(findBundle(bc, symbolicName, version), input, delay, timeUnit);
     }
 
+    /**
+     * Starts bundles. Bundles are resolved together and started in start level order. Within the start level
+     * providers are started before the bundles that are wired to them, independent bundles are started in parallel.
+     * Failure of one bundle does not stop the batch.
+     *
+     * @param bc      BundleContext
+     * @param bundles bundles
+     * @return aggregated result with per-bundle timing and failures
+     * @throws NullPointerException If <code>bc</code> or <code>bundles</code> are <code>null</code>
+     * @see #BATCH_PARALLELISM_PROPERTY
+     * @since 1.3
+     */
+    public static BundleBatchResult startBundles(BundleContext bc, Collection<Bundle> bundles) {
+        return executeBatch(bc, bundles, BundleBatch.Operation.START);
+    }
+
+    /**
+     * Stops bundles. Bundles are stopped in reverse start level order. Within the start level
+     * bundles are stopped before their providers, independent bundles are stopped in parallel.
+     * Failure of one bundle does not stop the batch.
+     *
+     * @param bc      BundleContext
+     * @param bundles bundles
+     * @return aggregated result with per-bundle timing and failures
+     * @throws NullPointerException If <code>bc</code> or <code>bundles</code> are <code>null</code>
+     * @see #BATCH_PARALLELISM_PROPERTY
+     * @since 1.3
+     */
+    public static BundleBatchResult stopBundles(BundleContext bc, Collection<Bundle> bundles) {
+        return executeBatch(bc, bundles, BundleBatch.Operation.STOP);
+    }
+
+    /**
+     * Updates bundles in parallel. Failure of one bundle does not stop the batch.
+     *
+     * @param bc      BundleContext
+     * @param bundles bundles
+     * @return aggregated result with per-bundle timing and failures
+     * @throws NullPointerException If <code>bc</code> or <code>bundles</code> are <code>null</code>
+     * @see #BATCH_PARALLELISM_PROPERTY
+     * @since 1.3
+     */
+    public static BundleBatchResult updateBundles(BundleContext bc, Collection<Bundle> bundles) {
+        return executeBatch(bc, bundles, BundleBatch.Operation.UPDATE);
+    }
+
+    /**
+     * Uninstalls bundles. Bundles are uninstalled in the same order as stopped by {@link #stopBundles(BundleContext, Collection)}.
+     * Failure of one bundle does not stop the batch.
+     *
+     * @param bc      BundleContext
+     * @param bundles bundles
+     * @return aggregated result with per-bundle timing and failures
+     * @throws NullPointerException If <code>bc</code> or <code>bundles</code> are <code>null</code>
+     * @see #BATCH_PARALLELISM_PROPERTY
+     * @since 1.3
+     */
+    public static BundleBatchResult uninstallBundles(BundleContext bc, Collection<Bundle> bundles) {
+        return executeBatch(bc, bundles, BundleBatch.Operation.UNINSTALL);
+    }
+
     /**
      * Wait for BundleEvent with event type mask for defined bundle
      *
@@ -1695,31 +1880,240 @@ public class BundleUtils {
      * @since 1.1
      */
     public static BundleEvent waitForBundleEvent(BundleContext bc, String symbolicName, Version version, int eventTypeMask, long timeout, TimeUnit timeUnit) {
-        CountDownLatch latch = new CountDownLatch(1);
+        return waitForBundleEvent(bc, symbolicName, version, eventTypeMask, LookBack.NONE, timeout, timeUnit);
+    }
 
-        long timeoutInMillis = timeUnit.toMillis(timeout);
-        BundleListenerImpl listener = new BundleListenerImpl(symbolicName, version, eventTypeMask, latch);
-        bc.addBundleListener(listener);
+    /**
+     * Wait for BundleEvent with event type mask for defined bundle
+     *
+     * @param bc            BundleContext
+     * @param symbolicName  symbolicName
+     * @param version       version
+     * @param eventTypeMask BundleEvent type mask
+     * @param lookBack      look-back window. Wait is completed immediately if matching event is found in recent events
+     * @param timeout       time interval to wait. If zero, the method will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return BundleEvent or <code>null</code>
+     * @throws NullPointerException If <code>bc</code> or <code>symbolicName</code> or <code>lookBack</code> or <code>timeUnit</code> are <code>null</code>
+     * @since 1.3
+     */
+    public static BundleEvent waitForBundleEvent(BundleContext bc, String symbolicName, Version version, int eventTypeMask, LookBack lookBack, long timeout, TimeUnit timeUnit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout value is negative");
+        }
+        return waitFor(awaitBundleEvent(bc, symbolicName, version, eventTypeMask, lookBack, 0, timeUnit), timeout, timeUnit);
+    }
 
-        try {
-            return waitForBundleEvent(listener, timeoutInMillis, latch);
-        } catch (InterruptedException e) {
-            return null;
-        } finally {
-            bc.removeBundleListener(listener);
+    /**
+     * Await BundleEvent with event type mask for defined bundle without blocking the calling thread.
+     * The listener is removed when returned <code>Promise</code> is completed, cancelled or timed out.
+     *
+     * @param bc            BundleContext
+     * @param bundleId      bundle id
+     * @param eventTypeMask BundleEvent type mask
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of BundleEvent. It is resolved with <code>null</code> on timeout
+     * @throws NullPointerException     If <code>bc</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If <code>bundleId</code> is invalid or the value of timeout is negative
+     * @since 1.3
+     */
+    public static Promise<BundleEvent> awaitBundleEvent(BundleContext bc, int bundleId, int eventTypeMask, long timeout, TimeUnit timeUnit) {
+        Bundle bundle = findBundle(bc, bundleId);
+        if (bundle == null) {
+            throw new IllegalArgumentException("bundleId is invalid");
         }
+        return awaitBundleEvent(bc, bundle.getSymbolicName(), bundle.getVersion(), eventTypeMask, timeout, timeUnit);
     }
 
-    private static BundleEvent waitForBundleEvent(BundleListenerImpl listener, long timeoutInMillis, CountDownLatch latch)
-            throws InterruptedException {
-        if (timeoutInMillis < 0) {
+    /**
+     * Await BundleEvent with event type mask for defined bundle without blocking the calling thread.
+     * The listener is removed when returned <code>Promise</code> is completed, cancelled or timed out.
+     *
+     * @param bc            BundleContext
+     * @param symbolicName  symbolicName
+     * @param eventTypeMask BundleEvent type mask
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of BundleEvent. It is resolved with <code>null</code> on timeout
+     * @throws NullPointerException     If <code>bc</code> or <code>symbolicName</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @since 1.3
+     */
+    public static Promise<BundleEvent> awaitBundleEvent(BundleContext bc, String symbolicName, int eventTypeMask, long timeout, TimeUnit timeUnit) {
+        return awaitBundleEvent(bc, symbolicName, null, eventTypeMask, timeout, timeUnit);
+    }
+
+    /**
+     * Await BundleEvent with event type mask for defined bundle without blocking the calling thread.
+     * The listener is removed when returned <code>Promise</code> is completed, cancelled or timed out.
+     *
+     * @param bc            BundleContext
+     * @param symbolicName  symbolicName
+     * @param version       version
+     * @param eventTypeMask BundleEvent type mask
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of BundleEvent. It is resolved with <code>null</code> on timeout
+     * @throws NullPointerException     If <code>bc</code> or <code>symbolicName</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @since 1.3
+     */
+    public static Promise<BundleEvent> awaitBundleEvent(BundleContext bc, String symbolicName, Version version, int eventTypeMask, long timeout, TimeUnit timeUnit) {
+        return awaitBundleEvent(bc, symbolicName, version, eventTypeMask, LookBack.NONE, timeout, timeUnit);
+    }
+
+    /**
+     * Await BundleEvent with event type mask for defined bundle without blocking the calling thread.
+     * The listener is removed when returned <code>Promise</code> is completed, cancelled or timed out.
+     *
+     * @param bc            BundleContext
+     * @param symbolicName  symbolicName
+     * @param version       version
+     * @param eventTypeMask BundleEvent type mask
+     * @param lookBack      look-back window. <code>Promise</code> is resolved immediately if matching event is found in recent events
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of BundleEvent. It is resolved with <code>null</code> on timeout
+     * @throws NullPointerException     If <code>bc</code> or <code>symbolicName</code> or <code>lookBack</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @since 1.3
+     */
+    public static Promise<BundleEvent> awaitBundleEvent(BundleContext bc, String symbolicName, Version version, int eventTypeMask, LookBack lookBack, long timeout, TimeUnit timeUnit) {
+        return getEventHub(bc).getChannel(BundleEventChannel.class).await(symbolicName, version, eventTypeMask, lookBack, timeout, timeUnit);
+    }
+
+    /**
+     * Wait for defined number of BundleEvents with event type mask for defined bundle.
+     * One listener collects all events.
+     *
+     * @param bc            BundleContext
+     * @param symbolicName  symbolicName
+     * @param version       version (could be null)
+     * @param eventTypeMask BundleEvent type mask
+     * @param count         number of events
+     * @param timeout       time interval to wait. If zero, the method will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return BundleEvents in delivery order or <code>null</code> if less than <code>count</code> events are delivered
+     * @throws NullPointerException     If <code>bc</code> or <code>symbolicName</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If <code>count</code> is not positive or the value of timeout is negative
+     * @since 1.3
+     */
+    public static List<BundleEvent> waitForBundleEvents(BundleContext bc, String symbolicName, Version version, int eventTypeMask, int count, long timeout, TimeUnit timeUnit) {
+        if (timeout < 0) {
             throw new IllegalArgumentException("timeout value is negative");
         }
-        if (latch.await(timeoutInMillis, MILLISECONDS)) {
-            return listener.getBundleEvent();
-        } else {
-            return null;
+        return waitFor(awaitBundleEvents(bc, symbolicName, version, eventTypeMask, count, 0, timeUnit), timeout, timeUnit);
+    }
+
+    /**
+     * Wait for BundleEvents with event type mask for all defined bundles.
+     * One listener checks all bundles.
+     *
+     * @param bc            BundleContext
+     * @param symbolicNames symbolicNames
+     * @param eventTypeMask BundleEvent type mask
+     * @param timeout       time interval to wait. If zero, the method will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return the first BundleEvent of every bundle in delivery order or <code>null</code> if not all bundles fired event
+     * @throws NullPointerException     If <code>bc</code> or <code>symbolicNames</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @since 1.3
+     */
+    public static List<BundleEvent> waitForAllBundleEvents(BundleContext bc, String[] symbolicNames, int eventTypeMask, long timeout, TimeUnit timeUnit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout value is negative");
         }
+        return waitFor(awaitAllBundleEvents(bc, symbolicNames, eventTypeMask, 0, timeUnit), timeout, timeUnit);
+    }
+
+    /**
+     * Wait for BundleEvent with event type mask for any of defined bundles
+     *
+     * @param bc            BundleContext
+     * @param symbolicNames symbolicNames
+     * @param eventTypeMask BundleEvent type mask
+     * @param timeout       time interval to wait. If zero, the method will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return BundleEvent or <code>null</code>
+     * @throws NullPointerException     If <code>bc</code> or <code>symbolicNames</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @since 1.3
+     */
+    public static BundleEvent waitForAnyBundleEvent(BundleContext bc, String[] symbolicNames, int eventTypeMask, long timeout, TimeUnit timeUnit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout value is negative");
+        }
+        return waitFor(awaitAnyBundleEvent(bc, symbolicNames, eventTypeMask, 0, timeUnit), timeout, timeUnit);
+    }
+
+    /**
+     * Await defined number of BundleEvents with event type mask for defined bundle without blocking the calling thread.
+     * One listener collects all events. It is removed when returned <code>Promise</code> is completed, cancelled or timed out.
+     *
+     * @param bc            BundleContext
+     * @param symbolicName  symbolicName
+     * @param version       version (could be null)
+     * @param eventTypeMask BundleEvent type mask
+     * @param count         number of events
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of BundleEvents in delivery order.
+     *         It is resolved with <code>null</code> if less than <code>count</code> events are delivered within timeout
+     * @throws NullPointerException     If <code>bc</code> or <code>symbolicName</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If <code>count</code> is not positive or the value of timeout is negative
+     * @since 1.3
+     */
+    public static Promise<List<BundleEvent>> awaitBundleEvents(BundleContext bc, String symbolicName, Version version, int eventTypeMask, int count, long timeout, TimeUnit timeUnit) {
+        BundleEventChannel channel = getEventHub(bc).getChannel(BundleEventChannel.class);
+        return channel.awaitEvents(symbolicName, eventTypeMask, channel.matcher(symbolicName, version), count, timeout, timeUnit);
+    }
+
+    /**
+     * Await BundleEvents with event type mask for all defined bundles without blocking the calling thread.
+     * One listener checks all bundles. It is removed when returned <code>Promise</code> is completed, cancelled or timed out.
+     *
+     * @param bc            BundleContext
+     * @param symbolicNames symbolicNames
+     * @param eventTypeMask BundleEvent type mask
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of the first BundleEvent of every bundle in delivery order.
+     *         It is resolved with <code>null</code> if not all bundles fired event within timeout
+     * @throws NullPointerException     If <code>bc</code> or <code>symbolicNames</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @since 1.3
+     */
+    public static Promise<List<BundleEvent>> awaitAllBundleEvents(BundleContext bc, String[] symbolicNames, int eventTypeMask, long timeout, TimeUnit timeUnit) {
+        BundleEventChannel channel = getEventHub(bc).getChannel(BundleEventChannel.class);
+        return channel.awaitAll(eventTypeMask, matchers(channel, symbolicNames), timeout, timeUnit);
+    }
+
+    /**
+     * Await BundleEvent with event type mask for any of defined bundles without blocking the calling thread.
+     * The listener is removed when returned <code>Promise</code> is completed, cancelled or timed out.
+     *
+     * @param bc            BundleContext
+     * @param symbolicNames symbolicNames
+     * @param eventTypeMask BundleEvent type mask
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of BundleEvent. It is resolved with <code>null</code> on timeout
+     * @throws NullPointerException     If <code>bc</code> or <code>symbolicNames</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @since 1.3
+     */
+    public static Promise<BundleEvent> awaitAnyBundleEvent(BundleContext bc, String[] symbolicNames, int eventTypeMask, long timeout, TimeUnit timeUnit) {
+        BundleEventChannel channel = getEventHub(bc).getChannel(BundleEventChannel.class);
+        return channel.awaitAny(eventTypeMask, matchers(channel, symbolicNames), timeout, timeUnit);
+    }
+
+    private static List<EventMatcher<BundleEvent>> matchers(BundleEventChannel channel, String[] symbolicNames) {
+        List<EventMatcher<BundleEvent>> matchers = new ArrayList<EventMatcher<BundleEvent>>(symbolicNames.length);
+        for (String symbolicName : symbolicNames) {
+            matchers.add(channel.matcher(symbolicName, null));
+        }
+        return matchers;
     }
 
     /**
@@ -1809,37 +2203,13 @@ public class BundleUtils {
         }
     }
 
-    private static class BundleListenerImpl implements BundleListener {
-        private String symbolicName;
-        private Version version;
-        private int eventTypeMask;
-        private CountDownLatch latch;
-
-        private BundleEvent event;
-
-        public BundleListenerImpl(String symbolicName, Version version, int eventTypeMask, CountDownLatch latch) {
-            this.symbolicName = symbolicName;
-            this.version = version;
-            this.eventTypeMask = eventTypeMask;
-            this.latch = latch;
-        }
-
-        public void bundleChanged(BundleEvent event) {
-            if (match(event)) {
-                this.event = event;
-                latch.countDown();
-            }
-        }
-
-        private boolean match(BundleEvent event) {
-            Bundle bundle = event.getBundle();
-            return bundle.getSymbolicName().equals(symbolicName)
-                    && (version == null || bundle.getVersion().equals(version))
-                    && (eventTypeMask & event.getType()) != 0;
+    private static BundleBatchResult executeBatch(BundleContext bc, Collection<Bundle> bundles, BundleBatch.Operation operation) {
+        if (bc == null) {
+            throw new NullPointerException("BundleContext is null");
         }
-
-        public BundleEvent getBundleEvent() {
-            return event;
+        if (bundles == null) {
+            throw new NullPointerException("bundles is null");
         }
+        return new BundleBatch(bc, operation).execute(bundles);
     }
 }
@@ -0,0 +1,425 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils;
+
+import org.osgi.framework.Filter;
+import org.osgi.framework.InvalidSyntaxException;
+
+import static org.osgi.framework.Constants.OBJECTCLASS;
+
+/**
+ * Immutable OSGi filter expression builder. Every method returns a new builder that shares
+ * operands with the original one, nested AND/OR expressions with the same operator are flattened and
+ * the expression is rendered and parsed exactly once on {@link #build()}.
+ * <p/>
+ * <code>FilterBuilder.and().objectClass(Foo.class).eq("name", "foo").present("service.ranking").build()</code>
+ *
+ * @see FilterUtils
+ * @since 1.3
+ */
+public final class FilterBuilder {
+    private static final char AND = '&';
+    private static final char OR = '|';
+    private static final char NOT = '!';
+
+    private final char operator;
+    private final Node last;
+    private final int size;
+
+    private FilterBuilder(char operator, Node last, int size) {
+        this.operator = operator;
+        this.last = last;
+        this.size = size;
+    }
+
+    /**
+     * Create empty AND expression
+     *
+     * @return new builder
+     */
+    public static FilterBuilder and() {
+        return new FilterBuilder(AND, null, 0);
+    }
+
+    /**
+     * Create AND expression of the given expressions
+     *
+     * @param operands expressions
+     * @return new builder
+     *
+     * @throws NullPointerException If <code>operands</code> are <code>null</code>
+     */
+    public static FilterBuilder and(FilterBuilder... operands) {
+        return and().add(operands);
+    }
+
+    /**
+     * Create empty OR expression
+     *
+     * @return new builder
+     */
+    public static FilterBuilder or() {
+        return new FilterBuilder(OR, null, 0);
+    }
+
+    /**
+     * Create OR expression of the given expressions
+     *
+     * @param operands expressions
+     * @return new builder
+     *
+     * @throws NullPointerException If <code>operands</code> are <code>null</code>
+     */
+    public static FilterBuilder or(FilterBuilder... operands) {
+        return or().add(operands);
+    }
+
+    /**
+     * Create NOT expression
+     *
+     * @param operand expression
+     * @return new builder
+     *
+     * @throws NullPointerException If <code>operand</code> is <code>null</code>
+     */
+    public static FilterBuilder not(FilterBuilder operand) {
+        return new FilterBuilder(NOT, null, 0).append(operand);
+    }
+
+    /**
+     * Create NOT expression
+     *
+     * @param filter filter
+     * @return new builder
+     *
+     * @throws NullPointerException If <code>filter</code> is <code>null</code>
+     */
+    public static FilterBuilder not(Filter filter) {
+        return new FilterBuilder(NOT, null, 0).filter(filter);
+    }
+
+    /**
+     * Add EQUALS clause
+     *
+     * @param key   key
+     * @param value value. To create filter value.toString() is used. Value is escaped.
+     * @return new builder
+     *
+     * @throws NullPointerException  If <code>key</code> or <code>value</code> are <code>null</code>
+     * @throws IllegalStateException If it is NOT expression that already has an operand
+     */
+    public FilterBuilder eq(String key, Object value) {
+        return compare(key, "=", value);
+    }
+
+    /**
+     * Add APPROX clause
+     *
+     * @param key   key
+     * @param value value. To create filter value.toString() is used. Value is escaped.
+     * @return new builder
+     *
+     * @throws NullPointerException  If <code>key</code> or <code>value</code> are <code>null</code>
+     * @throws IllegalStateException If it is NOT expression that already has an operand
+     */
+    public FilterBuilder approx(String key, Object value) {
+        return compare(key, "~=", value);
+    }
+
+    /**
+     * Add GREATER-EQUALS clause
+     *
+     * @param key   key
+     * @param value value. To create filter value.toString() is used. Value is escaped.
+     * @return new builder
+     *
+     * @throws NullPointerException  If <code>key</code> or <code>value</code> are <code>null</code>
+     * @throws IllegalStateException If it is NOT expression that already has an operand
+     */
+    public FilterBuilder ge(String key, Object value) {
+        return compare(key, ">=", value);
+    }
+
+    /**
+     * Add LESS-EQUALS clause
+     *
+     * @param key   key
+     * @param value value. To create filter value.toString() is used. Value is escaped.
+     * @return new builder
+     *
+     * @throws NullPointerException  If <code>key</code> or <code>value</code> are <code>null</code>
+     * @throws IllegalStateException If it is NOT expression that already has an operand
+     */
+    public FilterBuilder le(String key, Object value) {
+        return compare(key, "<=", value);
+    }
+
+    /**
+     * Add PRESENT clause
+     *
+     * @param key key
+     * @return new builder
+     *
+     * @throws NullPointerException  If <code>key</code> is <code>null</code>
+     * @throws IllegalStateException If it is NOT expression that already has an operand
+     */
+    public FilterBuilder present(String key) {
+        return append(new Comparison(key, "=", null));
+    }
+
+    /**
+     * Add service class clause
+     *
+     * @param clazz service class
+     * @return new builder
+     *
+     * @throws NullPointerException  If <code>clazz</code> is <code>null</code>
+     * @throws IllegalStateException If it is NOT expression that already has an operand
+     * @see org.osgi.framework.Constants#OBJECTCLASS
+     */
+    public FilterBuilder objectClass(Class clazz) {
+        return objectClass(clazz.getName());
+    }
+
+    /**
+     * Add service class name clause
+     *
+     * @param className service class name
+     * @return new builder
+     *
+     * @throws NullPointerException  If <code>className</code> is <code>null</code>
+     * @throws IllegalStateException If it is NOT expression that already has an operand
+     * @see org.osgi.framework.Constants#OBJECTCLASS
+     */
+    public FilterBuilder objectClass(String className) {
+        return eq(OBJECTCLASS, className);
+    }
+
+    /**
+     * Add parsed filter. AND/OR filter with the same operator is flattened.
+     *
+     * @param filter filter
+     * @return new builder
+     *
+     * @throws NullPointerException  If <code>filter</code> is <code>null</code>
+     * @throws IllegalStateException If it is NOT expression that already has an operand
+     */
+    public FilterBuilder filter(Filter filter) {
+        if (filter == null) {
+            throw new NullPointerException("filter is null");
+        }
+        String value = filter.toString();
+        // filter is already validated by the parser, so its operands can be safely inlined
+        if (operator != NOT && value.length() > 3 && value.charAt(1) == operator) {
+            return append(new Raw(value, 2, value.length() - 1));
+        }
+        return append(new Raw(value, 0, value.length()));
+    }
+
+    /**
+     * Add filter string. Filter string is validated on {@link #build()}
+     *
+     * @param filter filter
+     * @return new builder
+     *
+     * @throws NullPointerException  If <code>filter</code> is <code>null</code>
+     * @throws IllegalStateException If it is NOT expression that already has an operand
+     */
+    public FilterBuilder filter(String filter) {
+        if (filter == null) {
+            throw new NullPointerException("filter is null");
+        }
+        return append(new Raw(filter, 0, filter.length()));
+    }
+
+    /**
+     * Add nested expressions. Expressions with the same operator are flattened.
+     *
+     * @param operands expressions
+     * @return new builder
+     *
+     * @throws NullPointerException  If <code>operands</code> are <code>null</code>
+     * @throws IllegalStateException If it is NOT expression that already has an operand
+     */
+    public FilterBuilder add(FilterBuilder... operands) {
+        FilterBuilder builder = this;
+        for (FilterBuilder operand : operands) {
+            builder = builder.append(operand);
+        }
+        return builder;
+    }
+
+    /**
+     * Render and parse the expression. Parsed filter is shared through {@link FilterCache}.
+     *
+     * @return new filter
+     *
+     * @throws InvalidSyntaxException If it is unable to create filter
+     * @throws IllegalStateException  If expression is empty
+     */
+    public Filter build() throws InvalidSyntaxException {
+        return FilterCache.getCache().getFilter(toString());
+    }
+
+    /**
+     * Render the expression
+     *
+     * @return filter string
+     *
+     * @throws IllegalStateException If expression is empty
+     */
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder(size * 32);
+        render(buffer);
+        return buffer.toString();
+    }
+
+    private FilterBuilder compare(String key, String operation, Object value) {
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        return append(new Comparison(key, operation, value));
+    }
+
+    private FilterBuilder append(Object operand) {
+        if (operand == null) {
+            throw new NullPointerException("operand is null");
+        }
+        if (operator == NOT && size > 0) {
+            throw new IllegalStateException("NOT expression has only one operand");
+        }
+        if (operand instanceof FilterBuilder) {
+            FilterBuilder nested = (FilterBuilder) operand;
+            if (nested.size == 0) {
+                throw new IllegalStateException("Expression is empty");
+            }
+            if (operator != NOT && (nested.operator == operator || nested.isSingle())) {
+                // inline operands of the nested expression
+                Object[] operands = nested.operands();
+                Node node = last;
+                for (Object nestedOperand : operands) {
+                    node = new Node(nestedOperand, node);
+                }
+                return new FilterBuilder(operator, node, size + operands.length);
+            }
+        }
+        return new FilterBuilder(operator, new Node(operand, last), size + 1);
+    }
+
+    private boolean isSingle() {
+        return size == 1 && operator != NOT && !(last.operand instanceof Raw && ((Raw) last.operand).isInlined());
+    }
+
+    private Object[] operands() {
+        Object[] operands = new Object[size];
+        Node node = last;
+        for (int i = size - 1; i >= 0; i--) {
+            operands[i] = node.operand;
+            node = node.previous;
+        }
+        return operands;
+    }
+
+    private void render(StringBuilder buffer) {
+        if (size == 0) {
+            throw new IllegalStateException("Expression is empty");
+        }
+        boolean group = operator == NOT || size > 1;
+        if (group) {
+            buffer.append('(').append(operator);
+        }
+        for (Object operand : operands()) {
+            if (operand instanceof FilterBuilder) {
+                ((FilterBuilder) operand).render(buffer);
+            } else if (operand instanceof Raw) {
+                Raw raw = (Raw) operand;
+                if (!group && raw.isInlined()) {
+                    // inlined AND/OR filter is the only operand
+                    buffer.append(raw.value);
+                } else {
+                    buffer.append(raw.value, raw.start, raw.end);
+                }
+            } else {
+                ((Comparison) operand).render(buffer);
+            }
+        }
+        if (group) {
+            buffer.append(')');
+        }
+    }
+
+    /**
+     * Immutable operands list node
+     */
+    private static class Node {
+        private final Object operand;
+        private final Node previous;
+
+        private Node(Object operand, Node previous) {
+            this.operand = operand;
+            this.previous = previous;
+        }
+    }
+
+    /**
+     * Filter string or its operands part
+     */
+    private static class Raw {
+        private final String value;
+        private final int start;
+        private final int end;
+
+        private Raw(String value, int start, int end) {
+            this.value = value;
+            this.start = start;
+            this.end = end;
+        }
+
+        private boolean isInlined() {
+            return start > 0;
+        }
+    }
+
+    /**
+     * Attribute comparison. PRESENT clause has no value.
+     */
+    private static class Comparison {
+        private final String key;
+        private final String operation;
+        private final Object value;
+
+        private Comparison(String key, String operation, Object value) {
+            if (key == null) {
+                throw new NullPointerException("key is null");
+            }
+            this.key = key;
+            this.operation = operation;
+            this.value = value;
+        }
+
+        private void render(StringBuilder buffer) {
+            buffer.append('(').append(key).append(operation);
+            if (value == null) {
+                buffer.append('*');
+            } else {
+                FilterUtils.escape(value.toString(), buffer);
+            }
+            buffer.append(')');
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils;
+
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.InvalidSyntaxException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of parsed OSGi filters keyed by filter string.
+ * <p/>
+ * Parsed filters are immutable, so the same instance is shared by all callers.
+ * Least recently used filters are dropped when the cache exceeds {@link #MAX_SIZE_PROPERTY} filters.
+ * Filters are parsed outside of the cache lock, so concurrent lookups never wait for the parser.
+ *
+ * @see FilterUtils
+ * @see org.osgi.framework.FrameworkUtil#createFilter(String)
+ * @since 1.3
+ */
+public class FilterCache {
+    /**
+     * System property with the maximal number of cached filters.
+     * Default value is {@value #DEFAULT_MAX_SIZE}.
+     */
+    public static final String MAX_SIZE_PROPERTY = "org.knowhowlab.osgi.testing.utils.filterCache.maxSize";
+    /**
+     * Default maximal number of cached filters
+     */
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    private static final FilterCache cache = new FilterCache(readMaxSize());
+
+    private final int maxSize;
+    private final Map<String, Filter> filters;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    FilterCache(int maxSize) {
+        this.maxSize = Math.max(1, maxSize);
+        this.filters = new LinkedHashMap<String, Filter>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Filter> eldest) {
+                return size() > FilterCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get shared filter cache
+     *
+     * @return filter cache
+     */
+    public static FilterCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Get parsed filter. Filter is parsed on the first call and cached.
+     *
+     * @param filter filter string
+     * @return parsed filter
+     * @throws InvalidSyntaxException If <code>filter</code> contains an invalid filter string that cannot be parsed
+     * @throws NullPointerException   If <code>filter</code> is <code>null</code>
+     */
+    public Filter getFilter(String filter) throws InvalidSyntaxException {
+        if (filter == null) {
+            throw new NullPointerException("filter is null");
+        }
+        Filter parsed;
+        synchronized (filters) {
+            parsed = filters.get(filter);
+        }
+        if (parsed != null) {
+            hits.incrementAndGet();
+            return parsed;
+        }
+        misses.incrementAndGet();
+        parsed = FrameworkUtil.createFilter(filter);
+        synchronized (filters) {
+            Filter cached = filters.get(filter);
+            if (cached != null) {
+                // filter was parsed concurrently
+                return cached;
+            }
+            filters.put(filter, parsed);
+        }
+        return parsed;
+    }
+
+    /**
+     * Get number of lookups that returned cached filter
+     *
+     * @return hit count
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Get number of lookups that parsed filter
+     *
+     * @return miss count
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Get number of cached filters
+     *
+     * @return cache size
+     */
+    public int getSize() {
+        synchronized (filters) {
+            return filters.size();
+        }
+    }
+
+    /**
+     * Get maximal number of cached filters
+     *
+     * @return maximal cache size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Drop all cached filters and reset counters
+     */
+    public void clear() {
+        synchronized (filters) {
+            filters.clear();
+        }
+        hits.set(0);
+        misses.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FilterCache[size=%d, maxSize=%d, hits=%d, misses=%d]", getSize(), maxSize, getHitCount(), getMissCount());
+    }
+
+    private static int readMaxSize() {
+        try {
+            return Integer.parseInt(System.getProperty(MAX_SIZE_PROPERTY, String.valueOf(DEFAULT_MAX_SIZE)));
+        } catch (NumberFormatException e) {
+            return DEFAULT_MAX_SIZE;
+        }
+    }
+}
@@ -0,0 +1,738 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils;
+
+import org.osgi.framework.Filter;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.Version;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.util.*;
+
+import static org.osgi.framework.Constants.OBJECTCLASS;
+
+/**
+ * Compiled OSGi filter that is evaluated directly against properties.
+ * <p/>
+ * Filter values are converted to numeric, version, boolean and character forms once at compile time,
+ * so matching compares values of known types without reflection. Operands of AND/OR expressions are
+ * ordered by evaluation cost, so cheap clauses short-circuit expensive ones.
+ * <p/>
+ * Expression is normalized on compile: nested AND/OR expressions with the same operator are flattened,
+ * duplicate operands and double negations are removed. Canonical filter string lists
+ * <code>objectClass</code> equality first and other operands in lexicographical order,
+ * so equivalent filters have the same canonical string.
+ * Property keys are case insensitive, as for {@link Filter#match(java.util.Dictionary)}.
+ *
+ * @see FilterUtils#compile(String)
+ * @since 1.3
+ */
+public class FilterMatcher {
+    private final Node root;
+
+    private FilterMatcher(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Compile filter
+     *
+     * @param filter filter string
+     * @return compiled filter
+     * @throws InvalidSyntaxException If <code>filter</code> contains an invalid filter string that cannot be parsed
+     * @throws NullPointerException   If <code>filter</code> is <code>null</code>
+     */
+    static FilterMatcher compile(String filter) throws InvalidSyntaxException {
+        if (filter == null) {
+            throw new NullPointerException("filter is null");
+        }
+        return new FilterMatcher(new Parser(filter).parse());
+    }
+
+    /**
+     * Match properties map
+     *
+     * @param properties properties
+     * @return <code>true</code> if properties match the filter
+     * @throws NullPointerException If <code>properties</code> are <code>null</code>
+     */
+    public boolean matches(final Map<String, ?> properties) {
+        if (properties == null) {
+            throw new NullPointerException("properties are null");
+        }
+        return root.matches(new Properties() {
+            public Object get(String key) {
+                Object value = properties.get(key);
+                if (value == null) {
+                    for (Map.Entry<String, ?> entry : properties.entrySet()) {
+                        if (key.equalsIgnoreCase(entry.getKey())) {
+                            return entry.getValue();
+                        }
+                    }
+                }
+                return value;
+            }
+        });
+    }
+
+    /**
+     * Match properties dictionary
+     *
+     * @param properties properties
+     * @return <code>true</code> if properties match the filter
+     * @throws NullPointerException If <code>properties</code> are <code>null</code>
+     */
+    public boolean match(final Dictionary properties) {
+        if (properties == null) {
+            throw new NullPointerException("properties are null");
+        }
+        return root.matches(new Properties() {
+            public Object get(String key) {
+                Object value = properties.get(key);
+                if (value == null) {
+                    for (Enumeration keys = properties.keys(); keys.hasMoreElements(); ) {
+                        Object next = keys.nextElement();
+                        if (next instanceof String && key.equalsIgnoreCase((String) next)) {
+                            return properties.get(next);
+                        }
+                    }
+                }
+                return value;
+            }
+        });
+    }
+
+    /**
+     * Match service properties
+     *
+     * @param reference service reference
+     * @return <code>true</code> if service properties match the filter
+     * @throws NullPointerException If <code>reference</code> is <code>null</code>
+     */
+    public boolean match(final ServiceReference reference) {
+        if (reference == null) {
+            throw new NullPointerException("reference is null");
+        }
+        return root.matches(new Properties() {
+            public Object get(String key) {
+                return reference.getProperty(key);
+            }
+        });
+    }
+
+    /**
+     * Get canonical filter string
+     *
+     * @return filter string
+     */
+    @Override
+    public String toString() {
+        return root.toString();
+    }
+
+    /**
+     * Properties view of the matched object
+     */
+    private static interface Properties {
+        Object get(String key);
+    }
+
+    /**
+     * Compiled filter expression
+     */
+    private abstract static class Node {
+        /**
+         * Relative evaluation cost
+         */
+        final int cost;
+        private String text;
+
+        Node(int cost) {
+            this.cost = cost;
+        }
+
+        abstract boolean matches(Properties properties);
+
+        abstract void render(StringBuilder buffer);
+
+        boolean isObjectClass() {
+            return false;
+        }
+
+        /**
+         * Get canonical filter string of the expression
+         *
+         * @return filter string
+         */
+        @Override
+        public String toString() {
+            if (text == null) {
+                StringBuilder buffer = new StringBuilder();
+                render(buffer);
+                text = buffer.toString();
+            }
+            return text;
+        }
+    }
+
+    private static final Comparator<Node> BY_COST = new Comparator<Node>() {
+        public int compare(Node node1, Node node2) {
+            return node1.cost < node2.cost ? -1 : (node1.cost == node2.cost ? 0 : 1);
+        }
+    };
+
+    /**
+     * Canonical order: objectClass equality first, other expressions by filter string
+     */
+    private static final Comparator<Node> CANONICAL = new Comparator<Node>() {
+        public int compare(Node node1, Node node2) {
+            if (node1.isObjectClass() != node2.isObjectClass()) {
+                return node1.isObjectClass() ? -1 : 1;
+            }
+            return node1.toString().compareTo(node2.toString());
+        }
+    };
+
+    /**
+     * AND/OR expression. Operands are kept in canonical order for rendering and in cost order for matching.
+     */
+    private static class Group extends Node {
+        private final boolean and;
+        private final Node[] operands;
+        private final Node[] evaluation;
+
+        private Group(boolean and, Node[] operands) {
+            super(sum(operands));
+            this.and = and;
+            this.operands = operands;
+            this.evaluation = operands.clone();
+            Arrays.sort(evaluation, BY_COST);
+        }
+
+        /**
+         * Create normalized expression: nested expressions with the same operator are flattened,
+         * duplicates are removed and single operand is returned as is
+         */
+        static Node create(boolean and, List<Node> operands) {
+            List<Node> flat = new ArrayList<Node>(operands.size());
+            for (Node operand : operands) {
+                if (operand instanceof Group && ((Group) operand).and == and) {
+                    flat.addAll(Arrays.asList(((Group) operand).operands));
+                } else {
+                    flat.add(operand);
+                }
+            }
+            Collections.sort(flat, CANONICAL);
+            for (int i = flat.size() - 1; i > 0; i--) {
+                if (flat.get(i).toString().equals(flat.get(i - 1).toString())) {
+                    flat.remove(i);
+                }
+            }
+            if (flat.size() == 1) {
+                return flat.get(0);
+            }
+            return new Group(and, flat.toArray(new Node[flat.size()]));
+        }
+
+        @Override
+        boolean matches(Properties properties) {
+            for (Node operand : evaluation) {
+                if (operand.matches(properties) != and) {
+                    return !and;
+                }
+            }
+            return and;
+        }
+
+        @Override
+        void render(StringBuilder buffer) {
+            buffer.append('(').append(and ? '&' : '|');
+            for (Node operand : operands) {
+                buffer.append(operand);
+            }
+            buffer.append(')');
+        }
+    }
+
+    private static class Not extends Node {
+        private final Node operand;
+
+        private Not(Node operand) {
+            super(operand.cost + 1);
+            this.operand = operand;
+        }
+
+        /**
+         * Create normalized expression: double negation is removed
+         */
+        static Node create(Node operand) {
+            return operand instanceof Not ? ((Not) operand).operand : new Not(operand);
+        }
+
+        @Override
+        boolean matches(Properties properties) {
+            return !operand.matches(properties);
+        }
+
+        @Override
+        void render(StringBuilder buffer) {
+            buffer.append("(!").append(operand).append(')');
+        }
+    }
+
+    private static class Present extends Node {
+        private final String key;
+
+        Present(String key) {
+            super(1);
+            this.key = key;
+        }
+
+        @Override
+        boolean matches(Properties properties) {
+            return properties.get(key) != null;
+        }
+
+        @Override
+        void render(StringBuilder buffer) {
+            buffer.append('(').append(key).append("=*)");
+        }
+    }
+
+    /**
+     * Matcher of single, array and collection values
+     */
+    private abstract static class Attribute extends Node {
+        final String key;
+
+        Attribute(String key, int cost) {
+            super(cost);
+            this.key = key;
+        }
+
+        @Override
+        boolean matches(Properties properties) {
+            Object value = properties.get(key);
+            return value != null && matchesValue(value);
+        }
+
+        private boolean matchesValue(Object value) {
+            if (value instanceof Object[]) {
+                for (Object element : (Object[]) value) {
+                    if (element != null && matchesValue(element)) {
+                        return true;
+                    }
+                }
+                return false;
+            } else if (value instanceof Collection) {
+                for (Object element : (Collection) value) {
+                    if (element != null && matchesValue(element)) {
+                        return true;
+                    }
+                }
+                return false;
+            } else if (value.getClass().isArray()) {
+                for (int i = 0, length = Array.getLength(value); i < length; i++) {
+                    if (matchesValue(Array.get(value, i))) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            return matchesScalar(value);
+        }
+
+        abstract boolean matchesScalar(Object value);
+    }
+
+    private static class Substring extends Attribute {
+        /**
+         * Fixed parts. <code>null</code> first or last part means leading or trailing wildcard.
+         */
+        private final String[] parts;
+
+        Substring(String key, String[] parts) {
+            super(key, 3);
+            this.parts = parts;
+        }
+
+        @Override
+        boolean matchesScalar(Object value) {
+            if (!(value instanceof String)) {
+                return false;
+            }
+            String string = (String) value;
+            int last = parts.length - 1;
+            int position = 0;
+            for (int i = 0; i <= last; i++) {
+                String part = parts[i];
+                if (part == null) {
+                    continue;
+                }
+                if (i == 0) {
+                    if (!string.startsWith(part)) {
+                        return false;
+                    }
+                    position = part.length();
+                } else if (i == last) {
+                    return string.length() - part.length() >= position && string.endsWith(part);
+                } else {
+                    int index = string.indexOf(part, position);
+                    if (index < 0) {
+                        return false;
+                    }
+                    position = index + part.length();
+                }
+            }
+            return true;
+        }
+
+        @Override
+        void render(StringBuilder buffer) {
+            buffer.append('(').append(key).append('=');
+            for (int i = 0; i < parts.length; i++) {
+                if (i > 0) {
+                    buffer.append('*');
+                }
+                if (parts[i] != null) {
+                    FilterUtils.escape(parts[i], buffer);
+                }
+            }
+            buffer.append(')');
+        }
+    }
+
+    private static class Comparison extends Attribute {
+        private static final int EQUAL = 0;
+        private static final int APPROX = 1;
+        private static final int GREATER = 2;
+        private static final int LESS = 3;
+        private static final String[] OPERATIONS = {"=", "~=", ">=", "<="};
+
+        private final int operation;
+        private final String value;
+        private final String approxValue;
+        private final Long longValue;
+        private final Float floatValue;
+        private final Double doubleValue;
+        private final Boolean booleanValue;
+        private final Character charValue;
+        private final Version versionValue;
+
+        Comparison(String key, int operation, String value) {
+            super(key, operation == APPROX ? 3 : 2);
+            this.operation = operation;
+            this.value = value;
+            String trimmed = value.trim();
+            this.approxValue = operation == APPROX ? approx(value) : null;
+            this.longValue = parseLong(trimmed);
+            this.floatValue = parseFloat(trimmed);
+            this.doubleValue = parseDouble(trimmed);
+            this.booleanValue = Boolean.valueOf(trimmed);
+            this.charValue = value.length() > 0 ? value.charAt(0) : null;
+            this.versionValue = parseVersion(trimmed);
+        }
+
+        @Override
+        boolean matchesScalar(Object actual) {
+            if (actual instanceof String) {
+                if (operation == APPROX) {
+                    return approx((String) actual).equals(approxValue);
+                }
+                return test(((String) actual).compareTo(value));
+            } else if (actual instanceof Integer || actual instanceof Long
+                    || actual instanceof Short || actual instanceof Byte) {
+                if (longValue == null) {
+                    return false;
+                }
+                long number = ((Number) actual).longValue();
+                return test(number < longValue ? -1 : (number == longValue ? 0 : 1));
+            } else if (actual instanceof Double) {
+                return doubleValue != null && test(((Double) actual).compareTo(doubleValue));
+            } else if (actual instanceof Float) {
+                return floatValue != null && test(((Float) actual).compareTo(floatValue));
+            } else if (actual instanceof Boolean) {
+                return actual.equals(booleanValue);
+            } else if (actual instanceof Character) {
+                if (charValue == null) {
+                    return false;
+                }
+                if (operation == APPROX) {
+                    return Character.toLowerCase((Character) actual) == Character.toLowerCase(charValue);
+                }
+                return test(((Character) actual).compareTo(charValue));
+            } else if (actual instanceof Version) {
+                return versionValue != null && test(((Version) actual).compareTo(versionValue));
+            }
+            return matchesObject(actual);
+        }
+
+        @Override
+        boolean isObjectClass() {
+            return operation == EQUAL && OBJECTCLASS.equalsIgnoreCase(key);
+        }
+
+        @Override
+        void render(StringBuilder buffer) {
+            buffer.append('(').append(key).append(OPERATIONS[operation]);
+            FilterUtils.escape(value, buffer);
+            buffer.append(')');
+        }
+
+        private boolean test(int comparison) {
+            switch (operation) {
+                case GREATER:
+                    return comparison >= 0;
+                case LESS:
+                    return comparison <= 0;
+                default:
+                    return comparison == 0;
+            }
+        }
+
+        /**
+         * Compare values of other types with value created by its String constructor
+         */
+        @SuppressWarnings("unchecked")
+        private boolean matchesObject(Object actual) {
+            Object expected;
+            try {
+                Constructor constructor = actual.getClass().getConstructor(String.class);
+                expected = constructor.newInstance(value.trim());
+            } catch (Exception e) {
+                return false;
+            }
+            if (actual instanceof Comparable) {
+                return test(((Comparable) actual).compareTo(expected));
+            }
+            return (operation == EQUAL || operation == APPROX) && actual.equals(expected);
+        }
+
+        private static String approx(String value) {
+            StringBuilder buffer = new StringBuilder(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (!Character.isWhitespace(c)) {
+                    buffer.append(Character.toLowerCase(c));
+                }
+            }
+            return buffer.toString();
+        }
+
+        private static Long parseLong(String value) {
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private static Float parseFloat(String value) {
+            try {
+                return Float.parseFloat(value);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private static Double parseDouble(String value) {
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private static Version parseVersion(String value) {
+            try {
+                return Version.parseVersion(value);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    private static int sum(Node[] operands) {
+        int cost = 1;
+        for (Node operand : operands) {
+            cost += operand.cost;
+        }
+        return cost;
+    }
+
+    /**
+     * RFC 1960 filter parser
+     */
+    private static class Parser {
+        private final String filter;
+        private int position;
+
+        Parser(String filter) {
+            this.filter = filter;
+        }
+
+        Node parse() throws InvalidSyntaxException {
+            Node node = parseFilter();
+            skipWhitespace();
+            if (position != filter.length()) {
+                throw error("Extraneous trailing characters");
+            }
+            return node;
+        }
+
+        private Node parseFilter() throws InvalidSyntaxException {
+            skipWhitespace();
+            expect('(');
+            skipWhitespace();
+            Node node;
+            switch (peek()) {
+                case '&':
+                    position++;
+                    node = Group.create(true, parseOperands());
+                    break;
+                case '|':
+                    position++;
+                    node = Group.create(false, parseOperands());
+                    break;
+                case '!':
+                    position++;
+                    node = Not.create(parseFilter());
+                    break;
+                default:
+                    node = parseItem();
+            }
+            skipWhitespace();
+            expect(')');
+            return node;
+        }
+
+        private List<Node> parseOperands() throws InvalidSyntaxException {
+            List<Node> operands = new ArrayList<Node>();
+            do {
+                operands.add(parseFilter());
+                skipWhitespace();
+            } while (position < filter.length() && filter.charAt(position) == '(');
+            return operands;
+        }
+
+        private Node parseItem() throws InvalidSyntaxException {
+            int start = position;
+            while (position < filter.length() && "=~<>()".indexOf(filter.charAt(position)) < 0) {
+                position++;
+            }
+            String key = filter.substring(start, position).trim();
+            if (key.length() == 0) {
+                throw error("Missing attribute name");
+            }
+            int operation;
+            switch (peek()) {
+                case '~':
+                    operation = Comparison.APPROX;
+                    position++;
+                    break;
+                case '>':
+                    operation = Comparison.GREATER;
+                    position++;
+                    break;
+                case '<':
+                    operation = Comparison.LESS;
+                    position++;
+                    break;
+                default:
+                    operation = Comparison.EQUAL;
+            }
+            expect('=');
+            if (operation != Comparison.EQUAL) {
+                return new Comparison(key, operation, parseValue(false).get(0));
+            }
+            List<String> parts = parseValue(true);
+            if (parts.size() == 1) {
+                return new Comparison(key, operation, parts.get(0));
+            }
+            if (parts.size() == 2 && parts.get(0) == null && parts.get(1) == null) {
+                return new Present(key);
+            }
+            // consecutive wildcards are the same as one wildcard
+            for (int i = parts.size() - 2; i > 0; i--) {
+                if (parts.get(i) == null) {
+                    parts.remove(i);
+                }
+            }
+            return new Substring(key, parts.toArray(new String[parts.size()]));
+        }
+
+        /**
+         * Parse value. Wildcards split value into parts, empty parts around wildcards are <code>null</code>.
+         */
+        private List<String> parseValue(boolean wildcards) throws InvalidSyntaxException {
+            List<String> parts = new ArrayList<String>(2);
+            StringBuilder buffer = new StringBuilder();
+            while (position < filter.length()) {
+                char c = filter.charAt(position);
+                if (c == ')') {
+                    break;
+                } else if (c == '(') {
+                    throw error("Invalid value");
+                } else if (c == '\\') {
+                    position++;
+                    if (position == filter.length()) {
+                        throw error("Unexpected end of filter");
+                    }
+                    buffer.append(filter.charAt(position));
+                } else if (c == '*' && wildcards) {
+                    parts.add(buffer.length() > 0 ? buffer.toString() : null);
+                    buffer.setLength(0);
+                } else {
+                    buffer.append(c);
+                }
+                position++;
+            }
+            if (parts.isEmpty()) {
+                parts.add(buffer.toString());
+            } else {
+                parts.add(buffer.length() > 0 ? buffer.toString() : null);
+            }
+            return parts;
+        }
+
+        private void skipWhitespace() {
+            while (position < filter.length() && Character.isWhitespace(filter.charAt(position))) {
+                position++;
+            }
+        }
+
+        private char peek() throws InvalidSyntaxException {
+            if (position == filter.length()) {
+                throw error("Unexpected end of filter");
+            }
+            return filter.charAt(position);
+        }
+
+        private void expect(char c) throws InvalidSyntaxException {
+            if (peek() != c) {
+                throw error("Missing '" + c + "'");
+            }
+            position++;
+        }
+
+        private InvalidSyntaxException error(String message) {
+            return new InvalidSyntaxException(message + " at position " + position, filter);
+        }
+    }
+}
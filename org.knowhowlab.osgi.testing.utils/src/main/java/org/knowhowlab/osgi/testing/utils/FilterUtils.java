@@ -22,12 +22,12 @@ import org.osgi.framework.InvalidSyntaxException;
 
 import static java.lang.String.format;
 import static org.osgi.framework.Constants.OBJECTCLASS;
-import static org.osgi.framework.FrameworkUtil.createFilter;
 
 /**
- * OSGi Filter utilities class
+ * OSGi Filter utilities class. Parsed filters are shared through {@link FilterCache}.
  *
  * @author dmytro.pishchukhin
+ * @see FilterBuilder
  * @see org.osgi.framework.Filter
  * @see org.osgi.framework.FrameworkUtil#createFilter(String)
  * @see org.osgi.framework.BundleContext#createFilter(String)
@@ -58,14 +58,6 @@ public class FilterUtils {
      * NOT filter template
      */
     private static final String NOT_TEMPLATE = "(!%s)";
-    /**
-     * AND filter template
-     */
-    private static final String AND_TEMPLATE = "(&%s%s)";
-    /**
-     * OR filter template
-     */
-    private static final String OR_TEMPLATE = "(|%s%s)";
 
     /**
      * Utility class. Only static methods are available.
@@ -179,7 +171,7 @@ public class FilterUtils {
      * @since 1.0
      */
     public static Filter and(String filter1, String filter2) throws InvalidSyntaxException {
-        return createFilter(format(AND_TEMPLATE, filter1, filter2));
+        return FilterBuilder.and().filter(filter1).filter(filter2).build();
     }
 
     /**
@@ -197,11 +189,14 @@ public class FilterUtils {
         if (filters.length == 0) {
             throw new IllegalArgumentException("Filters are empty");
         }
-        Filter filter = createFilter(filters[0]);
-        for (int i = 1; i < filters.length; i++) {
-            filter = and(filter, filters[i]);
+        if (filters.length == 1) {
+            return createFilter(filters[0]);
         }
-        return filter;
+        FilterBuilder builder = FilterBuilder.and();
+        for (String filter : filters) {
+            builder = builder.filter(filter);
+        }
+        return builder.build();
     }
 
     /**
@@ -216,7 +211,7 @@ public class FilterUtils {
      * @since 1.0
      */
     public static Filter and(Filter filter1, String filter2) throws InvalidSyntaxException {
-        return createFilter(format(AND_TEMPLATE, filter1, filter2));
+        return FilterBuilder.and().filter(filter1).filter(filter2).build();
     }
 
     /**
@@ -231,7 +226,7 @@ public class FilterUtils {
      * @since 1.0
      */
     public static Filter and(Filter filter1, Filter filter2) throws InvalidSyntaxException {
-        return createFilter(format(AND_TEMPLATE, filter1, filter2));
+        return FilterBuilder.and().filter(filter1).filter(filter2).build();
     }
 
     /**
@@ -249,11 +244,14 @@ public class FilterUtils {
         if (filters.length == 0) {
             throw new IllegalArgumentException("Filters are empty");
         }
-        Filter filter = filters[0];
-        for (int i = 1; i < filters.length; i++) {
-            filter = and(filter, filters[i]);
+        if (filters.length == 1) {
+            return filters[0];
+        }
+        FilterBuilder builder = FilterBuilder.and();
+        for (Filter filter : filters) {
+            builder = builder.filter(filter);
         }
-        return filter;
+        return builder.build();
     }
 
     /**
@@ -268,7 +266,7 @@ public class FilterUtils {
      * @since 1.0
      */
     public static Filter or(String filter1, String filter2) throws InvalidSyntaxException {
-        return createFilter(format(OR_TEMPLATE, filter1, filter2));
+        return FilterBuilder.or().filter(filter1).filter(filter2).build();
     }
 
     /**
@@ -286,11 +284,14 @@ public class FilterUtils {
         if (filters.length == 0) {
             throw new IllegalArgumentException("Filters are empty");
         }
-        Filter filter = createFilter(filters[0]);
-        for (int i = 1; i < filters.length; i++) {
-            filter = or(filter, filters[i]);
+        if (filters.length == 1) {
+            return createFilter(filters[0]);
         }
-        return filter;
+        FilterBuilder builder = FilterBuilder.or();
+        for (String filter : filters) {
+            builder = builder.filter(filter);
+        }
+        return builder.build();
     }
 
     /**
@@ -305,7 +306,7 @@ public class FilterUtils {
      * @since 1.0
      */
     public static Filter or(Filter filter1, String filter2) throws InvalidSyntaxException {
-        return createFilter(format(OR_TEMPLATE, filter1, filter2));
+        return FilterBuilder.or().filter(filter1).filter(filter2).build();
     }
 
     /**
@@ -320,7 +321,7 @@ public class FilterUtils {
      * @since 1.0
      */
     public static Filter or(Filter filter1, Filter filter2) throws InvalidSyntaxException {
-        return createFilter(format(OR_TEMPLATE, filter1, filter2));
+        return FilterBuilder.or().filter(filter1).filter(filter2).build();
     }
 
     /**
@@ -338,11 +339,14 @@ public class FilterUtils {
         if (filters.length == 0) {
             throw new IllegalArgumentException("Filters are empty");
         }
-        Filter filter = filters[0];
-        for (int i = 1; i < filters.length; i++) {
-            filter = or(filter, filters[i]);
+        if (filters.length == 1) {
+            return filters[0];
+        }
+        FilterBuilder builder = FilterBuilder.or();
+        for (Filter filter : filters) {
+            builder = builder.filter(filter);
         }
-        return filter;
+        return builder.build();
     }
 
     /**
@@ -377,7 +381,7 @@ public class FilterUtils {
      * Create EQUALS filter
      *
      * @param key   key
-     * @param value value. To create filter value.toString() is used.
+     * @param value value. To create filter value.toString() is used. Value is escaped.
      * @return new EQUALS filter
      *
      * @throws InvalidSyntaxException If it is unable to create filter
@@ -385,14 +389,14 @@ public class FilterUtils {
      * @since 1.0
      */
     public static Filter eq(String key, Object value) throws InvalidSyntaxException {
-        return createFilter(format(EQUALS_FILTER_TEMPLATE, key, value));
+        return createFilter(format(EQUALS_FILTER_TEMPLATE, key, escape(value.toString())));
     }
 
     /**
      * Create APPROX filter
      *
      * @param key   key
-     * @param value value. To create filter value.toString() is used.
+     * @param value value. To create filter value.toString() is used. Value is escaped.
      * @return new APPROX filter
      *
      * @throws InvalidSyntaxException If it is unable to create filter
@@ -400,14 +404,14 @@ public class FilterUtils {
      * @since 1.0
      */
     public static Filter approx(String key, Object value) throws InvalidSyntaxException {
-        return createFilter(format(APPROX_FILTER_TEMPLATE, key, value));
+        return createFilter(format(APPROX_FILTER_TEMPLATE, key, escape(value.toString())));
     }
 
     /**
      * Create GREATER-EQUALS filter
      *
      * @param key   key
-     * @param value value. To create filter value.toString() is used.
+     * @param value value. To create filter value.toString() is used. Value is escaped.
      * @return new GREATER-EQUALS filter
      *
      * @throws InvalidSyntaxException If it is unable to create filter
@@ -415,14 +419,14 @@ public class FilterUtils {
      * @since 1.0
      */
     public static Filter ge(String key, Object value) throws InvalidSyntaxException {
-        return createFilter(format(GE_FILTER_TEMPLATE, key, value));
+        return createFilter(format(GE_FILTER_TEMPLATE, key, escape(value.toString())));
     }
 
     /**
      * Create LESS-EQUALS filter
      *
      * @param key   key
-     * @param value value. To create filter value.toString() is used.
+     * @param value value. To create filter value.toString() is used. Value is escaped.
      * @return new LESS-EQUALS filter
      *
      * @throws InvalidSyntaxException If it is unable to create filter
@@ -430,7 +434,7 @@ public class FilterUtils {
      * @since 1.0
      */
     public static Filter le(String key, Object value) throws InvalidSyntaxException {
-        return createFilter(format(LE_FILTER_TEMPLATE, key, value));
+        return createFilter(format(LE_FILTER_TEMPLATE, key, escape(value.toString())));
     }
 
     /**
@@ -446,4 +450,135 @@ public class FilterUtils {
     public static Filter present(String key) throws InvalidSyntaxException {
         return createFilter(format(PRESENT_FILTER_TEMPLATE, key));
     }
+
+    /**
+     * Compile filter to the matcher that evaluates it directly against properties maps, dictionaries
+     * and service references
+     *
+     * @param filter filter
+     * @return compiled filter
+     *
+     * @throws InvalidSyntaxException If it is unable to compile filter
+     * @throws NullPointerException   If <code>filter</code> is <code>null</code>
+     * @since 1.3
+     */
+    public static FilterMatcher compile(String filter) throws InvalidSyntaxException {
+        return FilterMatcher.compile(filter);
+    }
+
+    /**
+     * Compile filter to the matcher that evaluates it directly against properties maps, dictionaries
+     * and service references
+     *
+     * @param filter filter
+     * @return compiled filter
+     *
+     * @throws InvalidSyntaxException If it is unable to compile filter
+     * @throws NullPointerException   If <code>filter</code> is <code>null</code>
+     * @since 1.3
+     */
+    public static FilterMatcher compile(Filter filter) throws InvalidSyntaxException {
+        if (filter == null) {
+            throw new NullPointerException("filter is null");
+        }
+        return FilterMatcher.compile(filter.toString());
+    }
+
+    /**
+     * Normalize filter: remove duplicate operands, double negations and redundant AND/OR nesting,
+     * put <code>objectClass</code> equality first and order other operands lexicographically.
+     * Equivalent filters are normalized to the same canonical filter string and share {@link FilterCache} entry.
+     *
+     * @param filter filter
+     * @return normalized filter
+     *
+     * @throws InvalidSyntaxException If it is unable to create filter
+     * @throws NullPointerException   If <code>filter</code> is <code>null</code>
+     * @see FilterMatcher#toString()
+     * @since 1.3
+     */
+    public static Filter normalize(String filter) throws InvalidSyntaxException {
+        return createFilter(FilterMatcher.compile(filter).toString());
+    }
+
+    /**
+     * Normalize filter: remove duplicate operands, double negations and redundant AND/OR nesting,
+     * put <code>objectClass</code> equality first and order other operands lexicographically.
+     * Equivalent filters are normalized to the same canonical filter string and share {@link FilterCache} entry.
+     *
+     * @param filter filter
+     * @return normalized filter
+     *
+     * @throws InvalidSyntaxException If it is unable to create filter
+     * @throws NullPointerException   If <code>filter</code> is <code>null</code>
+     * @see FilterMatcher#toString()
+     * @since 1.3
+     */
+    public static Filter normalize(Filter filter) throws InvalidSyntaxException {
+        if (filter == null) {
+            throw new NullPointerException("filter is null");
+        }
+        return normalize(filter.toString());
+    }
+
+    /**
+     * Escape filter value according to RFC 1960: <code>\</code>, <code>*</code>, <code>(</code> and <code>)</code>
+     * are prefixed with <code>\</code>
+     *
+     * @param value value
+     * @return escaped value. The same string is returned if there is nothing to escape.
+     * @throws NullPointerException If <code>value</code> is <code>null</code>
+     * @since 1.3
+     */
+    public static String escape(String value) {
+        int index = indexOfSpecial(value, 0);
+        if (index < 0) {
+            return value;
+        }
+        StringBuilder buffer = new StringBuilder(value.length() + 8);
+        escape(value, index, buffer);
+        return buffer.toString();
+    }
+
+    /**
+     * Append escaped filter value
+     *
+     * @param value  value
+     * @param buffer target buffer
+     */
+    static void escape(String value, StringBuilder buffer) {
+        int index = indexOfSpecial(value, 0);
+        if (index < 0) {
+            buffer.append(value);
+        } else {
+            escape(value, index, buffer);
+        }
+    }
+
+    private static void escape(String value, int index, StringBuilder buffer) {
+        int start = 0;
+        while (index >= 0) {
+            buffer.append(value, start, index).append('\\').append(value.charAt(index));
+            start = index + 1;
+            index = indexOfSpecial(value, start);
+        }
+        buffer.append(value, start, value.length());
+    }
+
+    private static int indexOfSpecial(String value, int start) {
+        for (int i = start; i < value.length(); i++) {
+            switch (value.charAt(i)) {
+                case '\\':
+                case '*':
+                case '(':
+                case ')':
+                    return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Filter createFilter(String filter) throws InvalidSyntaxException {
+        return FilterCache.getCache().getFilter(filter);
+    }
 }
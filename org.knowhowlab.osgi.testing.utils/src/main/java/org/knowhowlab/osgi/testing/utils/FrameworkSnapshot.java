@@ -0,0 +1,465 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils;
+
+import org.knowhowlab.osgi.testing.utils.async.Promise;
+import org.osgi.framework.*;
+import org.osgi.service.startlevel.StartLevel;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.knowhowlab.osgi.testing.utils.FrameworkUtils.awaitFrameworkEvent;
+import static org.knowhowlab.osgi.testing.utils.ServiceUtils.getServiceHandle;
+import static org.knowhowlab.osgi.testing.utils.async.Promises.waitFor;
+
+/**
+ * Snapshot of the framework bundles and services.
+ * <p/>
+ * Snapshot is captured with {@link #capture(BundleContext)} and restored with {@link #restore(FrameworkSnapshot)}.
+ * Restore computes the difference between current framework state and snapshot and applies only required
+ * uninstall, install, update, stop and start operations with batch operations of {@link BundleUtils}.
+ * It allows to share one framework between tests and reset it after each test.
+ * <p/>
+ * Bundle is considered as changed if its last modification time differs from the snapshot.
+ * Bundles that were uninstalled after capture are installed again from their location and get new ids.
+ * After restore the snapshot is bound to the new ids and modification times, so the next restore
+ * applies only the changes that are made after the previous one.
+ * Framework start level is restored if StartLevel service is available.
+ * Services that are registered after capture with {@link ServiceUtils} by the snapshot BundleContext are unregistered,
+ * other services registered after capture are reported by {@link #getAddedServices()}.
+ * Bundle of the snapshot BundleContext is never modified by restore.
+ *
+ * @see BundleUtils#startBundles(BundleContext, Collection)
+ * @since 1.3
+ */
+public class FrameworkSnapshot {
+    private static final int ACTIVE_STATES = Bundle.STARTING | Bundle.ACTIVE;
+
+    private final BundleContext bc;
+    private final Map<Long, BundleSnapshot> bundles;
+    private final Set<Long> serviceIds;
+    private final int startLevel;
+
+    private FrameworkSnapshot(BundleContext bc, Map<Long, BundleSnapshot> bundles, Set<Long> serviceIds, int startLevel) {
+        this.bc = bc;
+        this.bundles = bundles;
+        this.serviceIds = serviceIds;
+        this.startLevel = startLevel;
+    }
+
+    /**
+     * Capture state of all installed bundles and ids of all registered services
+     *
+     * @param bc BundleContext
+     * @return snapshot
+     * @throws NullPointerException If <code>bc</code> is <code>null</code>
+     */
+    public static FrameworkSnapshot capture(BundleContext bc) {
+        if (bc == null) {
+            throw new NullPointerException("BundleContext is null");
+        }
+        Map<Long, BundleSnapshot> bundles = new LinkedHashMap<Long, BundleSnapshot>();
+        BundleContentCache cache = BundleContentCache.getCache(bc);
+        int startLevel = -1;
+        ServiceHandle<StartLevel> handle = getServiceHandle(bc, StartLevel.class);
+        try {
+            if (handle != null) {
+                startLevel = handle.getService().getStartLevel();
+            }
+            for (Bundle bundle : bc.getBundles()) {
+                bundles.put(bundle.getBundleId(), new BundleSnapshot(bundle, getStartLevel(handle, bundle), cache.getDigest(bundle)));
+            }
+        } finally {
+            if (handle != null) {
+                handle.close();
+            }
+        }
+        Set<Long> serviceIds = new HashSet<Long>();
+        for (ServiceReference reference : getAllServiceReferences(bc)) {
+            serviceIds.add((Long) reference.getProperty(Constants.SERVICE_ID));
+        }
+        return new FrameworkSnapshot(bc, bundles, serviceIds, startLevel);
+    }
+
+    /**
+     * Restore the framework to the snapshot state. The method waits indefinitely for the refresh of changed bundles
+     * and for the framework start level change.
+     *
+     * @param snapshot snapshot
+     * @return aggregated result of all operations with per-bundle timing and failures.
+     *         Failures of bundles that could not be installed again are reported for their snapshot bundles.
+     * @throws NullPointerException If <code>snapshot</code> is <code>null</code>
+     */
+    public static BundleBatchResult restore(FrameworkSnapshot snapshot) {
+        return restore(snapshot, 0, MILLISECONDS);
+    }
+
+    /**
+     * Restore the framework to the snapshot state
+     *
+     * @param snapshot snapshot
+     * @param timeout  time interval to wait for the refresh of changed bundles and for the framework start level change.
+     *                 If zero, the method will wait indefinitely.
+     * @param timeUnit time unit for the time interval
+     * @return aggregated result of all operations with per-bundle timing and failures.
+     *         Failures of bundles that could not be installed again are reported for their snapshot bundles.
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @throws NullPointerException     If <code>snapshot</code> or <code>timeUnit</code> are <code>null</code>
+     */
+    public static BundleBatchResult restore(FrameworkSnapshot snapshot, long timeout, TimeUnit timeUnit) {
+        if (snapshot == null) {
+            throw new NullPointerException("snapshot is null");
+        }
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout value is negative");
+        }
+        synchronized (snapshot) {
+            return doRestore(snapshot, timeout, timeUnit);
+        }
+    }
+
+    private static BundleBatchResult doRestore(FrameworkSnapshot snapshot, long timeout, TimeUnit timeUnit) {
+        long start = System.nanoTime();
+        BundleContext bc = snapshot.bc;
+        BundleBatchResult result = new BundleBatchResult();
+        unregisterServices(snapshot);
+
+        Map<Long, Bundle> current = new HashMap<Long, Bundle>();
+        List<Bundle> added = new ArrayList<Bundle>();
+        List<Bundle> changed = new ArrayList<Bundle>();
+        long ownId = bc.getBundle().getBundleId();
+        for (Bundle bundle : bc.getBundles()) {
+            if (bundle.getBundleId() == ownId) {
+                continue;
+            }
+            BundleSnapshot state = snapshot.bundles.get(bundle.getBundleId());
+            if (state == null) {
+                added.add(bundle);
+            } else {
+                current.put(bundle.getBundleId(), bundle);
+                if (bundle.getLastModified() != state.getLastModified()) {
+                    changed.add(bundle);
+                }
+            }
+        }
+        result.merge(BundleUtils.uninstallBundles(bc, added));
+        result.merge(BundleUtils.updateBundles(bc, changed));
+
+        Map<Bundle, BundleSnapshot> restored = new LinkedHashMap<Bundle, BundleSnapshot>();
+        for (BundleSnapshot state : snapshot.bundles.values()) {
+            if (state.getBundleId() == ownId) {
+                continue;
+            }
+            Bundle bundle = current.get(state.getBundleId());
+            if (bundle == null) {
+                bundle = install(bc, state, result);
+            }
+            if (bundle != null) {
+                restored.put(bundle, state);
+            }
+        }
+
+        List<Bundle> refresh = new ArrayList<Bundle>(added);
+        refresh.addAll(changed);
+        if (!refresh.isEmpty()) {
+            refresh(bc, refresh, timeout, timeUnit);
+        }
+        restoreStartLevels(snapshot, restored, result, timeout, timeUnit);
+
+        List<Bundle> toStop = new ArrayList<Bundle>();
+        List<Bundle> toStart = new ArrayList<Bundle>();
+        for (Map.Entry<Bundle, BundleSnapshot> entry : restored.entrySet()) {
+            boolean active = (entry.getKey().getState() & ACTIVE_STATES) != 0;
+            boolean expected = (entry.getValue().getState() & ACTIVE_STATES) != 0;
+            if (active && !expected) {
+                toStop.add(entry.getKey());
+            } else if (!active && expected) {
+                toStart.add(entry.getKey());
+            }
+        }
+        result.merge(BundleUtils.stopBundles(bc, toStop));
+        result.merge(BundleUtils.startBundles(bc, toStart));
+
+        // bind the snapshot to reinstalled and updated bundles
+        for (Map.Entry<Bundle, BundleSnapshot> entry : restored.entrySet()) {
+            Bundle bundle = entry.getKey();
+            BundleSnapshot state = entry.getValue();
+            if (bundle.getBundleId() != state.getBundleId() || bundle.getLastModified() != state.getLastModified()) {
+                snapshot.bundles.remove(state.getBundleId());
+                snapshot.bundles.put(bundle.getBundleId(), new BundleSnapshot(bundle, state));
+            }
+        }
+        result.setTotalTime(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Get BundleContext that is used to capture the snapshot
+     *
+     * @return BundleContext
+     */
+    public BundleContext getBundleContext() {
+        return bc;
+    }
+
+    /**
+     * Get snapshots of the bundles ordered by bundle id
+     *
+     * @return bundle snapshots
+     */
+    public synchronized Collection<BundleSnapshot> getBundles() {
+        return Collections.unmodifiableList(new ArrayList<BundleSnapshot>(bundles.values()));
+    }
+
+    /**
+     * Get snapshot of the bundle
+     *
+     * @param bundleId bundle id
+     * @return bundle snapshot or <code>null</code> if bundle was not installed at capture
+     */
+    public synchronized BundleSnapshot getBundle(long bundleId) {
+        return bundles.get(bundleId);
+    }
+
+    /**
+     * Get ids of the services that were registered at capture
+     *
+     * @return service ids
+     */
+    public Set<Long> getServiceIds() {
+        return Collections.unmodifiableSet(serviceIds);
+    }
+
+    /**
+     * Get framework start level at capture
+     *
+     * @return start level or <code>-1</code> if StartLevel service is not available
+     */
+    public int getStartLevel() {
+        return startLevel;
+    }
+
+    /**
+     * Get references of the services that are registered after capture
+     *
+     * @return service references. List is empty if no services were registered after capture.
+     */
+    public List<ServiceReference> getAddedServices() {
+        List<ServiceReference> result = new ArrayList<ServiceReference>();
+        for (ServiceReference reference : getAllServiceReferences(bc)) {
+            if (!serviceIds.contains((Long) reference.getProperty(Constants.SERVICE_ID))) {
+                result.add(reference);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("FrameworkSnapshot[bundles: %d, services: %d, start level: %d]",
+                bundles.size(), serviceIds.size(), startLevel);
+    }
+
+    private static Bundle install(BundleContext bc, BundleSnapshot state, BundleBatchResult result) {
+        long start = System.nanoTime();
+        try {
+            Bundle bundle = bc.installBundle(state.getLocation());
+            result.record(bundle, System.nanoTime() - start, null);
+            return bundle;
+        } catch (BundleException e) {
+            result.record(state.getBundle(), System.nanoTime() - start, e);
+            return null;
+        }
+    }
+
+    private static void refresh(BundleContext bc, List<Bundle> bundles, long timeout, TimeUnit timeUnit) {
+        try {
+            WiringUtils.refreshBundles(bc, bundles, timeout, timeUnit);
+        } catch (IllegalStateException e) {
+            // neither wiring API nor PackageAdmin are available
+        }
+    }
+
+    private static void unregisterServices(FrameworkSnapshot snapshot) {
+        for (ServiceRegistration registration : ServiceUtils.getRegistrations(snapshot.bc)) {
+            try {
+                if (!snapshot.serviceIds.contains((Long) registration.getReference().getProperty(Constants.SERVICE_ID))) {
+                    registration.unregister();
+                }
+            } catch (IllegalStateException e) {
+                // service is already unregistered
+            }
+        }
+    }
+
+    private static void restoreStartLevels(FrameworkSnapshot snapshot, Map<Bundle, BundleSnapshot> bundles, BundleBatchResult result,
+                                           long timeout, TimeUnit timeUnit) {
+        ServiceHandle<StartLevel> handle = getServiceHandle(snapshot.bc, StartLevel.class);
+        if (handle == null) {
+            return;
+        }
+        try {
+            if (snapshot.startLevel > 0 && handle.getService().getStartLevel() != snapshot.startLevel) {
+                Promise<FrameworkEvent> changed = awaitFrameworkEvent(snapshot.bc, 0, FrameworkEvent.STARTLEVEL_CHANGED, timeout, timeUnit);
+                handle.getService().setStartLevel(snapshot.startLevel);
+                waitFor(changed, timeout, timeUnit);
+            }
+            for (Map.Entry<Bundle, BundleSnapshot> entry : bundles.entrySet()) {
+                int level = entry.getValue().getStartLevel();
+                if (level > 0 && getStartLevel(handle, entry.getKey()) != level) {
+                    long start = System.nanoTime();
+                    Throwable failure = null;
+                    try {
+                        handle.getService().setBundleStartLevel(entry.getKey(), level);
+                    } catch (IllegalArgumentException e) {
+                        failure = e;
+                    }
+                    result.record(entry.getKey(), System.nanoTime() - start, failure);
+                }
+            }
+        } finally {
+            handle.close();
+        }
+    }
+
+    private static int getStartLevel(ServiceHandle<StartLevel> handle, Bundle bundle) {
+        if (handle != null) {
+            try {
+                return handle.getService().getBundleStartLevel(bundle);
+            } catch (IllegalArgumentException e) {
+                // bundle is uninstalled
+            }
+        }
+        return -1;
+    }
+
+    private static ServiceReference[] getAllServiceReferences(BundleContext bc) {
+        try {
+            ServiceReference[] references = bc.getAllServiceReferences(null, null);
+            return references != null ? references : new ServiceReference[0];
+        } catch (InvalidSyntaxException e) {
+            throw new IllegalArgumentException("Unable to create filter", e);
+        }
+    }
+
+    /**
+     * Captured state of the bundle
+     *
+     * @since 1.3
+     */
+    public static class BundleSnapshot {
+        private final Bundle bundle;
+        private final long bundleId;
+        private final String location;
+        private final int state;
+        private final int startLevel;
+        private final long lastModified;
+        private final String contentDigest;
+
+        private BundleSnapshot(Bundle bundle, int startLevel, String contentDigest) {
+            this.bundle = bundle;
+            this.bundleId = bundle.getBundleId();
+            this.location = bundle.getLocation();
+            this.state = bundle.getState();
+            this.startLevel = startLevel;
+            this.lastModified = bundle.getLastModified();
+            this.contentDigest = contentDigest;
+        }
+
+        private BundleSnapshot(Bundle bundle, BundleSnapshot state) {
+            this.bundle = bundle;
+            this.bundleId = bundle.getBundleId();
+            this.location = state.location;
+            this.state = state.state;
+            this.startLevel = state.startLevel;
+            this.lastModified = bundle.getLastModified();
+            this.contentDigest = state.contentDigest;
+        }
+
+        /**
+         * Get captured bundle
+         *
+         * @return bundle
+         */
+        public Bundle getBundle() {
+            return bundle;
+        }
+
+        /**
+         * Get bundle id
+         *
+         * @return bundle id
+         */
+        public long getBundleId() {
+            return bundleId;
+        }
+
+        /**
+         * Get bundle location
+         *
+         * @return location
+         */
+        public String getLocation() {
+            return location;
+        }
+
+        /**
+         * Get bundle state at capture
+         *
+         * @return bundle state
+         */
+        public int getState() {
+            return state;
+        }
+
+        /**
+         * Get bundle start level at capture
+         *
+         * @return start level or <code>-1</code> if StartLevel service is not available
+         */
+        public int getStartLevel() {
+            return startLevel;
+        }
+
+        /**
+         * Get bundle last modification time at capture
+         *
+         * @return last modification time
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Get SHA-256 digest of the bundle content
+         *
+         * @return digest or <code>null</code> if bundle was not installed
+         *         with {@link BundleUtils#installOrReuseBundle(BundleContext, java.net.URI)}
+         */
+        public String getContentDigest() {
+            return contentDigest;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("BundleSnapshot[id: %d, location: %s, state: %d, start level: %d]",
+                    bundleId, location, state, startLevel);
+        }
+    }
+}
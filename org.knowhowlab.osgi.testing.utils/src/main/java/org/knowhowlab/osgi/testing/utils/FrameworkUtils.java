@@ -16,13 +16,17 @@
 
 package org.knowhowlab.osgi.testing.utils;
 
+import org.knowhowlab.osgi.testing.utils.async.Promise;
+import org.knowhowlab.osgi.testing.utils.event.FrameworkEventChannel;
+import org.knowhowlab.osgi.testing.utils.event.LookBack;
 import org.osgi.framework.*;
 
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.knowhowlab.osgi.testing.utils.BundleUtils.findBundle;
+import static org.knowhowlab.osgi.testing.utils.async.Promises.waitFor;
+import static org.knowhowlab.osgi.testing.utils.event.EventHub.getEventHub;
 
 /**
  * OSGi Framework utilities class
@@ -136,64 +140,106 @@ public class FrameworkUtils {
      * @since 1.1
      */
     public static FrameworkEvent waitForFrameworkEvent(BundleContext bc, String symbolicName, Version version, int eventTypeMask, long timeout, TimeUnit timeUnit) {
-        CountDownLatch latch = new CountDownLatch(1);
-
-        long timeoutInMillis = timeUnit.toMillis(timeout);
-        FrameworkListenerImpl listener = new FrameworkListenerImpl(symbolicName, version, eventTypeMask, latch);
-        bc.addFrameworkListener(listener);
-
-        try {
-            return waitForFrameworkEvent(listener, timeoutInMillis, latch);
-        } catch (InterruptedException e) {
-            return null;
-        } finally {
-            bc.removeFrameworkListener(listener);
-        }
+        return waitForFrameworkEvent(bc, symbolicName, version, eventTypeMask, LookBack.NONE, timeout, timeUnit);
     }
 
-    private static FrameworkEvent waitForFrameworkEvent(FrameworkListenerImpl listener, long timeoutInMillis, CountDownLatch latch)
-            throws InterruptedException {
-        if (timeoutInMillis < 0) {
+    /**
+     * Wait for FrameworkEvent with event type mask for defined bundle
+     *
+     * @param bc            BundleContext
+     * @param symbolicName  symbolicName
+     * @param version       version
+     * @param eventTypeMask FrameworkEvent type mask
+     * @param lookBack      look-back window. Wait is completed immediately if matching event is found in recent events
+     * @param timeout       time interval to wait. If zero, the method will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return FrameworkEvent or <code>null</code>
+     * @throws NullPointerException If <code>bc</code> or <code>symbolicName</code> or <code>lookBack</code> or <code>timeUnit</code> are <code>null</code>
+     * @since 1.3
+     */
+    public static FrameworkEvent waitForFrameworkEvent(BundleContext bc, String symbolicName, Version version, int eventTypeMask, LookBack lookBack, long timeout, TimeUnit timeUnit) {
+        if (timeout < 0) {
             throw new IllegalArgumentException("timeout value is negative");
         }
-        if (latch.await(timeoutInMillis, MILLISECONDS)) {
-            return listener.getFrameworkEvent();
-        } else {
-            return null;
-        }
+        return waitFor(awaitFrameworkEvent(bc, symbolicName, version, eventTypeMask, lookBack, 0, timeUnit), timeout, timeUnit);
     }
 
-    private static class FrameworkListenerImpl implements FrameworkListener {
-        private String symbolicName;
-        private Version version;
-        private int eventTypeMask;
-        private CountDownLatch latch;
-
-        private FrameworkEvent event;
-
-        public FrameworkListenerImpl(String symbolicName, Version version, int eventTypeMask, CountDownLatch latch) {
-            this.symbolicName = symbolicName;
-            this.version = version;
-            this.eventTypeMask = eventTypeMask;
-            this.latch = latch;
+    /**
+     * Await FrameworkEvent with event type mask for defined bundle without blocking the calling thread.
+     * The listener is removed when returned <code>Promise</code> is completed, cancelled or timed out.
+     *
+     * @param bc            BundleContext
+     * @param bundleId      bundle id
+     * @param eventTypeMask FrameworkEvent type mask
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of FrameworkEvent. It is resolved with <code>null</code> on timeout
+     * @throws NullPointerException     If <code>bc</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If <code>bundleId</code> is invalid or the value of timeout is negative
+     * @since 1.3
+     */
+    public static Promise<FrameworkEvent> awaitFrameworkEvent(BundleContext bc, int bundleId, int eventTypeMask, long timeout, TimeUnit timeUnit) {
+        Bundle bundle = findBundle(bc, bundleId);
+        if (bundle == null) {
+            throw new IllegalArgumentException("bundleId is invalid");
         }
+        return awaitFrameworkEvent(bc, bundle.getSymbolicName(), bundle.getVersion(), eventTypeMask, timeout, timeUnit);
+    }
 
-        public void frameworkEvent(FrameworkEvent event) {
-            if (match(event)) {
-                this.event = event;
-                latch.countDown();
-            }
-        }
+    /**
+     * Await FrameworkEvent with event type mask for defined bundle without blocking the calling thread.
+     * The listener is removed when returned <code>Promise</code> is completed, cancelled or timed out.
+     *
+     * @param bc            BundleContext
+     * @param symbolicName  symbolicName
+     * @param eventTypeMask FrameworkEvent type mask
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of FrameworkEvent. It is resolved with <code>null</code> on timeout
+     * @throws NullPointerException     If <code>bc</code> or <code>symbolicName</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @since 1.3
+     */
+    public static Promise<FrameworkEvent> awaitFrameworkEvent(BundleContext bc, String symbolicName, int eventTypeMask, long timeout, TimeUnit timeUnit) {
+        return awaitFrameworkEvent(bc, symbolicName, null, eventTypeMask, timeout, timeUnit);
+    }
 
-        private boolean match(FrameworkEvent event) {
-            Bundle bundle = event.getBundle();
-            return bundle.getSymbolicName().equals(symbolicName)
-                    && (version == null || bundle.getVersion().equals(version))
-                    && (eventTypeMask & event.getType()) != 0;
-        }
+    /**
+     * Await FrameworkEvent with event type mask for defined bundle without blocking the calling thread.
+     * The listener is removed when returned <code>Promise</code> is completed, cancelled or timed out.
+     *
+     * @param bc            BundleContext
+     * @param symbolicName  symbolicName
+     * @param version       version
+     * @param eventTypeMask FrameworkEvent type mask
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of FrameworkEvent. It is resolved with <code>null</code> on timeout
+     * @throws NullPointerException     If <code>bc</code> or <code>symbolicName</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @since 1.3
+     */
+    public static Promise<FrameworkEvent> awaitFrameworkEvent(BundleContext bc, String symbolicName, Version version, int eventTypeMask, long timeout, TimeUnit timeUnit) {
+        return awaitFrameworkEvent(bc, symbolicName, version, eventTypeMask, LookBack.NONE, timeout, timeUnit);
+    }
 
-        public FrameworkEvent getFrameworkEvent() {
-            return event;
-        }
+    /**
+     * Await FrameworkEvent with event type mask for defined bundle without blocking the calling thread.
+     * The listener is removed when returned <code>Promise</code> is completed, cancelled or timed out.
+     *
+     * @param bc            BundleContext
+     * @param symbolicName  symbolicName
+     * @param version       version
+     * @param eventTypeMask FrameworkEvent type mask
+     * @param lookBack      look-back window. <code>Promise</code> is resolved immediately if matching event is found in recent events
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of FrameworkEvent. It is resolved with <code>null</code> on timeout
+     * @throws NullPointerException     If <code>bc</code> or <code>symbolicName</code> or <code>lookBack</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @since 1.3
+     */
+    public static Promise<FrameworkEvent> awaitFrameworkEvent(BundleContext bc, String symbolicName, Version version, int eventTypeMask, LookBack lookBack, long timeout, TimeUnit timeUnit) {
+        return getEventHub(bc).getChannel(FrameworkEventChannel.class).await(symbolicName, version, eventTypeMask, lookBack, timeout, timeUnit);
     }
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+
+import java.util.*;
+
+/**
+ * Audit of services that are got by the BundleContext.
+ * <p/>
+ * Audit is started before the test and checked after it. It reports {@link ServiceHandle}s that are opened
+ * after the start and still not closed, and services that are in use by the bundle of the BundleContext
+ * but were not in use at the start.
+ * <pre>
+ * ServiceAudit audit = ServiceAudit.start(bc);
+ * // test
+ * assertTrue(audit.toString(), audit.isClean());
+ * </pre>
+ *
+ * @see ServiceHandle
+ * @since 1.3
+ */
+public class ServiceAudit {
+    private final BundleContext bc;
+    private final long startId;
+    private final Set<ServiceReference> initialServicesInUse;
+
+    private ServiceAudit(BundleContext bc) {
+        this.bc = bc;
+        this.startId = ServiceHandle.currentId();
+        this.initialServicesInUse = new HashSet<ServiceReference>(getBundleServicesInUse());
+    }
+
+    /**
+     * Start audit of the BundleContext
+     *
+     * @param bc BundleContext
+     * @return started audit
+     * @throws NullPointerException If <code>bc</code> is <code>null</code>
+     */
+    public static ServiceAudit start(BundleContext bc) {
+        if (bc == null) {
+            throw new NullPointerException("BundleContext is null");
+        }
+        return new ServiceAudit(bc);
+    }
+
+    /**
+     * Get handles that are opened after audit start and still not closed
+     *
+     * @return list of open handles ordered by opening
+     */
+    public List<ServiceHandle<?>> getOpenHandles() {
+        return ServiceHandle.getOpenHandles(bc, startId);
+    }
+
+    /**
+     * Get services that are in use by the bundle now but were not in use at audit start
+     *
+     * @return list of ServiceReferences
+     */
+    public List<ServiceReference> getServicesInUse() {
+        List<ServiceReference> result = new ArrayList<ServiceReference>();
+        for (ServiceReference reference : getBundleServicesInUse()) {
+            if (!initialServicesInUse.contains(reference)) {
+                result.add(reference);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Check that no handles are left open and no new services are in use
+     *
+     * @return <code>true</code> if nothing is held since audit start
+     */
+    public boolean isClean() {
+        return getOpenHandles().isEmpty() && getServicesInUse().isEmpty();
+    }
+
+    /**
+     * Audit report
+     *
+     * @return report with open handles and services in use
+     */
+    @Override
+    public String toString() {
+        return String.format("ServiceAudit[open handles: %s, services in use: %s]", getOpenHandles(), getServicesInUse());
+    }
+
+    private List<ServiceReference> getBundleServicesInUse() {
+        ServiceReference[] references;
+        try {
+            references = bc.getBundle().getServicesInUse();
+        } catch (IllegalStateException e) {
+            references = null;
+        }
+        return references != null ? Arrays.asList(references) : Collections.<ServiceReference>emptyList();
+    }
+}
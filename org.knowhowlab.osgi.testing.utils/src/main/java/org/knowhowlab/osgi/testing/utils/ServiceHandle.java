@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils;
+
+import org.knowhowlab.osgi.testing.utils.async.CompletionListener;
+import org.knowhowlab.osgi.testing.utils.async.Promise;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Handle of the service object that is got from the BundleContext.
+ * <p/>
+ * Every handle pairs one <code>BundleContext.getService</code> call with one <code>BundleContext.ungetService</code>
+ * call that is done on {@link #close()}. Handles that are not closed yet are reported by {@link ServiceAudit}.
+ * <pre>
+ * ServiceHandle&lt;EventAdmin&gt; handle = ServiceUtils.getServiceHandle(bc, EventAdmin.class);
+ * try {
+ *     handle.getService().sendEvent(event);
+ * } finally {
+ *     handle.close();
+ * }
+ * </pre>
+ *
+ * @param <T> type of the service
+ * @see ServiceUtils#getServiceHandle(BundleContext, Class)
+ * @see ServiceAudit
+ * @since 1.3
+ */
+public class ServiceHandle<T> implements Closeable {
+    private static final AtomicLong sequence = new AtomicLong();
+    private static final Map<Long, ServiceHandle<?>> openHandles = new LinkedHashMap<Long, ServiceHandle<?>>();
+
+    private final long id;
+    private final BundleContext bc;
+    private final ServiceReference reference;
+    private final T service;
+    private final String threadName;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private ServiceHandle(long id, BundleContext bc, ServiceReference reference, T service) {
+        this.id = id;
+        this.bc = bc;
+        this.reference = reference;
+        this.service = service;
+        this.threadName = Thread.currentThread().getName();
+    }
+
+    /**
+     * Get service object of the ServiceReference and open handle for it
+     *
+     * @param bc        BundleContext
+     * @param reference ServiceReference
+     * @param <T>       type of the service
+     * @return handle or <code>null</code> if <code>reference</code> is <code>null</code> or service is not available
+     * @throws NullPointerException If <code>bc</code> is <code>null</code>
+     */
+    public static <T> ServiceHandle<T> open(BundleContext bc, ServiceReference reference) {
+        if (bc == null) {
+            throw new NullPointerException("BundleContext is null");
+        }
+        if (reference == null) {
+            return null;
+        }
+        //noinspection unchecked
+        T service = (T) bc.getService(reference);
+        if (service == null) {
+            return null;
+        }
+        ServiceHandle<T> handle = new ServiceHandle<T>(sequence.incrementAndGet(), bc, reference, service);
+        synchronized (openHandles) {
+            openHandles.put(handle.id, handle);
+        }
+        return handle;
+    }
+
+    /**
+     * Unget the service. Subsequent calls have no effect.
+     */
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            synchronized (openHandles) {
+                openHandles.remove(id);
+            }
+            try {
+                bc.ungetService(reference);
+            } catch (IllegalStateException e) {
+                // BundleContext is no longer valid, service is already released by the framework
+            }
+        }
+    }
+
+    /**
+     * Close the handle when the <code>Promise</code> that uses the service is completed
+     *
+     * @param promise <code>Promise</code> of the action that uses the service
+     * @param <R>     type of the value
+     * @return given <code>Promise</code>
+     * @throws NullPointerException If <code>promise</code> is <code>null</code>
+     */
+    public <R> Promise<R> closeOnCompletion(Promise<R> promise) {
+        return promise.whenComplete(new CompletionListener<R>() {
+            public void completed(R value, Throwable failure) {
+                close();
+            }
+        });
+    }
+
+    /**
+     * Check if the handle is closed
+     *
+     * @return <code>true</code> if the service is released
+     */
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * Get service object
+     *
+     * @return service object
+     * @throws IllegalStateException If the handle is closed
+     */
+    public T getService() {
+        if (closed.get()) {
+            throw new IllegalStateException("ServiceHandle is closed");
+        }
+        return service;
+    }
+
+    /**
+     * Get ServiceReference of the service
+     *
+     * @return ServiceReference
+     */
+    public ServiceReference getReference() {
+        return reference;
+    }
+
+    /**
+     * Get BundleContext that got the service
+     *
+     * @return BundleContext
+     */
+    public BundleContext getBundleContext() {
+        return bc;
+    }
+
+    /**
+     * Get sequence number of the handle. Handles that are opened later have greater numbers.
+     *
+     * @return sequence number
+     */
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ServiceHandle#%d[%s, opened by thread %s]", id, reference, threadName);
+    }
+
+    static long currentId() {
+        return sequence.get();
+    }
+
+    static List<ServiceHandle<?>> getOpenHandles(BundleContext bc, long sinceId) {
+        List<ServiceHandle<?>> result = new ArrayList<ServiceHandle<?>>();
+        synchronized (openHandles) {
+            for (ServiceHandle<?> handle : openHandles.values()) {
+                if (handle.id > sinceId && handle.bc.equals(bc)) {
+                    result.add(handle);
+                }
+            }
+        }
+        return result;
+    }
+}
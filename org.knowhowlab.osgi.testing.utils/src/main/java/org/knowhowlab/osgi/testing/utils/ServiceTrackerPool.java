@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils;
+
+import org.knowhowlab.osgi.testing.utils.async.AsyncExecutors;
+import org.knowhowlab.osgi.testing.utils.async.Promise;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Filter;
+import org.osgi.framework.ServiceReference;
+import org.osgi.util.tracker.ServiceTracker;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Pool of open ServiceTrackers of the BundleContext.
+ * <p/>
+ * Trackers are keyed by class name or filter string and stay open between lookups, so repeated lookups
+ * read already tracked references instead of registry scan and listener registration.
+ * Trackers track ServiceReferences only, service objects are not get by the pool.
+ * <p/>
+ * Least recently used trackers are closed when the pool exceeds {@link #MAX_SIZE_PROPERTY} trackers.
+ * Trackers that are not used during {@link #IDLE_TIMEOUT_PROPERTY} are closed in background.
+ * Trackers that are used by pending waits are never closed by eviction.
+ * Pools of BundleContexts that are no longer valid are closed automatically.
+ *
+ * @see ServiceUtils
+ * @since 1.3
+ */
+public class ServiceTrackerPool {
+    /**
+     * System property with the maximal number of open trackers of one pool.
+     * Default value is {@value #DEFAULT_MAX_SIZE}.
+     */
+    public static final String MAX_SIZE_PROPERTY = "org.knowhowlab.osgi.testing.utils.trackerPool.maxSize";
+    /**
+     * System property with the idle timeout of the tracker in milliseconds.
+     * Default value is {@value #DEFAULT_IDLE_TIMEOUT}.
+     */
+    public static final String IDLE_TIMEOUT_PROPERTY = "org.knowhowlab.osgi.testing.utils.trackerPool.idleTimeout";
+    /**
+     * Default maximal number of open trackers
+     */
+    public static final int DEFAULT_MAX_SIZE = 64;
+    /**
+     * Default idle timeout in milliseconds
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT = 60000;
+
+    private static final Map<BundleContext, ServiceTrackerPool> pools = new HashMap<BundleContext, ServiceTrackerPool>();
+
+    private final BundleContext bc;
+    private final int maxSize;
+    private final long idleTimeout;
+    private final LinkedHashMap<String, PooledTracker> trackers = new LinkedHashMap<String, PooledTracker>(16, 0.75f, true);
+    private Promise<?> sweep;
+    private boolean closed;
+
+    private ServiceTrackerPool(BundleContext bc) {
+        this.bc = bc;
+        this.maxSize = Math.max(1, (int) getProperty(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE));
+        this.idleTimeout = getProperty(IDLE_TIMEOUT_PROPERTY, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /**
+     * Get tracker pool of the BundleContext. Pool is created on the first call.
+     *
+     * @param bc BundleContext
+     * @return tracker pool
+     * @throws NullPointerException If <code>bc</code> is <code>null</code>
+     */
+    public static ServiceTrackerPool getPool(BundleContext bc) {
+        if (bc == null) {
+            throw new NullPointerException("BundleContext is null");
+        }
+        synchronized (pools) {
+            for (Iterator<ServiceTrackerPool> iterator = pools.values().iterator(); iterator.hasNext(); ) {
+                ServiceTrackerPool pool = iterator.next();
+                if (!isValid(pool.bc)) {
+                    iterator.remove();
+                    pool.closeTrackers();
+                }
+            }
+            ServiceTrackerPool pool = pools.get(bc);
+            if (pool == null) {
+                pool = new ServiceTrackerPool(bc);
+                pools.put(bc, pool);
+            }
+            return pool;
+        }
+    }
+
+    /**
+     * Get ServiceReference by filter
+     *
+     * @param filter filter
+     * @return ServiceReference instance or <code>null</code>
+     * @throws NullPointerException  If <code>filter</code> is <code>null</code>
+     * @throws IllegalStateException If BundleContext is no longer valid
+     */
+    public ServiceReference getServiceReference(Filter filter) {
+        PooledTracker tracker = acquire(filter);
+        try {
+            return tracker.getServiceReference();
+        } finally {
+            release(tracker);
+        }
+    }
+
+    /**
+     * Get ServiceReference by class name
+     *
+     * @param className class name
+     * @return ServiceReference instance or <code>null</code>
+     * @throws NullPointerException  If <code>className</code> is <code>null</code>
+     * @throws IllegalStateException If BundleContext is no longer valid
+     */
+    public ServiceReference getServiceReference(String className) {
+        PooledTracker tracker = acquire(className);
+        try {
+            return tracker.getServiceReference();
+        } finally {
+            release(tracker);
+        }
+    }
+
+    /**
+     * Wait for ServiceReference by filter
+     *
+     * @param filter   filter
+     * @param timeout  time interval to wait. If zero, the method will wait indefinitely.
+     * @param timeUnit time unit for the time interval
+     * @return ServiceReference instance or <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @throws InterruptedException     If another thread has interrupted the current thread
+     * @throws NullPointerException     If <code>filter</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalStateException    If BundleContext is no longer valid
+     */
+    public ServiceReference waitForServiceReference(Filter filter, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout value is negative");
+        }
+        PooledTracker tracker = acquire(filter);
+        try {
+            return tracker.waitForServiceReference(timeUnit.toMillis(timeout));
+        } finally {
+            release(tracker);
+        }
+    }
+
+    /**
+     * Wait for ServiceReference by class name
+     *
+     * @param className class name
+     * @param timeout   time interval to wait. If zero, the method will wait indefinitely.
+     * @param timeUnit  time unit for the time interval
+     * @return ServiceReference instance or <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @throws InterruptedException     If another thread has interrupted the current thread
+     * @throws NullPointerException     If <code>className</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalStateException    If BundleContext is no longer valid
+     */
+    public ServiceReference waitForServiceReference(String className, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout value is negative");
+        }
+        PooledTracker tracker = acquire(className);
+        try {
+            return tracker.waitForServiceReference(timeUnit.toMillis(timeout));
+        } finally {
+            release(tracker);
+        }
+    }
+
+    /**
+     * Returns number of open trackers
+     *
+     * @return number of open trackers
+     */
+    public synchronized int size() {
+        return trackers.size();
+    }
+
+    /**
+     * Close all trackers of the pool. New pool is created by the next {@link #getPool(BundleContext)} call.
+     */
+    public void close() {
+        synchronized (pools) {
+            if (pools.get(bc) == this) {
+                pools.remove(bc);
+            }
+        }
+        closeTrackers();
+    }
+
+    private PooledTracker acquire(Filter filter) {
+        return acquire(filter.toString(), filter, null);
+    }
+
+    private PooledTracker acquire(String className) {
+        if (className == null) {
+            throw new NullPointerException("className is null");
+        }
+        return acquire(className, null, className);
+    }
+
+    private PooledTracker acquire(String key, Filter filter, String className) {
+        PooledTracker tracker;
+        List<PooledTracker> evicted = new ArrayList<PooledTracker>();
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("ServiceTrackerPool is closed");
+            }
+            tracker = trackers.get(key);
+            if (tracker == null) {
+                tracker = filter != null ? new PooledTracker(bc, filter) : new PooledTracker(bc, className);
+                tracker.open();
+                trackers.put(key, tracker);
+                for (Iterator<PooledTracker> iterator = trackers.values().iterator();
+                     iterator.hasNext() && trackers.size() > maxSize; ) {
+                    PooledTracker eldest = iterator.next();
+                    if (eldest.users == 0) {
+                        iterator.remove();
+                        evicted.add(eldest);
+                    }
+                }
+            }
+            tracker.users++;
+            scheduleSweep();
+        }
+        close(evicted);
+        return tracker;
+    }
+
+    private synchronized void release(PooledTracker tracker) {
+        tracker.users--;
+        tracker.lastAccess = System.nanoTime();
+    }
+
+    private void scheduleSweep() {
+        if (idleTimeout > 0 && (sweep == null || sweep.isDone())) {
+            sweep = AsyncExecutors.schedule(new Callable<Object>() {
+                public Object call() throws Exception {
+                    sweep();
+                    return null;
+                }
+            }, idleTimeout, MILLISECONDS);
+        }
+    }
+
+    private void sweep() {
+        List<PooledTracker> expired = new ArrayList<PooledTracker>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (Iterator<PooledTracker> iterator = trackers.values().iterator(); iterator.hasNext(); ) {
+                PooledTracker tracker = iterator.next();
+                if (tracker.users == 0 && now - tracker.lastAccess >= MILLISECONDS.toNanos(idleTimeout)) {
+                    iterator.remove();
+                    expired.add(tracker);
+                }
+            }
+            sweep = null;
+            if (!closed && !trackers.isEmpty()) {
+                scheduleSweep();
+            }
+        }
+        close(expired);
+    }
+
+    private void closeTrackers() {
+        List<PooledTracker> toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = new ArrayList<PooledTracker>(trackers.values());
+            trackers.clear();
+            if (sweep != null) {
+                sweep.cancel(false);
+                sweep = null;
+            }
+        }
+        close(toClose);
+    }
+
+    private static void close(List<PooledTracker> trackers) {
+        for (PooledTracker tracker : trackers) {
+            try {
+                tracker.close();
+            } catch (IllegalStateException e) {
+                // BundleContext is no longer valid
+            }
+        }
+    }
+
+    private static long getProperty(String name, long defaultValue) {
+        try {
+            return Long.parseLong(System.getProperty(name, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static boolean isValid(BundleContext bc) {
+        try {
+            bc.getBundle();
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    /**
+     * ServiceTracker that tracks ServiceReferences without getting service objects
+     */
+    private static class PooledTracker extends ServiceTracker {
+        private int users;
+        private long lastAccess = System.nanoTime();
+
+        private PooledTracker(BundleContext bc, Filter filter) {
+            super(bc, filter, null);
+        }
+
+        private PooledTracker(BundleContext bc, String className) {
+            super(bc, className, null);
+        }
+
+        @Override
+        public Object addingService(ServiceReference reference) {
+            return reference;
+        }
+
+        @Override
+        public void removedService(ServiceReference reference, Object service) {
+        }
+
+        private ServiceReference waitForServiceReference(long timeoutInMillis) throws InterruptedException {
+            return (ServiceReference) waitForService(timeoutInMillis);
+        }
+    }
+}
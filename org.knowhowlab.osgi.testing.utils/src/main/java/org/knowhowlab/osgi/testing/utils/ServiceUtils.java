@@ -16,16 +16,21 @@
 
 package org.knowhowlab.osgi.testing.utils;
 
+import org.knowhowlab.osgi.testing.utils.async.Promise;
+import org.knowhowlab.osgi.testing.utils.event.EventMatcher;
+import org.knowhowlab.osgi.testing.utils.event.LookBack;
+import org.knowhowlab.osgi.testing.utils.event.ServiceEventChannel;
 import org.osgi.framework.*;
-import org.osgi.util.tracker.ServiceTracker;
-import org.osgi.util.tracker.ServiceTrackerCustomizer;
 
-import java.util.Dictionary;
+import java.util.*;
 import java.util.concurrent.*;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.knowhowlab.osgi.testing.utils.FilterUtils.create;
-import static org.osgi.framework.FrameworkUtil.createFilter;
+import static org.knowhowlab.osgi.testing.utils.ServiceTrackerPool.getPool;
+import static org.knowhowlab.osgi.testing.utils.async.AsyncExecutors.schedule;
+import static org.knowhowlab.osgi.testing.utils.async.Promises.waitFor;
+import static org.knowhowlab.osgi.testing.utils.event.EventHub.getEventHub;
 
 /**
  * OSGi Services utilities class
@@ -39,6 +44,8 @@ import static org.osgi.framework.FrameworkUtil.createFilter;
  * @see org.osgi.framework.Filter
  */
 public class ServiceUtils {
+    private static final Map<BundleContext, List<ServiceRegistration>> registrations = new HashMap<BundleContext, List<ServiceRegistration>>();
+
     /**
      * Utility class. Only static methods are available.
      */
@@ -55,13 +62,7 @@ public class ServiceUtils {
      * @since 1.0
      */
     public static ServiceReference getServiceReference(BundleContext bc, Filter filter) {
-        ServiceTracker tracker = new ServiceTracker(bc, filter, null);
-        tracker.open();
-        try {
-            return tracker.getServiceReference();
-        } finally {
-            tracker.close();
-        }
+        return getPool(bc).getServiceReference(filter);
     }
 
     /**
@@ -93,18 +94,13 @@ public class ServiceUtils {
      * @since 1.0
      */
     public static ServiceReference getServiceReference(BundleContext bc, Filter filter, long timeout, TimeUnit timeUnit) {
-        CountDownLatch latch = new CountDownLatch(1);
-
-        long timeoutInMillis = timeUnit.toMillis(timeout);
-        ServiceTracker tracker = new ServiceTracker(bc, filter, new ServiceTrackerCustomizerWithLock(bc, latch));
-        tracker.open();
-        try {
-            return waitForServiceReference(tracker, timeoutInMillis, latch);
-        } catch (InterruptedException e) {
-            return null;
-        } finally {
-            tracker.close();
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout value is negative");
         }
+        if (timeout == 0) {
+            return getServiceReference(bc, filter);
+        }
+        return waitForServiceReference(bc, filter, timeout, timeUnit);
     }
 
     /**
@@ -117,13 +113,7 @@ public class ServiceUtils {
      * @since 1.0
      */
     public static ServiceReference getServiceReference(BundleContext bc, String className) {
-        ServiceTracker tracker = new ServiceTracker(bc, className, null);
-        tracker.open();
-        try {
-            return tracker.getServiceReference();
-        } finally {
-            tracker.close();
-        }
+        return getPool(bc).getServiceReference(className);
     }
 
     /**
@@ -155,18 +145,13 @@ public class ServiceUtils {
      * @since 1.0
      */
     public static ServiceReference getServiceReference(BundleContext bc, String className, long timeout, TimeUnit timeUnit) {
-        CountDownLatch latch = new CountDownLatch(1);
-
-        long timeoutInMillis = timeUnit.toMillis(timeout);
-        ServiceTracker tracker = new ServiceTracker(bc, className, new ServiceTrackerCustomizerWithLock(bc, latch));
-        tracker.open();
-        try {
-            return waitForServiceReference(tracker, timeoutInMillis, latch);
-        } catch (InterruptedException e) {
-            return null;
-        } finally {
-            tracker.close();
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout value is negative");
+        }
+        if (timeout == 0) {
+            return getServiceReference(bc, className);
         }
+        return waitForServiceReference(bc, className, timeout, timeUnit);
     }
 
     /**
@@ -179,13 +164,7 @@ public class ServiceUtils {
      * @since 1.0
      */
     public static ServiceReference getServiceReference(BundleContext bc, Class clazz) {
-        ServiceTracker tracker = new ServiceTracker(bc, clazz.getName(), null);
-        tracker.open();
-        try {
-            return tracker.getServiceReference();
-        } finally {
-            tracker.close();
-        }
+        return getServiceReference(bc, clazz.getName());
     }
 
     /**
@@ -220,6 +199,68 @@ public class ServiceUtils {
         return getServiceReference(bc, clazz.getName(), timeout, timeUnit);
     }
 
+    /**
+     * Wait for ServiceReference by filter. Only ServiceReferences are tracked, so the service object
+     * is not got and lazy services are not activated by the wait.
+     *
+     * @param bc       BundleContext
+     * @param filter   filter
+     * @param timeout  time interval to wait. If zero, the method will wait indefinitely.
+     * @param timeUnit time unit for the time interval
+     * @return ServiceReference instance or <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @throws NullPointerException     If <code>bc</code>, <code>filter</code> or
+     *                                  <code>timeUnit</code> are <code>null</code>
+     * @since 1.3
+     */
+    public static ServiceReference waitForServiceReference(BundleContext bc, Filter filter, long timeout, TimeUnit timeUnit) {
+        try {
+            return getPool(bc).waitForServiceReference(filter, timeout, timeUnit);
+        } catch (InterruptedException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Wait for ServiceReference by class name. Only ServiceReferences are tracked, so the service object
+     * is not got and lazy services are not activated by the wait.
+     *
+     * @param bc        BundleContext
+     * @param className className
+     * @param timeout   time interval to wait. If zero, the method will wait indefinitely.
+     * @param timeUnit  time unit for the time interval
+     * @return ServiceReference instance or <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @throws NullPointerException     If <code>bc</code>, <code>className</code> or
+     *                                  <code>timeUnit</code> are <code>null</code>
+     * @since 1.3
+     */
+    public static ServiceReference waitForServiceReference(BundleContext bc, String className, long timeout, TimeUnit timeUnit) {
+        try {
+            return getPool(bc).waitForServiceReference(className, timeout, timeUnit);
+        } catch (InterruptedException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Wait for ServiceReference by class. Only ServiceReferences are tracked, so the service object
+     * is not got and lazy services are not activated by the wait.
+     *
+     * @param bc       BundleContext
+     * @param clazz    Class
+     * @param timeout  time interval to wait. If zero, the method will wait indefinitely.
+     * @param timeUnit time unit for the time interval
+     * @return ServiceReference instance or <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @throws NullPointerException     If <code>bc</code>, <code>clazz</code> or
+     *                                  <code>timeUnit</code> are <code>null</code>
+     * @since 1.3
+     */
+    public static ServiceReference waitForServiceReference(BundleContext bc, Class clazz, long timeout, TimeUnit timeUnit) {
+        return waitForServiceReference(bc, clazz.getName(), timeout, timeUnit);
+    }
+
     /**
      * Get service instance by filter
      *
@@ -230,13 +271,7 @@ public class ServiceUtils {
      * @since 1.0
      */
     public static Object getService(BundleContext bc, Filter filter) {
-        ServiceTracker tracker = new ServiceTracker(bc, filter, null);
-        tracker.open();
-        try {
-            return tracker.getService();
-        } finally {
-            tracker.close();
-        }
+        return getService(bc, getServiceReference(bc, filter));
     }
 
     /**
@@ -268,15 +303,7 @@ public class ServiceUtils {
      * @since 1.0
      */
     public static Object getService(BundleContext bc, Filter filter, long timeout, TimeUnit timeUnit) {
-        ServiceTracker tracker = new ServiceTracker(bc, filter, null);
-        tracker.open();
-        try {
-            return tracker.waitForService(timeUnit.toMillis(timeout));
-        } catch (InterruptedException e) {
-            return null;
-        } finally {
-            tracker.close();
-        }
+        return getService(bc, waitForServiceReference(bc, filter, timeout, timeUnit));
     }
 
     /**
@@ -289,13 +316,7 @@ public class ServiceUtils {
      * @since 1.0
      */
     public static Object getService(BundleContext bc, String className) {
-        ServiceTracker tracker = new ServiceTracker(bc, className, null);
-        tracker.open();
-        try {
-            return tracker.getService();
-        } finally {
-            tracker.close();
-        }
+        return getService(bc, getServiceReference(bc, className));
     }
 
     /**
@@ -327,15 +348,7 @@ public class ServiceUtils {
      * @since 1.0
      */
     public static Object getService(BundleContext bc, String className, long timeout, TimeUnit timeUnit) {
-        ServiceTracker tracker = new ServiceTracker(bc, className, null);
-        tracker.open();
-        try {
-            return tracker.waitForService(timeUnit.toMillis(timeout));
-        } catch (InterruptedException e) {
-            return null;
-        } finally {
-            tracker.close();
-        }
+        return getService(bc, waitForServiceReference(bc, className, timeout, timeUnit));
     }
 
     /**
@@ -348,22 +361,8 @@ public class ServiceUtils {
      * @since 1.0
      */
     public static <T> T getService(BundleContext bc, Class<T> clazz) {
-        ServiceReference serviceReference = null;
-
-        ServiceTracker tracker = new ServiceTracker(bc, clazz.getName(), null);
-        tracker.open();
-        try {
-            serviceReference = tracker.getServiceReference();
-        } finally {
-            tracker.close();
-        }
-
-        if (serviceReference != null) {
-            //noinspection unchecked
-            return (T) bc.getService(serviceReference);
-        } else {
-            return null;
-        }
+        //noinspection unchecked
+        return (T) getService(bc, getServiceReference(bc, clazz.getName()));
     }
 
     /**
@@ -395,26 +394,8 @@ public class ServiceUtils {
      * @since 1.0
      */
     public static <T> T getService(BundleContext bc, Class<T> clazz, long timeout, TimeUnit timeUnit) {
-        ServiceReference serviceReference = null;
-
-        ServiceTracker tracker = new ServiceTracker(bc, clazz.getName(), null);
-        tracker.open();
-        try {
-            //noinspection unchecked
-            tracker.waitForService(timeUnit.toMillis(timeout));
-            serviceReference = tracker.getServiceReference();
-        } catch (InterruptedException e) {
-            return null;
-        } finally {
-            tracker.close();
-        }
-
-        if (serviceReference != null) {
-            //noinspection unchecked
-            return (T) bc.getService(serviceReference);
-        } else {
-            return null;
-        }
+        //noinspection unchecked
+        return (T) getService(bc, clazz.getName(), timeout, timeUnit);
     }
 
     /**
@@ -430,7 +411,7 @@ public class ServiceUtils {
      * @since 1.0
      */
     public static <T> T getService(BundleContext bc, Class<T> clazz, String filter) throws InvalidSyntaxException {
-        return getService(bc, clazz, createFilter(filter));
+        return getService(bc, clazz, FilterCache.getCache().getFilter(filter));
     }
 
     /**
@@ -468,7 +449,7 @@ public class ServiceUtils {
      * @since 1.0
      */
     public static <T> T getService(BundleContext bc, Class<T> clazz, String filter, long timeout, TimeUnit timeUnit) throws InvalidSyntaxException {
-        return getService(bc, clazz, createFilter(filter), timeout, timeUnit);
+        return getService(bc, clazz, FilterCache.getCache().getFilter(filter), timeout, timeUnit);
     }
 
     /**
@@ -483,19 +464,14 @@ public class ServiceUtils {
      * @since 1.0
      */
     public static <T> T getService(BundleContext bc, Class<T> clazz, Filter filter) {
-        ServiceTracker tracker;
+        Filter classFilter;
         try {
-            tracker = new ServiceTracker(bc, create(clazz, filter), null);
+            classFilter = create(clazz, filter);
         } catch (InvalidSyntaxException e) {
             throw new IllegalArgumentException("Unable to create filter", e);
         }
-        tracker.open();
-        try {
-            //noinspection unchecked
-            return (T) tracker.getService();
-        } finally {
-            tracker.close();
-        }
+        //noinspection unchecked
+        return (T) getService(bc, classFilter);
     }
 
     /**
@@ -529,21 +505,89 @@ public class ServiceUtils {
      * @since 1.0
      */
     public static <T> T getService(BundleContext bc, Class<T> clazz, Filter filter, long timeout, TimeUnit timeUnit) {
-        ServiceTracker tracker;
+        Filter classFilter;
+        try {
+            classFilter = create(clazz, filter);
+        } catch (InvalidSyntaxException e) {
+            throw new IllegalArgumentException("Unable to create filter", e);
+        }
+        //noinspection unchecked
+        return (T) getService(bc, classFilter, timeout, timeUnit);
+    }
+
+    /**
+     * Get handle of the service by class. Service must be released with {@link ServiceHandle#close()}.
+     *
+     * @param bc    BundleContext
+     * @param clazz Class
+     * @return service handle or <code>null</code>
+     * @throws NullPointerException If <code>bc</code> or <code>clazz</code> are <code>null</code>
+     * @since 1.3
+     */
+    public static <T> ServiceHandle<T> getServiceHandle(BundleContext bc, Class<T> clazz) {
+        return ServiceHandle.open(bc, getServiceReference(bc, clazz.getName()));
+    }
+
+    /**
+     * Get handle of the service by class with timeout. Service must be released with {@link ServiceHandle#close()}.
+     *
+     * @param bc       BundleContext
+     * @param clazz    Class
+     * @param timeout  time interval to wait. If zero, the method will wait indefinitely.
+     * @param timeUnit time unit for the time interval
+     * @return service handle or <code>null</code>
+     * @throws IllegalArgumentException If the value of <code>timeout</code> is negative
+     * @throws NullPointerException     If <code>bc</code>, <code>clazz</code> or
+     *                                  <code>timeUnit</code> are <code>null</code>
+     * @since 1.3
+     */
+    public static <T> ServiceHandle<T> getServiceHandle(BundleContext bc, Class<T> clazz, long timeout, TimeUnit timeUnit) {
+        return ServiceHandle.open(bc, waitForServiceReference(bc, clazz.getName(), timeout, timeUnit));
+    }
+
+    /**
+     * Get handle of the service by class and filter. Service must be released with {@link ServiceHandle#close()}.
+     *
+     * @param bc     BundleContext
+     * @param clazz  Class
+     * @param filter filter
+     * @return service handle or <code>null</code>
+     * @throws IllegalArgumentException If <code>filter</code> is invalid
+     * @throws NullPointerException     If <code>bc</code> or <code>clazz</code> are <code>null</code>
+     * @since 1.3
+     */
+    public static <T> ServiceHandle<T> getServiceHandle(BundleContext bc, Class<T> clazz, Filter filter) {
+        Filter classFilter;
         try {
-            tracker = new ServiceTracker(bc, create(clazz, filter), null);
+            classFilter = create(clazz, filter);
         } catch (InvalidSyntaxException e) {
             throw new IllegalArgumentException("Unable to create filter", e);
         }
-        tracker.open();
+        return ServiceHandle.open(bc, getServiceReference(bc, classFilter));
+    }
+
+    /**
+     * Get handle of the service by class and filter with timeout. Service must be released with {@link ServiceHandle#close()}.
+     *
+     * @param bc       BundleContext
+     * @param clazz    Class
+     * @param filter   filter
+     * @param timeout  time interval to wait. If zero, the method will wait indefinitely.
+     * @param timeUnit time unit for the time interval
+     * @return service handle or <code>null</code>
+     * @throws IllegalArgumentException If the value of <code>timeout</code> is negative or <code>filter</code> is invalid
+     * @throws NullPointerException     If <code>bc</code>, <code>clazz</code> or
+     *                                  <code>timeUnit</code> are <code>null</code>
+     * @since 1.3
+     */
+    public static <T> ServiceHandle<T> getServiceHandle(BundleContext bc, Class<T> clazz, Filter filter, long timeout, TimeUnit timeUnit) {
+        Filter classFilter;
         try {
-            //noinspection unchecked
-            return (T) tracker.waitForService(timeUnit.toMillis(timeout));
-        } catch (InterruptedException e) {
-            return null;
-        } finally {
-            tracker.close();
+            classFilter = create(clazz, filter);
+        } catch (InvalidSyntaxException e) {
+            throw new IllegalArgumentException("Unable to create filter", e);
         }
+        return ServiceHandle.open(bc, waitForServiceReference(bc, classFilter, timeout, timeUnit));
     }
 
     /**
@@ -553,12 +597,12 @@ public class ServiceUtils {
      * @param clazz      The class under which the service can be located.
      * @param service    The service object or a <code>ServiceFactory</code> object.
      * @param properties The properties for this service.
-     * @return A <code>Future&lt;ServiceRegistration&gt;</code> object for use by the bundle
+     * @return A <code>Promise&lt;ServiceRegistration&gt;</code> object for use by the bundle
      *         registering the service to update the service's properties or to
      *         unregister the service.
      * @since 1.1
      */
-    public static <T> Future<ServiceRegistration> registerServiceAsync(BundleContext bc, Class<T> clazz, T service, Dictionary properties) {
+    public static <T> Promise<ServiceRegistration> registerServiceAsync(BundleContext bc, Class<T> clazz, T service, Dictionary properties) {
         return registerServiceAsync(bc, clazz, service, properties, 0L);
     }
 
@@ -569,12 +613,12 @@ public class ServiceUtils {
      * @param clazz      The class name under which the service can be located.
      * @param service    The service object or a <code>ServiceFactory</code> object.
      * @param properties The properties for this service.
-     * @return A <code>Future&lt;ServiceRegistration&gt;</code> object for use by the bundle
+     * @return A <code>Promise&lt;ServiceRegistration&gt;</code> object for use by the bundle
      *         registering the service to update the service's properties or to
      *         unregister the service.
      * @since 1.1
      */
-    public static Future<ServiceRegistration> registerServiceAsync(BundleContext bc, String clazz, Object service, Dictionary properties) {
+    public static Promise<ServiceRegistration> registerServiceAsync(BundleContext bc, String clazz, Object service, Dictionary properties) {
         return registerServiceAsync(bc, clazz, service, properties, 0L);
     }
 
@@ -587,12 +631,12 @@ public class ServiceUtils {
      *                   properties under the key {@link Constants#OBJECTCLASS}.
      * @param service    The service object or a <code>ServiceFactory</code> object.
      * @param properties The properties for this service.
-     * @return A <code>Future&lt;ServiceRegistration&gt;</code> object for use by the bundle
+     * @return A <code>Promise&lt;ServiceRegistration&gt;</code> object for use by the bundle
      *         registering the service to update the service's properties or to
      *         unregister the service.
      * @since 1.1
      */
-    public static Future<ServiceRegistration> registerServiceAsync(BundleContext bc, String[] clazzes, Object service, Dictionary properties) {
+    public static Promise<ServiceRegistration> registerServiceAsync(BundleContext bc, String[] clazzes, Object service, Dictionary properties) {
         return registerServiceAsync(bc, clazzes, service, properties, 0L);
     }
 
@@ -604,12 +648,12 @@ public class ServiceUtils {
      * @param service       The service object or a <code>ServiceFactory</code> object.
      * @param properties    The properties for this service.
      * @param delayInMillis time interval in millis to wait before registration. If zero, the method will not wait.
-     * @return A <code>Future&lt;ServiceRegistration&gt;</code> object for use by the bundle
+     * @return A <code>Promise&lt;ServiceRegistration&gt;</code> object for use by the bundle
      *         registering the service to update the service's properties or to
      *         unregister the service.
      * @since 1.1
      */
-    public static <T> Future<ServiceRegistration> registerServiceAsync(BundleContext bc, Class<T> clazz, T service, Dictionary properties, long delayInMillis) {
+    public static <T> Promise<ServiceRegistration> registerServiceAsync(BundleContext bc, Class<T> clazz, T service, Dictionary properties, long delayInMillis) {
         return registerServiceAsync(bc, clazz, service, properties, delayInMillis, MILLISECONDS);
     }
 
@@ -621,12 +665,12 @@ public class ServiceUtils {
      * @param service       The service object or a <code>ServiceFactory</code> object.
      * @param properties    The properties for this service.
      * @param delayInMillis time interval in millis to wait before registration. If zero, the method will not wait.
-     * @return A <code>Future&lt;ServiceRegistration&gt;</code> object for use by the bundle
+     * @return A <code>Promise&lt;ServiceRegistration&gt;</code> object for use by the bundle
      *         registering the service to update the service's properties or to
      *         unregister the service.
      * @since 1.1
      */
-    public static Future<ServiceRegistration> registerServiceAsync(BundleContext bc, String clazz, Object service, Dictionary properties, long delayInMillis) {
+    public static Promise<ServiceRegistration> registerServiceAsync(BundleContext bc, String clazz, Object service, Dictionary properties, long delayInMillis) {
         return registerServiceAsync(bc, clazz, service, properties, delayInMillis, MILLISECONDS);
     }
 
@@ -640,12 +684,12 @@ public class ServiceUtils {
      * @param service       The service object or a <code>ServiceFactory</code> object.
      * @param properties    The properties for this service.
      * @param delayInMillis time interval in millis to wait before registration. If zero, the method will not wait.
-     * @return A <code>Future&lt;ServiceRegistration&gt;</code> object for use by the bundle
+     * @return A <code>Promise&lt;ServiceRegistration&gt;</code> object for use by the bundle
      *         registering the service to update the service's properties or to
      *         unregister the service.
      * @since 1.1
      */
-    public static Future<ServiceRegistration> registerServiceAsync(BundleContext bc, String[] clazzes, Object service, Dictionary properties, long delayInMillis) {
+    public static Promise<ServiceRegistration> registerServiceAsync(BundleContext bc, String[] clazzes, Object service, Dictionary properties, long delayInMillis) {
         return registerServiceAsync(bc, clazzes, service, properties, delayInMillis, MILLISECONDS);
     }
 
@@ -658,15 +702,15 @@ public class ServiceUtils {
      * @param properties The properties for this service.
      * @param delay      time interval to wait before registration. If zero, the method will not wait.
      * @param timeUnit   time unit for the time interval
-     * @return A <code>Future&lt;ServiceRegistration&gt;</code> object for use by the bundle
+     * @return A <code>Promise&lt;ServiceRegistration&gt;</code> object for use by the bundle
      *         registering the service to update the service's properties or to
      *         unregister the service.
      * @since 1.1
      */
-    public static <T> Future<ServiceRegistration> registerServiceAsync(final BundleContext bc, final Class<T> clazz, final T service, final Dictionary properties, long delay, TimeUnit timeUnit) {
-        return Executors.newSingleThreadScheduledExecutor().schedule(new Callable<ServiceRegistration>() {
+    public static <T> Promise<ServiceRegistration> registerServiceAsync(final BundleContext bc, final Class<T> clazz, final T service, final Dictionary properties, long delay, TimeUnit timeUnit) {
+        return schedule(new Callable<ServiceRegistration>() {
             public ServiceRegistration call() throws Exception {
-                return bc.registerService(clazz.getName(), service, properties);
+                return track(bc, bc.registerService(clazz.getName(), service, properties));
             }
         }, delay, timeUnit);
     }
@@ -680,15 +724,15 @@ public class ServiceUtils {
      * @param properties The properties for this service.
      * @param delay      time interval to wait before registration. If zero, the method will not wait.
      * @param timeUnit   time unit for the time interval
-     * @return A <code>Future&lt;ServiceRegistration&gt;</code> object for use by the bundle
+     * @return A <code>Promise&lt;ServiceRegistration&gt;</code> object for use by the bundle
      *         registering the service to update the service's properties or to
      *         unregister the service.
      * @since 1.1
      */
-    public static Future<ServiceRegistration> registerServiceAsync(final BundleContext bc, final String clazz, final Object service, final Dictionary properties, long delay, TimeUnit timeUnit) {
-        return Executors.newSingleThreadScheduledExecutor().schedule(new Callable<ServiceRegistration>() {
+    public static Promise<ServiceRegistration> registerServiceAsync(final BundleContext bc, final String clazz, final Object service, final Dictionary properties, long delay, TimeUnit timeUnit) {
+        return schedule(new Callable<ServiceRegistration>() {
             public ServiceRegistration call() throws Exception {
-                return bc.registerService(clazz, service, properties);
+                return track(bc, bc.registerService(clazz, service, properties));
             }
         }, delay, timeUnit);
     }
@@ -704,15 +748,15 @@ public class ServiceUtils {
      * @param properties The properties for this service.
      * @param delay      time interval to wait before registration. If zero, the method will not wait.
      * @param timeUnit   time unit for the time interval
-     * @return A <code>Future&lt;ServiceRegistration&gt;</code> object for use by the bundle
+     * @return A <code>Promise&lt;ServiceRegistration&gt;</code> object for use by the bundle
      *         registering the service to update the service's properties or to
      *         unregister the service.
      * @since 1.1
      */
-    public static Future<ServiceRegistration> registerServiceAsync(final BundleContext bc, final String[] clazzes, final Object service, final Dictionary properties, long delay, TimeUnit timeUnit) {
-        return Executors.newSingleThreadScheduledExecutor().schedule(new Callable<ServiceRegistration>() {
+    public static Promise<ServiceRegistration> registerServiceAsync(final BundleContext bc, final String[] clazzes, final Object service, final Dictionary properties, long delay, TimeUnit timeUnit) {
+        return schedule(new Callable<ServiceRegistration>() {
             public ServiceRegistration call() throws Exception {
-                return bc.registerService(clazzes, service, properties);
+                return track(bc, bc.registerService(clazzes, service, properties));
             }
         }, delay, timeUnit);
     }
@@ -728,7 +772,7 @@ public class ServiceUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> updateServiceAsync(ServiceRegistration registration, Dictionary properties) {
+    public static Promise<?> updateServiceAsync(ServiceRegistration registration, Dictionary properties) {
         return updateServiceAsync(registration, properties, 0L);
     }
 
@@ -744,7 +788,7 @@ public class ServiceUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> updateServiceAsync(ServiceRegistration registration, Dictionary properties, long delayInMillis) {
+    public static Promise<?> updateServiceAsync(ServiceRegistration registration, Dictionary properties, long delayInMillis) {
         return updateServiceAsync(registration, properties, delayInMillis, MILLISECONDS);
     }
 
@@ -761,8 +805,8 @@ public class ServiceUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> updateServiceAsync(final ServiceRegistration registration, final Dictionary properties, long delay, TimeUnit timeUnit) {
-        return Executors.newSingleThreadScheduledExecutor().schedule(new Callable<Object>() {
+    public static Promise<?> updateServiceAsync(final ServiceRegistration registration, final Dictionary properties, long delay, TimeUnit timeUnit) {
+        return schedule(new Callable<Object>() {
             public Object call() throws Exception {
                 registration.setProperties(properties);
                 return null;
@@ -777,7 +821,7 @@ public class ServiceUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> unregisterServiceAsync(ServiceRegistration registration) {
+    public static Promise<?> unregisterServiceAsync(ServiceRegistration registration) {
         return unregisterServiceAsync(registration, 0L);
     }
 
@@ -789,7 +833,7 @@ public class ServiceUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> unregisterServiceAsync(ServiceRegistration registration, long delayInMillis) {
+    public static Promise<?> unregisterServiceAsync(ServiceRegistration registration, long delayInMillis) {
         return unregisterServiceAsync(registration, delayInMillis, MILLISECONDS);
     }
 
@@ -802,8 +846,8 @@ public class ServiceUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.1
      */
-    public static Future<?> unregisterServiceAsync(final ServiceRegistration registration, long delay, TimeUnit timeUnit) {
-        return Executors.newSingleThreadScheduledExecutor().schedule(new Callable<Object>() {
+    public static Promise<?> unregisterServiceAsync(final ServiceRegistration registration, long delay, TimeUnit timeUnit) {
+        return schedule(new Callable<Object>() {
             public Object call() throws Exception {
                 registration.unregister();
                 return null;
@@ -967,15 +1011,10 @@ public class ServiceUtils {
      * @since 1.1
      */
     public static ServiceEvent waitForServiceEvent(BundleContext bc, String className, int eventTypeMask, boolean all, long timeout, TimeUnit timeUnit) {
-        Filter filter = null;
-        if (className != null) {
-            try {
-                filter = create(className);
-            } catch (InvalidSyntaxException e) {
-                throw new IllegalArgumentException("Unable to create filter", e);
-            }
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout value is negative");
         }
-        return waitForServiceEvent(bc, filter, eventTypeMask, all, timeout, timeUnit);
+        return waitFor(awaitServiceEvent(bc, className, null, eventTypeMask, all, LookBack.NONE, 0, timeUnit), timeout, timeUnit);
     }
 
     /**
@@ -993,15 +1032,7 @@ public class ServiceUtils {
      * @since 1.1
      */
     public static ServiceEvent waitForServiceEvent(BundleContext bc, Class clazz, int eventTypeMask, boolean all, long timeout, TimeUnit timeUnit) {
-        Filter filter = null;
-        if (clazz != null) {
-            try {
-                filter = create(clazz);
-            } catch (InvalidSyntaxException e) {
-                throw new IllegalArgumentException("Unable to create filter", e);
-            }
-        }
-        return waitForServiceEvent(bc, filter, eventTypeMask, all, timeout, timeUnit);
+        return waitForServiceEvent(bc, clazz != null ? clazz.getName() : null, eventTypeMask, all, timeout, timeUnit);
     }
 
     /**
@@ -1019,130 +1050,307 @@ public class ServiceUtils {
      * @since 1.1
      */
     public static ServiceEvent waitForServiceEvent(BundleContext bc, Filter filter, int eventTypeMask, boolean all, long timeout, TimeUnit timeUnit) {
-        CountDownLatch latch = new CountDownLatch(1);
-
-        long timeoutInMillis = timeUnit.toMillis(timeout);
-        ServiceListenerImpl listener;
-        if (all) {
-            listener = new AllServiceListenerImpl(eventTypeMask, latch);
-        } else {
-            listener = new ServiceListenerImpl(eventTypeMask, latch);
-        }
-        try {
-            bc.addServiceListener(listener, filter != null ? filter.toString() : null);
-        } catch (InvalidSyntaxException e) {
-            throw new IllegalArgumentException("Unable to use filter", e);
-        }
-
-        try {
-            return waitForServiceEvent(listener, timeoutInMillis, latch);
-        } catch (InterruptedException e) {
-            return null;
-        } finally {
-            bc.removeServiceListener(listener);
-        }
+        return waitForServiceEvent(bc, filter, eventTypeMask, all, LookBack.NONE, timeout, timeUnit);
     }
 
-    private static ServiceEvent waitForServiceEvent(ServiceListenerImpl listener, long timeoutInMillis, CountDownLatch latch)
-            throws InterruptedException {
-        if (timeoutInMillis < 0) {
+    /**
+     * Wait for ServiceEvent with event type mask for defined filter
+     *
+     * @param bc            BundleContext
+     * @param filter        filter (could be null)
+     * @param eventTypeMask ServiceEvent type mask
+     * @param all           use AllServiceListener
+     * @param lookBack      look-back window. Wait is completed immediately if matching event is found in recent events
+     * @param timeout       time interval to wait. If zero, the method will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return ServiceEvent or <code>null</code>
+     * @throws IllegalArgumentException If <code>filter</code> is invalid
+     * @throws NullPointerException If <code>bc</code> or <code>lookBack</code> or <code>timeUnit</code> are <code>null</code>
+     * @since 1.3
+     */
+    public static ServiceEvent waitForServiceEvent(BundleContext bc, Filter filter, int eventTypeMask, boolean all, LookBack lookBack, long timeout, TimeUnit timeUnit) {
+        if (timeout < 0) {
             throw new IllegalArgumentException("timeout value is negative");
         }
-        if (latch.await(timeoutInMillis, MILLISECONDS)) {
-            return listener.getServiceEvent();
-        } else {
-            return null;
-        }
+        return waitFor(awaitServiceEvent(bc, filter, eventTypeMask, all, lookBack, 0, timeUnit), timeout, timeUnit);
     }
 
     /**
-     * Wait for at least one ServiceReference to be tracked by ServiceTracker
+     * Await ServiceEvent with event type mask for defined class without blocking the calling thread.
+     * The listener is removed when returned <code>Promise</code> is completed, cancelled or timed out.
      *
-     * @param tracker         ServiceTracker
-     * @param timeoutInMillis time interval in milliseconds to wait.
-     *                        If zero, the method will wait indefinitely.
-     * @param latch           external latch that is used to handle new service adding to ServiceTracker
-     * @return ServiceReference instance or <code>null</code>
-     * @throws IllegalArgumentException If the value of timeout is negative.
-     * @throws InterruptedException     If another thread has interrupted the current thread.
+     * @param bc            BundleContext
+     * @param clazz         class (could be null)
+     * @param eventTypeMask ServiceEvent type mask
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of ServiceEvent. It is resolved with <code>null</code> on timeout
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @throws NullPointerException If <code>bc</code> or <code>timeUnit</code> are <code>null</code>
+     * @since 1.3
      */
-    private static ServiceReference waitForServiceReference(ServiceTracker tracker, long timeoutInMillis, CountDownLatch latch)
-            throws InterruptedException {
-        if (timeoutInMillis < 0) {
-            throw new IllegalArgumentException("timeout value is negative");
-        }
-        ServiceReference reference = tracker.getServiceReference();
-        if (reference == null) {
-            if (latch.await(timeoutInMillis, MILLISECONDS)) {
-                return tracker.getServiceReference();
-            } else {
-                return null;
-            }
-        } else {
-            return reference;
-        }
+    public static Promise<ServiceEvent> awaitServiceEvent(BundleContext bc, Class clazz, int eventTypeMask, long timeout, TimeUnit timeUnit) {
+        return awaitServiceEvent(bc, clazz != null ? clazz.getName() : null, null, eventTypeMask, false, LookBack.NONE, timeout, timeUnit);
     }
 
     /**
-     * ServiceTrackerCustomizer with lock support.
+     * Await ServiceEvent with event type mask for defined filter without blocking the calling thread.
+     * The listener is removed when returned <code>Promise</code> is completed, cancelled or timed out.
      *
-     * @see java.util.concurrent.locks.ReentrantLock
-     * @see org.osgi.util.tracker.ServiceTrackerCustomizer
+     * @param bc            BundleContext
+     * @param filter        filter (could be null)
+     * @param eventTypeMask ServiceEvent type mask
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of ServiceEvent. It is resolved with <code>null</code> on timeout
+     * @throws IllegalArgumentException If <code>filter</code> is invalid or the value of timeout is negative
+     * @throws NullPointerException If <code>bc</code> or <code>timeUnit</code> are <code>null</code>
+     * @since 1.3
      */
-    private static class ServiceTrackerCustomizerWithLock implements ServiceTrackerCustomizer {
-        private final BundleContext bc;
-        private final CountDownLatch latch;
+    public static Promise<ServiceEvent> awaitServiceEvent(BundleContext bc, Filter filter, int eventTypeMask, long timeout, TimeUnit timeUnit) {
+        return awaitServiceEvent(bc, filter, eventTypeMask, false, timeout, timeUnit);
+    }
 
-        public ServiceTrackerCustomizerWithLock(BundleContext bc, CountDownLatch latch) {
-            this.bc = bc;
-            this.latch = latch;
-        }
+    /**
+     * Await ServiceEvent with event type mask for defined filter without blocking the calling thread.
+     * The listener is removed when returned <code>Promise</code> is completed, cancelled or timed out.
+     *
+     * @param bc            BundleContext
+     * @param filter        filter (could be null)
+     * @param eventTypeMask ServiceEvent type mask
+     * @param all           use AllServiceListener
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of ServiceEvent. It is resolved with <code>null</code> on timeout
+     * @throws IllegalArgumentException If <code>filter</code> is invalid or the value of timeout is negative
+     * @throws NullPointerException If <code>bc</code> or <code>timeUnit</code> are <code>null</code>
+     * @since 1.3
+     */
+    public static Promise<ServiceEvent> awaitServiceEvent(BundleContext bc, Filter filter, int eventTypeMask, boolean all, long timeout, TimeUnit timeUnit) {
+        return awaitServiceEvent(bc, filter, eventTypeMask, all, LookBack.NONE, timeout, timeUnit);
+    }
 
-        public Object addingService(ServiceReference serviceReference) {
-            try {
-                return bc.getService(serviceReference);
-            } finally {
-                latch.countDown();
-            }
+    /**
+     * Await ServiceEvent with event type mask for defined filter without blocking the calling thread.
+     * The listener is removed when returned <code>Promise</code> is completed, cancelled or timed out.
+     *
+     * @param bc            BundleContext
+     * @param filter        filter (could be null)
+     * @param eventTypeMask ServiceEvent type mask
+     * @param all           use AllServiceListener
+     * @param lookBack      look-back window. <code>Promise</code> is resolved immediately if matching event is found in recent events
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of ServiceEvent. It is resolved with <code>null</code> on timeout
+     * @throws IllegalArgumentException If <code>filter</code> is invalid or the value of timeout is negative
+     * @throws NullPointerException If <code>bc</code> or <code>lookBack</code> or <code>timeUnit</code> are <code>null</code>
+     * @since 1.3
+     */
+    public static Promise<ServiceEvent> awaitServiceEvent(BundleContext bc, Filter filter, int eventTypeMask, boolean all, LookBack lookBack, long timeout, TimeUnit timeUnit) {
+        return awaitServiceEvent(bc, null, filter, eventTypeMask, all, lookBack, timeout, timeUnit);
+    }
+
+    private static Promise<ServiceEvent> awaitServiceEvent(BundleContext bc, String className, Filter filter, int eventTypeMask, boolean all, LookBack lookBack, long timeout, TimeUnit timeUnit) {
+        return getEventHub(bc).getChannel(ServiceEventChannel.class).await(className, filter, eventTypeMask, all, lookBack, timeout, timeUnit);
+    }
+
+    /**
+     * Wait for defined number of ServiceEvents with event type mask for defined filter.
+     * One listener collects all events.
+     *
+     * @param bc            BundleContext
+     * @param filter        filter (could be null)
+     * @param eventTypeMask ServiceEvent type mask
+     * @param all           use AllServiceListener
+     * @param count         number of events
+     * @param timeout       time interval to wait. If zero, the method will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return ServiceEvents in delivery order or <code>null</code> if less than <code>count</code> events are delivered
+     * @throws IllegalArgumentException If <code>count</code> is not positive or the value of timeout is negative
+     * @throws NullPointerException If <code>bc</code> or <code>timeUnit</code> are <code>null</code>
+     * @since 1.3
+     */
+    public static List<ServiceEvent> waitForServiceEvents(BundleContext bc, Filter filter, int eventTypeMask, boolean all, int count, long timeout, TimeUnit timeUnit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout value is negative");
         }
+        return waitFor(awaitServiceEvents(bc, filter, eventTypeMask, all, count, 0, timeUnit), timeout, timeUnit);
+    }
 
-        public void modifiedService(ServiceReference serviceReference, Object o) {
+    /**
+     * Wait for ServiceEvents with event type mask for all defined filters.
+     * One listener checks all filters.
+     *
+     * @param bc            BundleContext
+     * @param filters       filters
+     * @param eventTypeMask ServiceEvent type mask
+     * @param all           use AllServiceListener
+     * @param timeout       time interval to wait. If zero, the method will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return ServiceEvents that matched filters in delivery order or <code>null</code> if not all filters are matched
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @throws NullPointerException If <code>bc</code> or <code>filters</code> or <code>timeUnit</code> are <code>null</code>
+     * @since 1.3
+     */
+    public static List<ServiceEvent> waitForAllServiceEvents(BundleContext bc, Filter[] filters, int eventTypeMask, boolean all, long timeout, TimeUnit timeUnit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout value is negative");
         }
+        return waitFor(awaitAllServiceEvents(bc, filters, eventTypeMask, all, 0, timeUnit), timeout, timeUnit);
+    }
 
-        public void removedService(ServiceReference serviceReference, Object o) {
+    /**
+     * Wait for ServiceEvent with event type mask for any of defined filters
+     *
+     * @param bc            BundleContext
+     * @param filters       filters
+     * @param eventTypeMask ServiceEvent type mask
+     * @param all           use AllServiceListener
+     * @param timeout       time interval to wait. If zero, the method will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return ServiceEvent or <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @throws NullPointerException If <code>bc</code> or <code>filters</code> or <code>timeUnit</code> are <code>null</code>
+     * @since 1.3
+     */
+    public static ServiceEvent waitForAnyServiceEvent(BundleContext bc, Filter[] filters, int eventTypeMask, boolean all, long timeout, TimeUnit timeUnit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout value is negative");
         }
+        return waitFor(awaitAnyServiceEvent(bc, filters, eventTypeMask, all, 0, timeUnit), timeout, timeUnit);
+    }
+
+    /**
+     * Await defined number of ServiceEvents with event type mask for defined filter without blocking the calling thread.
+     * One listener collects all events. It is removed when returned <code>Promise</code> is completed, cancelled or timed out.
+     *
+     * @param bc            BundleContext
+     * @param filter        filter (could be null)
+     * @param eventTypeMask ServiceEvent type mask
+     * @param all           use AllServiceListener
+     * @param count         number of events
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of ServiceEvents in delivery order.
+     *         It is resolved with <code>null</code> if less than <code>count</code> events are delivered within timeout
+     * @throws IllegalArgumentException If <code>count</code> is not positive or the value of timeout is negative
+     * @throws NullPointerException If <code>bc</code> or <code>timeUnit</code> are <code>null</code>
+     * @since 1.3
+     */
+    public static Promise<List<ServiceEvent>> awaitServiceEvents(BundleContext bc, Filter filter, int eventTypeMask, boolean all, int count, long timeout, TimeUnit timeUnit) {
+        ServiceEventChannel channel = getEventHub(bc).getChannel(ServiceEventChannel.class);
+        return channel.awaitEvents(null, eventTypeMask, channel.matcher(filter, all, eventTypeMask), count, timeout, timeUnit);
     }
 
-    private static class ServiceListenerImpl implements ServiceListener {
-        private int eventTypeMask;
-        private CountDownLatch latch;
+    /**
+     * Await ServiceEvents with event type mask for all defined filters without blocking the calling thread.
+     * One listener checks all filters. It is removed when returned <code>Promise</code> is completed, cancelled or timed out.
+     *
+     * @param bc            BundleContext
+     * @param filters       filters
+     * @param eventTypeMask ServiceEvent type mask
+     * @param all           use AllServiceListener
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of ServiceEvents that matched filters in delivery order.
+     *         It is resolved with <code>null</code> if not all filters are matched within timeout
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @throws NullPointerException If <code>bc</code> or <code>filters</code> or <code>timeUnit</code> are <code>null</code>
+     * @since 1.3
+     */
+    public static Promise<List<ServiceEvent>> awaitAllServiceEvents(BundleContext bc, Filter[] filters, int eventTypeMask, boolean all, long timeout, TimeUnit timeUnit) {
+        ServiceEventChannel channel = getEventHub(bc).getChannel(ServiceEventChannel.class);
+        return channel.awaitAll(eventTypeMask, matchers(channel, filters, eventTypeMask, all), timeout, timeUnit);
+    }
 
-        private ServiceEvent event;
+    /**
+     * Await ServiceEvent with event type mask for any of defined filters without blocking the calling thread.
+     * The listener is removed when returned <code>Promise</code> is completed, cancelled or timed out.
+     *
+     * @param bc            BundleContext
+     * @param filters       filters
+     * @param eventTypeMask ServiceEvent type mask
+     * @param all           use AllServiceListener
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of ServiceEvent. It is resolved with <code>null</code> on timeout
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @throws NullPointerException If <code>bc</code> or <code>filters</code> or <code>timeUnit</code> are <code>null</code>
+     * @since 1.3
+     */
+    public static Promise<ServiceEvent> awaitAnyServiceEvent(BundleContext bc, Filter[] filters, int eventTypeMask, boolean all, long timeout, TimeUnit timeUnit) {
+        ServiceEventChannel channel = getEventHub(bc).getChannel(ServiceEventChannel.class);
+        return channel.awaitAny(eventTypeMask, matchers(channel, filters, eventTypeMask, all), timeout, timeUnit);
+    }
 
-        public ServiceListenerImpl(int eventTypeMask, CountDownLatch latch) {
-            this.eventTypeMask = eventTypeMask;
-            this.latch = latch;
+    private static List<EventMatcher<ServiceEvent>> matchers(ServiceEventChannel channel, Filter[] filters, int eventTypeMask, boolean all) {
+        List<EventMatcher<ServiceEvent>> matchers = new ArrayList<EventMatcher<ServiceEvent>>(filters.length);
+        for (Filter filter : filters) {
+            matchers.add(channel.matcher(filter, all, eventTypeMask));
         }
+        return matchers;
+    }
 
-        public void serviceChanged(ServiceEvent event) {
-            if (match(event)) {
-                this.event = event;
-                latch.countDown();
+    /**
+     * Get registrations of the services that are registered by utilities and still not unregistered
+     *
+     * @param bc BundleContext
+     * @return service registrations in registration order
+     */
+    static List<ServiceRegistration> getRegistrations(BundleContext bc) {
+        synchronized (registrations) {
+            List<ServiceRegistration> list = registrations.get(bc);
+            if (list == null) {
+                return new ArrayList<ServiceRegistration>();
             }
+            removeUnregistered(list);
+            return new ArrayList<ServiceRegistration>(list);
         }
+    }
 
-        private boolean match(ServiceEvent event) {
-            return (eventTypeMask & event.getType()) != 0;
+    private static ServiceRegistration track(BundleContext bc, ServiceRegistration registration) {
+        if (registration == null) {
+            return null;
+        }
+        synchronized (registrations) {
+            for (Iterator<BundleContext> iterator = registrations.keySet().iterator(); iterator.hasNext(); ) {
+                if (!isValid(iterator.next())) {
+                    iterator.remove();
+                }
+            }
+            List<ServiceRegistration> list = registrations.get(bc);
+            if (list == null) {
+                list = new ArrayList<ServiceRegistration>();
+                registrations.put(bc, list);
+            } else {
+                // registrations that are unregistered directly are not referenced any more
+                removeUnregistered(list);
+            }
+            list.add(registration);
         }
+        return registration;
+    }
 
-        public ServiceEvent getServiceEvent() {
-            return event;
+    private static void removeUnregistered(List<ServiceRegistration> list) {
+        for (Iterator<ServiceRegistration> iterator = list.iterator(); iterator.hasNext(); ) {
+            try {
+                iterator.next().getReference();
+            } catch (IllegalStateException e) {
+                iterator.remove();
+            }
         }
     }
 
-    private static class AllServiceListenerImpl extends ServiceListenerImpl implements AllServiceListener {
-        public AllServiceListenerImpl(int eventTypeMask, CountDownLatch latch) {
-            super(eventTypeMask, latch);
+    private static boolean isValid(BundleContext bc) {
+        try {
+            bc.getBundle();
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
         }
     }
+
+    private static Object getService(BundleContext bc, ServiceReference reference) {
+        return reference != null ? bc.getService(reference) : null;
+    }
 }
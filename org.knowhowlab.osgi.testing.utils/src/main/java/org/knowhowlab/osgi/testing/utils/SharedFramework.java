@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils;
+
+import org.knowhowlab.osgi.testing.utils.cmpn.ConfigurationAdminUtils;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.SynchronousBundleListener;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Framework that is shared by tests and reset to its initial state after each test.
+ * <p/>
+ * Initial state is captured with {@link FrameworkSnapshot} when the framework is requested for the first time.
+ * Configurations are captured and restored too if ConfigurationAdmin is available.
+ * <p/>
+ * Every reset replaces a framework boot, so the saved wall-clock time is the boot time multiplied
+ * by the number of resets minus the time of all resets. Test harness that measures the framework boot
+ * should pass it with {@link #setBootTime(long, TimeUnit)}. Otherwise boot time is a rough upper-bound estimate:
+ * the time between the start of the JVM or the later system bundle modification and the first request
+ * of the shared framework.
+ * These statistics are logged with <code>java.util.logging</code> when the bundle of the BundleContext stops.
+ *
+ * @see FrameworkSnapshot
+ * @since 1.3
+ */
+public class SharedFramework {
+    private static final String CONFIGURATION_ADMIN = "org.osgi.service.cm.ConfigurationAdmin";
+    private static final Logger LOG = Logger.getLogger(SharedFramework.class.getName());
+
+    private static final Map<BundleContext, SharedFramework> frameworks = new HashMap<BundleContext, SharedFramework>();
+
+    private final BundleContext bc;
+    private final FrameworkSnapshot snapshot;
+    private final Map<String, Dictionary> configurations;
+    private long bootTime;
+    private int resetCount;
+    private long resetTime;
+
+    private SharedFramework(BundleContext bc) {
+        this.bc = bc;
+        this.bootTime = estimateBootTime(bc);
+        this.snapshot = FrameworkSnapshot.capture(bc);
+        this.configurations = isConfigurationAdminAvailable(bc) ? captureConfigurations(bc) : null;
+    }
+
+    /**
+     * Get shared framework of the BundleContext. The framework state is captured on the first call.
+     *
+     * @param bc BundleContext
+     * @return shared framework
+     * @throws NullPointerException If <code>bc</code> is <code>null</code>
+     */
+    public static SharedFramework getFramework(BundleContext bc) {
+        if (bc == null) {
+            throw new NullPointerException("BundleContext is null");
+        }
+        synchronized (frameworks) {
+            for (Iterator<BundleContext> iterator = frameworks.keySet().iterator(); iterator.hasNext(); ) {
+                if (!isValid(iterator.next())) {
+                    iterator.remove();
+                }
+            }
+            SharedFramework framework = frameworks.get(bc);
+            if (framework == null) {
+                framework = new SharedFramework(bc);
+                framework.logOnStop();
+                frameworks.put(bc, framework);
+            }
+            return framework;
+        }
+    }
+
+    /**
+     * Get the captured framework state
+     *
+     * @return snapshot
+     */
+    public FrameworkSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Reset bundles, services and configurations to the captured state
+     *
+     * @param timeout  time interval to wait for the refresh of changed bundles and for the framework start level change.
+     *                 If zero, the method will wait indefinitely.
+     * @param timeUnit time unit for the time interval
+     * @return aggregated result of bundle operations
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @throws IllegalStateException    If configurations could not be restored
+     * @throws NullPointerException     If <code>timeUnit</code> is <code>null</code>
+     * @see FrameworkSnapshot#restore(FrameworkSnapshot, long, TimeUnit)
+     */
+    public BundleBatchResult reset(long timeout, TimeUnit timeUnit) {
+        long start = System.nanoTime();
+        try {
+            BundleBatchResult result = FrameworkSnapshot.restore(snapshot, timeout, timeUnit);
+            if (configurations != null && isConfigurationAdminAvailable(bc)) {
+                // restore rebinds captured factory configurations to their new pids
+                synchronized (configurations) {
+                    try {
+                        ConfigurationAdminUtils.restoreConfigurations(bc, configurations);
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Unable to restore configurations", e);
+                    }
+                }
+            }
+            return result;
+        } finally {
+            synchronized (this) {
+                resetCount++;
+                resetTime += System.nanoTime() - start;
+            }
+        }
+    }
+
+    /**
+     * Get number of resets
+     *
+     * @return number of resets
+     */
+    public synchronized int getResetCount() {
+        return resetCount;
+    }
+
+    /**
+     * Get framework boot time. It is estimated unless measured boot time is set.
+     *
+     * @param timeUnit time unit of the result
+     * @return boot time
+     */
+    public synchronized long getBootTime(TimeUnit timeUnit) {
+        return timeUnit.convert(bootTime, NANOSECONDS);
+    }
+
+    /**
+     * Set measured framework boot time instead of the estimated one
+     *
+     * @param bootTime boot time
+     * @param timeUnit time unit for the boot time
+     * @throws IllegalArgumentException If the value of boot time is negative
+     * @throws NullPointerException     If <code>timeUnit</code> is <code>null</code>
+     */
+    public synchronized void setBootTime(long bootTime, TimeUnit timeUnit) {
+        if (bootTime < 0) {
+            throw new IllegalArgumentException("boot time value is negative");
+        }
+        this.bootTime = timeUnit.toNanos(bootTime);
+    }
+
+    /**
+     * Get time of all resets
+     *
+     * @param timeUnit time unit of the result
+     * @return reset time
+     */
+    public synchronized long getResetTime(TimeUnit timeUnit) {
+        return timeUnit.convert(resetTime, NANOSECONDS);
+    }
+
+    /**
+     * Get estimated wall-clock time that is saved by resets instead of framework boots
+     *
+     * @param timeUnit time unit of the result
+     * @return saved time. It is negative if resets are slower than boots.
+     */
+    public synchronized long getSavedTime(TimeUnit timeUnit) {
+        return timeUnit.convert(bootTime * resetCount - resetTime, NANOSECONDS);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("SharedFramework[resets: %d, boot time: %dms, reset time: %dms, saved: %dms]",
+                resetCount, getBootTime(MILLISECONDS), getResetTime(MILLISECONDS), getSavedTime(MILLISECONDS));
+    }
+
+    private void logOnStop() {
+        final Bundle bundle = bc.getBundle();
+        bc.addBundleListener(new SynchronousBundleListener() {
+            public void bundleChanged(BundleEvent event) {
+                if (event.getType() == BundleEvent.STOPPING && event.getBundle().equals(bundle)) {
+                    LOG.info(SharedFramework.this.toString());
+                }
+            }
+        });
+    }
+
+    private static long estimateBootTime(BundleContext bc) {
+        // system bundle of a persisted framework could be modified long before the JVM start
+        long start = Math.max(ManagementFactory.getRuntimeMXBean().getStartTime(), bc.getBundle(0).getLastModified());
+        return MILLISECONDS.toNanos(Math.max(0, System.currentTimeMillis() - start));
+    }
+
+    private static boolean isConfigurationAdminAvailable(BundleContext bc) {
+        return bc.getServiceReference(CONFIGURATION_ADMIN) != null;
+    }
+
+    private static Map<String, Dictionary> captureConfigurations(BundleContext bc) {
+        try {
+            return ConfigurationAdminUtils.captureConfigurations(bc);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to capture configurations", e);
+        }
+    }
+
+    private static boolean isValid(BundleContext bc) {
+        try {
+            bc.getBundle();
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,418 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils;
+
+import org.knowhowlab.osgi.testing.utils.async.DeferredPromise;
+import org.knowhowlab.osgi.testing.utils.async.Promise;
+import org.osgi.framework.*;
+import org.osgi.service.packageadmin.ExportedPackage;
+import org.osgi.service.packageadmin.PackageAdmin;
+import org.osgi.service.packageadmin.RequiredBundle;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.knowhowlab.osgi.testing.utils.ServiceUtils.getServiceHandle;
+import static org.knowhowlab.osgi.testing.utils.async.AsyncExecutors.schedule;
+import static org.knowhowlab.osgi.testing.utils.async.Promises.waitFor;
+
+/**
+ * Bundle refresh and resolve utilities.
+ * <p/>
+ * Framework wiring API (<code>org.osgi.framework.wiring.FrameworkWiring</code>) is used when the framework
+ * provides it, otherwise <code>PackageAdmin</code> service is used. Wiring API is detected at runtime,
+ * so the utilities work with R4.2 frameworks too.
+ * <p/>
+ * Refresh requests are batched: bundles that are requested while another refresh of the same BundleContext
+ * is running are refreshed together by one next refresh.
+ *
+ * @see BundleUtils
+ * @since 1.3
+ */
+public class WiringUtils {
+    private static final String FRAMEWORK_WIRING = "org.osgi.framework.wiring.FrameworkWiring";
+
+    private static final Map<BundleContext, RefreshBatch> batches = new HashMap<BundleContext, RefreshBatch>();
+
+    /**
+     * Utility class. Only static methods are available.
+     */
+    private WiringUtils() {
+    }
+
+    /**
+     * Check if the framework provides wiring API
+     *
+     * @param bc BundleContext
+     * @return <code>true</code> if <code>FrameworkWiring</code> is available
+     * @throws NullPointerException If <code>bc</code> is <code>null</code>
+     */
+    public static boolean isFrameworkWiringAvailable(BundleContext bc) {
+        return getFrameworkWiring(bc) != null;
+    }
+
+    /**
+     * Refresh bundles and bundles that depend on them asynchronously
+     *
+     * @param bc      BundleContext
+     * @param bundles bundles to refresh
+     * @return <code>Promise</code> that is resolved with <code>PACKAGES_REFRESHED</code> FrameworkEvent
+     *         when the refresh is finished
+     * @throws NullPointerException If <code>bc</code> or <code>bundles</code> are <code>null</code>
+     */
+    public static Promise<FrameworkEvent> refreshBundlesAsync(BundleContext bc, Collection<Bundle> bundles) {
+        if (bundles == null) {
+            throw new NullPointerException("bundles is null");
+        }
+        return getBatch(bc).refresh(bundles);
+    }
+
+    /**
+     * Refresh bundles and bundles that depend on them and wait until the refresh is finished
+     *
+     * @param bc       BundleContext
+     * @param bundles  bundles to refresh
+     * @param timeout  time interval to wait. If zero, the method will wait indefinitely.
+     * @param timeUnit time unit for the time interval
+     * @return <code>PACKAGES_REFRESHED</code> FrameworkEvent or <code>null</code> on timeout
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @throws NullPointerException     If <code>bc</code>, <code>bundles</code> or <code>timeUnit</code> are <code>null</code>
+     */
+    public static FrameworkEvent refreshBundles(BundleContext bc, Collection<Bundle> bundles, long timeout, TimeUnit timeUnit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout value is negative");
+        }
+        return waitFor(refreshBundlesAsync(bc, bundles), timeout, timeUnit);
+    }
+
+    /**
+     * Resolve bundles with one framework call
+     *
+     * @param bc      BundleContext
+     * @param bundles bundles to resolve
+     * @return <code>true</code> if all bundles are resolved
+     * @throws NullPointerException  If <code>bc</code> or <code>bundles</code> are <code>null</code>
+     * @throws IllegalStateException If neither wiring API nor PackageAdmin are available
+     */
+    public static boolean resolveBundles(BundleContext bc, Collection<Bundle> bundles) {
+        if (bundles == null) {
+            throw new NullPointerException("bundles is null");
+        }
+        Object frameworkWiring = getFrameworkWiring(bc);
+        if (frameworkWiring != null) {
+            return (Boolean) invoke(bc, frameworkWiring, "resolveBundles", new Class[]{Collection.class}, bundles);
+        }
+        ServiceHandle<PackageAdmin> handle = getPackageAdmin(bc);
+        try {
+            return handle.getService().resolveBundles(bundles.toArray(new Bundle[bundles.size()]));
+        } finally {
+            handle.close();
+        }
+    }
+
+    /**
+     * Resolve bundles with one framework call asynchronously
+     *
+     * @param bc      BundleContext
+     * @param bundles bundles to resolve
+     * @return <code>Promise</code> that is resolved with <code>true</code> if all bundles are resolved
+     * @throws NullPointerException If <code>bc</code> or <code>bundles</code> are <code>null</code>
+     */
+    public static Promise<Boolean> resolveBundlesAsync(final BundleContext bc, Collection<Bundle> bundles) {
+        if (bc == null) {
+            throw new NullPointerException("BundleContext is null");
+        }
+        if (bundles == null) {
+            throw new NullPointerException("bundles is null");
+        }
+        final List<Bundle> copy = new ArrayList<Bundle>(bundles);
+        return schedule(new Callable<Boolean>() {
+            public Boolean call() throws Exception {
+                return resolveBundles(bc, copy);
+            }
+        }, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Check if the bundle is a fragment. Bundle headers are checked, so neither wiring API nor
+     * PackageAdmin are required.
+     *
+     * @param bundle bundle
+     * @return <code>true</code> if the bundle has <code>Fragment-Host</code> header
+     * @throws NullPointerException If <code>bundle</code> is <code>null</code>
+     */
+    public static boolean isFragment(Bundle bundle) {
+        return bundle.getHeaders("").get(Constants.FRAGMENT_HOST) != null;
+    }
+
+    /**
+     * Get providers of the bundles. Only wires between given bundles are reported.
+     *
+     * @param bc      BundleContext
+     * @param bundles resolved bundles
+     * @return bundles that provide packages or are required by the bundle, by bundles.
+     *         Map is empty if PackageAdmin is unavailable.
+     */
+    static Map<Bundle, Set<Bundle>> getProviders(BundleContext bc, Collection<Bundle> bundles) {
+        Map<Bundle, Set<Bundle>> providers = new HashMap<Bundle, Set<Bundle>>();
+        ServiceHandle<PackageAdmin> handle = getServiceHandle(bc, PackageAdmin.class);
+        if (handle == null) {
+            return providers;
+        }
+        try {
+            PackageAdmin packageAdmin = handle.getService();
+            Set<Bundle> batch = new HashSet<Bundle>(bundles);
+            for (Bundle provider : batch) {
+                ExportedPackage[] exportedPackages = packageAdmin.getExportedPackages(provider);
+                if (exportedPackages != null) {
+                    for (ExportedPackage exportedPackage : exportedPackages) {
+                        addProvider(providers, batch, provider, exportedPackage.getImportingBundles());
+                    }
+                }
+                if (provider.getSymbolicName() != null) {
+                    RequiredBundle[] requiredBundles = packageAdmin.getRequiredBundles(provider.getSymbolicName());
+                    if (requiredBundles != null) {
+                        for (RequiredBundle requiredBundle : requiredBundles) {
+                            if (provider.equals(requiredBundle.getBundle())) {
+                                addProvider(providers, batch, provider, requiredBundle.getRequiringBundles());
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            handle.close();
+        }
+        return providers;
+    }
+
+    private static void addProvider(Map<Bundle, Set<Bundle>> providers, Set<Bundle> batch, Bundle provider, Bundle[] dependents) {
+        if (dependents == null) {
+            return;
+        }
+        for (Bundle dependent : dependents) {
+            if (!dependent.equals(provider) && batch.contains(dependent)) {
+                Set<Bundle> set = providers.get(dependent);
+                if (set == null) {
+                    set = new HashSet<Bundle>();
+                    providers.put(dependent, set);
+                }
+                set.add(provider);
+            }
+        }
+    }
+
+    private static RefreshBatch getBatch(BundleContext bc) {
+        if (bc == null) {
+            throw new NullPointerException("BundleContext is null");
+        }
+        synchronized (batches) {
+            // sweep batches of stopped bundles
+            Iterator<RefreshBatch> iterator = batches.values().iterator();
+            while (iterator.hasNext()) {
+                if (!isValid(iterator.next().bc)) {
+                    iterator.remove();
+                }
+            }
+            RefreshBatch batch = batches.get(bc);
+            if (batch == null) {
+                batch = new RefreshBatch(bc);
+                batches.put(bc, batch);
+            }
+            return batch;
+        }
+    }
+
+    private static boolean isValid(BundleContext bc) {
+        try {
+            bc.getBundle();
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    private static Object getFrameworkWiring(BundleContext bc) {
+        Bundle systemBundle = bc.getBundle(0);
+        try {
+            Class<?> type = systemBundle.loadClass(FRAMEWORK_WIRING);
+            Method adapt = Bundle.class.getMethod("adapt", Class.class);
+            return adapt.invoke(systemBundle, type);
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (IllegalAccessException e) {
+            return null;
+        } catch (InvocationTargetException e) {
+            return null;
+        }
+    }
+
+    private static ServiceHandle<PackageAdmin> getPackageAdmin(BundleContext bc) {
+        ServiceHandle<PackageAdmin> handle = getServiceHandle(bc, PackageAdmin.class);
+        if (handle == null) {
+            throw new IllegalStateException("Neither FrameworkWiring nor PackageAdmin are available");
+        }
+        return handle;
+    }
+
+    private static Object invoke(BundleContext bc, Object frameworkWiring, String name, Class[] types, Object... args) {
+        try {
+            // method is called through the interface, implementation classes are not always public
+            return bc.getBundle(0).loadClass(FRAMEWORK_WIRING).getMethod(name, types).invoke(frameworkWiring, args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Unable to call FrameworkWiring." + name, e.getCause());
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to call FrameworkWiring." + name, e);
+        }
+    }
+
+    /**
+     * Refresh requests of the BundleContext. Only one refresh is running at a time,
+     * requests that come in meanwhile are collected into the next refresh.
+     */
+    private static class RefreshBatch {
+        private final BundleContext bc;
+        private final Set<Bundle> pending = new LinkedHashSet<Bundle>();
+        private DeferredPromise<FrameworkEvent> pendingPromise;
+        private boolean running;
+
+        private RefreshBatch(BundleContext bc) {
+            this.bc = bc;
+        }
+
+        private Promise<FrameworkEvent> refresh(Collection<Bundle> bundles) {
+            Promise<FrameworkEvent> promise;
+            synchronized (this) {
+                pending.addAll(bundles);
+                if (pendingPromise == null) {
+                    pendingPromise = new DeferredPromise<FrameworkEvent>();
+                }
+                promise = pendingPromise;
+                if (running) {
+                    return promise;
+                }
+                running = true;
+            }
+            next();
+            return promise;
+        }
+
+        private void next() {
+            List<Bundle> bundles;
+            DeferredPromise<FrameworkEvent> promise;
+            synchronized (this) {
+                if (pendingPromise == null) {
+                    running = false;
+                    return;
+                }
+                bundles = new ArrayList<Bundle>(pending);
+                pending.clear();
+                promise = pendingPromise;
+                pendingPromise = null;
+            }
+            RefreshListener listener = new RefreshListener(this, promise);
+            try {
+                start(bundles, listener);
+            } catch (RuntimeException e) {
+                listener.close();
+                promise.fail(e);
+                next();
+            }
+        }
+
+        private void start(List<Bundle> bundles, RefreshListener listener) {
+            Object frameworkWiring = getFrameworkWiring(bc);
+            if (frameworkWiring != null) {
+                // the framework notifies the listener of this refresh only
+                listener.request(Collections.<Bundle>emptyList());
+                invoke(bc, frameworkWiring, "refreshBundles", new Class[]{Collection.class, FrameworkListener[].class},
+                        bundles, new FrameworkListener[]{listener});
+                return;
+            }
+            ServiceHandle<PackageAdmin> handle = getPackageAdmin(bc);
+            try {
+                bc.addBundleListener(listener);
+                bc.addFrameworkListener(listener);
+                listener.request(bundles);
+                handle.getService().refreshPackages(bundles.toArray(new Bundle[bundles.size()]));
+            } finally {
+                handle.close();
+            }
+        }
+    }
+
+    /**
+     * Listener of one refresh. PackageAdmin events carry no reference to the refresh request,
+     * so <code>PACKAGES_REFRESHED</code> is accepted only after the request is made and
+     * all resolved bundles of the batch are unresolved by the refresh.
+     */
+    private static class RefreshListener implements FrameworkListener, SynchronousBundleListener {
+        private final RefreshBatch batch;
+        private final DeferredPromise<FrameworkEvent> promise;
+        private final Set<Bundle> unresolving = new HashSet<Bundle>();
+        private boolean requested;
+        private boolean done;
+
+        private RefreshListener(RefreshBatch batch, DeferredPromise<FrameworkEvent> promise) {
+            this.batch = batch;
+            this.promise = promise;
+        }
+
+        private synchronized void request(Collection<Bundle> bundles) {
+            for (Bundle bundle : bundles) {
+                if ((bundle.getState() & (Bundle.RESOLVED | Bundle.STARTING | Bundle.ACTIVE | Bundle.STOPPING)) != 0) {
+                    unresolving.add(bundle);
+                }
+            }
+            requested = true;
+        }
+
+        public synchronized void bundleChanged(BundleEvent event) {
+            if (requested && event.getType() == BundleEvent.UNRESOLVED) {
+                unresolving.remove(event.getBundle());
+            }
+        }
+
+        public void frameworkEvent(FrameworkEvent event) {
+            if (event.getType() != FrameworkEvent.PACKAGES_REFRESHED) {
+                return;
+            }
+            synchronized (this) {
+                if (done || !requested || !unresolving.isEmpty()) {
+                    return;
+                }
+                done = true;
+            }
+            close();
+            promise.resolve(event);
+            batch.next();
+        }
+
+        private void close() {
+            batch.bc.removeFrameworkListener(this);
+            batch.bc.removeBundleListener(this);
+        }
+    }
+}
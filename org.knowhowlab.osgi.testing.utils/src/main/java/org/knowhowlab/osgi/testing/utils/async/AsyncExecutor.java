@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils.async;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor of delayed actions that are used by <code>*Async</code> utilities methods.
+ * <p/>
+ * Implementation could be registered as OSGi service under this interface name or
+ * configured with {@link AsyncExecutors#EXECUTOR_CLASS_PROPERTY} system property.
+ * Implementations could use {@link DeferredPromise} to complete returned promises.
+ *
+ * @see AsyncExecutors
+ * @see DefaultAsyncExecutor
+ * @since 1.3
+ */
+public interface AsyncExecutor {
+    /**
+     * Schedule a task that becomes enabled after the given delay
+     *
+     * @param task     task to execute
+     * @param delay    time interval to wait before execution. If zero, the task is executed as soon as possible.
+     * @param timeUnit time unit for the time interval
+     * @return A <code>Promise</code> of the task result
+     * @throws NullPointerException If <code>task</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws java.util.concurrent.RejectedExecutionException
+     *                              If the task cannot be scheduled
+     */
+    <T> Promise<T> schedule(Callable<T> task, long delay, TimeUnit timeUnit);
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils.async;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceReference;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous execution utilities class. All delayed actions of the utilities are routed through it.
+ * <p/>
+ * {@link AsyncExecutor} is resolved in the following order:
+ * <ol>
+ * <li>OSGi service registered under {@link AsyncExecutor} interface name</li>
+ * <li>instance of the class that is defined by {@link #EXECUTOR_CLASS_PROPERTY} system property</li>
+ * <li>shared {@link DefaultAsyncExecutor} with {@link #POOL_SIZE_PROPERTY} daemon threads
+ * or virtual threads on Java 21+ (see {@link #VIRTUAL_THREADS_PROPERTY})</li>
+ * </ol>
+ * Shared executor could be released with {@link #shutdown()}, e.g. at the end of test suite.
+ * It is recreated on demand.
+ *
+ * @see AsyncExecutor
+ * @see DefaultAsyncExecutor
+ * @since 1.3
+ */
+public class AsyncExecutors {
+    /**
+     * System property with the class name of {@link AsyncExecutor} implementation.
+     * The class must have public no-arg constructor.
+     */
+    public static final String EXECUTOR_CLASS_PROPERTY = "org.knowhowlab.osgi.testing.utils.async.executor";
+    /**
+     * System property with the number of threads of the shared {@link DefaultAsyncExecutor}
+     */
+    public static final String POOL_SIZE_PROPERTY = "org.knowhowlab.osgi.testing.utils.async.poolSize";
+    /**
+     * System property that enables (default) or disables execution on virtual threads
+     * by the shared {@link DefaultAsyncExecutor}. Virtual threads are used only if JVM supports them.
+     */
+    public static final String VIRTUAL_THREADS_PROPERTY = "org.knowhowlab.osgi.testing.utils.async.virtualThreads";
+
+    private static final Object lock = new Object();
+    private static AsyncExecutor executor;
+
+    /**
+     * Utility class. Only static methods are available.
+     */
+    private AsyncExecutors() {
+    }
+
+    /**
+     * Schedule a task with resolved {@link AsyncExecutor}
+     *
+     * @param task     task to execute
+     * @param delay    time interval to wait before execution. If zero, the task is executed as soon as possible.
+     * @param timeUnit time unit for the time interval
+     * @return A <code>Promise</code> of the task result
+     * @throws NullPointerException If <code>task</code> or <code>timeUnit</code> are <code>null</code>
+     * @since 1.3
+     */
+    public static <T> Promise<T> schedule(Callable<T> task, long delay, TimeUnit timeUnit) {
+        BundleContext bc = getBundleContext();
+        if (bc != null) {
+            try {
+                ServiceReference reference = bc.getServiceReference(AsyncExecutor.class.getName());
+                if (reference != null) {
+                    AsyncExecutor service = (AsyncExecutor) bc.getService(reference);
+                    if (service != null) {
+                        try {
+                            return service.schedule(task, delay, timeUnit);
+                        } finally {
+                            bc.ungetService(reference);
+                        }
+                    }
+                }
+            } catch (IllegalStateException e) {
+                // BundleContext is no longer valid
+            }
+        }
+        return getAsyncExecutor().schedule(task, delay, timeUnit);
+    }
+
+    /**
+     * Get configured or shared {@link AsyncExecutor}. OSGi services are not checked.
+     *
+     * @return configured or shared executor
+     * @throws IllegalStateException If {@link #EXECUTOR_CLASS_PROPERTY} value is invalid
+     * @since 1.3
+     */
+    public static AsyncExecutor getAsyncExecutor() {
+        synchronized (lock) {
+            if (executor == null) {
+                executor = createAsyncExecutor();
+            }
+            return executor;
+        }
+    }
+
+    /**
+     * Shutdown shared {@link AsyncExecutor}. Pending delayed actions are cancelled.
+     * New executor is created by the next asynchronous call.
+     *
+     * @since 1.3
+     */
+    public static void shutdown() {
+        synchronized (lock) {
+            if (executor instanceof DefaultAsyncExecutor) {
+                ((DefaultAsyncExecutor) executor).shutdown();
+            }
+            executor = null;
+        }
+    }
+
+    private static AsyncExecutor createAsyncExecutor() {
+        String className = System.getProperty(EXECUTOR_CLASS_PROPERTY);
+        if (className != null) {
+            try {
+                return (AsyncExecutor) AsyncExecutors.class.getClassLoader().loadClass(className).newInstance();
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to create AsyncExecutor: " + className, e);
+            }
+        }
+        int poolSize = Integer.getInteger(POOL_SIZE_PROPERTY, Math.max(2, Runtime.getRuntime().availableProcessors()));
+        boolean virtualThreads = Boolean.parseBoolean(System.getProperty(VIRTUAL_THREADS_PROPERTY, "true"));
+        return new DefaultAsyncExecutor(poolSize, virtualThreads);
+    }
+
+    private static BundleContext getBundleContext() {
+        Bundle bundle = FrameworkUtil.getBundle(AsyncExecutors.class);
+        return bundle != null ? bundle.getBundleContext() : null;
+    }
+}
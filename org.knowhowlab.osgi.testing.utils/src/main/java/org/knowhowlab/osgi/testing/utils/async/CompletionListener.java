@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils.async;
+
+/**
+ * Listener that is notified when a {@link Promise} is completed
+ *
+ * @param <T> type of the value
+ * @see Promise#whenComplete(CompletionListener)
+ * @since 1.3
+ */
+public interface CompletionListener<T> {
+    /**
+     * Notification about <code>Promise</code> completion
+     *
+     * @param value   resolved value or <code>null</code> if <code>Promise</code> failed
+     * @param failure failure cause or <code>null</code> if <code>Promise</code> is resolved successfully.
+     *                Cancelled <code>Promise</code> is reported with {@link java.util.concurrent.CancellationException}
+     */
+    void completed(T value, Throwable failure);
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils.async;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Default {@link AsyncExecutor} implementation.
+ * <p/>
+ * Delays are tracked by a single daemon timer thread. Expired tasks are executed by
+ * a bounded pool of daemon threads or, if enabled and supported by the JVM (Java 21+),
+ * by virtual threads - one per task.
+ *
+ * @see AsyncExecutors
+ * @since 1.3
+ */
+public class DefaultAsyncExecutor implements AsyncExecutor {
+    /**
+     * Prefix of the pool thread names
+     */
+    private static final String THREAD_NAME_PREFIX = "knowhowlab-osgi-testing-async-";
+    /**
+     * Java 21+ factory method of virtual threads executor
+     */
+    private static final Method VIRTUAL_THREAD_EXECUTOR_FACTORY = findVirtualThreadExecutorFactory();
+
+    private final ScheduledThreadPoolExecutor timer;
+    private final ExecutorService workers;
+    private final boolean virtualThreads;
+    private final Map<ScheduledTask<?>, Boolean> pendingTasks = new ConcurrentHashMap<ScheduledTask<?>, Boolean>();
+
+    /**
+     * Create executor with given pool size of platform threads
+     *
+     * @param poolSize number of pool threads
+     * @throws IllegalArgumentException If <code>poolSize</code> is less than 1
+     */
+    public DefaultAsyncExecutor(int poolSize) {
+        this(poolSize, false);
+    }
+
+    /**
+     * Create executor with given pool size
+     *
+     * @param poolSize       number of pool threads. Ignored if virtual threads are used.
+     * @param virtualThreads execute tasks on virtual threads if they are supported by JVM
+     * @throws IllegalArgumentException If <code>poolSize</code> is less than 1
+     */
+    public DefaultAsyncExecutor(int poolSize, boolean virtualThreads) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("poolSize is less than 1");
+        }
+        timer = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory(THREAD_NAME_PREFIX + "timer-"));
+        // pending delayed actions are dropped on shutdown
+        timer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        ExecutorService virtualThreadExecutor = virtualThreads ? createVirtualThreadExecutor() : null;
+        if (virtualThreadExecutor != null) {
+            this.workers = virtualThreadExecutor;
+            this.virtualThreads = true;
+        } else {
+            this.workers = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory(THREAD_NAME_PREFIX));
+            this.virtualThreads = false;
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if JVM supports virtual threads
+     *
+     * @return <code>true</code> if JVM supports virtual threads
+     */
+    public static boolean isVirtualThreadsSupported() {
+        return VIRTUAL_THREAD_EXECUTOR_FACTORY != null;
+    }
+
+    public <T> Promise<T> schedule(Callable<T> task, long delay, TimeUnit timeUnit) {
+        if (task == null || timeUnit == null) {
+            throw new NullPointerException();
+        }
+        ScheduledTask<T> scheduledTask = new ScheduledTask<T>(task);
+        if (delay <= 0) {
+            scheduledTask.setFuture(workers.submit(scheduledTask));
+            return scheduledTask;
+        }
+        pendingTasks.put(scheduledTask, Boolean.TRUE);
+        try {
+            scheduledTask.setFuture(timer.schedule(scheduledTask.getHandOff(), delay, timeUnit));
+        } catch (RejectedExecutionException e) {
+            pendingTasks.remove(scheduledTask);
+            throw e;
+        }
+        return scheduledTask;
+    }
+
+    /**
+     * Shutdown executor. Pending delayed actions are cancelled, running actions are completed.
+     */
+    public void shutdown() {
+        timer.shutdown();
+        for (ScheduledTask<?> task : pendingTasks.keySet()) {
+            task.cancel(false);
+        }
+        workers.shutdown();
+    }
+
+    /**
+     * Returns <code>true</code> if executor has been shut down
+     *
+     * @return <code>true</code> if executor has been shut down
+     */
+    public boolean isShutdown() {
+        return workers.isShutdown();
+    }
+
+    /**
+     * Returns <code>true</code> if tasks are executed by virtual threads
+     *
+     * @return <code>true</code> if tasks are executed by virtual threads
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    private static Method findVirtualThreadExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService createVirtualThreadExecutor() {
+        if (VIRTUAL_THREAD_EXECUTOR_FACTORY != null) {
+            try {
+                return (ExecutorService) VIRTUAL_THREAD_EXECUTOR_FACTORY.invoke(null);
+            } catch (Exception e) {
+                // fallback to platform threads
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Task that completes its <code>Promise</code>. Delayed tasks are handed off from timer to workers
+     * when their delay is expired
+     */
+    private class ScheduledTask<T> extends DeferredPromise<T> implements Runnable {
+        private final Callable<T> callable;
+        private volatile Future<?> future;
+
+        public ScheduledTask(Callable<T> callable) {
+            this.callable = callable;
+        }
+
+        private void setFuture(Future<?> future) {
+            this.future = future;
+        }
+
+        private Runnable getHandOff() {
+            return new Runnable() {
+                public void run() {
+                    pendingTasks.remove(ScheduledTask.this);
+                    if (isDone()) {
+                        return;
+                    }
+                    try {
+                        future = workers.submit(ScheduledTask.this);
+                    } catch (RejectedExecutionException e) {
+                        fail(e);
+                    }
+                }
+            };
+        }
+
+        public void run() {
+            if (isDone()) {
+                return;
+            }
+            try {
+                resolve(callable.call());
+            } catch (Throwable e) {
+                fail(e);
+            }
+        }
+
+        @Override
+        protected void onCancel(boolean mayInterruptIfRunning) {
+            pendingTasks.remove(this);
+            Future<?> current = future;
+            if (current != null) {
+                current.cancel(mayInterruptIfRunning);
+            }
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final String namePrefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        public DaemonThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, namePrefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils.async;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * {@link Promise} implementation that is completed explicitly with {@link #resolve(Object)} or {@link #fail(Throwable)}.
+ * <p/>
+ * Could be used by {@link AsyncExecutor} implementations and by tests that bridge callbacks into promises.
+ *
+ * @param <T> type of the value
+ * @since 1.3
+ */
+public class DeferredPromise<T> implements Promise<T> {
+    private static final int PENDING = 0;
+    private static final int RESOLVED = 1;
+    private static final int FAILED = 2;
+    private static final int CANCELLED = 3;
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private final List<CompletionListener<? super T>> listeners = new ArrayList<CompletionListener<? super T>>();
+    private int state = PENDING;
+    private T value;
+    private Throwable failure;
+
+    /**
+     * Resolve this <code>Promise</code> with given value
+     *
+     * @param value value
+     * @return <code>true</code> if this call completed the <code>Promise</code>,
+     *         <code>false</code> if it has been already completed
+     */
+    public boolean resolve(T value) {
+        return complete(RESOLVED, value, null);
+    }
+
+    /**
+     * Fail this <code>Promise</code> with given cause
+     *
+     * @param failure failure cause
+     * @return <code>true</code> if this call completed the <code>Promise</code>,
+     *         <code>false</code> if it has been already completed
+     * @throws NullPointerException If <code>failure</code> is <code>null</code>
+     */
+    public boolean fail(Throwable failure) {
+        if (failure == null) {
+            throw new NullPointerException("failure is null");
+        }
+        return complete(FAILED, null, failure);
+    }
+
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (complete(CANCELLED, null, new CancellationException())) {
+            onCancel(mayInterruptIfRunning);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Hook that is called after this <code>Promise</code> has been cancelled.
+     * Could be overridden to stop the underlying action.
+     *
+     * @param mayInterruptIfRunning <code>true</code> if the thread executing the action should be interrupted
+     */
+    protected void onCancel(boolean mayInterruptIfRunning) {
+    }
+
+    public synchronized boolean isCancelled() {
+        return state == CANCELLED;
+    }
+
+    public synchronized boolean isDone() {
+        return state != PENDING;
+    }
+
+    public synchronized boolean isFailed() {
+        return state == FAILED || state == CANCELLED;
+    }
+
+    public T get() throws InterruptedException, ExecutionException {
+        if (!isDone()) {
+            latch.await();
+        }
+        return report();
+    }
+
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!isDone() && !latch.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return report();
+    }
+
+    public <R> Promise<R> thenApply(final Function<? super T, ? extends R> function) {
+        if (function == null) {
+            throw new NullPointerException("function is null");
+        }
+        final DeferredPromise<R> result = new DeferredPromise<R>();
+        whenComplete(new CompletionListener<T>() {
+            public void completed(T value, Throwable failure) {
+                if (failure != null) {
+                    result.fail(failure);
+                    return;
+                }
+                try {
+                    result.resolve(function.apply(value));
+                } catch (Throwable e) {
+                    result.fail(e);
+                }
+            }
+        });
+        return result;
+    }
+
+    public <R> Promise<R> thenCompose(final Function<? super T, ? extends Promise<? extends R>> function) {
+        if (function == null) {
+            throw new NullPointerException("function is null");
+        }
+        final DeferredPromise<R> result = new DeferredPromise<R>();
+        whenComplete(new CompletionListener<T>() {
+            public void completed(T value, Throwable failure) {
+                if (failure != null) {
+                    result.fail(failure);
+                    return;
+                }
+                try {
+                    Promise<? extends R> next = function.apply(value);
+                    if (next == null) {
+                        throw new NullPointerException("Promise is null");
+                    }
+                    next.whenComplete(new CompletionListener<R>() {
+                        public void completed(R value, Throwable failure) {
+                            if (failure != null) {
+                                result.fail(failure);
+                            } else {
+                                result.resolve(value);
+                            }
+                        }
+                    });
+                } catch (Throwable e) {
+                    result.fail(e);
+                }
+            }
+        });
+        return result;
+    }
+
+    public Promise<T> exceptionally(final Function<Throwable, ? extends T> function) {
+        if (function == null) {
+            throw new NullPointerException("function is null");
+        }
+        final DeferredPromise<T> result = new DeferredPromise<T>();
+        whenComplete(new CompletionListener<T>() {
+            public void completed(T value, Throwable failure) {
+                if (failure == null) {
+                    result.resolve(value);
+                    return;
+                }
+                try {
+                    result.resolve(function.apply(failure));
+                } catch (Throwable e) {
+                    result.fail(e);
+                }
+            }
+        });
+        return result;
+    }
+
+    public Promise<T> whenComplete(CompletionListener<? super T> listener) {
+        if (listener == null) {
+            throw new NullPointerException("listener is null");
+        }
+        T completedValue;
+        Throwable completedFailure;
+        synchronized (this) {
+            if (state == PENDING) {
+                listeners.add(listener);
+                return this;
+            }
+            completedValue = value;
+            completedFailure = failure;
+        }
+        notifyListener(listener, completedValue, completedFailure);
+        return this;
+    }
+
+    private boolean complete(int newState, T newValue, Throwable newFailure) {
+        List<CompletionListener<? super T>> toNotify;
+        synchronized (this) {
+            if (state != PENDING) {
+                return false;
+            }
+            state = newState;
+            value = newValue;
+            failure = newFailure;
+            toNotify = new ArrayList<CompletionListener<? super T>>(listeners);
+            listeners.clear();
+        }
+        // listeners are notified before blocked callers are released
+        for (CompletionListener<? super T> listener : toNotify) {
+            notifyListener(listener, newValue, newFailure);
+        }
+        latch.countDown();
+        return true;
+    }
+
+    private void notifyListener(CompletionListener<? super T> listener, T value, Throwable failure) {
+        try {
+            listener.completed(value, failure);
+        } catch (RuntimeException e) {
+            // listener failure does not affect other listeners
+        }
+    }
+
+    private synchronized T report() throws ExecutionException {
+        switch (state) {
+            case CANCELLED:
+                throw new CancellationException();
+            case FAILED:
+                throw new ExecutionException(failure);
+            default:
+                return value;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils.async;
+
+/**
+ * Transformation of a {@link Promise} value used for chaining of asynchronous steps
+ *
+ * @param <T> type of the value
+ * @param <R> type of the result
+ * @see Promise#thenApply(Function)
+ * @see Promise#thenCompose(Function)
+ * @since 1.3
+ */
+public interface Function<T, R> {
+    /**
+     * Apply function to the value
+     *
+     * @param value resolved value
+     * @return result of transformation
+     * @throws Exception if transformation failed. Exception fails the dependent <code>Promise</code>
+     */
+    R apply(T value) throws Exception;
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils.async;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Promise} that is completed from a listener callback.
+ * <p/>
+ * The listener is removed with {@link #removeListener()} as soon as the <code>Promise</code> is completed,
+ * cancelled or timed out. Timed out <code>Promise</code> is resolved with <code>null</code> value,
+ * the same way as blocking <code>waitFor*</code> methods return <code>null</code> on timeout.
+ *
+ * @param <T> type of the value
+ * @since 1.3
+ */
+public abstract class ListenerPromise<T> extends DeferredPromise<T> {
+    private volatile Promise<?> timeoutPromise;
+
+    protected ListenerPromise() {
+        whenComplete(new CompletionListener<T>() {
+            public void completed(T value, Throwable failure) {
+                release();
+            }
+        });
+    }
+
+    /**
+     * Start timeout countdown. Must be called after the listener has been registered.
+     *
+     * @param timeout  time interval to wait. If zero, the <code>Promise</code> waits indefinitely.
+     * @param timeUnit time unit for the time interval
+     * @return this <code>Promise</code>
+     * @throws IllegalArgumentException If the value of timeout is negative. The listener is removed.
+     * @throws NullPointerException     If <code>timeUnit</code> is <code>null</code>
+     */
+    public Promise<T> timeout(long timeout, TimeUnit timeUnit) {
+        if (timeout < 0) {
+            cancel(false);
+            throw new IllegalArgumentException("timeout value is negative");
+        }
+        if (timeUnit == null) {
+            cancel(false);
+            throw new NullPointerException("timeUnit is null");
+        }
+        if (timeout > 0 && !isDone()) {
+            timeoutPromise = AsyncExecutors.schedule(new Callable<Object>() {
+                public Object call() throws Exception {
+                    resolve(null);
+                    return null;
+                }
+            }, timeout, timeUnit);
+            if (isDone()) {
+                cancelTimeout();
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Remove the listener that completes this <code>Promise</code>. Called once on completion.
+     */
+    protected abstract void removeListener();
+
+    private void release() {
+        cancelTimeout();
+        try {
+            removeListener();
+        } catch (IllegalStateException e) {
+            // BundleContext or ServiceRegistration is no longer valid
+        }
+    }
+
+    private void cancelTimeout() {
+        Promise<?> promise = timeoutPromise;
+        if (promise != null) {
+            promise.cancel(false);
+        }
+    }
+}
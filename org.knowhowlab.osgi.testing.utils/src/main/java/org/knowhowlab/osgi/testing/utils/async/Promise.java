@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils.async;
+
+import java.util.concurrent.Future;
+
+/**
+ * A <code>Future</code> that allows to chain dependent asynchronous steps without blocking a thread.
+ * <p/>
+ * Dependent actions are executed by the thread that completes this <code>Promise</code>
+ * or by the calling thread if this <code>Promise</code> is already completed.
+ * Cancelled or failed <code>Promise</code> fails all dependent promises with the same cause.
+ *
+ * @param <T> type of the value
+ * @see DeferredPromise
+ * @since 1.3
+ */
+public interface Promise<T> extends Future<T> {
+    /**
+     * Returns <code>true</code> if this <code>Promise</code> completed with failure
+     *
+     * @return <code>true</code> if this <code>Promise</code> is failed or cancelled
+     */
+    boolean isFailed();
+
+    /**
+     * Returns a new <code>Promise</code> that is resolved with the result of given function
+     * applied to the value of this <code>Promise</code>
+     *
+     * @param function function to apply
+     * @param <R>      type of the result
+     * @return dependent <code>Promise</code>
+     * @throws NullPointerException If <code>function</code> is <code>null</code>
+     */
+    <R> Promise<R> thenApply(Function<? super T, ? extends R> function);
+
+    /**
+     * Returns a new <code>Promise</code> that is completed with the <code>Promise</code> returned
+     * by given function applied to the value of this <code>Promise</code>
+     *
+     * @param function function that starts next asynchronous step
+     * @param <R>      type of the result
+     * @return dependent <code>Promise</code>
+     * @throws NullPointerException If <code>function</code> is <code>null</code>
+     */
+    <R> Promise<R> thenCompose(Function<? super T, ? extends Promise<? extends R>> function);
+
+    /**
+     * Returns a new <code>Promise</code> that is resolved with the value of this <code>Promise</code>
+     * or, if this <code>Promise</code> fails, with the result of given function applied to the failure cause
+     *
+     * @param function recovery function
+     * @return dependent <code>Promise</code>
+     * @throws NullPointerException If <code>function</code> is <code>null</code>
+     */
+    Promise<T> exceptionally(Function<Throwable, ? extends T> function);
+
+    /**
+     * Register listener that is notified when this <code>Promise</code> is completed
+     *
+     * @param listener completion listener
+     * @return this <code>Promise</code>
+     * @throws NullPointerException If <code>listener</code> is <code>null</code>
+     */
+    Promise<T> whenComplete(CompletionListener<? super T> listener);
+}
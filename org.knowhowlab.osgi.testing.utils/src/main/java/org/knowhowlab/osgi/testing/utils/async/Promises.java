@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils.async;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@link Promise} utilities class
+ *
+ * @see Promise
+ * @since 1.3
+ */
+public class Promises {
+    /**
+     * Utility class. Only static methods are available.
+     */
+    private Promises() {
+    }
+
+    /**
+     * Block the calling thread until the future is completed or timeout is elapsed.
+     * Future is cancelled if it is not completed within timeout.
+     *
+     * @param future   future
+     * @param timeout  time interval to wait. If zero, the method will wait indefinitely.
+     * @param timeUnit time unit for the time interval
+     * @param <T>      type of the value
+     * @return value or <code>null</code> if future is not completed, failed or the current thread is interrupted
+     * @throws NullPointerException If <code>future</code> or <code>timeUnit</code> are <code>null</code>
+     */
+    public static <T> T waitFor(Future<T> future, long timeout, TimeUnit timeUnit) {
+        try {
+            return timeout == 0 ? future.get() : future.get(timeout, timeUnit);
+        } catch (InterruptedException e) {
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        } catch (TimeoutException e) {
+            return null;
+        } finally {
+            future.cancel(false);
+        }
+    }
+}
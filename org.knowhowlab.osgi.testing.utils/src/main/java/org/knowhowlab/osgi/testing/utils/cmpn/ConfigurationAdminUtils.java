@@ -16,6 +16,8 @@
 
 package org.knowhowlab.osgi.testing.utils.cmpn;
 
+import org.knowhowlab.osgi.testing.utils.ServiceHandle;
+import org.knowhowlab.osgi.testing.utils.async.Promise;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Filter;
 import org.osgi.framework.InvalidSyntaxException;
@@ -29,7 +31,10 @@ import java.util.concurrent.*;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.knowhowlab.osgi.testing.utils.FilterUtils.and;
 import static org.knowhowlab.osgi.testing.utils.FilterUtils.eq;
-import static org.knowhowlab.osgi.testing.utils.ServiceUtils.getService;
+import static org.knowhowlab.osgi.testing.utils.ServiceUtils.getServiceHandle;
+import static org.knowhowlab.osgi.testing.utils.async.AsyncExecutors.schedule;
+import static org.knowhowlab.osgi.testing.utils.async.Promises.waitFor;
+import static org.knowhowlab.osgi.testing.utils.event.EventHub.getEventHub;
 import static org.osgi.framework.Constants.SERVICE_PID;
 import static org.osgi.service.cm.ConfigurationAdmin.SERVICE_BUNDLELOCATION;
 import static org.osgi.service.cm.ConfigurationAdmin.SERVICE_FACTORYPID;
@@ -97,7 +102,7 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>configurationAdmin</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyConfiguration(ConfigurationAdmin configurationAdmin, String pid, Dictionary properties, long delayInMillis) {
+    public static Promise<Configuration> supplyConfiguration(ConfigurationAdmin configurationAdmin, String pid, Dictionary properties, long delayInMillis) {
         return supplyConfiguration(configurationAdmin, pid, properties, delayInMillis, MILLISECONDS);
     }
 
@@ -112,7 +117,7 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>configurationAdmin</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyConfiguration(ConfigurationAdmin configurationAdmin, String pid, Map properties, long delayInMillis) {
+    public static Promise<Configuration> supplyConfiguration(ConfigurationAdmin configurationAdmin, String pid, Map properties, long delayInMillis) {
         return supplyConfiguration(configurationAdmin, pid, properties, delayInMillis, MILLISECONDS);
     }
 
@@ -128,7 +133,7 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>configurationAdmin</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyConfiguration(ConfigurationAdmin configurationAdmin, String pid, String location, Dictionary properties, long delayInMillis) {
+    public static Promise<Configuration> supplyConfiguration(ConfigurationAdmin configurationAdmin, String pid, String location, Dictionary properties, long delayInMillis) {
         return supplyConfiguration(configurationAdmin, pid, location, properties, delayInMillis, MILLISECONDS);
     }
 
@@ -144,7 +149,7 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>configurationAdmin</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyConfiguration(ConfigurationAdmin configurationAdmin, String pid, String location, Map properties, long delayInMillis) {
+    public static Promise<Configuration> supplyConfiguration(ConfigurationAdmin configurationAdmin, String pid, String location, Map properties, long delayInMillis) {
         return supplyConfiguration(configurationAdmin, pid, location, properties, delayInMillis, MILLISECONDS);
     }
 
@@ -159,7 +164,7 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>bc</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyConfiguration(BundleContext bc, String pid, Dictionary properties, long delayInMillis) {
+    public static Promise<Configuration> supplyConfiguration(BundleContext bc, String pid, Dictionary properties, long delayInMillis) {
         return supplyConfiguration(bc, pid, properties, delayInMillis, MILLISECONDS);
     }
 
@@ -174,7 +179,7 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>bc</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyConfiguration(BundleContext bc, String pid, Map properties, long delayInMillis) {
+    public static Promise<Configuration> supplyConfiguration(BundleContext bc, String pid, Map properties, long delayInMillis) {
         return supplyConfiguration(bc, pid, properties, delayInMillis, MILLISECONDS);
     }
 
@@ -190,7 +195,7 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>bc</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyConfiguration(BundleContext bc, String pid, String location, Dictionary properties, long delayInMillis) {
+    public static Promise<Configuration> supplyConfiguration(BundleContext bc, String pid, String location, Dictionary properties, long delayInMillis) {
         return supplyConfiguration(bc, pid, location, properties, delayInMillis, MILLISECONDS);
     }
 
@@ -206,7 +211,7 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>bc</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyConfiguration(BundleContext bc, String pid, String location, Map properties, long delayInMillis) {
+    public static Promise<Configuration> supplyConfiguration(BundleContext bc, String pid, String location, Map properties, long delayInMillis) {
         return supplyConfiguration(bc, pid, location, properties, delayInMillis, MILLISECONDS);
     }
 
@@ -222,11 +227,11 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>configurationAdmin</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyConfiguration(final ConfigurationAdmin configurationAdmin, final String pid, final Dictionary properties, long delay, TimeUnit timeUnit) {
+    public static Promise<Configuration> supplyConfiguration(final ConfigurationAdmin configurationAdmin, final String pid, final Dictionary properties, long delay, TimeUnit timeUnit) {
         if (configurationAdmin == null) {
             throw new NullPointerException("ConfigurationAdmin is null");
         }
-        return Executors.newSingleThreadScheduledExecutor().schedule(new Callable<Configuration>() {
+        return schedule(new Callable<Configuration>() {
             public Configuration call() throws Exception {
                 Configuration configuration = configurationAdmin.getConfiguration(pid);
                 configuration.update(properties);
@@ -247,7 +252,7 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>configurationAdmin</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyConfiguration(ConfigurationAdmin configurationAdmin, String pid, Map properties, long delay, TimeUnit timeUnit) {
+    public static Promise<Configuration> supplyConfiguration(ConfigurationAdmin configurationAdmin, String pid, Map properties, long delay, TimeUnit timeUnit) {
         return supplyConfiguration(configurationAdmin, pid, toDictionary(properties), delay, timeUnit);
     }
 
@@ -264,11 +269,11 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>configurationAdmin</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyConfiguration(final ConfigurationAdmin configurationAdmin, final String pid, final String location, final Dictionary properties, long delay, TimeUnit timeUnit) {
+    public static Promise<Configuration> supplyConfiguration(final ConfigurationAdmin configurationAdmin, final String pid, final String location, final Dictionary properties, long delay, TimeUnit timeUnit) {
         if (configurationAdmin == null) {
             throw new NullPointerException("ConfigurationAdmin is null");
         }
-        return Executors.newSingleThreadScheduledExecutor().schedule(new Callable<Configuration>() {
+        return schedule(new Callable<Configuration>() {
             public Configuration call() throws Exception {
                 Configuration configuration = configurationAdmin.getConfiguration(pid, location);
                 configuration.update(properties);
@@ -290,7 +295,7 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>configurationAdmin</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyConfiguration(ConfigurationAdmin configurationAdmin, String pid, String location, Map properties, long delay, TimeUnit timeUnit) {
+    public static Promise<Configuration> supplyConfiguration(ConfigurationAdmin configurationAdmin, String pid, String location, Map properties, long delay, TimeUnit timeUnit) {
         return supplyConfiguration(configurationAdmin, pid, location, toDictionary(properties), delay, timeUnit);
     }
 
@@ -306,8 +311,14 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>bc</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyConfiguration(BundleContext bc, String pid, Dictionary properties, long delay, TimeUnit timeUnit) {
-        return supplyConfiguration(getService(bc, ConfigurationAdmin.class), pid, properties, delay, timeUnit);
+    public static Promise<Configuration> supplyConfiguration(BundleContext bc, String pid, Dictionary properties, long delay, TimeUnit timeUnit) {
+        ServiceHandle<ConfigurationAdmin> handle = getConfigurationAdmin(bc);
+        try {
+            return handle.closeOnCompletion(supplyConfiguration(handle.getService(), pid, properties, delay, timeUnit));
+        } catch (RuntimeException e) {
+            handle.close();
+            throw e;
+        }
     }
 
     /**
@@ -322,8 +333,14 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>bc</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyConfiguration(BundleContext bc, String pid, Map properties, long delay, TimeUnit timeUnit) {
-        return supplyConfiguration(getService(bc, ConfigurationAdmin.class), pid, properties, delay, timeUnit);
+    public static Promise<Configuration> supplyConfiguration(BundleContext bc, String pid, Map properties, long delay, TimeUnit timeUnit) {
+        ServiceHandle<ConfigurationAdmin> handle = getConfigurationAdmin(bc);
+        try {
+            return handle.closeOnCompletion(supplyConfiguration(handle.getService(), pid, properties, delay, timeUnit));
+        } catch (RuntimeException e) {
+            handle.close();
+            throw e;
+        }
     }
 
     /**
@@ -339,8 +356,14 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>bc</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyConfiguration(BundleContext bc, String pid, String location, Dictionary properties, long delay, TimeUnit timeUnit) {
-        return supplyConfiguration(getService(bc, ConfigurationAdmin.class), pid, location, properties, delay, timeUnit);
+    public static Promise<Configuration> supplyConfiguration(BundleContext bc, String pid, String location, Dictionary properties, long delay, TimeUnit timeUnit) {
+        ServiceHandle<ConfigurationAdmin> handle = getConfigurationAdmin(bc);
+        try {
+            return handle.closeOnCompletion(supplyConfiguration(handle.getService(), pid, location, properties, delay, timeUnit));
+        } catch (RuntimeException e) {
+            handle.close();
+            throw e;
+        }
     }
 
     /**
@@ -356,8 +379,14 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>bc</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyConfiguration(BundleContext bc, String pid, String location, Map properties, long delay, TimeUnit timeUnit) {
-        return supplyConfiguration(getService(bc, ConfigurationAdmin.class), pid, location, properties, delay, timeUnit);
+    public static Promise<Configuration> supplyConfiguration(BundleContext bc, String pid, String location, Map properties, long delay, TimeUnit timeUnit) {
+        ServiceHandle<ConfigurationAdmin> handle = getConfigurationAdmin(bc);
+        try {
+            return handle.closeOnCompletion(supplyConfiguration(handle.getService(), pid, location, properties, delay, timeUnit));
+        } catch (RuntimeException e) {
+            handle.close();
+            throw e;
+        }
     }
 
     /**
@@ -371,7 +400,7 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>configurationAdmin</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyFactoryConfiguration(ConfigurationAdmin configurationAdmin, String factoryPid, Dictionary properties, long delayInMillis) {
+    public static Promise<Configuration> supplyFactoryConfiguration(ConfigurationAdmin configurationAdmin, String factoryPid, Dictionary properties, long delayInMillis) {
         return supplyFactoryConfiguration(configurationAdmin, factoryPid, properties, delayInMillis, MILLISECONDS);
     }
 
@@ -386,7 +415,7 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>configurationAdmin</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyFactoryConfiguration(ConfigurationAdmin configurationAdmin, String factoryPid, Map properties, long delayInMillis) {
+    public static Promise<Configuration> supplyFactoryConfiguration(ConfigurationAdmin configurationAdmin, String factoryPid, Map properties, long delayInMillis) {
         return supplyFactoryConfiguration(configurationAdmin, factoryPid, properties, delayInMillis, MILLISECONDS);
     }
 
@@ -402,7 +431,7 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>configurationAdmin</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyFactoryConfiguration(ConfigurationAdmin configurationAdmin, String factoryPid, String location, Dictionary properties, long delayInMillis) {
+    public static Promise<Configuration> supplyFactoryConfiguration(ConfigurationAdmin configurationAdmin, String factoryPid, String location, Dictionary properties, long delayInMillis) {
         return supplyFactoryConfiguration(configurationAdmin, factoryPid, location, properties, delayInMillis, MILLISECONDS);
     }
 
@@ -418,7 +447,7 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>configurationAdmin</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyFactoryConfiguration(ConfigurationAdmin configurationAdmin, String factoryPid, String location, Map properties, long delayInMillis) {
+    public static Promise<Configuration> supplyFactoryConfiguration(ConfigurationAdmin configurationAdmin, String factoryPid, String location, Map properties, long delayInMillis) {
         return supplyFactoryConfiguration(configurationAdmin, factoryPid, location, properties, delayInMillis, MILLISECONDS);
     }
 
@@ -433,7 +462,7 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>bc</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyFactoryConfiguration(BundleContext bc, String factoryPid, Dictionary properties, long delayInMillis) {
+    public static Promise<Configuration> supplyFactoryConfiguration(BundleContext bc, String factoryPid, Dictionary properties, long delayInMillis) {
         return supplyFactoryConfiguration(bc, factoryPid, properties, delayInMillis, MILLISECONDS);
     }
 
@@ -448,7 +477,7 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>bc</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyFactoryConfiguration(BundleContext bc, String factoryPid, Map properties, long delayInMillis) {
+    public static Promise<Configuration> supplyFactoryConfiguration(BundleContext bc, String factoryPid, Map properties, long delayInMillis) {
         return supplyFactoryConfiguration(bc, factoryPid, properties, delayInMillis, MILLISECONDS);
     }
 
@@ -464,7 +493,7 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>bc</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyFactoryConfiguration(BundleContext bc, String factoryPid, String location, Dictionary properties, long delayInMillis) {
+    public static Promise<Configuration> supplyFactoryConfiguration(BundleContext bc, String factoryPid, String location, Dictionary properties, long delayInMillis) {
         return supplyFactoryConfiguration(bc, factoryPid, location, properties, delayInMillis, MILLISECONDS);
     }
 
@@ -480,7 +509,7 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>bc</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyFactoryConfiguration(BundleContext bc, String factoryPid, String location, Map properties, long delayInMillis) {
+    public static Promise<Configuration> supplyFactoryConfiguration(BundleContext bc, String factoryPid, String location, Map properties, long delayInMillis) {
         return supplyFactoryConfiguration(bc, factoryPid, location, properties, delayInMillis, MILLISECONDS);
     }
 
@@ -496,11 +525,11 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>configurationAdmin</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyFactoryConfiguration(final ConfigurationAdmin configurationAdmin, final String factoryPid, final Dictionary properties, long delay, TimeUnit timeUnit) {
+    public static Promise<Configuration> supplyFactoryConfiguration(final ConfigurationAdmin configurationAdmin, final String factoryPid, final Dictionary properties, long delay, TimeUnit timeUnit) {
         if (configurationAdmin == null) {
             throw new NullPointerException("ConfigurationAdmin is null");
         }
-        return Executors.newSingleThreadScheduledExecutor().schedule(new Callable<Configuration>() {
+        return schedule(new Callable<Configuration>() {
             public Configuration call() throws Exception {
                 Configuration configuration = configurationAdmin.createFactoryConfiguration(factoryPid);
                 configuration.update(properties);
@@ -521,7 +550,7 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>configurationAdmin</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyFactoryConfiguration(ConfigurationAdmin configurationAdmin, String factoryPid, Map properties, long delay, TimeUnit timeUnit) {
+    public static Promise<Configuration> supplyFactoryConfiguration(ConfigurationAdmin configurationAdmin, String factoryPid, Map properties, long delay, TimeUnit timeUnit) {
         return supplyFactoryConfiguration(configurationAdmin, factoryPid, toDictionary(properties), delay, timeUnit);
     }
 
@@ -538,11 +567,11 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>configurationAdmin</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyFactoryConfiguration(final ConfigurationAdmin configurationAdmin, final String factoryPid, final String location, final Dictionary properties, long delay, TimeUnit timeUnit) {
+    public static Promise<Configuration> supplyFactoryConfiguration(final ConfigurationAdmin configurationAdmin, final String factoryPid, final String location, final Dictionary properties, long delay, TimeUnit timeUnit) {
         if (configurationAdmin == null) {
             throw new NullPointerException("ConfigurationAdmin is null");
         }
-        return Executors.newSingleThreadScheduledExecutor().schedule(new Callable<Configuration>() {
+        return schedule(new Callable<Configuration>() {
             public Configuration call() throws Exception {
                 Configuration configuration = configurationAdmin.createFactoryConfiguration(factoryPid, location);
                 configuration.update(properties);
@@ -564,7 +593,7 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>configurationAdmin</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyFactoryConfiguration(ConfigurationAdmin configurationAdmin, String factoryPid, String location, Map properties, long delay, TimeUnit timeUnit) {
+    public static Promise<Configuration> supplyFactoryConfiguration(ConfigurationAdmin configurationAdmin, String factoryPid, String location, Map properties, long delay, TimeUnit timeUnit) {
         return supplyFactoryConfiguration(configurationAdmin, factoryPid, location, toDictionary(properties), delay, timeUnit);
     }
 
@@ -580,8 +609,14 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>bc</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyFactoryConfiguration(BundleContext bc, String factoryPid, Dictionary properties, long delay, TimeUnit timeUnit) {
-        return supplyFactoryConfiguration(getService(bc, ConfigurationAdmin.class), factoryPid, properties, delay, timeUnit);
+    public static Promise<Configuration> supplyFactoryConfiguration(BundleContext bc, String factoryPid, Dictionary properties, long delay, TimeUnit timeUnit) {
+        ServiceHandle<ConfigurationAdmin> handle = getConfigurationAdmin(bc);
+        try {
+            return handle.closeOnCompletion(supplyFactoryConfiguration(handle.getService(), factoryPid, properties, delay, timeUnit));
+        } catch (RuntimeException e) {
+            handle.close();
+            throw e;
+        }
     }
 
     /**
@@ -596,8 +631,14 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>bc</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyFactoryConfiguration(BundleContext bc, String factoryPid, Map properties, long delay, TimeUnit timeUnit) {
-        return supplyFactoryConfiguration(getService(bc, ConfigurationAdmin.class), factoryPid, properties, delay, timeUnit);
+    public static Promise<Configuration> supplyFactoryConfiguration(BundleContext bc, String factoryPid, Map properties, long delay, TimeUnit timeUnit) {
+        ServiceHandle<ConfigurationAdmin> handle = getConfigurationAdmin(bc);
+        try {
+            return handle.closeOnCompletion(supplyFactoryConfiguration(handle.getService(), factoryPid, properties, delay, timeUnit));
+        } catch (RuntimeException e) {
+            handle.close();
+            throw e;
+        }
     }
 
     /**
@@ -613,8 +654,14 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>bc</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyFactoryConfiguration(BundleContext bc, String factoryPid, String location, Dictionary properties, long delay, TimeUnit timeUnit) {
-        return supplyFactoryConfiguration(getService(bc, ConfigurationAdmin.class), factoryPid, location, properties, delay, timeUnit);
+    public static Promise<Configuration> supplyFactoryConfiguration(BundleContext bc, String factoryPid, String location, Dictionary properties, long delay, TimeUnit timeUnit) {
+        ServiceHandle<ConfigurationAdmin> handle = getConfigurationAdmin(bc);
+        try {
+            return handle.closeOnCompletion(supplyFactoryConfiguration(handle.getService(), factoryPid, location, properties, delay, timeUnit));
+        } catch (RuntimeException e) {
+            handle.close();
+            throw e;
+        }
     }
 
     /**
@@ -630,8 +677,14 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>bc</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<Configuration> supplyFactoryConfiguration(BundleContext bc, String factoryPid, String location, Map properties, long delay, TimeUnit timeUnit) {
-        return supplyFactoryConfiguration(getService(bc, ConfigurationAdmin.class), factoryPid, location, properties, delay, timeUnit);
+    public static Promise<Configuration> supplyFactoryConfiguration(BundleContext bc, String factoryPid, String location, Map properties, long delay, TimeUnit timeUnit) {
+        ServiceHandle<ConfigurationAdmin> handle = getConfigurationAdmin(bc);
+        try {
+            return handle.closeOnCompletion(supplyFactoryConfiguration(handle.getService(), factoryPid, location, properties, delay, timeUnit));
+        } catch (RuntimeException e) {
+            handle.close();
+            throw e;
+        }
     }
 
     /**
@@ -687,7 +740,12 @@ public class ConfigurationAdminUtils {
      * @since 1.0
      */
     public static Configuration getConfiguration(BundleContext bc, String pid) throws IOException {
-        return getConfiguration(getService(bc, ConfigurationAdmin.class), pid);
+        ServiceHandle<ConfigurationAdmin> handle = getConfigurationAdmin(bc);
+        try {
+            return getConfiguration(handle.getService(), pid);
+        } finally {
+            handle.close();
+        }
     }
 
     /**
@@ -703,7 +761,12 @@ public class ConfigurationAdminUtils {
      * @since 1.0
      */
     public static Configuration getConfiguration(BundleContext bc, String pid, String location) throws IOException {
-        return getConfiguration(getService(bc, ConfigurationAdmin.class), pid, location);
+        ServiceHandle<ConfigurationAdmin> handle = getConfigurationAdmin(bc);
+        try {
+            return getConfiguration(handle.getService(), pid, location);
+        } finally {
+            handle.close();
+        }
     }
 
     /**
@@ -739,7 +802,97 @@ public class ConfigurationAdminUtils {
      * @since 1.0
      */
     public static Configuration[] listConfigurations(BundleContext bc, Filter filter) throws IOException {
-        return listConfigurations(getService(bc, ConfigurationAdmin.class), filter);
+        ServiceHandle<ConfigurationAdmin> handle = getConfigurationAdmin(bc);
+        try {
+            return listConfigurations(handle.getService(), filter);
+        } finally {
+            handle.close();
+        }
+    }
+
+    /**
+     * Capture properties of all configurations
+     *
+     * @param bc BundleContext
+     * @return copies of configuration properties by configuration pids
+     * @throws IOException          if access to persistent storage fails
+     * @throws NullPointerException If <code>bc</code> is <code>null</code> or ConfigurationAdmin is unavailable
+     * @see #restoreConfigurations(BundleContext, Map)
+     * @since 1.3
+     */
+    public static Map<String, Dictionary> captureConfigurations(BundleContext bc) throws IOException {
+        ServiceHandle<ConfigurationAdmin> handle = getConfigurationAdmin(bc);
+        try {
+            Map<String, Dictionary> result = new LinkedHashMap<String, Dictionary>();
+            Configuration[] configurations = handle.getService().listConfigurations(null);
+            if (configurations != null) {
+                for (Configuration configuration : configurations) {
+                    Dictionary properties = configuration.getProperties();
+                    if (properties != null) {
+                        result.put(configuration.getPid(), copy(properties));
+                    }
+                }
+            }
+            return result;
+        } catch (InvalidSyntaxException e) {
+            throw new IllegalArgumentException("Unable to use filter", e);
+        } finally {
+            handle.close();
+        }
+    }
+
+    /**
+     * Restore configurations to the captured state. Configurations that are not captured are deleted,
+     * configurations with changed properties are updated, deleted configurations are created again.
+     * Deleted factory configurations are created with new pids, and captured configurations are updated
+     * with their new pids and properties, so the next restore does not recreate them again.
+     *
+     * @param bc             BundleContext
+     * @param configurations captured configuration properties by configuration pids. Map must be modifiable.
+     * @throws IOException          if access to persistent storage fails
+     * @throws NullPointerException If <code>bc</code> or <code>configurations</code> are <code>null</code>
+     *                              or ConfigurationAdmin is unavailable
+     * @see #captureConfigurations(BundleContext)
+     * @since 1.3
+     */
+    public static void restoreConfigurations(BundleContext bc, Map<String, Dictionary> configurations) throws IOException {
+        if (configurations == null) {
+            throw new NullPointerException("configurations is null");
+        }
+        Map<String, Dictionary> current = captureConfigurations(bc);
+        ServiceHandle<ConfigurationAdmin> handle = getConfigurationAdmin(bc);
+        try {
+            ConfigurationAdmin configurationAdmin = handle.getService();
+            Map<String, String> recreated = new HashMap<String, String>();
+            for (String pid : current.keySet()) {
+                if (!configurations.containsKey(pid)) {
+                    configurationAdmin.getConfiguration(pid, null).delete();
+                }
+            }
+            for (Map.Entry<String, Dictionary> entry : configurations.entrySet()) {
+                Dictionary properties = current.get(entry.getKey());
+                if (properties == null) {
+                    String factoryPid = (String) entry.getValue().get(SERVICE_FACTORYPID);
+                    Configuration configuration = factoryPid != null
+                            ? configurationAdmin.createFactoryConfiguration(factoryPid, null)
+                            : configurationAdmin.getConfiguration(entry.getKey(), null);
+                    configuration.update(copy(entry.getValue()));
+                    if (!configuration.getPid().equals(entry.getKey())) {
+                        recreated.put(entry.getKey(), configuration.getPid());
+                    }
+                } else if (!equals(properties, entry.getValue())) {
+                    configurationAdmin.getConfiguration(entry.getKey(), null).update(copy(entry.getValue()));
+                }
+            }
+            // captured factory configurations are rebound to their new pids
+            for (Map.Entry<String, String> entry : recreated.entrySet()) {
+                Dictionary properties = copy(configurations.remove(entry.getKey()));
+                properties.put(SERVICE_PID, entry.getValue());
+                configurations.put(entry.getValue(), properties);
+            }
+        } finally {
+            handle.close();
+        }
     }
 
     /**
@@ -803,31 +956,47 @@ public class ConfigurationAdminUtils {
      * @since 1.0
      */
     public static ConfigurationEvent waitForConfigurationEvent(BundleContext bc, int eventTypeMask, String pid, String factoryPid, String location, long timeout, TimeUnit timeUnit) {
-        CountDownLatch latch = new CountDownLatch(1);
-
-        long timeoutInMillis = timeUnit.toMillis(timeout);
-        ConfigurationListenerImpl listener = new ConfigurationListenerImpl(eventTypeMask, pid, factoryPid, location, latch);
-        ServiceRegistration registration = bc.registerService(ConfigurationListener.class.getName(), listener, null);
-
-        try {
-            return waitForConfigurationEvent(listener, timeoutInMillis, latch);
-        } catch (InterruptedException e) {
-            return null;
-        } finally {
-            registration.unregister();
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout value is negative");
         }
+        return waitFor(awaitConfigurationEvent(bc, eventTypeMask, pid, factoryPid, location, 0, timeUnit), timeout, timeUnit);
     }
 
-    private static ConfigurationEvent waitForConfigurationEvent(ConfigurationListenerImpl listener, long timeoutInMillis, CountDownLatch latch)
-            throws InterruptedException {
-        if (timeoutInMillis < 0) {
-            throw new IllegalArgumentException("timeout value is negative");
-        }
-        if (latch.await(timeoutInMillis, MILLISECONDS)) {
-            return listener.getConfigurationEvent();
-        } else {
-            return null;
-        }
+    /**
+     * Await ConfigurationEvent without blocking the calling thread.
+     * The listener is unregistered when returned <code>Promise</code> is completed, cancelled or timed out.
+     *
+     * @param bc            BundleContext
+     * @param eventTypeMask ConfigurationEvent type mask
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of ConfigurationEvent. It is resolved with <code>null</code> on timeout
+     * @throws NullPointerException     If <code>bc</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @since 1.3
+     */
+    public static Promise<ConfigurationEvent> awaitConfigurationEvent(BundleContext bc, int eventTypeMask, long timeout, TimeUnit timeUnit) {
+        return awaitConfigurationEvent(bc, eventTypeMask, null, null, null, timeout, timeUnit);
+    }
+
+    /**
+     * Await ConfigurationEvent without blocking the calling thread.
+     * The listener is unregistered when returned <code>Promise</code> is completed, cancelled or timed out.
+     *
+     * @param bc            BundleContext
+     * @param eventTypeMask ConfigurationEvent type mask
+     * @param pid           PID
+     * @param factoryPid    FactoryPID
+     * @param location      bundle location
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of ConfigurationEvent. It is resolved with <code>null</code> on timeout
+     * @throws NullPointerException     If <code>bc</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @since 1.3
+     */
+    public static Promise<ConfigurationEvent> awaitConfigurationEvent(BundleContext bc, int eventTypeMask, String pid, String factoryPid, String location, long timeout, TimeUnit timeUnit) {
+        return getEventHub(bc).getChannel(ConfigurationEventChannel.class).await(eventTypeMask, pid, factoryPid, location, timeout, timeUnit);
     }
 
     // delete config
@@ -842,7 +1011,7 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>configurationAdmin</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<String> deleteConfiguration(ConfigurationAdmin configurationAdmin, String pid, long delayInMillis) {
+    public static Promise<String> deleteConfiguration(ConfigurationAdmin configurationAdmin, String pid, long delayInMillis) {
         return deleteConfiguration(configurationAdmin, pid, delayInMillis, MILLISECONDS);
     }
 
@@ -857,7 +1026,7 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>configurationAdmin</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<String> deleteConfiguration(ConfigurationAdmin configurationAdmin, String pid, String location, long delayInMillis) {
+    public static Promise<String> deleteConfiguration(ConfigurationAdmin configurationAdmin, String pid, String location, long delayInMillis) {
         return deleteConfiguration(configurationAdmin, pid, location, delayInMillis, MILLISECONDS);
     }
 
@@ -871,7 +1040,7 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>configurationAdmin</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<String[]> deleteConfigurations(ConfigurationAdmin configurationAdmin, Filter filter, long delayInMillis) {
+    public static Promise<String[]> deleteConfigurations(ConfigurationAdmin configurationAdmin, Filter filter, long delayInMillis) {
         return deleteConfigurations(configurationAdmin, filter, delayInMillis, MILLISECONDS);
     }
 
@@ -885,7 +1054,7 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>bc</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<String> deleteConfiguration(BundleContext bc, String pid, long delayInMillis) {
+    public static Promise<String> deleteConfiguration(BundleContext bc, String pid, long delayInMillis) {
         return deleteConfiguration(bc, pid, delayInMillis, MILLISECONDS);
     }
 
@@ -900,7 +1069,7 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>bc</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<String> deleteConfiguration(BundleContext bc, String pid, String location, long delayInMillis) {
+    public static Promise<String> deleteConfiguration(BundleContext bc, String pid, String location, long delayInMillis) {
         return deleteConfiguration(bc, pid, location, delayInMillis, MILLISECONDS);
     }
 
@@ -914,7 +1083,7 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>bc</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<String[]> deleteConfigurations(BundleContext bc, Filter filter, long delayInMillis) {
+    public static Promise<String[]> deleteConfigurations(BundleContext bc, Filter filter, long delayInMillis) {
         return deleteConfigurations(bc, filter, delayInMillis, MILLISECONDS);
     }
 
@@ -929,14 +1098,14 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>configurationAdmin</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<String> deleteConfiguration(final ConfigurationAdmin configurationAdmin, final String pid, long delay, TimeUnit timeUnit) {
+    public static Promise<String> deleteConfiguration(final ConfigurationAdmin configurationAdmin, final String pid, long delay, TimeUnit timeUnit) {
         if (configurationAdmin == null) {
             throw new NullPointerException("ConfigurationAdmin is null");
         }
         if (pid == null) {
             throw new NullPointerException("service.pid is null");
         }
-        return Executors.newSingleThreadScheduledExecutor().schedule(new Callable<String>() {
+        return schedule(new Callable<String>() {
             public String call() throws Exception {
                 Configuration configuration = getConfiguration(configurationAdmin, pid);
                 if (configuration != null) {
@@ -959,14 +1128,14 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>configurationAdmin</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<String> deleteConfiguration(final ConfigurationAdmin configurationAdmin, final String pid, final String location, long delay, TimeUnit timeUnit) {
+    public static Promise<String> deleteConfiguration(final ConfigurationAdmin configurationAdmin, final String pid, final String location, long delay, TimeUnit timeUnit) {
         if (configurationAdmin == null) {
             throw new NullPointerException("ConfigurationAdmin is null");
         }
         if (pid == null) {
             throw new NullPointerException("service.pid is null");
         }
-        return Executors.newSingleThreadScheduledExecutor().schedule(new Callable<String>() {
+        return schedule(new Callable<String>() {
             public String call() throws Exception {
                 Configuration configuration = getConfiguration(configurationAdmin, pid, location);
                 if (configuration != null) {
@@ -988,11 +1157,11 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>configurationAdmin</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<String[]> deleteConfigurations(final ConfigurationAdmin configurationAdmin, final Filter filter, long delay, TimeUnit timeUnit) {
+    public static Promise<String[]> deleteConfigurations(final ConfigurationAdmin configurationAdmin, final Filter filter, long delay, TimeUnit timeUnit) {
         if (configurationAdmin == null) {
             throw new NullPointerException("ConfigurationAdmin is null");
         }
-        return Executors.newSingleThreadScheduledExecutor().schedule(new Callable<String[]>() {
+        return schedule(new Callable<String[]>() {
             public String[] call() throws Exception {
                 Configuration[] configurations = listConfigurations(configurationAdmin, filter);
                 String[] result = null;
@@ -1025,8 +1194,14 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>bc</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<String> deleteConfiguration(BundleContext bc, String pid, long delay, TimeUnit timeUnit) {
-        return deleteConfiguration(getService(bc, ConfigurationAdmin.class), pid, delay, timeUnit);
+    public static Promise<String> deleteConfiguration(BundleContext bc, String pid, long delay, TimeUnit timeUnit) {
+        ServiceHandle<ConfigurationAdmin> handle = getConfigurationAdmin(bc);
+        try {
+            return handle.closeOnCompletion(deleteConfiguration(handle.getService(), pid, delay, timeUnit));
+        } catch (RuntimeException e) {
+            handle.close();
+            throw e;
+        }
     }
 
     /**
@@ -1041,8 +1216,14 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>bc</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<String> deleteConfiguration(BundleContext bc, String pid, String location, long delay, TimeUnit timeUnit) {
-        return deleteConfiguration(getService(bc, ConfigurationAdmin.class), pid, location, delay, timeUnit);
+    public static Promise<String> deleteConfiguration(BundleContext bc, String pid, String location, long delay, TimeUnit timeUnit) {
+        ServiceHandle<ConfigurationAdmin> handle = getConfigurationAdmin(bc);
+        try {
+            return handle.closeOnCompletion(deleteConfiguration(handle.getService(), pid, location, delay, timeUnit));
+        } catch (RuntimeException e) {
+            handle.close();
+            throw e;
+        }
     }
 
     /**
@@ -1056,8 +1237,14 @@ public class ConfigurationAdminUtils {
      * @throws NullPointerException If <code>bc</code> is <code>null</code>
      * @since 1.0
      */
-    public static Future<String[]> deleteConfigurations(BundleContext bc, Filter filter, long delay, TimeUnit timeUnit) {
-        return deleteConfigurations(getService(bc, ConfigurationAdmin.class), filter, delay, timeUnit);
+    public static Promise<String[]> deleteConfigurations(BundleContext bc, Filter filter, long delay, TimeUnit timeUnit) {
+        ServiceHandle<ConfigurationAdmin> handle = getConfigurationAdmin(bc);
+        try {
+            return handle.closeOnCompletion(deleteConfigurations(handle.getService(), filter, delay, timeUnit));
+        } catch (RuntimeException e) {
+            handle.close();
+            throw e;
+        }
     }
 
     /**
@@ -1100,41 +1287,34 @@ public class ConfigurationAdminUtils {
         return new Hashtable<Object, Object>(properties);
     }
 
-    private static class ConfigurationListenerImpl implements ConfigurationListener {
-        private int eventTypeMask;
-        private String pid;
-        private String factoryPid;
-        private String location;
-        private CountDownLatch latch;
-
-        private ConfigurationEvent event;
-
-        public ConfigurationListenerImpl(int eventTypeMask, String pid, String factoryPid, String location, CountDownLatch latch) {
-            this.eventTypeMask = eventTypeMask;
-            this.pid = pid;
-            this.factoryPid = factoryPid;
-            this.location = location;
-            this.latch = latch;
+    private static Dictionary copy(Dictionary properties) {
+        Hashtable<Object, Object> result = new Hashtable<Object, Object>();
+        for (Enumeration keys = properties.keys(); keys.hasMoreElements(); ) {
+            Object key = keys.nextElement();
+            result.put(key, properties.get(key));
         }
+        return result;
+    }
 
-        public void configurationEvent(ConfigurationEvent event) {
-            if (match(event)) {
-                this.event = event;
-                latch.countDown();
-            }
+    private static boolean equals(Dictionary properties1, Dictionary properties2) {
+        if (properties1.size() != properties2.size()) {
+            return false;
         }
-
-        private boolean match(ConfigurationEvent event) {
-            return (pid == null || event.getPid().equals(pid))
-                    && (factoryPid == null || event.getFactoryPid().equals(factoryPid))
-                    && (location == null || event.getReference().getBundle().getLocation().equals(location))
-                    && (eventTypeMask & event.getType()) != 0;
+        for (Enumeration keys = properties1.keys(); keys.hasMoreElements(); ) {
+            Object key = keys.nextElement();
+            // arrays are compared by content
+            if (!Arrays.deepEquals(new Object[]{properties1.get(key)}, new Object[]{properties2.get(key)})) {
+                return false;
+            }
         }
+        return true;
+    }
 
-        public ConfigurationEvent getConfigurationEvent() {
-            return event;
+    private static ServiceHandle<ConfigurationAdmin> getConfigurationAdmin(BundleContext bc) {
+        ServiceHandle<ConfigurationAdmin> handle = getServiceHandle(bc, ConfigurationAdmin.class);
+        if (handle == null) {
+            throw new NullPointerException("ConfigurationAdmin is null");
         }
-
+        return handle;
     }
-
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils.cmpn;
+
+import org.knowhowlab.osgi.testing.utils.async.Promise;
+import org.knowhowlab.osgi.testing.utils.event.EventChannel;
+import org.knowhowlab.osgi.testing.utils.event.EventMatcher;
+import org.knowhowlab.osgi.testing.utils.event.EventStep;
+import org.knowhowlab.osgi.testing.utils.event.LookBack;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.cm.ConfigurationEvent;
+import org.osgi.service.cm.ConfigurationListener;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ConfigurationEvent channel. One {@link ConfigurationListener} is registered for all waiters.
+ * Waiters are indexed by PID.
+ *
+ * @see org.knowhowlab.osgi.testing.utils.event.EventHub
+ * @since 1.3
+ */
+public class ConfigurationEventChannel extends EventChannel<ConfigurationEvent> implements ConfigurationListener {
+    private ServiceRegistration registration;
+
+    public void configurationEvent(ConfigurationEvent event) {
+        dispatch(event);
+    }
+
+    /**
+     * Await ConfigurationEvent
+     *
+     * @param eventTypeMask ConfigurationEvent type mask
+     * @param pid           PID (could be null)
+     * @param factoryPid    FactoryPID (could be null)
+     * @param location      bundle location (could be null)
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of ConfigurationEvent. It is resolved with <code>null</code> on timeout
+     * @throws NullPointerException     If <code>timeUnit</code> is <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     */
+    public Promise<ConfigurationEvent> await(int eventTypeMask, String pid, String factoryPid, String location,
+                                             long timeout, TimeUnit timeUnit) {
+        return await(pid, eventTypeMask, matcher(pid, factoryPid, location), LookBack.NONE, timeout, timeUnit);
+    }
+
+    /**
+     * Create matcher of ConfigurationEvents
+     *
+     * @param pid        PID (could be null)
+     * @param factoryPid FactoryPID (could be null)
+     * @param location   bundle location (could be null)
+     * @return ConfigurationEvent matcher
+     */
+    public EventMatcher<ConfigurationEvent> matcher(final String pid, final String factoryPid, final String location) {
+        return new EventMatcher<ConfigurationEvent>() {
+            public boolean matches(ConfigurationEvent event) {
+                return (pid == null || pid.equals(event.getPid()))
+                        && (factoryPid == null || factoryPid.equals(event.getFactoryPid()))
+                        && (location == null || location.equals(event.getReference().getBundle().getLocation()));
+            }
+        };
+    }
+
+    /**
+     * Create event sequence step of ConfigurationEvent
+     *
+     * @param eventTypeMask ConfigurationEvent type mask
+     * @param pid           PID (could be null)
+     * @param factoryPid    FactoryPID (could be null)
+     * @param location      bundle location (could be null)
+     * @return event sequence step
+     */
+    public static EventStep<ConfigurationEvent> step(int eventTypeMask, final String pid, final String factoryPid, final String location) {
+        return new EventStep<ConfigurationEvent>(ConfigurationEventChannel.class, eventTypeMask) {
+            @Override
+            protected EventMatcher<? super ConfigurationEvent> createMatcher(EventChannel<ConfigurationEvent> channel) {
+                return ((ConfigurationEventChannel) channel).matcher(pid, factoryPid, location);
+            }
+
+            @Override
+            public String toString() {
+                return String.format("ConfigurationEvent[%s - %s, %s, %s]", getEventTypeMask(), pid, factoryPid, location);
+            }
+        };
+    }
+
+    @Override
+    protected void register(BundleContext bc) {
+        registration = bc.registerService(ConfigurationListener.class.getName(), this, null);
+    }
+
+    @Override
+    protected void unregister(BundleContext bc) {
+        registration.unregister();
+    }
+
+    @Override
+    protected int getEventType(ConfigurationEvent event) {
+        return event.getType();
+    }
+
+    @Override
+    protected String[] getKeys(ConfigurationEvent event) {
+        return new String[]{event.getPid()};
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils.cmpn;
+
+import org.knowhowlab.osgi.testing.utils.async.Promise;
+import org.knowhowlab.osgi.testing.utils.event.EventChannel;
+import org.knowhowlab.osgi.testing.utils.event.EventMatcher;
+import org.knowhowlab.osgi.testing.utils.event.EventStep;
+import org.knowhowlab.osgi.testing.utils.event.LookBack;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Filter;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
+
+import java.util.Arrays;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.osgi.service.event.EventConstants.EVENT_TOPIC;
+
+/**
+ * EventAdmin events channel. One {@link EventHandler} is registered for all topics.
+ * Waiters of one exact topic are indexed by the topic, waiters of several or wildcard topics are checked for every event.
+ *
+ * @see org.knowhowlab.osgi.testing.utils.event.EventHub
+ * @since 1.3
+ */
+public class EventAdminChannel extends EventChannel<Event> implements EventHandler {
+    private static final String WILDCARD = "*";
+
+    private ServiceRegistration registration;
+
+    public void handleEvent(Event event) {
+        dispatch(event);
+    }
+
+    /**
+     * Await Event with topics and filter
+     *
+     * @param topics   topics. Topics could end with wildcard. If <code>null</code>, Event with any topic is matched
+     * @param filter   filter (could be null)
+     * @param timeout  time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit time unit for the time interval
+     * @return <code>Promise</code> of Event. It is resolved with <code>null</code> on timeout
+     * @throws NullPointerException     If <code>timeUnit</code> is <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     */
+    public Promise<Event> await(String[] topics, Filter filter, long timeout, TimeUnit timeUnit) {
+        return await(getKey(topics), -1, matcher(topics, filter), LookBack.NONE, timeout, timeUnit);
+    }
+
+    /**
+     * Await defined number of Events with topics and filter. One waiter collects all events.
+     *
+     * @param topics   topics. Topics could end with wildcard. If <code>null</code>, Event with any topic is matched
+     * @param filter   filter (could be null)
+     * @param count    number of events
+     * @param timeout  time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit time unit for the time interval
+     * @return <code>Promise</code> of Events in delivery order.
+     *         It is resolved with <code>null</code> if less than <code>count</code> events are delivered within timeout
+     * @throws NullPointerException     If <code>timeUnit</code> is <code>null</code>
+     * @throws IllegalArgumentException If <code>count</code> is not positive or the value of timeout is negative
+     */
+    public Promise<List<Event>> awaitEvents(String[] topics, Filter filter, int count, long timeout, TimeUnit timeUnit) {
+        return awaitEvents(getKey(topics), -1, matcher(topics, filter), count, timeout, timeUnit);
+    }
+
+    /**
+     * Create matcher of Events with topics and filter
+     *
+     * @param topics topics. Topics could end with wildcard. If <code>null</code>, Event with any topic is matched
+     * @param filter filter (could be null)
+     * @return Event matcher
+     */
+    public EventMatcher<Event> matcher(final String[] topics, final Filter filter) {
+        return new EventMatcher<Event>() {
+            public boolean matches(Event event) {
+                return matchTopic(topics, event.getTopic())
+                        && (filter == null || event.matches(filter));
+            }
+        };
+    }
+
+    /**
+     * Create event sequence step of Event with topics and filter
+     *
+     * @param topics topics. Topics could end with wildcard. If <code>null</code>, Event with any topic is matched
+     * @param filter filter (could be null)
+     * @return event sequence step
+     */
+    public static EventStep<Event> step(final String[] topics, final Filter filter) {
+        return new EventStep<Event>(EventAdminChannel.class, -1) {
+            @Override
+            protected EventMatcher<? super Event> createMatcher(EventChannel<Event> channel) {
+                return ((EventAdminChannel) channel).matcher(topics, filter);
+            }
+
+            @Override
+            public String toString() {
+                return String.format("Event[%s, %s]", topics != null ? Arrays.asList(topics) : null, filter);
+            }
+        };
+    }
+
+    @Override
+    protected void register(BundleContext bc) {
+        Dictionary<String, Object> props = new Hashtable<String, Object>();
+        props.put(EVENT_TOPIC, WILDCARD);
+        registration = bc.registerService(EventHandler.class.getName(), this, props);
+    }
+
+    @Override
+    protected void unregister(BundleContext bc) {
+        registration.unregister();
+    }
+
+    @Override
+    protected int getEventType(Event event) {
+        return -1;
+    }
+
+    @Override
+    protected String[] getKeys(Event event) {
+        return new String[]{event.getTopic()};
+    }
+
+    private static String getKey(String[] topics) {
+        if (topics != null && topics.length == 1 && !topics[0].endsWith(WILDCARD)) {
+            return topics[0];
+        }
+        return null;
+    }
+
+    private static boolean matchTopic(String[] topics, String topic) {
+        if (topics == null) {
+            return true;
+        }
+        for (String pattern : topics) {
+            if (pattern.endsWith(WILDCARD)) {
+                if (topic.startsWith(pattern.substring(0, pattern.length() - 1))) {
+                    return true;
+                }
+            } else if (pattern.equals(topic)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
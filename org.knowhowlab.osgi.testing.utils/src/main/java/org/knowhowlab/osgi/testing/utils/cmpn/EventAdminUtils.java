@@ -16,22 +16,25 @@
 
 package org.knowhowlab.osgi.testing.utils.cmpn;
 
+import org.knowhowlab.osgi.testing.utils.ServiceHandle;
+import org.knowhowlab.osgi.testing.utils.async.Promise;
+import org.knowhowlab.osgi.testing.utils.event.EventMatcher;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Filter;
-import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
-import org.osgi.service.event.EventHandler;
 
+import java.util.ArrayList;
 import java.util.Dictionary;
-import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
-import static org.knowhowlab.osgi.testing.utils.ServiceUtils.getService;
-import static org.osgi.service.event.EventConstants.EVENT_FILTER;
-import static org.osgi.service.event.EventConstants.EVENT_TOPIC;
+import static org.knowhowlab.osgi.testing.utils.ServiceUtils.getServiceHandle;
+import static org.knowhowlab.osgi.testing.utils.async.AsyncExecutors.schedule;
+import static org.knowhowlab.osgi.testing.utils.async.Promises.waitFor;
+import static org.knowhowlab.osgi.testing.utils.event.EventHub.getEventHub;
 
 /**
  * OSGi EventAdmin utilities class
@@ -59,7 +62,7 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> postEvent(EventAdmin eventAdmin, String topic, long delayInMillis) {
+    public static Promise<?> postEvent(EventAdmin eventAdmin, String topic, long delayInMillis) {
         return postEvent(eventAdmin, topic, delayInMillis, MILLISECONDS);
     }
 
@@ -73,7 +76,7 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> postEvent(EventAdmin eventAdmin, String topic, Dictionary properties, long delayInMillis) {
+    public static Promise<?> postEvent(EventAdmin eventAdmin, String topic, Dictionary properties, long delayInMillis) {
         return postEvent(eventAdmin, topic, properties, delayInMillis, MILLISECONDS);
     }
 
@@ -87,7 +90,7 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> postEvent(EventAdmin eventAdmin, String topic, Map properties, long delayInMillis) {
+    public static Promise<?> postEvent(EventAdmin eventAdmin, String topic, Map properties, long delayInMillis) {
         return postEvent(eventAdmin, topic, properties, delayInMillis, MILLISECONDS);
     }
 
@@ -100,7 +103,7 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> postEvent(EventAdmin eventAdmin, Event event, long delayInMillis) {
+    public static Promise<?> postEvent(EventAdmin eventAdmin, Event event, long delayInMillis) {
         return postEvent(eventAdmin, event, delayInMillis, MILLISECONDS);
     }
 
@@ -113,7 +116,7 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> postEvent(BundleContext bc, String topic, long delayInMillis) {
+    public static Promise<?> postEvent(BundleContext bc, String topic, long delayInMillis) {
         return postEvent(bc, topic, delayInMillis, MILLISECONDS);
     }
 
@@ -127,7 +130,7 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> postEvent(BundleContext bc, String topic, Dictionary properties, long delayInMillis) {
+    public static Promise<?> postEvent(BundleContext bc, String topic, Dictionary properties, long delayInMillis) {
         return postEvent(bc, topic, properties, delayInMillis, MILLISECONDS);
     }
 
@@ -141,7 +144,7 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> postEvent(BundleContext bc, String topic, Map properties, long delayInMillis) {
+    public static Promise<?> postEvent(BundleContext bc, String topic, Map properties, long delayInMillis) {
         return postEvent(bc, topic, properties, delayInMillis, MILLISECONDS);
     }
 
@@ -154,7 +157,7 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> postEvent(BundleContext bc, Event event, long delayInMillis) {
+    public static Promise<?> postEvent(BundleContext bc, Event event, long delayInMillis) {
         return postEvent(bc, event, delayInMillis, MILLISECONDS);
     }
 
@@ -168,7 +171,7 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> postEvent(EventAdmin eventAdmin, String topic, long delay, TimeUnit timeUnit) {
+    public static Promise<?> postEvent(EventAdmin eventAdmin, String topic, long delay, TimeUnit timeUnit) {
         return postEvent(eventAdmin, new Event(topic, (Map) null), delay, timeUnit);
     }
 
@@ -183,7 +186,7 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> postEvent(EventAdmin eventAdmin, String topic, Dictionary properties, long delay, TimeUnit timeUnit) {
+    public static Promise<?> postEvent(EventAdmin eventAdmin, String topic, Dictionary properties, long delay, TimeUnit timeUnit) {
         return postEvent(eventAdmin, new Event(topic, properties), delay, timeUnit);
     }
 
@@ -198,7 +201,7 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> postEvent(EventAdmin eventAdmin, String topic, Map properties, long delay, TimeUnit timeUnit) {
+    public static Promise<?> postEvent(EventAdmin eventAdmin, String topic, Map properties, long delay, TimeUnit timeUnit) {
         return postEvent(eventAdmin, new Event(topic, properties), delay, timeUnit);
     }
 
@@ -212,8 +215,8 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> postEvent(BundleContext bc, String topic, long delay, TimeUnit timeUnit) {
-        return postEvent(getService(bc, EventAdmin.class), new Event(topic, (Map) null), delay, timeUnit);
+    public static Promise<?> postEvent(BundleContext bc, String topic, long delay, TimeUnit timeUnit) {
+        return deliverEvent(bc, new Event(topic, (Map) null), true, delay, timeUnit);
     }
 
     /**
@@ -227,8 +230,8 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> postEvent(BundleContext bc, String topic, Dictionary properties, long delay, TimeUnit timeUnit) {
-        return postEvent(getService(bc, EventAdmin.class), new Event(topic, properties), delay, timeUnit);
+    public static Promise<?> postEvent(BundleContext bc, String topic, Dictionary properties, long delay, TimeUnit timeUnit) {
+        return deliverEvent(bc, new Event(topic, properties), true, delay, timeUnit);
     }
 
     /**
@@ -242,8 +245,8 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> postEvent(BundleContext bc, String topic, Map properties, long delay, TimeUnit timeUnit) {
-        return postEvent(getService(bc, EventAdmin.class), new Event(topic, properties), delay, timeUnit);
+    public static Promise<?> postEvent(BundleContext bc, String topic, Map properties, long delay, TimeUnit timeUnit) {
+        return deliverEvent(bc, new Event(topic, properties), true, delay, timeUnit);
     }
 
     /**
@@ -256,8 +259,8 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> postEvent(BundleContext bc, final Event event, long delay, TimeUnit timeUnit) {
-        return postEvent(getService(bc, EventAdmin.class), event, delay, timeUnit);
+    public static Promise<?> postEvent(BundleContext bc, final Event event, long delay, TimeUnit timeUnit) {
+        return deliverEvent(bc, event, true, delay, timeUnit);
     }
 
     /**
@@ -270,11 +273,11 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> postEvent(final EventAdmin eventAdmin, final Event event, long delay, TimeUnit timeUnit) {
+    public static Promise<?> postEvent(final EventAdmin eventAdmin, final Event event, long delay, TimeUnit timeUnit) {
         if (eventAdmin == null) {
             throw new NullPointerException("EventAdmin is null");
         }
-        return Executors.newSingleThreadScheduledExecutor().schedule(new Callable<Object>() {
+        return schedule(new Callable<Object>() {
             public Object call() throws Exception {
                 eventAdmin.postEvent(event);
                 return null;
@@ -291,7 +294,7 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> sendEvent(EventAdmin eventAdmin, String topic, long delayInMillis) {
+    public static Promise<?> sendEvent(EventAdmin eventAdmin, String topic, long delayInMillis) {
         return sendEvent(eventAdmin, topic, delayInMillis, MILLISECONDS);
     }
 
@@ -305,7 +308,7 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> sendEvent(EventAdmin eventAdmin, String topic, Dictionary properties, long delayInMillis) {
+    public static Promise<?> sendEvent(EventAdmin eventAdmin, String topic, Dictionary properties, long delayInMillis) {
         return sendEvent(eventAdmin, topic, properties, delayInMillis, MILLISECONDS);
     }
 
@@ -319,7 +322,7 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> sendEvent(EventAdmin eventAdmin, String topic, Map properties, long delayInMillis) {
+    public static Promise<?> sendEvent(EventAdmin eventAdmin, String topic, Map properties, long delayInMillis) {
         return sendEvent(eventAdmin, topic, properties, delayInMillis, MILLISECONDS);
     }
 
@@ -332,7 +335,7 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> sendEvent(EventAdmin eventAdmin, Event event, long delayInMillis) {
+    public static Promise<?> sendEvent(EventAdmin eventAdmin, Event event, long delayInMillis) {
         return sendEvent(eventAdmin, event, delayInMillis, MILLISECONDS);
     }
 
@@ -345,7 +348,7 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> sendEvent(BundleContext bc, String topic, long delayInMillis) {
+    public static Promise<?> sendEvent(BundleContext bc, String topic, long delayInMillis) {
         return sendEvent(bc, topic, delayInMillis, MILLISECONDS);
     }
 
@@ -359,7 +362,7 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> sendEvent(BundleContext bc, String topic, Dictionary properties, long delayInMillis) {
+    public static Promise<?> sendEvent(BundleContext bc, String topic, Dictionary properties, long delayInMillis) {
         return sendEvent(bc, topic, properties, delayInMillis, MILLISECONDS);
     }
 
@@ -373,7 +376,7 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> sendEvent(BundleContext bc, String topic, Map properties, long delayInMillis) {
+    public static Promise<?> sendEvent(BundleContext bc, String topic, Map properties, long delayInMillis) {
         return sendEvent(bc, topic, properties, delayInMillis, MILLISECONDS);
     }
 
@@ -386,7 +389,7 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> sendEvent(BundleContext bc, Event event, long delayInMillis) {
+    public static Promise<?> sendEvent(BundleContext bc, Event event, long delayInMillis) {
         return sendEvent(bc, event, delayInMillis, MILLISECONDS);
     }
 
@@ -400,7 +403,7 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> sendEvent(EventAdmin eventAdmin, String topic, long delay, TimeUnit timeUnit) {
+    public static Promise<?> sendEvent(EventAdmin eventAdmin, String topic, long delay, TimeUnit timeUnit) {
         return sendEvent(eventAdmin, new Event(topic, (Map) null), delay, timeUnit);
     }
 
@@ -415,7 +418,7 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> sendEvent(EventAdmin eventAdmin, String topic, Dictionary properties, long delay, TimeUnit timeUnit) {
+    public static Promise<?> sendEvent(EventAdmin eventAdmin, String topic, Dictionary properties, long delay, TimeUnit timeUnit) {
         return sendEvent(eventAdmin, new Event(topic, properties), delay, timeUnit);
     }
 
@@ -430,7 +433,7 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> sendEvent(EventAdmin eventAdmin, String topic, Map properties, long delay, TimeUnit timeUnit) {
+    public static Promise<?> sendEvent(EventAdmin eventAdmin, String topic, Map properties, long delay, TimeUnit timeUnit) {
         return sendEvent(eventAdmin, new Event(topic, properties), delay, timeUnit);
     }
 
@@ -444,8 +447,8 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> sendEvent(BundleContext bc, String topic, long delay, TimeUnit timeUnit) {
-        return sendEvent(getService(bc, EventAdmin.class), new Event(topic, (Map) null), delay, timeUnit);
+    public static Promise<?> sendEvent(BundleContext bc, String topic, long delay, TimeUnit timeUnit) {
+        return deliverEvent(bc, new Event(topic, (Map) null), false, delay, timeUnit);
     }
 
     /**
@@ -459,8 +462,8 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> sendEvent(BundleContext bc, String topic, Dictionary properties, long delay, TimeUnit timeUnit) {
-        return sendEvent(getService(bc, EventAdmin.class), new Event(topic, properties), delay, timeUnit);
+    public static Promise<?> sendEvent(BundleContext bc, String topic, Dictionary properties, long delay, TimeUnit timeUnit) {
+        return deliverEvent(bc, new Event(topic, properties), false, delay, timeUnit);
     }
 
     /**
@@ -474,8 +477,8 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> sendEvent(BundleContext bc, String topic, Map properties, long delay, TimeUnit timeUnit) {
-        return sendEvent(getService(bc, EventAdmin.class), new Event(topic, properties), delay, timeUnit);
+    public static Promise<?> sendEvent(BundleContext bc, String topic, Map properties, long delay, TimeUnit timeUnit) {
+        return deliverEvent(bc, new Event(topic, properties), false, delay, timeUnit);
     }
 
     /**
@@ -488,8 +491,8 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> sendEvent(BundleContext bc, final Event event, long delay, TimeUnit timeUnit) {
-        return sendEvent(getService(bc, EventAdmin.class), event, delay, timeUnit);
+    public static Promise<?> sendEvent(BundleContext bc, final Event event, long delay, TimeUnit timeUnit) {
+        return deliverEvent(bc, event, false, delay, timeUnit);
     }
 
     /**
@@ -502,11 +505,11 @@ public class EventAdminUtils {
      * @return The Future's <tt>get</tt> method will return <tt>null</tt> upon <em>successful</em> completion.
      * @since 1.0
      */
-    public static Future<?> sendEvent(final EventAdmin eventAdmin, final Event event, long delay, TimeUnit timeUnit) {
+    public static Promise<?> sendEvent(final EventAdmin eventAdmin, final Event event, long delay, TimeUnit timeUnit) {
         if (eventAdmin == null) {
             throw new NullPointerException("EventAdmin is null");
         }
-        return Executors.newSingleThreadScheduledExecutor().schedule(new Callable<Object>() {
+        return schedule(new Callable<Object>() {
             public Object call() throws Exception {
                 eventAdmin.sendEvent(event);
                 return null;
@@ -600,26 +603,7 @@ public class EventAdminUtils {
      * @since 1.0
      */
     public static Event waitForEvent(BundleContext bc, String topic, Filter filter, long timeout, TimeUnit timeUnit) {
-        CountDownLatch latch = new CountDownLatch(1);
-
-        long timeoutInMillis = timeUnit.toMillis(timeout);
-        EventHandlerImpl handler = new EventHandlerImpl(latch);
-        Dictionary<String, Object> props = new Hashtable<String, Object>();
-        if (topic != null) {
-            props.put(EVENT_TOPIC, topic);
-        }
-        if (filter != null) {
-            props.put(EVENT_FILTER, filter.toString());
-        }
-        ServiceRegistration registration = bc.registerService(EventHandler.class.getName(), handler, props);
-
-        try {
-            return waitForEvent(handler, timeoutInMillis, latch);
-        } catch (InterruptedException e) {
-            return null;
-        } finally {
-            registration.unregister();
-        }
+        return waitForEvent(bc, topic != null ? new String[]{topic} : null, filter, timeout, timeUnit);
     }
 
     /**
@@ -650,56 +634,208 @@ public class EventAdminUtils {
      * @since 1.0
      */
     public static Event waitForEvent(BundleContext bc, String[] topics, Filter filter, long timeout, TimeUnit timeUnit) {
-        CountDownLatch latch = new CountDownLatch(1);
-
-        long timeoutInMillis = timeUnit.toMillis(timeout);
-        EventHandlerImpl handler = new EventHandlerImpl(latch);
-        Dictionary<String, Object> props = new Hashtable<String, Object>();
-        if (topics != null) {
-            props.put(EVENT_TOPIC, topics);
-        }
-        if (filter != null) {
-            props.put(EVENT_FILTER, filter.toString());
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout value is negative");
         }
-        ServiceRegistration registration = bc.registerService(EventHandler.class.getName(), handler, props);
+        return waitFor(awaitEvent(bc, topics, filter, 0, timeUnit), timeout, timeUnit);
+    }
 
-        try {
-            return waitForEvent(handler, timeoutInMillis, latch);
-        } catch (InterruptedException e) {
-            return null;
-        } finally {
-            registration.unregister();
+    /**
+     * Await Event with topic without blocking the calling thread.
+     * The handler is unregistered when returned <code>Promise</code> is completed, cancelled or timed out.
+     *
+     * @param bc       BundleContext
+     * @param topic    topic
+     * @param timeout  time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit time unit for the time interval
+     * @return <code>Promise</code> of Event. It is resolved with <code>null</code> on timeout
+     * @throws NullPointerException     If <code>bc</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @since 1.3
+     */
+    public static Promise<Event> awaitEvent(BundleContext bc, String topic, long timeout, TimeUnit timeUnit) {
+        return awaitEvent(bc, topic, null, timeout, timeUnit);
+    }
+
+    /**
+     * Await Event with topic and filter without blocking the calling thread.
+     * The handler is unregistered when returned <code>Promise</code> is completed, cancelled or timed out.
+     *
+     * @param bc       BundleContext
+     * @param topic    topic
+     * @param filter   filter
+     * @param timeout  time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit time unit for the time interval
+     * @return <code>Promise</code> of Event. It is resolved with <code>null</code> on timeout
+     * @throws NullPointerException     If <code>bc</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @since 1.3
+     */
+    public static Promise<Event> awaitEvent(BundleContext bc, String topic, Filter filter, long timeout, TimeUnit timeUnit) {
+        return awaitEvent(bc, topic != null ? new String[]{topic} : null, filter, timeout, timeUnit);
+    }
+
+    /**
+     * Await Event with topics and filter without blocking the calling thread.
+     * The handler is unregistered when returned <code>Promise</code> is completed, cancelled or timed out.
+     *
+     * @param bc       BundleContext
+     * @param topics   topics
+     * @param filter   filter
+     * @param timeout  time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit time unit for the time interval
+     * @return <code>Promise</code> of Event. It is resolved with <code>null</code> on timeout
+     * @throws NullPointerException     If <code>bc</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @since 1.3
+     */
+    public static Promise<Event> awaitEvent(BundleContext bc, String[] topics, Filter filter, long timeout, TimeUnit timeUnit) {
+        return getEventHub(bc).getChannel(EventAdminChannel.class).await(topics, filter, timeout, timeUnit);
+    }
+
+    /**
+     * Wait for defined number of Events with topics and filter. One handler collects all events.
+     *
+     * @param bc       BundleContext
+     * @param topics   topics (could be null)
+     * @param filter   filter (could be null)
+     * @param count    number of events
+     * @param timeout  time interval to wait. If zero, the method will wait indefinitely.
+     * @param timeUnit time unit for the time interval
+     * @return Events in delivery order or <code>null</code> if less than <code>count</code> events are delivered
+     * @throws NullPointerException     If <code>bc</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If <code>count</code> is not positive or the value of timeout is negative
+     * @since 1.3
+     */
+    public static List<Event> waitForEvents(BundleContext bc, String[] topics, Filter filter, int count, long timeout, TimeUnit timeUnit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout value is negative");
         }
+        return waitFor(awaitEvents(bc, topics, filter, count, 0, timeUnit), timeout, timeUnit);
     }
 
-    private static Event waitForEvent(EventHandlerImpl handler, long timeoutInMillis, CountDownLatch latch)
-            throws InterruptedException {
-        if (timeoutInMillis < 0) {
+    /**
+     * Wait for Events that match all defined filters. One handler checks all filters.
+     * Event topic could be matched with <code>event.topics</code> property.
+     *
+     * @param bc       BundleContext
+     * @param filters  filters
+     * @param timeout  time interval to wait. If zero, the method will wait indefinitely.
+     * @param timeUnit time unit for the time interval
+     * @return Events that matched filters in delivery order or <code>null</code> if not all filters are matched
+     * @throws NullPointerException     If <code>bc</code> or <code>filters</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @since 1.3
+     */
+    public static List<Event> waitForAllEvents(BundleContext bc, Filter[] filters, long timeout, TimeUnit timeUnit) {
+        if (timeout < 0) {
             throw new IllegalArgumentException("timeout value is negative");
         }
-        if (latch.await(timeoutInMillis, MILLISECONDS)) {
-            return handler.getEvent();
-        } else {
-            return null;
+        return waitFor(awaitAllEvents(bc, filters, 0, timeUnit), timeout, timeUnit);
+    }
+
+    /**
+     * Wait for Event that matches any of defined filters.
+     * Event topic could be matched with <code>event.topics</code> property.
+     *
+     * @param bc       BundleContext
+     * @param filters  filters
+     * @param timeout  time interval to wait. If zero, the method will wait indefinitely.
+     * @param timeUnit time unit for the time interval
+     * @return Event or <code>null</code>
+     * @throws NullPointerException     If <code>bc</code> or <code>filters</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @since 1.3
+     */
+    public static Event waitForAnyEvent(BundleContext bc, Filter[] filters, long timeout, TimeUnit timeUnit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout value is negative");
         }
+        return waitFor(awaitAnyEvent(bc, filters, 0, timeUnit), timeout, timeUnit);
     }
 
-    private static class EventHandlerImpl implements EventHandler {
-        private CountDownLatch latch;
+    /**
+     * Await defined number of Events with topics and filter without blocking the calling thread.
+     * One handler collects all events. It is unregistered when returned <code>Promise</code> is completed, cancelled or timed out.
+     *
+     * @param bc       BundleContext
+     * @param topics   topics (could be null)
+     * @param filter   filter (could be null)
+     * @param count    number of events
+     * @param timeout  time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit time unit for the time interval
+     * @return <code>Promise</code> of Events in delivery order.
+     *         It is resolved with <code>null</code> if less than <code>count</code> events are delivered within timeout
+     * @throws NullPointerException     If <code>bc</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If <code>count</code> is not positive or the value of timeout is negative
+     * @since 1.3
+     */
+    public static Promise<List<Event>> awaitEvents(BundleContext bc, String[] topics, Filter filter, int count, long timeout, TimeUnit timeUnit) {
+        return getEventHub(bc).getChannel(EventAdminChannel.class).awaitEvents(topics, filter, count, timeout, timeUnit);
+    }
+
+    /**
+     * Await Events that match all defined filters without blocking the calling thread.
+     * One handler checks all filters. It is unregistered when returned <code>Promise</code> is completed, cancelled or timed out.
+     *
+     * @param bc       BundleContext
+     * @param filters  filters
+     * @param timeout  time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit time unit for the time interval
+     * @return <code>Promise</code> of Events that matched filters in delivery order.
+     *         It is resolved with <code>null</code> if not all filters are matched within timeout
+     * @throws NullPointerException     If <code>bc</code> or <code>filters</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @since 1.3
+     */
+    public static Promise<List<Event>> awaitAllEvents(BundleContext bc, Filter[] filters, long timeout, TimeUnit timeUnit) {
+        EventAdminChannel channel = getEventHub(bc).getChannel(EventAdminChannel.class);
+        return channel.awaitAll(-1, matchers(channel, filters), timeout, timeUnit);
+    }
 
-        private Event event;
+    /**
+     * Await Event that matches any of defined filters without blocking the calling thread.
+     * The handler is unregistered when returned <code>Promise</code> is completed, cancelled or timed out.
+     *
+     * @param bc       BundleContext
+     * @param filters  filters
+     * @param timeout  time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit time unit for the time interval
+     * @return <code>Promise</code> of Event. It is resolved with <code>null</code> on timeout
+     * @throws NullPointerException     If <code>bc</code> or <code>filters</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @since 1.3
+     */
+    public static Promise<Event> awaitAnyEvent(BundleContext bc, Filter[] filters, long timeout, TimeUnit timeUnit) {
+        EventAdminChannel channel = getEventHub(bc).getChannel(EventAdminChannel.class);
+        return channel.awaitAny(-1, matchers(channel, filters), timeout, timeUnit);
+    }
 
-        public EventHandlerImpl(CountDownLatch latch) {
-            this.latch = latch;
+    private static List<EventMatcher<Event>> matchers(EventAdminChannel channel, Filter[] filters) {
+        List<EventMatcher<Event>> matchers = new ArrayList<EventMatcher<Event>>(filters.length);
+        for (Filter filter : filters) {
+            matchers.add(channel.matcher(null, filter));
         }
+        return matchers;
+    }
 
-        public void handleEvent(Event event) {
-            this.event = event;
-            latch.countDown();
+    private static Promise<?> deliverEvent(BundleContext bc, Event event, boolean post, long delay, TimeUnit timeUnit) {
+        ServiceHandle<EventAdmin> handle = getEventAdmin(bc);
+        try {
+            EventAdmin eventAdmin = handle.getService();
+            Promise<?> promise = post ? postEvent(eventAdmin, event, delay, timeUnit) : sendEvent(eventAdmin, event, delay, timeUnit);
+            return handle.closeOnCompletion(promise);
+        } catch (RuntimeException e) {
+            handle.close();
+            throw e;
         }
+    }
 
-        public Event getEvent() {
-            return event;
+    private static ServiceHandle<EventAdmin> getEventAdmin(BundleContext bc) {
+        ServiceHandle<EventAdmin> handle = getServiceHandle(bc, EventAdmin.class);
+        if (handle == null) {
+            throw new NullPointerException("EventAdmin is null");
         }
+        return handle;
     }
 }
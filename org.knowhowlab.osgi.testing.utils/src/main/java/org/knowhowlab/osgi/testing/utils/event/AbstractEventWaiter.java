@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils.event;
+
+import org.knowhowlab.osgi.testing.utils.async.ListenerPromise;
+
+/**
+ * Pending wait that is registered in {@link EventChannel} index.
+ * <p/>
+ * Waiter is indexed by the key (e.g. symbolic name, objectClass, topic) and by event type mask.
+ * It receives dispatched events that pass key and event type checks until it is completed, cancelled
+ * or timed out, then it is removed from the index.
+ *
+ * @param <E> type of the event
+ * @param <T> type of the value
+ * @see EventWaiter
+ * @since 1.3
+ */
+public abstract class AbstractEventWaiter<E, T> extends ListenerPromise<T> {
+    private final String key;
+    private final int eventTypeMask;
+    private volatile EventChannel<E> channel;
+
+    AbstractEventWaiter(String key, int eventTypeMask) {
+        this.key = key;
+        this.eventTypeMask = eventTypeMask;
+    }
+
+    /**
+     * Returns index key
+     *
+     * @return index key or <code>null</code>
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Returns event type mask
+     *
+     * @return event type mask
+     */
+    public int getEventTypeMask() {
+        return eventTypeMask;
+    }
+
+    /**
+     * Handle dispatched event that is already matched by key and event type
+     *
+     * @param event event
+     */
+    abstract void onEvent(E event);
+
+    void setChannel(EventChannel<E> channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    protected void removeListener() {
+        EventChannel<E> current = channel;
+        if (current != null) {
+            current.remove(this);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils.event;
+
+import org.knowhowlab.osgi.testing.utils.async.Promise;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.Version;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BundleEvent channel. Waiters are indexed by bundle symbolic name.
+ *
+ * @see EventHub
+ * @since 1.3
+ */
+public class BundleEventChannel extends EventChannel<BundleEvent> implements BundleListener {
+    public void bundleChanged(BundleEvent event) {
+        dispatch(event);
+    }
+
+    /**
+     * Await BundleEvent with event type mask for defined bundle
+     *
+     * @param symbolicName  symbolicName
+     * @param version       version (could be null)
+     * @param eventTypeMask BundleEvent type mask
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of BundleEvent. It is resolved with <code>null</code> on timeout
+     * @throws NullPointerException     If <code>symbolicName</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     */
+    public Promise<BundleEvent> await(String symbolicName, Version version, int eventTypeMask, long timeout, TimeUnit timeUnit) {
+        return await(symbolicName, version, eventTypeMask, LookBack.NONE, timeout, timeUnit);
+    }
+
+    /**
+     * Await BundleEvent with event type mask for defined bundle
+     *
+     * @param symbolicName  symbolicName
+     * @param version       version (could be null)
+     * @param eventTypeMask BundleEvent type mask
+     * @param lookBack      look-back window to check recent events
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of BundleEvent. It is resolved with <code>null</code> on timeout
+     * @throws NullPointerException     If <code>symbolicName</code>, <code>lookBack</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     */
+    public Promise<BundleEvent> await(String symbolicName, Version version, int eventTypeMask, LookBack lookBack,
+                                       long timeout, TimeUnit timeUnit) {
+        return await(symbolicName, eventTypeMask, matcher(symbolicName, version), lookBack, timeout, timeUnit);
+    }
+
+    /**
+     * Create matcher of BundleEvents for defined bundle
+     *
+     * @param symbolicName symbolicName
+     * @param version      version (could be null)
+     * @return BundleEvent matcher
+     * @throws NullPointerException If <code>symbolicName</code> is <code>null</code>
+     */
+    public EventMatcher<BundleEvent> matcher(final String symbolicName, final Version version) {
+        if (symbolicName == null) {
+            throw new NullPointerException("symbolicName is null");
+        }
+        return new EventMatcher<BundleEvent>() {
+            public boolean matches(BundleEvent event) {
+                Bundle bundle = event.getBundle();
+                return symbolicName.equals(bundle.getSymbolicName())
+                        && (version == null || version.equals(bundle.getVersion()));
+            }
+        };
+    }
+
+    /**
+     * Create event sequence step of BundleEvent with event type mask for defined bundle
+     *
+     * @param symbolicName  symbolicName
+     * @param version       version (could be null)
+     * @param eventTypeMask BundleEvent type mask
+     * @return event sequence step
+     * @throws NullPointerException If <code>symbolicName</code> is <code>null</code>
+     */
+    public static EventStep<BundleEvent> step(final String symbolicName, final Version version, int eventTypeMask) {
+        if (symbolicName == null) {
+            throw new NullPointerException("symbolicName is null");
+        }
+        return new EventStep<BundleEvent>(BundleEventChannel.class, eventTypeMask) {
+            @Override
+            protected EventMatcher<? super BundleEvent> createMatcher(EventChannel<BundleEvent> channel) {
+                return ((BundleEventChannel) channel).matcher(symbolicName, version);
+            }
+
+            @Override
+            public String toString() {
+                return String.format("BundleEvent[%s - %s[%s]]", getEventTypeMask(), symbolicName, version);
+            }
+        };
+    }
+
+    @Override
+    protected void register(BundleContext bc) {
+        bc.addBundleListener(this);
+    }
+
+    @Override
+    protected void unregister(BundleContext bc) {
+        bc.removeBundleListener(this);
+    }
+
+    @Override
+    protected int getEventType(BundleEvent event) {
+        return event.getType();
+    }
+
+    @Override
+    protected String[] getKeys(BundleEvent event) {
+        String symbolicName = event.getBundle().getSymbolicName();
+        return symbolicName == null ? NO_KEYS : new String[]{symbolicName};
+    }
+}
@@ -0,0 +1,455 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils.event;
+
+import org.knowhowlab.osgi.testing.utils.async.DeferredPromise;
+import org.knowhowlab.osgi.testing.utils.async.Promise;
+import org.osgi.framework.BundleContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-lived listener of one event kind that is shared by all waiters of {@link EventHub}.
+ * <p/>
+ * Pending waiters are indexed by event type bits and by key. Events with types that no waiter
+ * is interested in are dropped without index lookup. Otherwise only waiters registered under
+ * the event keys and waiters without key are checked.
+ * <p/>
+ * Implementations must have public no-arg constructor. Instances are created by {@link EventHub#getChannel(Class)}.
+ *
+ * @param <E> type of the event
+ * @see EventHub
+ * @since 1.3
+ */
+public abstract class EventChannel<E> {
+    /**
+     * Empty keys array
+     */
+    protected static final String[] NO_KEYS = new String[0];
+
+    private final ConcurrentHashMap<String, List<AbstractEventWaiter<E, ?>>> keyedWaiters = new ConcurrentHashMap<String, List<AbstractEventWaiter<E, ?>>>();
+    private final List<AbstractEventWaiter<E, ?>> unkeyedWaiters = new CopyOnWriteArrayList<AbstractEventWaiter<E, ?>>();
+    private final int[] typeCounts = new int[Integer.SIZE];
+    private volatile EventRecorder[] recorders = new EventRecorder[0];
+    private volatile EventRecorder history;
+    private volatile int interestMask;
+    private volatile boolean closed;
+    private BundleContext bc;
+
+    /**
+     * Register the listener of this channel
+     *
+     * @param bc BundleContext
+     */
+    protected abstract void register(BundleContext bc);
+
+    /**
+     * Unregister the listener of this channel
+     *
+     * @param bc BundleContext
+     */
+    protected abstract void unregister(BundleContext bc);
+
+    /**
+     * Returns event type bits of the event
+     *
+     * @param event event
+     * @return event type bits. <code>-1</code> for events without type
+     */
+    protected abstract int getEventType(E event);
+
+    /**
+     * Returns index keys of the event
+     *
+     * @param event event
+     * @return index keys or {@link #NO_KEYS}
+     */
+    protected abstract String[] getKeys(E event);
+
+    /**
+     * Returns BundleContext of the channel
+     *
+     * @return BundleContext
+     */
+    protected BundleContext getBundleContext() {
+        return bc;
+    }
+
+    /**
+     * Register waiter in the index and start its timeout countdown
+     *
+     * @param waiter   waiter
+     * @param timeout  time interval to wait. If zero, the waiter will wait indefinitely.
+     * @param timeUnit time unit for the time interval
+     * @return waiter <code>Promise</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @throws NullPointerException     If <code>timeUnit</code> is <code>null</code>
+     */
+    protected Promise<E> await(EventWaiter<E> waiter, long timeout, TimeUnit timeUnit) {
+        return await(waiter, LookBack.NONE, timeout, timeUnit);
+    }
+
+    /**
+     * Register waiter in the index, resolve it with the latest matching event of look-back window
+     * and start its timeout countdown
+     *
+     * @param waiter   waiter
+     * @param lookBack look-back window
+     * @param timeout  time interval to wait. If zero, the waiter will wait indefinitely.
+     * @param timeUnit time unit for the time interval
+     * @return waiter <code>Promise</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @throws NullPointerException     If <code>lookBack</code> or <code>timeUnit</code> are <code>null</code>
+     */
+    @SuppressWarnings("unchecked")
+    protected Promise<E> await(EventWaiter<E> waiter, LookBack lookBack, long timeout, TimeUnit timeUnit) {
+        if (lookBack == null) {
+            throw new NullPointerException("lookBack is null");
+        }
+        // waiter is registered before history check, so events between check and registration are not lost
+        add(waiter);
+        EventRecorder recent = history;
+        if (recent != null && !lookBack.isNone() && !waiter.isDone()) {
+            List<RecordedEvent> events = lookBack.getRecentEvents(recent);
+            for (int i = events.size() - 1; i >= 0; i--) {
+                E event = (E) events.get(i).getEvent();
+                if (accepts(waiter, event)) {
+                    waiter.resolve(event);
+                    break;
+                }
+            }
+        }
+        return waiter.timeout(timeout, timeUnit);
+    }
+
+    /**
+     * Register waiter of the first event that is matched by the matcher
+     *
+     * @param key           index key or <code>null</code> if waiter should receive events with any key
+     * @param eventTypeMask event type mask
+     * @param matcher       additional check of the event that is already matched by key and event type
+     * @param lookBack      look-back window to check recent events
+     * @param timeout       time interval to wait. If zero, the waiter will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of the event. It is resolved with <code>null</code> on timeout
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @throws NullPointerException     If <code>matcher</code>, <code>lookBack</code> or <code>timeUnit</code> are <code>null</code>
+     */
+    protected Promise<E> await(String key, int eventTypeMask, final EventMatcher<? super E> matcher, LookBack lookBack,
+                               long timeout, TimeUnit timeUnit) {
+        if (matcher == null) {
+            throw new NullPointerException("matcher is null");
+        }
+        return await(new EventWaiter<E>(key, eventTypeMask) {
+            @Override
+            protected boolean matches(E event) {
+                return matcher.matches(event);
+            }
+        }, lookBack, timeout, timeUnit);
+    }
+
+    /**
+     * Await defined number of events that are matched by the matcher. One waiter collects all events.
+     *
+     * @param key           index key or <code>null</code> if events with any key should be checked
+     * @param eventTypeMask event type mask
+     * @param matcher       event matcher
+     * @param count         number of events
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of matched events in dispatch order.
+     *         It is resolved with <code>null</code> if less than <code>count</code> events are matched within timeout
+     * @throws IllegalArgumentException If <code>count</code> is not positive or the value of timeout is negative
+     * @throws NullPointerException     If <code>matcher</code> or <code>timeUnit</code> are <code>null</code>
+     */
+    public Promise<List<E>> awaitEvents(String key, int eventTypeMask, EventMatcher<? super E> matcher, int count,
+                                        long timeout, TimeUnit timeUnit) {
+        if (matcher == null) {
+            throw new NullPointerException("matcher is null");
+        }
+        if (count <= 0) {
+            throw new IllegalArgumentException("count value is not positive");
+        }
+        return subscribe(new EventCollector<E>(key, eventTypeMask, Collections.singletonList(matcher), count), timeout, timeUnit);
+    }
+
+    /**
+     * Await events that are matched by all matchers. One waiter checks all matchers.
+     * Event could satisfy several matchers.
+     *
+     * @param eventTypeMask event type mask
+     * @param matchers      event matchers
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of matched events in dispatch order.
+     *         It is resolved with <code>null</code> if not all matchers are satisfied within timeout
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @throws NullPointerException     If <code>matchers</code> or <code>timeUnit</code> are <code>null</code>
+     */
+    public Promise<List<E>> awaitAll(int eventTypeMask, List<? extends EventMatcher<? super E>> matchers,
+                                     long timeout, TimeUnit timeUnit) {
+        if (matchers == null) {
+            throw new NullPointerException("matchers is null");
+        }
+        if (matchers.isEmpty()) {
+            return completed(Collections.<E>emptyList(), timeout, timeUnit);
+        }
+        return subscribe(new EventCollector<E>(null, eventTypeMask, matchers, 1), timeout, timeUnit);
+    }
+
+    /**
+     * Await the first event that is matched by any of matchers
+     *
+     * @param eventTypeMask event type mask
+     * @param matchers      event matchers
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of the event. It is resolved with <code>null</code> on timeout
+     * @throws IllegalArgumentException If the value of timeout is negative
+     * @throws NullPointerException     If <code>matchers</code> or <code>timeUnit</code> are <code>null</code>
+     */
+    public Promise<E> awaitAny(int eventTypeMask, List<? extends EventMatcher<? super E>> matchers,
+                               long timeout, TimeUnit timeUnit) {
+        if (matchers == null) {
+            throw new NullPointerException("matchers is null");
+        }
+        final List<EventMatcher<? super E>> copy = new ArrayList<EventMatcher<? super E>>(matchers);
+        return await(null, eventTypeMask, new EventMatcher<E>() {
+            public boolean matches(E event) {
+                for (EventMatcher<? super E> matcher : copy) {
+                    if (matcher.matches(event)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }, LookBack.NONE, timeout, timeUnit);
+    }
+
+    /**
+     * Dispatch event to matched waiters
+     *
+     * @param event event
+     */
+    protected void dispatch(E event) {
+        EventRecorder recent = history;
+        if (recent != null) {
+            recent.record(event);
+        }
+        for (EventRecorder recorder : recorders) {
+            recorder.record(event);
+        }
+        int type = getEventType(event);
+        if ((interestMask & type) == 0) {
+            return;
+        }
+        for (String key : getKeys(event)) {
+            List<AbstractEventWaiter<E, ?>> waiters = keyedWaiters.get(key);
+            if (waiters != null) {
+                dispatch(waiters, event, type);
+            }
+        }
+        dispatch(unkeyedWaiters, event, type);
+    }
+
+    /**
+     * Attach recorder that captures all events of this channel
+     *
+     * @param recorder recorder
+     * @throws NullPointerException If <code>recorder</code> is <code>null</code>
+     */
+    public synchronized void addRecorder(EventRecorder recorder) {
+        if (recorder == null) {
+            throw new NullPointerException("recorder is null");
+        }
+        EventRecorder[] current = recorders;
+        EventRecorder[] updated = new EventRecorder[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, current.length);
+        updated[current.length] = recorder;
+        recorders = updated;
+    }
+
+    /**
+     * Detach recorder
+     *
+     * @param recorder recorder
+     * @return <code>true</code> if recorder was attached
+     */
+    public synchronized boolean removeRecorder(EventRecorder recorder) {
+        EventRecorder[] current = recorders;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == recorder) {
+                EventRecorder[] updated = new EventRecorder[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                recorders = updated;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns number of pending waiters
+     *
+     * @return number of pending waiters
+     */
+    public synchronized int getWaitersCount() {
+        int count = unkeyedWaiters.size();
+        for (List<AbstractEventWaiter<E, ?>> waiters : keyedWaiters.values()) {
+            count += waiters.size();
+        }
+        return count;
+    }
+
+    private <T> Promise<T> subscribe(AbstractEventWaiter<E, T> waiter, long timeout, TimeUnit timeUnit) {
+        add(waiter);
+        return waiter.timeout(timeout, timeUnit);
+    }
+
+    private static <T> Promise<T> completed(T value, long timeout, TimeUnit timeUnit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout value is negative");
+        }
+        if (timeUnit == null) {
+            throw new NullPointerException("timeUnit is null");
+        }
+        DeferredPromise<T> promise = new DeferredPromise<T>();
+        promise.resolve(value);
+        return promise;
+    }
+
+    final void open(BundleContext bc, int historyCapacity) {
+        this.bc = bc;
+        if (historyCapacity > 0) {
+            history = new EventRecorder(historyCapacity);
+        }
+        register(bc);
+    }
+
+    final void close() {
+        List<AbstractEventWaiter<E, ?>> waiters = new ArrayList<AbstractEventWaiter<E, ?>>();
+        synchronized (this) {
+            closed = true;
+            waiters.addAll(unkeyedWaiters);
+            for (List<AbstractEventWaiter<E, ?>> keyed : keyedWaiters.values()) {
+                waiters.addAll(keyed);
+            }
+        }
+        try {
+            unregister(bc);
+        } catch (IllegalStateException e) {
+            // BundleContext is no longer valid
+        }
+        for (AbstractEventWaiter<E, ?> waiter : waiters) {
+            waiter.cancel(false);
+        }
+    }
+
+    void add(AbstractEventWaiter<E, ?> waiter) {
+        synchronized (this) {
+            if (!closed) {
+                waiter.setChannel(this);
+                String key = waiter.getKey();
+                if (key == null) {
+                    unkeyedWaiters.add(waiter);
+                } else {
+                    List<AbstractEventWaiter<E, ?>> waiters = keyedWaiters.get(key);
+                    if (waiters == null) {
+                        waiters = new CopyOnWriteArrayList<AbstractEventWaiter<E, ?>>();
+                        keyedWaiters.put(key, waiters);
+                    }
+                    waiters.add(waiter);
+                }
+                updateInterest(waiter.getEventTypeMask(), 1);
+                return;
+            }
+        }
+        waiter.cancel(false);
+    }
+
+    synchronized void remove(AbstractEventWaiter<E, ?> waiter) {
+        String key = waiter.getKey();
+        boolean removed;
+        if (key == null) {
+            removed = unkeyedWaiters.remove(waiter);
+        } else {
+            List<AbstractEventWaiter<E, ?>> waiters = keyedWaiters.get(key);
+            removed = waiters != null && waiters.remove(waiter);
+            if (waiters != null && waiters.isEmpty()) {
+                keyedWaiters.remove(key);
+            }
+        }
+        if (removed) {
+            updateInterest(waiter.getEventTypeMask(), -1);
+        }
+    }
+
+    private boolean accepts(EventWaiter<E> waiter, E event) {
+        if ((waiter.getEventTypeMask() & getEventType(event)) == 0) {
+            return false;
+        }
+        String key = waiter.getKey();
+        if (key != null) {
+            boolean found = false;
+            for (String eventKey : getKeys(event)) {
+                if (key.equals(eventKey)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        try {
+            return waiter.matches(event);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private void dispatch(List<AbstractEventWaiter<E, ?>> waiters, E event, int type) {
+        for (AbstractEventWaiter<E, ?> waiter : waiters) {
+            if ((waiter.getEventTypeMask() & type) != 0) {
+                try {
+                    waiter.onEvent(event);
+                } catch (RuntimeException e) {
+                    waiter.fail(e);
+                }
+            }
+        }
+    }
+
+    private void updateInterest(int eventTypeMask, int delta) {
+        int mask = 0;
+        for (int i = 0; i < typeCounts.length; i++) {
+            if ((eventTypeMask & (1 << i)) != 0) {
+                typeCounts[i] += delta;
+            }
+            if (typeCounts[i] > 0) {
+                mask |= 1 << i;
+            }
+        }
+        interestMask = mask;
+    }
+}
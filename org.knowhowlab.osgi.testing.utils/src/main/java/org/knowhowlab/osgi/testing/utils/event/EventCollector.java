@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils.event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Waiter that collects matched events with one index registration.
+ * Every matcher should match defined number of events. Event is assigned to every matcher
+ * that is not yet satisfied and matches it. Waiter is resolved with matched events
+ * in dispatch order when all matchers are satisfied.
+ *
+ * @param <E> type of the event
+ * @since 1.3
+ */
+class EventCollector<E> extends AbstractEventWaiter<E, List<E>> {
+    private final Object lock = new Object();
+    private final List<EventMatcher<? super E>> matchers;
+    private final int[] remaining;
+    private final List<E> events = new ArrayList<E>();
+    private int pending;
+
+    EventCollector(String key, int eventTypeMask, List<? extends EventMatcher<? super E>> matchers, int count) {
+        super(key, eventTypeMask);
+        this.matchers = new ArrayList<EventMatcher<? super E>>(matchers);
+        this.remaining = new int[this.matchers.size()];
+        for (int i = 0; i < remaining.length; i++) {
+            remaining[i] = count;
+        }
+        this.pending = remaining.length;
+    }
+
+    @Override
+    void onEvent(E event) {
+        List<E> result;
+        synchronized (lock) {
+            if (pending == 0) {
+                return;
+            }
+            boolean matched = false;
+            for (int i = 0; i < remaining.length; i++) {
+                if (remaining[i] > 0 && matchers.get(i).matches(event)) {
+                    matched = true;
+                    if (--remaining[i] == 0) {
+                        pending--;
+                    }
+                }
+            }
+            if (!matched) {
+                return;
+            }
+            events.add(event);
+            if (pending > 0) {
+                return;
+            }
+            result = Collections.unmodifiableList(events);
+        }
+        resolve(result);
+    }
+}
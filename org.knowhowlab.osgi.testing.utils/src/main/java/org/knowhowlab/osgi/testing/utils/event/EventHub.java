@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils.event;
+
+import org.osgi.framework.BundleContext;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Event hub of the BundleContext.
+ * <p/>
+ * One hub is shared by all waits of the BundleContext. Each {@link EventChannel} registers one long-lived
+ * listener on the first wait and dispatches events to pending waiters through its index, so waits do not
+ * add and remove framework listeners or services.
+ * <p/>
+ * Bundle, service and framework event channels are opened with the hub and keep recent events history
+ * for retroactive waits with {@link LookBack} window. Create the hub in the test setup to have
+ * complete history, e.g. <code>EventHub.getEventHub(bc)</code>.
+ * <p/>
+ * Hubs of BundleContexts that are no longer valid are closed automatically.
+ *
+ * @see EventChannel
+ * @see BundleEventChannel
+ * @see ServiceEventChannel
+ * @see FrameworkEventChannel
+ * @since 1.3
+ */
+public class EventHub {
+    /**
+     * System property with the number of recent events that every channel keeps for retroactive waits.
+     * Default value is {@value #DEFAULT_HISTORY_CAPACITY}. Zero disables history.
+     *
+     * @see LookBack
+     */
+    public static final String HISTORY_CAPACITY_PROPERTY = "org.knowhowlab.osgi.testing.utils.event.historyCapacity";
+    /**
+     * Default history capacity of the channel
+     */
+    public static final int DEFAULT_HISTORY_CAPACITY = 256;
+
+    private static final Map<BundleContext, EventHub> hubs = new HashMap<BundleContext, EventHub>();
+
+    private final BundleContext bc;
+    private final Map<Class<?>, EventChannel<?>> channels = new ConcurrentHashMap<Class<?>, EventChannel<?>>();
+    private volatile boolean closed;
+
+    private EventHub(BundleContext bc) {
+        this.bc = bc;
+    }
+
+    /**
+     * Get event hub of the BundleContext. Hub is created on the first call.
+     *
+     * @param bc BundleContext
+     * @return event hub
+     * @throws NullPointerException If <code>bc</code> is <code>null</code>
+     */
+    public static EventHub getEventHub(BundleContext bc) {
+        if (bc == null) {
+            throw new NullPointerException("BundleContext is null");
+        }
+        synchronized (hubs) {
+            for (Iterator<EventHub> iterator = hubs.values().iterator(); iterator.hasNext(); ) {
+                EventHub hub = iterator.next();
+                if (!isValid(hub.bc)) {
+                    iterator.remove();
+                    hub.closeChannels();
+                }
+            }
+            EventHub hub = hubs.get(bc);
+            if (hub == null) {
+                hub = new EventHub(bc);
+                hubs.put(bc, hub);
+                // framework events are recorded to the history from the hub creation
+                hub.getChannel(BundleEventChannel.class);
+                hub.getChannel(ServiceEventChannel.class);
+                hub.getChannel(FrameworkEventChannel.class);
+            }
+            return hub;
+        }
+    }
+
+    /**
+     * Get channel of given type. Channel is created and its listener is registered on the first call.
+     *
+     * @param type channel type
+     * @param <C>  channel type
+     * @return channel
+     * @throws IllegalArgumentException If channel could not be created
+     * @throws IllegalStateException    If hub is closed or BundleContext is no longer valid
+     */
+    public <C extends EventChannel<?>> C getChannel(Class<C> type) {
+        EventChannel<?> channel = channels.get(type);
+        if (channel == null) {
+            synchronized (this) {
+                if (closed) {
+                    throw new IllegalStateException("EventHub is closed");
+                }
+                channel = channels.get(type);
+                if (channel == null) {
+                    try {
+                        channel = type.newInstance();
+                    } catch (InstantiationException e) {
+                        throw new IllegalArgumentException("Unable to create channel", e);
+                    } catch (IllegalAccessException e) {
+                        throw new IllegalArgumentException("Unable to create channel", e);
+                    }
+                    channel.open(bc, getHistoryCapacity());
+                    channels.put(type, channel);
+                }
+            }
+        }
+        return type.cast(channel);
+    }
+
+    /**
+     * Await ordered sequence of events. Waiters of all steps are registered before this method returns.
+     *
+     * @param steps    steps of the sequence
+     * @param timeout  time interval to wait. If zero, the sequence will wait indefinitely.
+     * @param timeUnit time unit for the time interval
+     * @return sequence <code>Promise</code> of matched events. It is resolved with <code>null</code> on timeout
+     * @throws NullPointerException     If <code>steps</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative or step channel could not be created
+     * @throws IllegalStateException    If hub is closed or BundleContext is no longer valid
+     */
+    public EventSequence awaitSequence(List<? extends EventStep<?>> steps, long timeout, TimeUnit timeUnit) {
+        if (steps == null) {
+            throw new NullPointerException("steps is null");
+        }
+        EventSequence sequence = new EventSequence(this, steps);
+        sequence.start();
+        sequence.timeout(timeout, timeUnit);
+        return sequence;
+    }
+
+    /**
+     * Attach recorder to bundle, service and framework event channels
+     *
+     * @param recorder recorder
+     * @throws NullPointerException  If <code>recorder</code> is <code>null</code>
+     * @throws IllegalStateException If hub is closed or BundleContext is no longer valid
+     * @see #getChannel(Class)
+     */
+    public void addRecorder(EventRecorder recorder) {
+        getChannel(BundleEventChannel.class).addRecorder(recorder);
+        getChannel(ServiceEventChannel.class).addRecorder(recorder);
+        getChannel(FrameworkEventChannel.class).addRecorder(recorder);
+    }
+
+    /**
+     * Detach recorder from bundle, service and framework event channels
+     *
+     * @param recorder recorder
+     * @throws IllegalStateException If hub is closed or BundleContext is no longer valid
+     */
+    public void removeRecorder(EventRecorder recorder) {
+        getChannel(BundleEventChannel.class).removeRecorder(recorder);
+        getChannel(ServiceEventChannel.class).removeRecorder(recorder);
+        getChannel(FrameworkEventChannel.class).removeRecorder(recorder);
+    }
+
+    /**
+     * Returns BundleContext of the hub
+     *
+     * @return BundleContext
+     */
+    public BundleContext getBundleContext() {
+        return bc;
+    }
+
+    /**
+     * Returns <code>true</code> if the hub is closed
+     *
+     * @return <code>true</code> if the hub is closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Close the hub. All listeners are unregistered and pending waiters are cancelled.
+     * New hub is created by the next {@link #getEventHub(BundleContext)} call.
+     */
+    public void close() {
+        synchronized (hubs) {
+            if (hubs.get(bc) == this) {
+                hubs.remove(bc);
+            }
+        }
+        closeChannels();
+    }
+
+    private void closeChannels() {
+        List<EventChannel<?>> toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = new ArrayList<EventChannel<?>>(channels.values());
+            channels.clear();
+        }
+        for (EventChannel<?> channel : toClose) {
+            channel.close();
+        }
+    }
+
+    private static int getHistoryCapacity() {
+        try {
+            return Integer.parseInt(System.getProperty(HISTORY_CAPACITY_PROPERTY, String.valueOf(DEFAULT_HISTORY_CAPACITY)));
+        } catch (NumberFormatException e) {
+            return DEFAULT_HISTORY_CAPACITY;
+        }
+    }
+
+    private static boolean isValid(BundleContext bc) {
+        try {
+            bc.getBundle();
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils.event;
+
+/**
+ * Predicate of events that are dispatched by {@link EventChannel}
+ *
+ * @param <E> type of the event
+ * @see EventChannel#awaitEvents(String, int, EventMatcher, int, long, java.util.concurrent.TimeUnit)
+ * @see EventChannel#awaitAll(int, java.util.List, long, java.util.concurrent.TimeUnit)
+ * @see EventChannel#awaitAny(int, java.util.List, long, java.util.concurrent.TimeUnit)
+ * @since 1.3
+ */
+public interface EventMatcher<E> {
+    /**
+     * Check the event
+     *
+     * @param event event
+     * @return <code>true</code> if event is matched
+     */
+    boolean matches(E event);
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils.event;
+
+/**
+ * Condition of {@link RecordedEvent}
+ *
+ * @see EventRecorder#query(EventPredicate)
+ * @since 1.3
+ */
+public interface EventPredicate {
+    /**
+     * Check recorded event
+     *
+     * @param event recorded event
+     * @return <code>true</code> if event matches the condition
+     */
+    boolean matches(RecordedEvent event);
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Recorder of events into a fixed-capacity ring buffer.
+ * <p/>
+ * Recording is lock-free and does not allocate: a writer claims a sequence number, stores the event
+ * and its {@link System#nanoTime()} timestamp into the preallocated slot and publishes the slot with
+ * its sequence number. Readers copy only slots that are published and are not overwritten while copying,
+ * so snapshots are consistent but do not include events that are being recorded at the same moment.
+ * <p/>
+ * Recorder could be attached to {@link EventHub} to capture all bundle, service and framework events
+ * or to any {@link EventChannel}.
+ *
+ * @see EventHub#addRecorder(EventRecorder)
+ * @see EventChannel#addRecorder(EventRecorder)
+ * @since 1.3
+ */
+public class EventRecorder {
+    /**
+     * Default capacity
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Policy that is applied when the buffer is full
+     */
+    public enum OverflowPolicy {
+        /**
+         * The oldest events are overwritten by new events
+         */
+        OVERWRITE_OLDEST,
+        /**
+         * New events are dropped
+         */
+        DROP_NEWEST
+    }
+
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final AtomicReferenceArray<Object> events;
+    private final AtomicLongArray timestamps;
+    private final AtomicLongArray published;
+    private final AtomicLong writeSequence = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private volatile long clearedSequence;
+
+    /**
+     * Create recorder with default capacity that overwrites the oldest events
+     */
+    public EventRecorder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create recorder that overwrites the oldest events
+     *
+     * @param capacity maximal number of kept events
+     * @throws IllegalArgumentException If <code>capacity</code> is less than 1
+     */
+    public EventRecorder(int capacity) {
+        this(capacity, OverflowPolicy.OVERWRITE_OLDEST);
+    }
+
+    /**
+     * Create recorder
+     *
+     * @param capacity maximal number of kept events
+     * @param policy   policy that is applied when the buffer is full
+     * @throws IllegalArgumentException If <code>capacity</code> is less than 1
+     * @throws NullPointerException     If <code>policy</code> is <code>null</code>
+     */
+    public EventRecorder(int capacity, OverflowPolicy policy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity is less than 1");
+        }
+        if (policy == null) {
+            throw new NullPointerException("policy is null");
+        }
+        this.capacity = capacity;
+        this.policy = policy;
+        events = new AtomicReferenceArray<Object>(capacity);
+        timestamps = new AtomicLongArray(capacity);
+        published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * Record event
+     *
+     * @param event event
+     * @return <code>true</code> if event is recorded, <code>false</code> if it is dropped
+     */
+    public boolean record(Object event) {
+        long timestamp = System.nanoTime();
+        long sequence = writeSequence.getAndIncrement();
+        if (policy == OverflowPolicy.DROP_NEWEST && sequence - clearedSequence >= capacity) {
+            droppedCount.incrementAndGet();
+            return false;
+        }
+        int slot = (int) (sequence % capacity);
+        // slot is not readable while it is written
+        published.set(slot, -1);
+        timestamps.set(slot, timestamp);
+        events.set(slot, event);
+        published.set(slot, sequence);
+        return true;
+    }
+
+    /**
+     * Returns copy of recorded events in recording order
+     *
+     * @return recorded events
+     */
+    public List<RecordedEvent> snapshot() {
+        return query(null);
+    }
+
+    /**
+     * Returns recorded events that match the predicate in recording order
+     *
+     * @param predicate predicate or <code>null</code> to return all events
+     * @return recorded events
+     */
+    public List<RecordedEvent> query(EventPredicate predicate) {
+        return query(predicate, 0);
+    }
+
+    /**
+     * Returns recorded events with sequence numbers not less than given one that match the predicate
+     *
+     * @param predicate     predicate or <code>null</code> to return all events
+     * @param startSequence minimal sequence number
+     * @return recorded events
+     */
+    public List<RecordedEvent> query(EventPredicate predicate, long startSequence) {
+        long floor = clearedSequence;
+        long end = writeSequence.get();
+        long start;
+        if (policy == OverflowPolicy.DROP_NEWEST) {
+            start = floor;
+            end = Math.min(end, floor + capacity);
+        } else {
+            start = Math.max(floor, end - capacity);
+        }
+        start = Math.max(start, startSequence);
+        List<RecordedEvent> result = new ArrayList<RecordedEvent>((int) Math.max(0, end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            int slot = (int) (sequence % capacity);
+            if (published.get(slot) != sequence) {
+                continue;
+            }
+            Object event = events.get(slot);
+            long timestamp = timestamps.get(slot);
+            if (published.get(slot) != sequence) {
+                // overwritten while copying
+                continue;
+            }
+            RecordedEvent recordedEvent = new RecordedEvent(sequence, timestamp, event);
+            if (predicate == null || predicate.matches(recordedEvent)) {
+                result.add(recordedEvent);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns sequence number that is assigned to the next recorded event
+     *
+     * @return next sequence number
+     */
+    public long getNextSequence() {
+        return writeSequence.get();
+    }
+
+    /**
+     * Returns number of events that are lost because the buffer was full
+     *
+     * @return number of dropped or overwritten events since the last {@link #clear()}
+     */
+    public long getDroppedCount() {
+        if (policy == OverflowPolicy.DROP_NEWEST) {
+            return droppedCount.get();
+        }
+        return Math.max(0, writeSequence.get() - clearedSequence - capacity);
+    }
+
+    /**
+     * Returns capacity
+     *
+     * @return capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns overflow policy
+     *
+     * @return overflow policy
+     */
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Discard recorded events
+     */
+    public void clear() {
+        clearedSequence = writeSequence.get();
+        droppedCount.set(0);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils.event;
+
+import org.knowhowlab.osgi.testing.utils.async.CompletionListener;
+import org.knowhowlab.osgi.testing.utils.async.ListenerPromise;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Pending wait of the ordered event sequence.
+ * <p/>
+ * One waiter is registered in every channel of the sequence before the first event is checked,
+ * so there are no gaps between steps. Sequence is evaluated incrementally: every dispatched event
+ * is checked only against the current step, and only matched event is kept per step.
+ * <p/>
+ * Sequence is resolved with the matched events of all steps, or with <code>null</code> on timeout.
+ *
+ * @see EventHub#awaitSequence(List, long, java.util.concurrent.TimeUnit)
+ * @since 1.3
+ */
+public class EventSequence extends ListenerPromise<List<Object>> {
+    private final List<EventStep<?>> steps;
+    private final EventChannel<?>[] channels;
+    private final EventMatcher<Object>[] matchers;
+    private final Object[] events;
+    private final List<AbstractEventWaiter<?, ?>> waiters = new ArrayList<AbstractEventWaiter<?, ?>>();
+    private int completedSteps;
+
+    @SuppressWarnings("unchecked")
+    EventSequence(EventHub hub, List<? extends EventStep<?>> steps) {
+        this.steps = Collections.unmodifiableList(new ArrayList<EventStep<?>>(steps));
+        this.channels = new EventChannel<?>[this.steps.size()];
+        this.matchers = new EventMatcher[this.steps.size()];
+        this.events = new Object[this.steps.size()];
+        Map<EventChannel<?>, Integer> masks = new IdentityHashMap<EventChannel<?>, Integer>();
+        for (int i = 0; i < channels.length; i++) {
+            EventStep step = this.steps.get(i);
+            EventChannel channel = hub.getChannel(step.getChannelType());
+            channels[i] = channel;
+            matchers[i] = (EventMatcher<Object>) step.createMatcher(channel);
+            Integer mask = masks.get(channel);
+            masks.put(channel, (mask == null ? 0 : mask) | step.getEventTypeMask());
+        }
+        for (Map.Entry<EventChannel<?>, Integer> entry : masks.entrySet()) {
+            waiters.add(new StepWaiter(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    /**
+     * Returns steps of the sequence
+     *
+     * @return steps
+     */
+    public List<EventStep<?>> getSteps() {
+        return steps;
+    }
+
+    /**
+     * Returns number of steps that are already matched
+     *
+     * @return number of matched steps
+     */
+    public synchronized int getCompletedSteps() {
+        return completedSteps;
+    }
+
+    @SuppressWarnings("unchecked")
+    void start() {
+        if (events.length == 0) {
+            resolve(Collections.emptyList());
+            return;
+        }
+        for (AbstractEventWaiter waiter : waiters) {
+            ((StepWaiter) waiter).getChannel().add(waiter);
+        }
+    }
+
+    @Override
+    protected void removeListener() {
+        for (AbstractEventWaiter<?, ?> waiter : waiters) {
+            waiter.cancel(false);
+        }
+    }
+
+    private void onEvent(EventChannel<?> channel, Object event) {
+        List<Object> result;
+        synchronized (this) {
+            if (completedSteps == events.length || channels[completedSteps] != channel) {
+                return;
+            }
+            if ((steps.get(completedSteps).getEventTypeMask() & getEventType(channel, event)) == 0
+                    || !matchers[completedSteps].matches(event)) {
+                return;
+            }
+            events[completedSteps++] = event;
+            if (completedSteps < events.length) {
+                return;
+            }
+            result = Collections.unmodifiableList(Arrays.asList(events));
+        }
+        resolve(result);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int getEventType(EventChannel channel, Object event) {
+        return channel.getEventType(event);
+    }
+
+    /**
+     * Waiter that forwards events of one channel to the sequence
+     */
+    private class StepWaiter extends AbstractEventWaiter<Object, Object> {
+        private final EventChannel<?> channel;
+
+        private StepWaiter(EventChannel<?> channel, int eventTypeMask) {
+            super(null, eventTypeMask);
+            this.channel = channel;
+            whenComplete(new CompletionListener<Object>() {
+                public void completed(Object value, Throwable failure) {
+                    if (failure instanceof CancellationException) {
+                        // channel is closed
+                        EventSequence.this.cancel(false);
+                    } else if (failure != null) {
+                        EventSequence.this.fail(failure);
+                    }
+                }
+            });
+        }
+
+        EventChannel<?> getChannel() {
+            return channel;
+        }
+
+        @Override
+        void onEvent(Object event) {
+            EventSequence.this.onEvent(channel, event);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils.event;
+
+/**
+ * Step of the ordered event sequence. Step is matched by the event of its channel with
+ * one of the event type mask bits that passes step matcher.
+ * <p/>
+ * Steps are created by channels, e.g. {@link BundleEventChannel#step(String, org.osgi.framework.Version, int)}.
+ *
+ * @param <E> type of the event
+ * @see EventHub#awaitSequence(java.util.List, long, java.util.concurrent.TimeUnit)
+ * @since 1.3
+ */
+public abstract class EventStep<E> {
+    private final Class<? extends EventChannel<E>> channelType;
+    private final int eventTypeMask;
+
+    /**
+     * Create step
+     *
+     * @param channelType   type of the channel that dispatches step events
+     * @param eventTypeMask event type mask
+     * @throws NullPointerException If <code>channelType</code> is <code>null</code>
+     */
+    protected EventStep(Class<? extends EventChannel<E>> channelType, int eventTypeMask) {
+        if (channelType == null) {
+            throw new NullPointerException("channelType is null");
+        }
+        this.channelType = channelType;
+        this.eventTypeMask = eventTypeMask;
+    }
+
+    /**
+     * Returns type of the channel that dispatches step events
+     *
+     * @return channel type
+     */
+    public Class<? extends EventChannel<E>> getChannelType() {
+        return channelType;
+    }
+
+    /**
+     * Returns event type mask
+     *
+     * @return event type mask
+     */
+    public int getEventTypeMask() {
+        return eventTypeMask;
+    }
+
+    /**
+     * Create matcher of the step events. Called once when the sequence wait is started.
+     *
+     * @param channel channel that dispatches step events
+     * @return event matcher
+     */
+    protected abstract EventMatcher<? super E> createMatcher(EventChannel<E> channel);
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils.event;
+
+/**
+ * Pending wait for an event that is registered in {@link EventChannel} index.
+ * <p/>
+ * Waiter is indexed by the key (e.g. symbolic name, objectClass, topic) and by event type mask.
+ * It is resolved with the first dispatched event that passes {@link #matches(Object)} check and
+ * removed from the index when it is completed, cancelled or timed out.
+ *
+ * @param <E> type of the event
+ * @see EventChannel#await(EventWaiter, long, java.util.concurrent.TimeUnit)
+ * @since 1.3
+ */
+public abstract class EventWaiter<E> extends AbstractEventWaiter<E, E> {
+    /**
+     * Create waiter
+     *
+     * @param key           index key or <code>null</code> if waiter should receive events with any key
+     * @param eventTypeMask event type mask
+     */
+    protected EventWaiter(String key, int eventTypeMask) {
+        super(key, eventTypeMask);
+    }
+
+    /**
+     * Additional check of the event that is already matched by key and event type
+     *
+     * @param event event
+     * @return <code>true</code> if waiter should be resolved with given event
+     */
+    protected abstract boolean matches(E event);
+
+    @Override
+    void onEvent(E event) {
+        if (matches(event)) {
+            resolve(event);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils.event;
+
+import org.knowhowlab.osgi.testing.utils.async.Promise;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.FrameworkListener;
+import org.osgi.framework.Version;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FrameworkEvent channel. Waiters are indexed by bundle symbolic name.
+ *
+ * @see EventHub
+ * @since 1.3
+ */
+public class FrameworkEventChannel extends EventChannel<FrameworkEvent> implements FrameworkListener {
+    public void frameworkEvent(FrameworkEvent event) {
+        dispatch(event);
+    }
+
+    /**
+     * Await FrameworkEvent with event type mask for defined bundle
+     *
+     * @param symbolicName  symbolicName
+     * @param version       version (could be null)
+     * @param eventTypeMask FrameworkEvent type mask
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of FrameworkEvent. It is resolved with <code>null</code> on timeout
+     * @throws NullPointerException     If <code>symbolicName</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     */
+    public Promise<FrameworkEvent> await(String symbolicName, Version version, int eventTypeMask, long timeout, TimeUnit timeUnit) {
+        return await(symbolicName, version, eventTypeMask, LookBack.NONE, timeout, timeUnit);
+    }
+
+    /**
+     * Await FrameworkEvent with event type mask for defined bundle
+     *
+     * @param symbolicName  symbolicName
+     * @param version       version (could be null)
+     * @param eventTypeMask FrameworkEvent type mask
+     * @param lookBack      look-back window to check recent events
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of FrameworkEvent. It is resolved with <code>null</code> on timeout
+     * @throws NullPointerException     If <code>symbolicName</code>, <code>lookBack</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     */
+    public Promise<FrameworkEvent> await(String symbolicName, Version version, int eventTypeMask, LookBack lookBack,
+                                       long timeout, TimeUnit timeUnit) {
+        if (symbolicName == null) {
+            throw new NullPointerException("symbolicName is null");
+        }
+        return await(symbolicName, eventTypeMask, matcher(symbolicName, version), lookBack, timeout, timeUnit);
+    }
+
+    /**
+     * Create matcher of FrameworkEvents for defined bundle
+     *
+     * @param symbolicName symbolicName (could be null)
+     * @param version      version (could be null)
+     * @return FrameworkEvent matcher
+     */
+    public EventMatcher<FrameworkEvent> matcher(final String symbolicName, final Version version) {
+        return new EventMatcher<FrameworkEvent>() {
+            public boolean matches(FrameworkEvent event) {
+                Bundle bundle = event.getBundle();
+                if (bundle == null) {
+                    return symbolicName == null && version == null;
+                }
+                return (symbolicName == null || symbolicName.equals(bundle.getSymbolicName()))
+                        && (version == null || version.equals(bundle.getVersion()));
+            }
+        };
+    }
+
+    /**
+     * Create event sequence step of FrameworkEvent with event type mask for defined bundle
+     *
+     * @param symbolicName  symbolicName (could be null)
+     * @param version       version (could be null)
+     * @param eventTypeMask FrameworkEvent type mask
+     * @return event sequence step
+     */
+    public static EventStep<FrameworkEvent> step(final String symbolicName, final Version version, int eventTypeMask) {
+        return new EventStep<FrameworkEvent>(FrameworkEventChannel.class, eventTypeMask) {
+            @Override
+            protected EventMatcher<? super FrameworkEvent> createMatcher(EventChannel<FrameworkEvent> channel) {
+                return ((FrameworkEventChannel) channel).matcher(symbolicName, version);
+            }
+
+            @Override
+            public String toString() {
+                return String.format("FrameworkEvent[%s - %s[%s]]", getEventTypeMask(), symbolicName, version);
+            }
+        };
+    }
+
+    @Override
+    protected void register(BundleContext bc) {
+        bc.addFrameworkListener(this);
+    }
+
+    @Override
+    protected void unregister(BundleContext bc) {
+        bc.removeFrameworkListener(this);
+    }
+
+    @Override
+    protected int getEventType(FrameworkEvent event) {
+        return event.getType();
+    }
+
+    @Override
+    protected String[] getKeys(FrameworkEvent event) {
+        Bundle bundle = event.getBundle();
+        String symbolicName = bundle != null ? bundle.getSymbolicName() : null;
+        return symbolicName == null ? NO_KEYS : new String[]{symbolicName};
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils.event;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Look-back window of retroactive waits. Wait with look-back window is completed immediately
+ * if a matching event is found in the recent event history of {@link EventChannel}.
+ *
+ * @see EventHub#HISTORY_CAPACITY_PROPERTY
+ * @since 1.3
+ */
+public final class LookBack {
+    /**
+     * No look-back. Only events that are fired after the wait start are matched
+     */
+    public static final LookBack NONE = new LookBack(0, 0);
+
+    private final long nanos;
+    private final int count;
+
+    private LookBack(long nanos, int count) {
+        this.nanos = nanos;
+        this.count = count;
+    }
+
+    /**
+     * Look-back window in time
+     *
+     * @param duration window duration
+     * @param timeUnit time unit of the duration
+     * @return look-back window
+     * @throws IllegalArgumentException If <code>duration</code> is negative
+     * @throws NullPointerException     If <code>timeUnit</code> is <code>null</code>
+     */
+    public static LookBack time(long duration, TimeUnit timeUnit) {
+        if (duration < 0) {
+            throw new IllegalArgumentException("duration is negative");
+        }
+        return duration == 0 ? NONE : new LookBack(timeUnit.toNanos(duration), 0);
+    }
+
+    /**
+     * Look-back window in number of the last events of the channel
+     *
+     * @param count number of events
+     * @return look-back window
+     * @throws IllegalArgumentException If <code>count</code> is negative
+     */
+    public static LookBack count(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count is negative");
+        }
+        return count == 0 ? NONE : new LookBack(0, count);
+    }
+
+    /**
+     * Returns <code>true</code> if there is no look-back
+     *
+     * @return <code>true</code> if there is no look-back
+     */
+    public boolean isNone() {
+        return nanos == 0 && count == 0;
+    }
+
+    List<RecordedEvent> getRecentEvents(EventRecorder history) {
+        if (count > 0) {
+            return history.query(null, history.getNextSequence() - count);
+        }
+        final long threshold = System.nanoTime() - nanos;
+        return history.query(new EventPredicate() {
+            public boolean matches(RecordedEvent event) {
+                return event.getTimestamp() - threshold >= 0;
+            }
+        });
+    }
+
+    @Override
+    public String toString() {
+        if (count > 0) {
+            return "LookBack[" + count + " events]";
+        }
+        return isNone() ? "LookBack[none]" : "LookBack[" + nanos + " ns]";
+    }
+}
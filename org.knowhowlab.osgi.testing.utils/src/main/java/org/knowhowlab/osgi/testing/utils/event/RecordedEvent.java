@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils.event;
+
+/**
+ * Event captured by {@link EventRecorder}
+ *
+ * @see EventRecorder
+ * @since 1.3
+ */
+public class RecordedEvent {
+    private final long sequence;
+    private final long timestamp;
+    private final Object event;
+
+    public RecordedEvent(long sequence, long timestamp, Object event) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.event = event;
+    }
+
+    /**
+     * Returns recording sequence number. Sequence numbers define the order of the events
+     *
+     * @return sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns recording time in nanoseconds
+     *
+     * @return {@link System#nanoTime()} at recording
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns recorded event
+     *
+     * @return event (e.g. BundleEvent, ServiceEvent, FrameworkEvent)
+     */
+    public Object getEvent() {
+        return event;
+    }
+
+    /**
+     * Returns recorded event if it is instance of given type
+     *
+     * @param type event type
+     * @param <E>  event type
+     * @return event or <code>null</code> if event is not instance of given type
+     */
+    public <E> E getEvent(Class<E> type) {
+        return type.isInstance(event) ? type.cast(event) : null;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + event;
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2010-2013 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.osgi.testing.utils.event;
+
+import org.knowhowlab.osgi.testing.utils.async.Promise;
+import org.osgi.framework.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ServiceEvent channel. One {@link AllServiceListener} is registered for all waiters.
+ * Waiters are indexed by objectClass name. Waiters without objectClass are checked with their filter
+ * for every event.
+ * <p/>
+ * Events are delivered to waiters that are not <code>all</code> only if the service is class space
+ * compatible with the bundle of the channel BundleContext, the same way as framework filters
+ * {@link ServiceListener} notifications.
+ * <p/>
+ * The shared listener has no filter, so the framework never delivers <code>MODIFIED_ENDMATCH</code> to it.
+ * Matchers that wait for <code>MODIFIED_ENDMATCH</code> track services that match their filter, and the channel
+ * reports <code>MODIFIED</code> of a tracked service that no longer matches as <code>MODIFIED_ENDMATCH</code>
+ * to that matcher only.
+ *
+ * @see EventHub
+ * @since 1.3
+ */
+public class ServiceEventChannel extends EventChannel<ServiceEvent> implements AllServiceListener {
+    // trackers are dropped together with their matchers
+    private final Map<MatchTracker, Boolean> trackers = new WeakHashMap<MatchTracker, Boolean>();
+
+    public void serviceChanged(ServiceEvent event) {
+        dispatch(event);
+        List<MatchTracker> current;
+        synchronized (trackers) {
+            if (trackers.isEmpty()) {
+                return;
+            }
+            current = new ArrayList<MatchTracker>(trackers.keySet());
+        }
+        for (MatchTracker tracker : current) {
+            if (tracker.update(event)) {
+                dispatch(new EndMatchEvent(event.getServiceReference(), tracker));
+            }
+        }
+    }
+
+    /**
+     * Await ServiceEvent with event type mask for defined objectClass and filter
+     *
+     * @param className     objectClass name (could be null)
+     * @param filter        filter (could be null)
+     * @param eventTypeMask ServiceEvent type mask
+     * @param all           deliver events of services that are not class space compatible
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of ServiceEvent. It is resolved with <code>null</code> on timeout
+     * @throws NullPointerException     If <code>timeUnit</code> is <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     */
+    public Promise<ServiceEvent> await(String className, Filter filter, int eventTypeMask, boolean all,
+                                       long timeout, TimeUnit timeUnit) {
+        return await(className, filter, eventTypeMask, all, LookBack.NONE, timeout, timeUnit);
+    }
+
+    /**
+     * Await ServiceEvent with event type mask for defined objectClass and filter
+     *
+     * @param className     objectClass name (could be null)
+     * @param filter        filter (could be null)
+     * @param eventTypeMask ServiceEvent type mask
+     * @param all           deliver events of services that are not class space compatible
+     * @param lookBack      look-back window to check recent events
+     * @param timeout       time interval to wait. If zero, the <code>Promise</code> will wait indefinitely.
+     * @param timeUnit      time unit for the time interval
+     * @return <code>Promise</code> of ServiceEvent. It is resolved with <code>null</code> on timeout
+     * @throws NullPointerException     If <code>lookBack</code> or <code>timeUnit</code> are <code>null</code>
+     * @throws IllegalArgumentException If the value of timeout is negative
+     */
+    public Promise<ServiceEvent> await(String className, Filter filter, int eventTypeMask, boolean all,
+                                       LookBack lookBack, long timeout, TimeUnit timeUnit) {
+        return await(className, eventTypeMask, matcher(filter, all, eventTypeMask), lookBack, timeout, timeUnit);
+    }
+
+    /**
+     * Create matcher of ServiceEvents for defined filter. If event type mask contains <code>MODIFIED_ENDMATCH</code>,
+     * services that match the filter are tracked from now on, so the end of their match is reported.
+     *
+     * @param filter        filter (could be null). <code>MODIFIED_ENDMATCH</code> is never matched without filter,
+     *                      like by framework
+     * @param all           match events of services that are not class space compatible
+     * @param eventTypeMask ServiceEvent type mask of the waiter
+     * @return ServiceEvent matcher
+     */
+    public EventMatcher<ServiceEvent> matcher(final Filter filter, final boolean all, int eventTypeMask) {
+        final MatchTracker tracker = filter != null && (eventTypeMask & ServiceEvent.MODIFIED_ENDMATCH) != 0
+                ? track(filter) : null;
+        return new EventMatcher<ServiceEvent>() {
+            public boolean matches(ServiceEvent event) {
+                ServiceReference reference = event.getServiceReference();
+                boolean matched;
+                if (event.getType() == ServiceEvent.MODIFIED_ENDMATCH) {
+                    matched = event instanceof EndMatchEvent && ((EndMatchEvent) event).tracker == tracker;
+                } else {
+                    matched = filter == null || filter.match(reference);
+                }
+                return matched && (all || isAssignable(reference));
+            }
+        };
+    }
+
+    /**
+     * Create event sequence step of ServiceEvent with event type mask for defined objectClass and filter
+     *
+     * @param className     objectClass name (could be null)
+     * @param filter        filter (could be null)
+     * @param eventTypeMask ServiceEvent type mask
+     * @param all           match events of services that are not class space compatible
+     * @return event sequence step
+     */
+    public static EventStep<ServiceEvent> step(final String className, final Filter filter, final int eventTypeMask, final boolean all) {
+        return new EventStep<ServiceEvent>(ServiceEventChannel.class, eventTypeMask) {
+            @Override
+            protected EventMatcher<? super ServiceEvent> createMatcher(EventChannel<ServiceEvent> channel) {
+                final EventMatcher<ServiceEvent> matcher = ((ServiceEventChannel) channel).matcher(filter, all, eventTypeMask);
+                if (className == null) {
+                    return matcher;
+                }
+                return new EventMatcher<ServiceEvent>() {
+                    public boolean matches(ServiceEvent event) {
+                        String[] classes = (String[]) event.getServiceReference().getProperty(Constants.OBJECTCLASS);
+                        return classes != null && Arrays.asList(classes).contains(className) && matcher.matches(event);
+                    }
+                };
+            }
+
+            @Override
+            public String toString() {
+                return String.format("ServiceEvent[%s - %s, %s]", getEventTypeMask(), className, filter);
+            }
+        };
+    }
+
+    @Override
+    protected void register(BundleContext bc) {
+        bc.addServiceListener(this);
+    }
+
+    @Override
+    protected void unregister(BundleContext bc) {
+        bc.removeServiceListener(this);
+    }
+
+    @Override
+    protected int getEventType(ServiceEvent event) {
+        return event.getType();
+    }
+
+    @Override
+    protected String[] getKeys(ServiceEvent event) {
+        String[] classes = (String[]) event.getServiceReference().getProperty(Constants.OBJECTCLASS);
+        return classes == null ? NO_KEYS : classes;
+    }
+
+    private MatchTracker track(Filter filter) {
+        MatchTracker tracker = new MatchTracker(filter);
+        // tracker is added before the lookup, so changes during the lookup are not lost
+        synchronized (trackers) {
+            trackers.put(tracker, Boolean.TRUE);
+        }
+        ServiceReference[] references;
+        try {
+            references = getBundleContext().getAllServiceReferences(null, filter.toString());
+        } catch (InvalidSyntaxException e) {
+            throw new IllegalArgumentException("Unable to create filter", e);
+        }
+        if (references != null) {
+            tracker.addAll(references);
+        }
+        return tracker;
+    }
+
+    private boolean isAssignable(ServiceReference reference) {
+        Bundle bundle = getBundleContext().getBundle();
+        String[] classes = (String[]) reference.getProperty(Constants.OBJECTCLASS);
+        if (classes != null) {
+            for (String className : classes) {
+                if (!reference.isAssignableTo(bundle, className)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Services that currently match the filter of one matcher
+     */
+    private static class MatchTracker {
+        private final Filter filter;
+        private final Set<ServiceReference> matched = new HashSet<ServiceReference>();
+
+        private MatchTracker(Filter filter) {
+            this.filter = filter;
+        }
+
+        private synchronized void addAll(ServiceReference[] references) {
+            matched.addAll(Arrays.asList(references));
+        }
+
+        /**
+         * Update matched services with the event
+         *
+         * @param event event
+         * @return <code>true</code> if the service matched the filter before modification and does not match now
+         */
+        private synchronized boolean update(ServiceEvent event) {
+            ServiceReference reference = event.getServiceReference();
+            switch (event.getType()) {
+                case ServiceEvent.REGISTERED:
+                case ServiceEvent.MODIFIED:
+                    if (filter.match(reference)) {
+                        matched.add(reference);
+                        return false;
+                    }
+                    return matched.remove(reference) && event.getType() == ServiceEvent.MODIFIED;
+                case ServiceEvent.UNREGISTERING:
+                    matched.remove(reference);
+                    return false;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    /**
+     * <code>MODIFIED_ENDMATCH</code> event of one matcher
+     */
+    private static class EndMatchEvent extends ServiceEvent {
+        private static final long serialVersionUID = 1L;
+
+        private final transient MatchTracker tracker;
+
+        private EndMatchEvent(ServiceReference reference, MatchTracker tracker) {
+            super(MODIFIED_ENDMATCH, reference);
+            this.tracker = tracker;
+        }
+    }
+}
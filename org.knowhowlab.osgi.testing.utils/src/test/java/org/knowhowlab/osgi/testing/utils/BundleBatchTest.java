@@ -0,0 +1,113 @@
+package org.knowhowlab.osgi.testing.utils;
+
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.knowhowlab.osgi.testing.utils.async.AsyncExecutors;
+import org.knowhowlab.osgi.testing.utils.async.Promise;
+import org.knowhowlab.osgi.testing.utils.async.Promises;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleException;
+import org.osgi.service.packageadmin.ExportedPackage;
+import org.osgi.service.packageadmin.PackageAdmin;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+public class BundleBatchTest {
+    private FakeFramework framework;
+    private Bundle a;
+    private Bundle b;
+    private Bundle c;
+    private BundleContext bc;
+
+    @Before
+    public void setUp() throws Exception {
+        framework = new FakeFramework();
+        bc = framework.getBundleContext();
+        a = framework.addBundle("a", Bundle.RESOLVED);
+        b = framework.addBundle("b", Bundle.RESOLVED);
+        c = framework.addBundle("c", Bundle.RESOLVED);
+        framework.fail(c, "start", new BundleException("start failed"));
+        final ExportedPackage exportedPackage = FakeFramework.stub(ExportedPackage.class, new FakeFramework.Answer() {
+            public Object answer(String method, Object[] args) {
+                return method.equals("getImportingBundles") ? new Bundle[]{a, b} : null;
+            }
+        });
+        framework.registerService(PackageAdmin.class.getName(), FakeFramework.stub(PackageAdmin.class, new FakeFramework.Answer() {
+            public Object answer(String method, Object[] args) {
+                if (method.equals("getExportedPackages") && args[0] == a) {
+                    return new ExportedPackage[]{exportedPackage};
+                } else if (method.equals("resolveBundles")) {
+                    return true;
+                }
+                return null;
+            }
+        }), null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ServiceTrackerPool.getPool(bc).close();
+        AsyncExecutors.shutdown();
+    }
+
+    @Test
+    public void testPlan() throws Exception {
+        List<List<Bundle>> start = new BundleBatch(bc, BundleBatch.Operation.START).plan(Arrays.asList(b, c, a));
+        Assert.assertEquals(Arrays.asList(Arrays.asList(c, a), Arrays.asList(b)), start);
+        List<List<Bundle>> stop = new BundleBatch(bc, BundleBatch.Operation.STOP).plan(Arrays.asList(b, c, a));
+        Assert.assertEquals(Arrays.asList(Arrays.asList(b), Arrays.asList(c, a)), stop);
+    }
+
+    @Test
+    public void testStartBundles_aggregatesFailures() throws Exception {
+        BundleBatchResult result = BundleUtils.startBundles(bc, Arrays.asList(a, b, c));
+        Assert.assertEquals(3, result.getBundles().size());
+        Assert.assertFalse(result.isSuccessful());
+        Assert.assertEquals(1, result.getFailures().size());
+        Assert.assertTrue(result.getFailures().get(c) instanceof BundleException);
+        Assert.assertTrue(result.getDuration(a, TimeUnit.NANOSECONDS) >= 0);
+        Assert.assertEquals(-1, result.getDuration(framework.getSystemBundle(), TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testStartBundles_fromSharedPoolThread() throws Exception {
+        AsyncExecutors.shutdown();
+        System.setProperty(AsyncExecutors.POOL_SIZE_PROPERTY, "1");
+        System.setProperty(AsyncExecutors.VIRTUAL_THREADS_PROPERTY, "false");
+        try {
+            Promise<BundleBatchResult> promise = AsyncExecutors.schedule(new Callable<BundleBatchResult>() {
+                public BundleBatchResult call() throws Exception {
+                    return BundleUtils.startBundles(bc, Arrays.asList(a, b));
+                }
+            }, 0, TimeUnit.MILLISECONDS);
+            BundleBatchResult result = Promises.waitFor(promise, 5, TimeUnit.SECONDS);
+            Assert.assertNotNull("batch is blocked by its own pool thread", result);
+            Assert.assertTrue(result.isSuccessful());
+        } finally {
+            System.clearProperty(AsyncExecutors.POOL_SIZE_PROPERTY);
+            System.clearProperty(AsyncExecutors.VIRTUAL_THREADS_PROPERTY);
+        }
+    }
+
+    @Test
+    public void testExecute_interrupted() throws Exception {
+        framework.delay(a, "start", 200);
+        Thread.currentThread().interrupt();
+        BundleBatchResult result;
+        try {
+            result = new BundleBatch(bc, BundleBatch.Operation.START).execute(Arrays.asList(a, b));
+            Assert.assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+        Assert.assertFalse(result.isSuccessful());
+        Assert.assertTrue(result.getFailures().get(b) instanceof InterruptedException);
+        Assert.assertFalse(framework.getBundleCalls().contains("b:start"));
+    }
+}
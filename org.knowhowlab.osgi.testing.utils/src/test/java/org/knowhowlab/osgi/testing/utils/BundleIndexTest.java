@@ -0,0 +1,53 @@
+package org.knowhowlab.osgi.testing.utils;
+
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.SynchronousBundleListener;
+import org.osgi.framework.Version;
+
+public class BundleIndexTest {
+    private FakeFramework framework;
+
+    @Before
+    public void setUp() throws Exception {
+        framework = new FakeFramework();
+        framework.addBundle("location1", "a", "1.0.0", Bundle.INSTALLED);
+        framework.addBundle("location2", "a", "2.0.0", Bundle.INSTALLED);
+        framework.addBundle("location3", "b", "1.0.0", Bundle.INSTALLED);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        BundleIndex.getIndex(framework.getBundleContext()).close();
+        Assert.assertTrue(framework.getBundleListeners().isEmpty());
+    }
+
+    @Test
+    public void testGetBundle() throws Exception {
+        BundleIndex index = BundleIndex.getIndex(framework.getBundleContext());
+        Assert.assertEquals(1, framework.getBundleListeners().size());
+        Assert.assertTrue(framework.getBundleListeners().get(0) instanceof SynchronousBundleListener);
+        Assert.assertEquals(2, index.getBundle("a").getBundleId());
+        Assert.assertEquals(2, index.getBundle("a", new Version("1.5.0")).getBundleId());
+        Assert.assertNull(index.getBundle("a", new Version("3.0.0")));
+        Assert.assertEquals(2, index.getBundles("a").size());
+        Assert.assertEquals(3, index.getBundleByLocation("location3").getBundleId());
+        Assert.assertNull(index.getBundle("c"));
+    }
+
+    @Test
+    public void testBundleEvents() throws Exception {
+        BundleIndex index = BundleIndex.getIndex(framework.getBundleContext());
+        Bundle bundle = framework.addBundle("location4", "a", "3.0.0", Bundle.INSTALLED);
+        Assert.assertSame(bundle, index.getBundle("a"));
+        Assert.assertSame(bundle, index.getBundleByLocation("location4"));
+
+        bundle.uninstall();
+        Assert.assertEquals(2, index.getBundle("a").getBundleId());
+        Assert.assertNull(index.getBundleByLocation("location4"));
+        Assert.assertEquals(2, index.getBundles("a").size());
+    }
+}
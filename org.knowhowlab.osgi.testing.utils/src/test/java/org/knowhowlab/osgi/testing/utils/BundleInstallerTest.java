@@ -0,0 +1,172 @@
+package org.knowhowlab.osgi.testing.utils;
+
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.knowhowlab.osgi.testing.utils.async.AsyncExecutors;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleException;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class BundleInstallerTest {
+    private FakeFramework framework;
+    private File directory;
+    private BundleContext bc;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("bundles", "");
+        Assert.assertTrue(directory.delete());
+        Assert.assertTrue(directory.mkdir());
+        framework = new FakeFramework();
+        bc = framework.getBundleContext();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        BundleIndex.getIndex(bc).close();
+        AsyncExecutors.shutdown();
+        for (File file : directory.listFiles()) {
+            Assert.assertTrue(file.delete());
+        }
+        Assert.assertTrue(directory.delete());
+    }
+
+    @Test
+    public void testInstallBundles_fromDirectory() throws Exception {
+        File bundle = jar("bundle.jar", "test.bundle");
+        File legacy = jar("legacy.jar", null);
+        File library = new File(directory, "library.jar");
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(library));
+        try {
+            zip.putNextEntry(new ZipEntry("data.txt"));
+            zip.closeEntry();
+        } finally {
+            zip.close();
+        }
+        Assert.assertTrue(new File(directory, "readme.txt").createNewFile());
+
+        BundleInstallResult result = BundleUtils.installBundles(bc, directory);
+
+        Assert.assertEquals(new HashSet<String>(Arrays.asList(bundle.toURI().toString(), legacy.toURI().toString())),
+                result.getBundles().keySet());
+        Assert.assertTrue(result.getFailures().get(library.toURI().toString()) instanceof BundleException);
+        Assert.assertTrue(Arrays.equals(readFully(new FileInputStream(bundle)), framework.getContent(bundle.toURI().toString())));
+        int count = 0;
+        for (Integer bucket : result.getHistogram().values()) {
+            count += bucket;
+        }
+        Assert.assertEquals(3, count);
+    }
+
+    @Test
+    public void testInstallBundles_manifestIsNotFirstEntry() throws Exception {
+        File file = new File(directory, "bundle.jar");
+        ZipOutputStream output = new ZipOutputStream(new FileOutputStream(file));
+        try {
+            output.putNextEntry(new ZipEntry("data.txt"));
+            output.closeEntry();
+            output.putNextEntry(new ZipEntry(JarFile.MANIFEST_NAME));
+            output.write("Manifest-Version: 1.0\nBundle-SymbolicName: test.bundle\n\n".getBytes("UTF-8"));
+            output.closeEntry();
+        } finally {
+            output.close();
+        }
+
+        BundleInstallResult result = BundleUtils.installBundles(bc, directory);
+
+        Assert.assertTrue(result.getFailures().isEmpty());
+        Assert.assertNotNull(result.getBundles().get(file.toURI().toString()));
+    }
+
+    @Test
+    public void testInstallOrReuseBundle_identicalContent() throws Exception {
+        File file = jar("bundle.jar", "test.bundle");
+        byte[] content = readFully(new FileInputStream(file));
+
+        Bundle bundle = BundleUtils.installOrReuseBundle(bc, file.toURI());
+        Assert.assertSame(bundle, BundleUtils.installOrReuseBundle(bc, "copy", new ByteArrayInputStream(content)));
+        Assert.assertSame(bundle, BundleUtils.installBundles(bc, directory).getBundles().get(file.toURI().toString()));
+
+        Assert.assertEquals(1, framework.getCalls("installBundle"));
+    }
+
+    @Test
+    public void testInstallOrReuseBundle_concurrentIdenticalContent() throws Exception {
+        final byte[] content = readFully(new FileInputStream(jar("bundle.jar", "test.bundle")));
+        framework.delay("installBundle", 50);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Bundle> bundles = Collections.synchronizedList(new ArrayList<Bundle>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            final String location = "location" + i;
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                        bundles.add(BundleUtils.installOrReuseBundle(bc, location, new ByteArrayInputStream(content)));
+                    } catch (Exception e) {
+                        // missing bundle fails the test
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(8, bundles.size());
+        Assert.assertEquals(1, new HashSet<Bundle>(bundles).size());
+        Assert.assertEquals(1, framework.getCalls("installBundle"));
+    }
+
+    private File jar(String name, String symbolicName) throws IOException {
+        File file = new File(directory, name);
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        if (symbolicName != null) {
+            manifest.getMainAttributes().putValue("Bundle-SymbolicName", symbolicName);
+        }
+        JarOutputStream output = new JarOutputStream(new FileOutputStream(file), manifest);
+        try {
+            output.putNextEntry(new ZipEntry("data.txt"));
+            output.write(name.getBytes("UTF-8"));
+            output.closeEntry();
+        } finally {
+            output.close();
+        }
+        return file;
+    }
+
+    private static byte[] readFully(InputStream input) throws IOException {
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        } finally {
+            input.close();
+        }
+    }
+}
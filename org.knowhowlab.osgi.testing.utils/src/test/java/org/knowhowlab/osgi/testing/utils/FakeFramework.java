@@ -0,0 +1,669 @@
+package org.knowhowlab.osgi.testing.utils;
+
+import org.osgi.framework.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.*;
+import java.util.jar.JarInputStream;
+import java.util.jar.Manifest;
+
+/**
+ * In-memory fake of the OSGi framework for unit tests.
+ * <p/>
+ * BundleContext, Bundles, ServiceReferences and ServiceRegistrations are dynamic proxies backed by
+ * the fake registry. Bundle, service and framework events are delivered synchronously.
+ * Calls of BundleContext methods are counted by method name, calls of Bundle methods are recorded
+ * as <code>location:method</code>.
+ */
+public class FakeFramework {
+    /**
+     * Answer of the stubbed method
+     */
+    public static interface Answer {
+        /**
+         * @param method method name
+         * @param args   arguments or <code>null</code>
+         * @return result. <code>null</code> of primitive method is replaced with default value.
+         * @throws Exception thrown to the caller
+         */
+        Object answer(String method, Object[] args) throws Exception;
+    }
+
+    private final List<FakeBundle> bundles = new ArrayList<FakeBundle>();
+    private final List<FakeService> services = new ArrayList<FakeService>();
+    private final Map<ServiceListener, Filter> serviceListeners = new LinkedHashMap<ServiceListener, Filter>();
+    private final List<BundleListener> bundleListeners = new ArrayList<BundleListener>();
+    private final List<FrameworkListener> frameworkListeners = new ArrayList<FrameworkListener>();
+    private final Map<String, Integer> calls = new HashMap<String, Integer>();
+    private final List<String> bundleCalls = new ArrayList<String>();
+    private final Map<String, Exception> failures = new HashMap<String, Exception>();
+    private final Map<String, Long> delays = new HashMap<String, Long>();
+    private final Map<String, byte[]> contents = new HashMap<String, byte[]>();
+    private final BundleContext bc;
+    private final Bundle systemBundle;
+    private long nextBundleId;
+    private long nextServiceId = 1;
+
+    public FakeFramework() {
+        bc = (BundleContext) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{BundleContext.class}, new ContextHandler());
+        systemBundle = addBundle(Constants.SYSTEM_BUNDLE_LOCATION, Constants.SYSTEM_BUNDLE_SYMBOLICNAME, null, Bundle.ACTIVE);
+    }
+
+    /**
+     * Create stub with default <code>equals</code>, <code>hashCode</code> and <code>toString</code>
+     *
+     * @param type   stubbed interface
+     * @param answer answer of other methods. If <code>null</code> - default values are returned.
+     * @return stub
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T stub(Class<T> type, final Answer answer) {
+        return (T) Proxy.newProxyInstance(FakeFramework.class.getClassLoader(), new Class[]{type}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                Object result = invokeObjectMethod(proxy, method, args);
+                if (result == null && answer != null) {
+                    result = answer.answer(method.getName(), args);
+                }
+                return result != null ? result : defaultValue(method);
+            }
+        });
+    }
+
+    public BundleContext getBundleContext() {
+        return bc;
+    }
+
+    public Bundle getSystemBundle() {
+        return systemBundle;
+    }
+
+    /**
+     * Add bundle without headers
+     *
+     * @param location location
+     * @param state    bundle state
+     * @return bundle
+     */
+    public Bundle addBundle(String location, int state) {
+        return addBundle(location, null, null, state);
+    }
+
+    /**
+     * Add bundle and notify bundle listeners
+     *
+     * @param location     location
+     * @param symbolicName symbolic name or <code>null</code>
+     * @param version      version or <code>null</code>
+     * @param state        bundle state
+     * @return bundle
+     */
+    public Bundle addBundle(String location, String symbolicName, String version, int state) {
+        Hashtable<String, String> headers = new Hashtable<String, String>();
+        if (symbolicName != null) {
+            headers.put(Constants.BUNDLE_SYMBOLICNAME, symbolicName);
+        }
+        if (version != null) {
+            headers.put(Constants.BUNDLE_VERSION, version);
+        }
+        Bundle bundle = addBundle(location, headers, state).proxy;
+        fireBundleEvent(BundleEvent.INSTALLED, bundle);
+        return bundle;
+    }
+
+    /**
+     * Register service from the system bundle
+     *
+     * @param className  service class name
+     * @param service    service object
+     * @param properties service properties or <code>null</code>
+     * @return service registration
+     */
+    public ServiceRegistration registerService(String className, Object service, Dictionary properties) {
+        return bc.registerService(className, service, properties);
+    }
+
+    /**
+     * Throw exception on the next calls of the bundle method
+     *
+     * @param bundle    bundle
+     * @param method    method name
+     * @param exception exception
+     */
+    public synchronized void fail(Bundle bundle, String method, Exception exception) {
+        failures.put(bundle.getLocation() + ":" + method, exception);
+    }
+
+    /**
+     * Delay calls of the bundle method
+     *
+     * @param bundle bundle
+     * @param method method name
+     * @param millis delay in milliseconds
+     */
+    public synchronized void delay(Bundle bundle, String method, long millis) {
+        delays.put(bundle.getLocation() + ":" + method, millis);
+    }
+
+    /**
+     * Delay calls of BundleContext method, e.g. to widen race windows
+     *
+     * @param method method name
+     * @param millis delay in milliseconds
+     */
+    public synchronized void delay(String method, long millis) {
+        delays.put(method, millis);
+    }
+
+    public void fireFrameworkEvent(int type) {
+        FrameworkEvent event = new FrameworkEvent(type, systemBundle, null);
+        for (FrameworkListener listener : getFrameworkListeners()) {
+            listener.frameworkEvent(event);
+        }
+    }
+
+    public void fireBundleEvent(int type, Bundle bundle) {
+        BundleEvent event = new BundleEvent(type, bundle);
+        for (BundleListener listener : getBundleListeners()) {
+            listener.bundleChanged(event);
+        }
+    }
+
+    public synchronized List<BundleListener> getBundleListeners() {
+        return new ArrayList<BundleListener>(bundleListeners);
+    }
+
+    public synchronized List<FrameworkListener> getFrameworkListeners() {
+        return new ArrayList<FrameworkListener>(frameworkListeners);
+    }
+
+    public synchronized int getServiceListenerCount() {
+        return serviceListeners.size();
+    }
+
+    /**
+     * Get number of calls of BundleContext method
+     *
+     * @param method method name
+     * @return number of calls
+     */
+    public synchronized int getCalls(String method) {
+        Integer count = calls.get(method);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Get recorded calls of Bundle methods
+     *
+     * @return calls as <code>location:method</code>
+     */
+    public synchronized List<String> getBundleCalls() {
+        return new ArrayList<String>(bundleCalls);
+    }
+
+    public synchronized void clearCalls() {
+        calls.clear();
+        bundleCalls.clear();
+    }
+
+    /**
+     * Get content of the last install or update of the bundle
+     *
+     * @param location bundle location
+     * @return content or <code>null</code>
+     */
+    public synchronized byte[] getContent(String location) {
+        return contents.get(location);
+    }
+
+    /**
+     * Get number of <code>getService</code> calls without <code>ungetService</code>
+     *
+     * @param reference service reference
+     * @return use count
+     */
+    public synchronized int getUseCount(ServiceReference reference) {
+        FakeService service = findService(reference);
+        return service != null ? service.useCount : 0;
+    }
+
+    private synchronized FakeBundle addBundle(String location, Hashtable<String, String> headers, int state) {
+        FakeBundle bundle = new FakeBundle(nextBundleId++, location, headers, state);
+        bundles.add(bundle);
+        return bundle;
+    }
+
+    private FakeBundle installBundle(String location, InputStream input) throws BundleException {
+        FakeBundle bundle;
+        synchronized (this) {
+            for (FakeBundle installed : bundles) {
+                if (installed.location.equals(location)) {
+                    return installed;
+                }
+            }
+            byte[] content = read(location, input);
+            contents.put(location, content);
+            bundle = new FakeBundle(nextBundleId++, location, readHeaders(content), Bundle.INSTALLED);
+            bundles.add(bundle);
+        }
+        fireBundleEvent(BundleEvent.INSTALLED, bundle.proxy);
+        return bundle;
+    }
+
+    private synchronized FakeService findService(ServiceReference reference) {
+        for (FakeService service : services) {
+            if (service.reference == reference) {
+                return service;
+            }
+        }
+        return null;
+    }
+
+    private synchronized ServiceReference[] findServices(String className, String filter) throws InvalidSyntaxException {
+        Filter parsed = filter != null ? FrameworkUtil.createFilter(filter) : null;
+        List<ServiceReference> references = new ArrayList<ServiceReference>();
+        for (FakeService service : services) {
+            if ((className == null || Arrays.asList(service.classes).contains(className))
+                    && (parsed == null || parsed.match(service.reference))) {
+                references.add(service.reference);
+            }
+        }
+        return references.isEmpty() ? null : references.toArray(new ServiceReference[references.size()]);
+    }
+
+    private synchronized ServiceReference[] getServicesInUse() {
+        List<ServiceReference> references = new ArrayList<ServiceReference>();
+        for (FakeService service : services) {
+            if (service.useCount > 0) {
+                references.add(service.reference);
+            }
+        }
+        return references.isEmpty() ? null : references.toArray(new ServiceReference[references.size()]);
+    }
+
+    private void fireServiceEvent(int type, ServiceReference reference) {
+        ServiceEvent event = new ServiceEvent(type, reference);
+        Map<ServiceListener, Filter> listeners;
+        synchronized (this) {
+            listeners = new LinkedHashMap<ServiceListener, Filter>(serviceListeners);
+        }
+        for (Map.Entry<ServiceListener, Filter> entry : listeners.entrySet()) {
+            if (entry.getValue() == null || entry.getValue().match(reference)) {
+                entry.getKey().serviceChanged(event);
+            }
+        }
+    }
+
+    private static Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+        String name = method.getName();
+        if (name.equals("equals") && method.getParameterTypes().length == 1) {
+            return proxy == args[0];
+        } else if (name.equals("hashCode") && method.getParameterTypes().length == 0) {
+            return System.identityHashCode(proxy);
+        } else if (name.equals("toString") && method.getParameterTypes().length == 0) {
+            return "proxy" + System.identityHashCode(proxy);
+        }
+        return null;
+    }
+
+    private static Object defaultValue(Method method) {
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class) {
+            return false;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == int.class) {
+            return 0;
+        }
+        return null;
+    }
+
+    private static byte[] read(String location, InputStream input) throws BundleException {
+        try {
+            if (input == null) {
+                try {
+                    input = new URL(location).openStream();
+                } catch (MalformedURLException e) {
+                    // location is not URL, bundle is empty
+                    return new byte[0];
+                }
+            }
+            try {
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                byte[] buffer = new byte[1024];
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    output.write(buffer, 0, read);
+                }
+                return output.toByteArray();
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            throw new BundleException("Unable to read bundle: " + location, e);
+        }
+    }
+
+    private static Hashtable<String, String> readHeaders(byte[] content) {
+        Hashtable<String, String> headers = new Hashtable<String, String>();
+        try {
+            Manifest manifest = new JarInputStream(new ByteArrayInputStream(content)).getManifest();
+            if (manifest != null) {
+                for (Map.Entry<Object, Object> entry : manifest.getMainAttributes().entrySet()) {
+                    headers.put(entry.getKey().toString(), entry.getValue().toString());
+                }
+            }
+        } catch (IOException e) {
+            // not a jar
+        }
+        return headers;
+    }
+
+    private class ContextHandler implements InvocationHandler {
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = invokeObjectMethod(proxy, method, args);
+            if (result != null) {
+                return result;
+            }
+            String name = method.getName();
+            Long delay;
+            synchronized (FakeFramework.this) {
+                calls.put(name, getCalls(name) + 1);
+                delay = delays.get(name);
+            }
+            if (delay != null) {
+                Thread.sleep(delay);
+            }
+            result = call(name, args);
+            return result != null ? result : defaultValue(method);
+        }
+
+        private Object call(String name, Object[] args) throws Exception {
+            if (name.equals("getBundle")) {
+                if (args == null) {
+                    return systemBundle;
+                }
+                synchronized (FakeFramework.this) {
+                    for (FakeBundle bundle : bundles) {
+                        if (bundle.id == (Long) args[0]) {
+                            return bundle.proxy;
+                        }
+                    }
+                }
+                return null;
+            } else if (name.equals("getBundles")) {
+                synchronized (FakeFramework.this) {
+                    Bundle[] result = new Bundle[bundles.size()];
+                    for (int i = 0; i < result.length; i++) {
+                        result[i] = bundles.get(i).proxy;
+                    }
+                    return result;
+                }
+            } else if (name.equals("installBundle")) {
+                return installBundle((String) args[0], args.length > 1 ? (InputStream) args[1] : null).proxy;
+            } else if (name.equals("registerService")) {
+                String[] classes = args[0] instanceof String ? new String[]{(String) args[0]} : (String[]) args[0];
+                FakeService service;
+                synchronized (FakeFramework.this) {
+                    service = new FakeService(nextServiceId++, classes, args[1], (Dictionary) args[2]);
+                    services.add(service);
+                }
+                fireServiceEvent(ServiceEvent.REGISTERED, service.reference);
+                return service.registration;
+            } else if (name.equals("getServiceReference")) {
+                ServiceReference[] references = findServices((String) args[0], null);
+                return references != null ? references[0] : null;
+            } else if (name.equals("getServiceReferences") || name.equals("getAllServiceReferences")) {
+                return findServices((String) args[0], (String) args[1]);
+            } else if (name.equals("getService")) {
+                synchronized (FakeFramework.this) {
+                    FakeService service = findService((ServiceReference) args[0]);
+                    if (service == null) {
+                        return null;
+                    }
+                    service.useCount++;
+                    return service.service;
+                }
+            } else if (name.equals("ungetService")) {
+                synchronized (FakeFramework.this) {
+                    FakeService service = findService((ServiceReference) args[0]);
+                    if (service == null || service.useCount == 0) {
+                        return false;
+                    }
+                    service.useCount--;
+                    return true;
+                }
+            } else if (name.equals("getServicesInUse")) {
+                return getServicesInUse();
+            } else if (name.equals("createFilter")) {
+                return FrameworkUtil.createFilter((String) args[0]);
+            } else if (name.equals("addServiceListener")) {
+                Filter filter = args.length > 1 && args[1] != null ? FrameworkUtil.createFilter((String) args[1]) : null;
+                synchronized (FakeFramework.this) {
+                    serviceListeners.put((ServiceListener) args[0], filter);
+                }
+            } else if (name.equals("removeServiceListener")) {
+                synchronized (FakeFramework.this) {
+                    serviceListeners.remove(args[0]);
+                }
+            } else if (name.equals("addBundleListener")) {
+                synchronized (FakeFramework.this) {
+                    bundleListeners.add((BundleListener) args[0]);
+                }
+            } else if (name.equals("removeBundleListener")) {
+                synchronized (FakeFramework.this) {
+                    bundleListeners.remove(args[0]);
+                }
+            } else if (name.equals("addFrameworkListener")) {
+                synchronized (FakeFramework.this) {
+                    frameworkListeners.add((FrameworkListener) args[0]);
+                }
+            } else if (name.equals("removeFrameworkListener")) {
+                synchronized (FakeFramework.this) {
+                    frameworkListeners.remove(args[0]);
+                }
+            }
+            return null;
+        }
+    }
+
+    private class FakeBundle implements InvocationHandler {
+        private final long id;
+        private final String location;
+        private final Bundle proxy;
+        private Hashtable<String, String> headers;
+        private int state;
+        private long lastModified;
+
+        private FakeBundle(long id, String location, Hashtable<String, String> headers, int state) {
+            this.id = id;
+            this.location = location;
+            this.headers = headers;
+            this.state = state;
+            this.proxy = (Bundle) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Bundle.class}, this);
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("toString")) {
+                return location;
+            }
+            Object result = invokeObjectMethod(proxy, method, args);
+            if (result != null) {
+                return result;
+            }
+            Exception failure;
+            Long delay;
+            synchronized (FakeFramework.this) {
+                bundleCalls.add(location + ":" + name);
+                failure = failures.get(location + ":" + name);
+                delay = delays.get(location + ":" + name);
+            }
+            if (delay != null) {
+                Thread.sleep(delay);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            result = call(name, args);
+            return result != null ? result : defaultValue(method);
+        }
+
+        private Object call(String name, Object[] args) throws Exception {
+            if (name.equals("getBundleId")) {
+                return id;
+            } else if (name.equals("getLocation")) {
+                return location;
+            } else if (name.equals("getSymbolicName")) {
+                String symbolicName = headers.get(Constants.BUNDLE_SYMBOLICNAME);
+                return symbolicName != null ? symbolicName.split(";")[0].trim() : null;
+            } else if (name.equals("getVersion")) {
+                return Version.parseVersion(headers.get(Constants.BUNDLE_VERSION));
+            } else if (name.equals("getHeaders")) {
+                return new Hashtable<String, String>(headers);
+            } else if (name.equals("getBundleContext")) {
+                return bc;
+            } else if (name.equals("getServicesInUse")) {
+                // services are used through the system bundle context only
+                return id == 0 ? getServicesInUse() : null;
+            } else if (name.equals("loadClass")) {
+                throw new ClassNotFoundException((String) args[0]);
+            }
+            int type;
+            synchronized (FakeFramework.this) {
+                if (name.equals("getState")) {
+                    return state;
+                } else if (name.equals("getLastModified")) {
+                    return lastModified;
+                } else if (!name.equals("start") && !name.equals("stop") && !name.equals("update") && !name.equals("uninstall")) {
+                    return null;
+                } else if (state == Bundle.UNINSTALLED) {
+                    throw new IllegalStateException("Bundle is uninstalled: " + location);
+                } else if (name.equals("start")) {
+                    state = Bundle.ACTIVE;
+                    type = BundleEvent.STARTED;
+                } else if (name.equals("stop")) {
+                    state = Bundle.RESOLVED;
+                    type = BundleEvent.STOPPED;
+                } else if (name.equals("update")) {
+                    if (args != null) {
+                        byte[] content = read(location, (InputStream) args[0]);
+                        contents.put(location, content);
+                        headers = readHeaders(content);
+                    }
+                    lastModified++;
+                    type = BundleEvent.UPDATED;
+                } else {
+                    state = Bundle.UNINSTALLED;
+                    bundles.remove(this);
+                    type = BundleEvent.UNINSTALLED;
+                }
+            }
+            fireBundleEvent(type, proxy);
+            return null;
+        }
+    }
+
+    private class FakeService {
+        private final String[] classes;
+        private final Object service;
+        private final Hashtable<String, Object> properties = new Hashtable<String, Object>();
+        private final ServiceReference reference;
+        private final ServiceRegistration registration;
+        private int useCount;
+        private boolean unregistered;
+
+        private FakeService(long id, String[] classes, Object service, Dictionary properties) {
+            this.classes = classes;
+            this.service = service;
+            setProperties(properties);
+            this.properties.put(Constants.SERVICE_ID, id);
+            this.properties.put(Constants.OBJECTCLASS, classes);
+            this.reference = (ServiceReference) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{ServiceReference.class}, new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    Object result = invokeObjectMethod(proxy, method, args);
+                    if (result == null) {
+                        result = callReference(method.getName(), args);
+                    }
+                    return result != null ? result : defaultValue(method);
+                }
+            });
+            this.registration = (ServiceRegistration) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{ServiceRegistration.class}, new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    Object result = invokeObjectMethod(proxy, method, args);
+                    if (result == null) {
+                        result = callRegistration(method.getName(), args);
+                    }
+                    return result;
+                }
+            });
+        }
+
+        private void setProperties(Dictionary properties) {
+            if (properties != null) {
+                for (Enumeration keys = properties.keys(); keys.hasMoreElements(); ) {
+                    Object key = keys.nextElement();
+                    this.properties.put((String) key, properties.get(key));
+                }
+            }
+        }
+
+        private Object callReference(String name, Object[] args) {
+            synchronized (FakeFramework.this) {
+                if (name.equals("getProperty")) {
+                    for (Map.Entry<String, Object> entry : properties.entrySet()) {
+                        if (entry.getKey().equalsIgnoreCase((String) args[0])) {
+                            return entry.getValue();
+                        }
+                    }
+                    return null;
+                } else if (name.equals("getPropertyKeys")) {
+                    return properties.keySet().toArray(new String[properties.size()]);
+                } else if (name.equals("getBundle")) {
+                    return unregistered ? null : systemBundle;
+                } else if (name.equals("getUsingBundles")) {
+                    return useCount > 0 ? new Bundle[]{systemBundle} : null;
+                } else if (name.equals("isAssignableTo")) {
+                    return true;
+                } else if (name.equals("compareTo")) {
+                    Long otherId = (Long) ((ServiceReference) args[0]).getProperty(Constants.SERVICE_ID);
+                    return otherId.compareTo((Long) properties.get(Constants.SERVICE_ID));
+                }
+                return null;
+            }
+        }
+
+        private Object callRegistration(String name, Object[] args) {
+            int type;
+            synchronized (FakeFramework.this) {
+                if (unregistered) {
+                    throw new IllegalStateException("Service is unregistered");
+                } else if (name.equals("getReference")) {
+                    return reference;
+                } else if (name.equals("setProperties")) {
+                    setProperties((Dictionary) args[0]);
+                    type = ServiceEvent.MODIFIED;
+                } else if (name.equals("unregister")) {
+                    type = ServiceEvent.UNREGISTERING;
+                } else {
+                    return null;
+                }
+            }
+            fireServiceEvent(type, reference);
+            if (type == ServiceEvent.UNREGISTERING) {
+                synchronized (FakeFramework.this) {
+                    unregistered = true;
+                    services.remove(this);
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.knowhowlab.osgi.testing.utils;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.osgi.framework.Filter;
+
+import java.util.Hashtable;
+
+public class FilterBuilderTest {
+    @Test
+    public void testBuild() throws Exception {
+        Filter filter = FilterBuilder.and().objectClass(Runnable.class).eq("a", 1)
+                .add(FilterBuilder.or().ge("b", 2).present("c"), FilterBuilder.not(FilterBuilder.and().le("d", 3)))
+                .build();
+        Assert.assertEquals("(&(objectClass=java.lang.Runnable)(a=1)(|(b>=2)(c=*))(!(d<=3)))", filter.toString());
+        Hashtable<String, Object> properties = new Hashtable<String, Object>();
+        properties.put("objectClass", new String[]{Runnable.class.getName()});
+        properties.put("a", 1);
+        properties.put("c", "");
+        Assert.assertTrue(filter.match(properties));
+    }
+
+    @Test
+    public void testImmutable() throws Exception {
+        FilterBuilder base = FilterBuilder.and().eq("a", 1);
+        FilterBuilder first = base.eq("b", 2);
+        FilterBuilder second = base.eq("c", 3);
+        Assert.assertEquals("(a=1)", base.toString());
+        Assert.assertEquals("(&(a=1)(b=2))", first.toString());
+        Assert.assertEquals("(&(a=1)(c=3))", second.toString());
+    }
+
+    @Test
+    public void testFlatten() throws Exception {
+        FilterBuilder builder = FilterBuilder.and(FilterBuilder.and().eq("a", 1).eq("b", 2), FilterBuilder.or().eq("c", 3))
+                .filter(FilterUtils.and(FilterUtils.eq("d", 4), FilterUtils.eq("e", 5)))
+                .filter(FilterUtils.or(FilterUtils.eq("f", 6), FilterUtils.eq("g", 7)));
+        Assert.assertEquals("(&(a=1)(b=2)(c=3)(d=4)(e=5)(|(f=6)(g=7)))", builder.build().toString());
+        Assert.assertEquals("(|(a=1)(b=2))", FilterBuilder.or().filter(FilterUtils.or("(a=1)", "(b=2)")).toString());
+        Assert.assertEquals("(&(|(a=1)(b=2))(c=3))",
+                FilterBuilder.and(FilterBuilder.or().filter(FilterUtils.or("(a=1)", "(b=2)"))).eq("c", 3).toString());
+    }
+
+    @Test
+    public void testFilterUtils() throws Exception {
+        Filter[] filters = new Filter[50];
+        for (int i = 0; i < filters.length; i++) {
+            filters[i] = FilterUtils.eq("key" + i, i);
+        }
+        Filter filter = FilterUtils.and(filters);
+        Assert.assertTrue(filter.toString().startsWith("(&(key0=0)(key1=1)"));
+        Assert.assertFalse(filter.toString().substring(2).contains("&"));
+        Assert.assertEquals("(|(a=1)(b=2)(c=3))", FilterUtils.or(FilterUtils.or("(a=1)", "(b=2)"), "(c=3)").toString());
+        Assert.assertSame(filters[0], FilterUtils.and(filters[0]));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testEmpty() throws Exception {
+        FilterBuilder.or().build();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNot_singleOperand() throws Exception {
+        FilterBuilder.not(FilterUtils.eq("a", 1)).eq("b", 2);
+    }
+}
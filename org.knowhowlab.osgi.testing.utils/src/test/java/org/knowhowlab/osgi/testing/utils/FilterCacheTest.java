@@ -0,0 +1,39 @@
+package org.knowhowlab.osgi.testing.utils;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.osgi.framework.Filter;
+import org.osgi.framework.InvalidSyntaxException;
+
+public class FilterCacheTest {
+    @Test
+    public void testGetFilter() throws Exception {
+        FilterCache cache = new FilterCache(2);
+        Filter filter = cache.getFilter("(a=1)");
+        Assert.assertSame(filter, cache.getFilter("(a=1)"));
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+
+        cache.getFilter("(b=2)");
+        cache.getFilter("(a=1)");
+        cache.getFilter("(c=3)");
+        Assert.assertEquals(2, cache.getSize());
+        Assert.assertSame(filter, cache.getFilter("(a=1)"));
+        cache.getFilter("(b=2)");
+        Assert.assertEquals(4, cache.getMissCount());
+
+        cache.clear();
+        Assert.assertEquals(0, cache.getSize());
+        Assert.assertEquals(0, cache.getHitCount());
+    }
+
+    @Test(expected = InvalidSyntaxException.class)
+    public void testGetFilter_invalid() throws Exception {
+        new FilterCache(2).getFilter("(a=1");
+    }
+
+    @Test
+    public void testFilterUtils() throws Exception {
+        Assert.assertSame(FilterUtils.create(Runnable.class), FilterUtils.eq("objectClass", Runnable.class.getName()));
+    }
+}
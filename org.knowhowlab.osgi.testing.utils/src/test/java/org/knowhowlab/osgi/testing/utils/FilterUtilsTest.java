@@ -0,0 +1,93 @@
+package org.knowhowlab.osgi.testing.utils;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.osgi.framework.Filter;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.Version;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+
+public class FilterUtilsTest {
+    @Test
+    public void testEscape() throws Exception {
+        String value = "plain value";
+        Assert.assertSame(value, FilterUtils.escape(value));
+        Assert.assertEquals("a\\*b\\(c\\)d\\\\", FilterUtils.escape("a*b(c)d\\"));
+        Assert.assertEquals("\\*", FilterUtils.escape("*"));
+    }
+
+    @Test
+    public void testEq_escaped() throws Exception {
+        Filter filter = FilterUtils.eq("name", "foo*(bar)");
+        Hashtable<String, Object> properties = new Hashtable<String, Object>();
+        properties.put("name", "foo*(bar)");
+        Assert.assertTrue(filter.match(properties));
+        properties.put("name", "foo-(bar)");
+        Assert.assertFalse(filter.match(properties));
+
+        properties.put("name", "a\\b");
+        Assert.assertTrue(FilterBuilder.and().eq("name", "a\\b").build().match(properties));
+        Assert.assertTrue(FilterUtils.ge("name", "a\\b").match(properties));
+        Assert.assertTrue(FilterUtils.le("name", "a\\b").match(properties));
+    }
+
+    @Test
+    public void testCompile() throws Exception {
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put("objectClass", new String[]{Runnable.class.getName()});
+        properties.put("Ranking", 10);
+        properties.put("weight", 1.5f);
+        properties.put("version", new Version(1, 2, 0));
+        properties.put("enabled", true);
+        properties.put("name", "Foo Bar");
+        properties.put("tags", Arrays.asList("a", "b(c)"));
+        properties.put("ids", new long[]{3, 4});
+
+        String[] matching = {
+                "(&(objectClass=java.lang.Runnable)(ranking>=5)(ranking<=10))",
+                "(weight=1.5)", "(version>=1.1)", "(enabled=true)", "(name~=foobar)", "(name=Foo*)",
+                "(name=*o B*r)", "(tags=b\\(c\\))", "(ids=4)", "(|(missing=1)(name=*))", "(!(ranking=11))"
+        };
+        String[] notMatching = {"(ranking>=11)", "(ranking=ten)", "(version<=1.1)", "(name=*x*)", "(!(name=*))", "(&(ids=4)(ids=5))"};
+        Hashtable<String, Object> dictionary = new Hashtable<String, Object>(properties);
+        for (String filter : matching) {
+            Assert.assertTrue(filter, FilterUtils.compile(filter).matches(properties));
+            Assert.assertTrue(filter, FilterUtils.compile(filter).match(dictionary));
+            Assert.assertTrue(filter, FilterUtils.compile(FilterCache.getCache().getFilter(filter)).match(dictionary));
+        }
+        for (String filter : notMatching) {
+            Assert.assertFalse(filter, FilterUtils.compile(filter).matches(properties));
+            Assert.assertFalse(filter, FilterUtils.compile(filter).match(dictionary));
+        }
+    }
+
+    @Test
+    public void testCompile_invalid() throws Exception {
+        for (String filter : new String[]{"(a=1", "a=1", "(=1)", "(&)", "(a=(1))", "(a=1))"}) {
+            try {
+                FilterUtils.compile(filter);
+                Assert.fail(filter);
+            } catch (InvalidSyntaxException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testNormalize() throws Exception {
+        Filter filter = FilterUtils.normalize(FilterUtils.and(
+                FilterUtils.eq("b", "x*"),
+                FilterUtils.not(FilterUtils.not(FilterUtils.eq("a", 1))),
+                FilterUtils.and(FilterUtils.eq("a", 1), FilterUtils.create(Runnable.class)),
+                FilterUtils.or("(c=1)", "(|(d=2)(c=1))"),
+                FilterUtils.eq("b", "x*")));
+        Assert.assertEquals("(&(objectClass=java.lang.Runnable)(a=1)(b=x\\*)(|(c=1)(d=2)))", filter.toString());
+        Assert.assertSame(filter, FilterUtils.normalize("(&(|(d=2)(c=1))(b=x\\*)(objectClass=java.lang.Runnable)(a=1))"));
+        Assert.assertEquals("(a=1)", FilterUtils.normalize("(&(a=1)(!(!(a=1))))").toString());
+        Assert.assertEquals("(a=b*c*)", FilterUtils.normalize("(a=b**c*)").toString());
+    }
+}
@@ -0,0 +1,115 @@
+package org.knowhowlab.osgi.testing.utils;
+
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.knowhowlab.osgi.testing.utils.async.AsyncExecutors;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+
+import java.util.List;
+
+public class FrameworkSnapshotTest {
+    private FakeFramework framework;
+    private BundleContext bc;
+
+    @Before
+    public void setUp() throws Exception {
+        framework = new FakeFramework();
+        bc = framework.getBundleContext();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ServiceTrackerPool.getPool(bc).close();
+        AsyncExecutors.shutdown();
+    }
+
+    @Test
+    public void testRestore() throws Exception {
+        Bundle stopped = framework.addBundle("stopped", Bundle.ACTIVE);
+        Bundle started = framework.addBundle("started", Bundle.RESOLVED);
+        Bundle uninstalled = framework.addBundle("uninstalled", Bundle.ACTIVE);
+        Bundle updated = framework.addBundle("updated", Bundle.RESOLVED);
+        Bundle untouched = framework.addBundle("untouched", Bundle.ACTIVE);
+        framework.registerService("test", new Object(), null);
+
+        FrameworkSnapshot snapshot = FrameworkSnapshot.capture(bc);
+        Assert.assertEquals(6, snapshot.getBundles().size());
+        Assert.assertEquals(Bundle.ACTIVE, snapshot.getBundle(stopped.getBundleId()).getState());
+
+        stopped.stop();
+        started.start();
+        uninstalled.uninstall();
+        updated.update();
+        Bundle installed = framework.addBundle("installed", Bundle.ACTIVE);
+        ServiceReference added = framework.registerService("test", new Object(), null).getReference();
+        Assert.assertEquals(1, snapshot.getAddedServices().size());
+        Assert.assertSame(added, snapshot.getAddedServices().get(0));
+        framework.clearCalls();
+
+        BundleBatchResult result = FrameworkSnapshot.restore(snapshot);
+
+        List<String> calls = framework.getBundleCalls();
+        Assert.assertTrue(result.isSuccessful());
+        Assert.assertEquals(Bundle.ACTIVE, stopped.getState());
+        Assert.assertEquals(Bundle.RESOLVED, started.getState());
+        Assert.assertEquals(Bundle.UNINSTALLED, installed.getState());
+        Assert.assertEquals(Bundle.RESOLVED, updated.getState());
+        Assert.assertEquals(Bundle.ACTIVE, bc.getBundles()[bc.getBundles().length - 1].getState());
+        Assert.assertEquals("uninstalled", bc.getBundles()[bc.getBundles().length - 1].getLocation());
+        Assert.assertEquals(Bundle.ACTIVE, untouched.getState());
+        Assert.assertFalse(calls.contains("untouched:start"));
+        Assert.assertFalse(calls.contains("untouched:stop"));
+        Assert.assertTrue(calls.contains("updated:update"));
+        Assert.assertFalse(calls.contains(Constants.SYSTEM_BUNDLE_LOCATION + ":stop"));
+    }
+
+    @Test
+    public void testRestore_twice() throws Exception {
+        Bundle uninstalled = framework.addBundle("uninstalled", Bundle.ACTIVE);
+        Bundle updated = framework.addBundle("updated", Bundle.RESOLVED);
+        FrameworkSnapshot snapshot = FrameworkSnapshot.capture(bc);
+        uninstalled.uninstall();
+        updated.update();
+
+        Assert.assertTrue(FrameworkSnapshot.restore(snapshot).isSuccessful());
+        Bundle reinstalled = bc.getBundles()[bc.getBundles().length - 1];
+        Assert.assertEquals("uninstalled", reinstalled.getLocation());
+        Assert.assertNotNull(snapshot.getBundle(reinstalled.getBundleId()));
+        Assert.assertNull(snapshot.getBundle(uninstalled.getBundleId()));
+        Assert.assertEquals(updated.getLastModified(), snapshot.getBundle(updated.getBundleId()).getLastModified());
+        framework.clearCalls();
+
+        BundleBatchResult result = FrameworkSnapshot.restore(snapshot);
+
+        Assert.assertTrue(result.isSuccessful());
+        Assert.assertEquals(0, framework.getCalls("installBundle"));
+        for (String call : framework.getBundleCalls()) {
+            Assert.assertFalse(call, call.matches(".*:(start|stop|update|uninstall)"));
+        }
+        Assert.assertEquals(Bundle.ACTIVE, reinstalled.getState());
+    }
+
+    @Test
+    public void testRestore_unregistersServices() throws Exception {
+        framework.registerService("test", new Object(), null);
+        FrameworkSnapshot snapshot = FrameworkSnapshot.capture(bc);
+        ServiceRegistration registration = ServiceUtils.registerServiceAsync(bc, "test", new Object(), null).get();
+        Assert.assertEquals(1, snapshot.getAddedServices().size());
+
+        FrameworkSnapshot.restore(snapshot);
+
+        Assert.assertTrue(snapshot.getAddedServices().isEmpty());
+        try {
+            registration.getReference();
+            Assert.fail("service is not unregistered");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.knowhowlab.osgi.testing.utils;
+
+import junit.framework.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+
+public class ServiceHandleTest {
+    private FakeFramework framework;
+    private BundleContext bc;
+    private ServiceReference reference;
+
+    @Before
+    public void setUp() throws Exception {
+        framework = new FakeFramework();
+        bc = framework.getBundleContext();
+        reference = framework.registerService(String.class.getName(), "service", null).getReference();
+    }
+
+    @Test
+    public void testClose_ungetsOnce() throws Exception {
+        ServiceHandle<String> handle = ServiceHandle.open(bc, reference);
+        Assert.assertEquals("service", handle.getService());
+        Assert.assertEquals(1, framework.getUseCount(reference));
+
+        handle.close();
+        handle.close();
+        Assert.assertTrue(handle.isClosed());
+        Assert.assertEquals(0, framework.getUseCount(reference));
+    }
+
+    @Test
+    public void testAudit_reportsHeldServices() throws Exception {
+        ServiceAudit audit = ServiceAudit.start(bc);
+        Assert.assertTrue(audit.isClean());
+
+        ServiceHandle<String> handle = ServiceHandle.open(bc, reference);
+        Assert.assertFalse(audit.isClean());
+        Assert.assertEquals(1, audit.getOpenHandles().size());
+        Assert.assertEquals(1, audit.getServicesInUse().size());
+
+        handle.close();
+        Assert.assertTrue(audit.isClean());
+    }
+}
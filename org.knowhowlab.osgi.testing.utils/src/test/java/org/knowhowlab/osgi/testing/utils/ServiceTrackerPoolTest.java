@@ -0,0 +1,59 @@
+package org.knowhowlab.osgi.testing.utils;
+
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.knowhowlab.osgi.testing.utils.async.AsyncExecutors;
+import org.osgi.framework.BundleContext;
+
+public class ServiceTrackerPoolTest {
+    private FakeFramework framework;
+    private BundleContext bc;
+
+    @Before
+    public void setUp() throws Exception {
+        System.setProperty(ServiceTrackerPool.MAX_SIZE_PROPERTY, "2");
+        framework = new FakeFramework();
+        bc = framework.getBundleContext();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        System.clearProperty(ServiceTrackerPool.MAX_SIZE_PROPERTY);
+        ServiceTrackerPool.getPool(bc).close();
+        AsyncExecutors.shutdown();
+    }
+
+    @Test
+    public void testGetServiceReference_reusesTracker() throws Exception {
+        ServiceTrackerPool pool = ServiceTrackerPool.getPool(bc);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertNull(pool.getServiceReference("a"));
+        }
+        Assert.assertEquals(1, pool.size());
+        Assert.assertEquals(1, framework.getCalls("addServiceListener"));
+        Assert.assertEquals(0, framework.getCalls("removeServiceListener"));
+    }
+
+    @Test
+    public void testGetServiceReference_evictsLeastRecentlyUsed() throws Exception {
+        ServiceTrackerPool pool = ServiceTrackerPool.getPool(bc);
+        pool.getServiceReference("a");
+        pool.getServiceReference("b");
+        pool.getServiceReference("a");
+        pool.getServiceReference("c");
+        Assert.assertEquals(2, pool.size());
+        Assert.assertEquals(1, framework.getCalls("removeServiceListener"));
+
+        // "a" is still pooled, "b" is evicted
+        pool.getServiceReference("a");
+        Assert.assertEquals(3, framework.getCalls("addServiceListener"));
+        pool.getServiceReference("b");
+        Assert.assertEquals(4, framework.getCalls("addServiceListener"));
+
+        pool.close();
+        Assert.assertEquals(0, pool.size());
+        Assert.assertEquals(4, framework.getCalls("removeServiceListener"));
+    }
+}
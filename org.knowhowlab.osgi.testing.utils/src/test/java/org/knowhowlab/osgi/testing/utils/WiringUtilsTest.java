@@ -0,0 +1,86 @@
+package org.knowhowlab.osgi.testing.utils;
+
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.knowhowlab.osgi.testing.utils.async.AsyncExecutors;
+import org.knowhowlab.osgi.testing.utils.async.Promise;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.service.packageadmin.PackageAdmin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class WiringUtilsTest {
+    private final List<List<Bundle>> refreshes = new ArrayList<List<Bundle>>();
+    private FakeFramework framework;
+    private BundleContext bc;
+
+    @Before
+    public void setUp() throws Exception {
+        framework = new FakeFramework();
+        bc = framework.getBundleContext();
+        framework.registerService(PackageAdmin.class.getName(), FakeFramework.stub(PackageAdmin.class, new FakeFramework.Answer() {
+            public Object answer(String method, Object[] args) {
+                if (method.equals("refreshPackages")) {
+                    refreshes.add(Arrays.asList((Bundle[]) args[0]));
+                }
+                return null;
+            }
+        }), null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ServiceTrackerPool.getPool(bc).close();
+        AsyncExecutors.shutdown();
+    }
+
+    @Test
+    public void testRefreshBundlesAsync_batchesPendingRequests() throws Exception {
+        Bundle b1 = framework.addBundle("b1", Bundle.INSTALLED);
+        Bundle b2 = framework.addBundle("b2", Bundle.INSTALLED);
+        Bundle b3 = framework.addBundle("b3", Bundle.INSTALLED);
+
+        Assert.assertFalse(WiringUtils.isFrameworkWiringAvailable(bc));
+        Promise<FrameworkEvent> first = WiringUtils.refreshBundlesAsync(bc, Arrays.asList(b1));
+        Promise<FrameworkEvent> second = WiringUtils.refreshBundlesAsync(bc, Arrays.asList(b2));
+        Promise<FrameworkEvent> third = WiringUtils.refreshBundlesAsync(bc, Arrays.asList(b3));
+        Assert.assertSame(second, third);
+        Assert.assertEquals(1, refreshes.size());
+
+        framework.fireFrameworkEvent(FrameworkEvent.PACKAGES_REFRESHED);
+        Assert.assertTrue(first.isDone());
+        Assert.assertFalse(second.isDone());
+        Assert.assertEquals(2, refreshes.size());
+        Assert.assertEquals(Arrays.asList(b2, b3), refreshes.get(1));
+
+        framework.fireFrameworkEvent(FrameworkEvent.PACKAGES_REFRESHED);
+        Assert.assertTrue(second.isDone());
+        Assert.assertTrue(framework.getFrameworkListeners().isEmpty());
+    }
+
+    @Test
+    public void testRefreshBundlesAsync_ignoresUnrelatedRefresh() throws Exception {
+        Bundle b1 = framework.addBundle("b1", Bundle.RESOLVED);
+        Bundle b2 = framework.addBundle("b2", Bundle.INSTALLED);
+
+        Promise<FrameworkEvent> promise = WiringUtils.refreshBundlesAsync(bc, Arrays.asList(b1, b2));
+        Assert.assertEquals(1, refreshes.size());
+
+        // refresh of another caller finishes before b1 is unresolved
+        framework.fireFrameworkEvent(FrameworkEvent.PACKAGES_REFRESHED);
+        Assert.assertFalse(promise.isDone());
+
+        framework.fireBundleEvent(BundleEvent.UNRESOLVED, b1);
+        framework.fireFrameworkEvent(FrameworkEvent.PACKAGES_REFRESHED);
+        Assert.assertTrue(promise.isDone());
+        Assert.assertTrue(framework.getFrameworkListeners().isEmpty());
+        Assert.assertTrue(framework.getBundleListeners().isEmpty());
+    }
+}
@@ -0,0 +1,97 @@
+package org.knowhowlab.osgi.testing.utils.async;
+
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class AsyncExecutorsTest {
+    @After
+    public void tearDown() throws Exception {
+        AsyncExecutors.shutdown();
+    }
+
+    @Test
+    public void testSchedule_sharedDaemonThreads() throws Exception {
+        Callable<Thread> currentThread = new Callable<Thread>() {
+            public Thread call() throws Exception {
+                return Thread.currentThread();
+            }
+        };
+        Thread thread = AsyncExecutors.schedule(currentThread, 10, MILLISECONDS).get();
+        Assert.assertTrue(thread.isDaemon());
+        Assert.assertNotSame(Thread.currentThread(), thread);
+        Assert.assertSame(AsyncExecutors.getAsyncExecutor(), AsyncExecutors.getAsyncExecutor());
+    }
+
+    @Test
+    public void testShutdown_cancelsDelayedTasks() throws Exception {
+        Future<String> future = AsyncExecutors.schedule(new Callable<String>() {
+            public String call() throws Exception {
+                return "test";
+            }
+        }, 1, SECONDS);
+        AsyncExecutor executor = AsyncExecutors.getAsyncExecutor();
+        AsyncExecutors.shutdown();
+        Assert.assertTrue(((DefaultAsyncExecutor) executor).isShutdown());
+        Assert.assertTrue(future.isDone());
+        Assert.assertNotSame(executor, AsyncExecutors.getAsyncExecutor());
+    }
+
+    @Test
+    public void testDefaultAsyncExecutor_virtualThreads() throws Exception {
+        Assume.assumeTrue(DefaultAsyncExecutor.isVirtualThreadsSupported());
+        DefaultAsyncExecutor executor = new DefaultAsyncExecutor(1, true);
+        try {
+            Assert.assertTrue(executor.isVirtualThreads());
+            final Method isVirtual = Thread.class.getMethod("isVirtual");
+            Future<Boolean> future = executor.schedule(new Callable<Boolean>() {
+                public Boolean call() throws Exception {
+                    return (Boolean) isVirtual.invoke(Thread.currentThread());
+                }
+            }, 10, MILLISECONDS);
+            Assert.assertTrue(future.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testDefaultAsyncExecutor_platformThreads() throws Exception {
+        DefaultAsyncExecutor executor = new DefaultAsyncExecutor(1, false);
+        try {
+            Assert.assertFalse(executor.isVirtualThreads());
+            Future<Thread> future = executor.schedule(new Callable<Thread>() {
+                public Thread call() throws Exception {
+                    return Thread.currentThread();
+                }
+            }, 10, MILLISECONDS);
+            Assert.assertTrue(future.get().isDaemon());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testDefaultAsyncExecutor_cancelDelayedTask() throws Exception {
+        DefaultAsyncExecutor executor = new DefaultAsyncExecutor(1);
+        try {
+            Future<String> future = executor.schedule(new Callable<String>() {
+                public String call() throws Exception {
+                    return "test";
+                }
+            }, 1, SECONDS);
+            Assert.assertTrue(future.cancel(false));
+            Assert.assertTrue(future.isCancelled());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
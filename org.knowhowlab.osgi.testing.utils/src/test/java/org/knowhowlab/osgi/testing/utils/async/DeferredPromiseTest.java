@@ -0,0 +1,81 @@
+package org.knowhowlab.osgi.testing.utils.async;
+
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class DeferredPromiseTest {
+    @After
+    public void tearDown() throws Exception {
+        AsyncExecutors.shutdown();
+    }
+
+    @Test
+    public void testThenCompose_chainsScheduledSteps() throws Exception {
+        Promise<String> promise = AsyncExecutors.schedule(new Callable<Integer>() {
+            public Integer call() throws Exception {
+                return 1;
+            }
+        }, 10, MILLISECONDS).thenCompose(new Function<Integer, Promise<Integer>>() {
+            public Promise<Integer> apply(final Integer value) throws Exception {
+                return AsyncExecutors.schedule(new Callable<Integer>() {
+                    public Integer call() throws Exception {
+                        return value + 1;
+                    }
+                }, 10, MILLISECONDS);
+            }
+        }).thenApply(new Function<Integer, String>() {
+            public String apply(Integer value) throws Exception {
+                return "value" + value;
+            }
+        });
+        Assert.assertEquals("value2", promise.get(5, SECONDS));
+    }
+
+    @Test
+    public void testThenApply_failurePropagated() throws Exception {
+        DeferredPromise<String> deferred = new DeferredPromise<String>();
+        Promise<String> dependent = deferred.thenApply(new Function<String, String>() {
+            public String apply(String value) throws Exception {
+                return value;
+            }
+        });
+        Promise<String> recovered = dependent.exceptionally(new Function<Throwable, String>() {
+            public String apply(Throwable value) throws Exception {
+                return "recovered";
+            }
+        });
+        IllegalStateException failure = new IllegalStateException();
+        Assert.assertTrue(deferred.fail(failure));
+        Assert.assertFalse(deferred.resolve("test"));
+        Assert.assertTrue(dependent.isFailed());
+        try {
+            dependent.get();
+            Assert.fail("ExecutionException expected");
+        } catch (ExecutionException e) {
+            Assert.assertSame(failure, e.getCause());
+        }
+        Assert.assertEquals("recovered", recovered.get());
+    }
+
+    @Test
+    public void testCancel_notifiesListeners() throws Exception {
+        DeferredPromise<String> deferred = new DeferredPromise<String>();
+        final Throwable[] reported = new Throwable[1];
+        deferred.whenComplete(new CompletionListener<String>() {
+            public void completed(String value, Throwable failure) {
+                reported[0] = failure;
+            }
+        });
+        Assert.assertTrue(deferred.cancel(false));
+        Assert.assertTrue(deferred.isCancelled());
+        Assert.assertTrue(reported[0] instanceof CancellationException);
+    }
+}
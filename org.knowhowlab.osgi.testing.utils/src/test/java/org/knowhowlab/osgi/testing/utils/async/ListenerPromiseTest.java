@@ -0,0 +1,55 @@
+package org.knowhowlab.osgi.testing.utils.async;
+
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class ListenerPromiseTest {
+    @After
+    public void tearDown() throws Exception {
+        AsyncExecutors.shutdown();
+    }
+
+    @Test
+    public void testTimeout_resolvedWithNullAndListenerRemoved() throws Exception {
+        TestPromise promise = new TestPromise();
+        promise.timeout(10, MILLISECONDS);
+        Assert.assertNull(promise.get(5, SECONDS));
+        Assert.assertEquals(1, promise.removed.get());
+    }
+
+    @Test
+    public void testResolve_listenerRemovedOnce() throws Exception {
+        TestPromise promise = new TestPromise();
+        promise.timeout(0, MILLISECONDS);
+        Assert.assertTrue(promise.resolve("event"));
+        Assert.assertFalse(promise.resolve("event2"));
+        Assert.assertEquals("event", promise.get());
+        Assert.assertEquals(1, promise.removed.get());
+    }
+
+    @Test
+    public void testTimeout_negative() throws Exception {
+        TestPromise promise = new TestPromise();
+        try {
+            promise.timeout(-1, MILLISECONDS);
+            Assert.fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals(1, promise.removed.get());
+        }
+    }
+
+    private static class TestPromise extends ListenerPromise<String> {
+        private final AtomicInteger removed = new AtomicInteger();
+
+        @Override
+        protected void removeListener() {
+            removed.incrementAndGet();
+        }
+    }
+}
@@ -2,10 +2,21 @@ package org.knowhowlab.osgi.testing.utils.cmpn;
 
 import junit.framework.Assert;
 import org.junit.Test;
+import org.knowhowlab.osgi.testing.utils.FakeFramework;
+import org.knowhowlab.osgi.testing.utils.ServiceTrackerPool;
+import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.framework.Filter;
+import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
 
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * @author dpishchukhin
  */
@@ -35,4 +46,77 @@ public class ConfigurationAdminUtilsTest {
         Assert.assertNotNull(filter);
         Assert.assertEquals("(&(" + Constants.SERVICE_PID + "=test)(" + ConfigurationAdmin.SERVICE_FACTORYPID + "=test1))", filter.toString());
     }
+
+    @Test
+    public void testRestoreConfigurations_recreatedFactoryConfiguration() throws Exception {
+        FakeFramework framework = new FakeFramework();
+        BundleContext bc = framework.getBundleContext();
+        final Map<String, Hashtable> storage = new LinkedHashMap<String, Hashtable>();
+        final List<String> calls = new ArrayList<String>();
+        framework.registerService(ConfigurationAdmin.class.getName(), FakeFramework.stub(ConfigurationAdmin.class, new FakeFramework.Answer() {
+            private int nextId = 1;
+
+            public Object answer(String method, Object[] args) {
+                if (method.equals("listConfigurations")) {
+                    List<Configuration> result = new ArrayList<Configuration>();
+                    for (String pid : storage.keySet()) {
+                        result.add(configuration(storage, calls, pid, null));
+                    }
+                    return result.toArray(new Configuration[result.size()]);
+                } else if (method.equals("getConfiguration")) {
+                    return configuration(storage, calls, (String) args[0], null);
+                } else if (method.equals("createFactoryConfiguration")) {
+                    calls.add("create " + args[0]);
+                    return configuration(storage, calls, args[0] + "." + nextId++, (String) args[0]);
+                }
+                return null;
+            }
+        }), null);
+        try {
+            Hashtable<String, Object> properties = new Hashtable<String, Object>();
+            properties.put("name", "test");
+            configuration(storage, calls, "factory.0", "factory").update(properties);
+            Map<String, Dictionary> configurations = ConfigurationAdminUtils.captureConfigurations(bc);
+
+            storage.clear();
+            calls.clear();
+            ConfigurationAdminUtils.restoreConfigurations(bc, configurations);
+            Assert.assertEquals("[create factory, update factory.1]", calls.toString());
+            Assert.assertEquals(configurations.keySet(), storage.keySet());
+            Assert.assertEquals("factory.1", configurations.get("factory.1").get(Constants.SERVICE_PID));
+
+            calls.clear();
+            ConfigurationAdminUtils.restoreConfigurations(bc, configurations);
+            Assert.assertTrue(calls.isEmpty());
+        } finally {
+            ServiceTrackerPool.getPool(bc).close();
+        }
+    }
+
+    private static Configuration configuration(final Map<String, Hashtable> storage, final List<String> calls,
+                                               final String pid, final String factoryPid) {
+        return FakeFramework.stub(Configuration.class, new FakeFramework.Answer() {
+            @SuppressWarnings("unchecked")
+            public Object answer(String method, Object[] args) {
+                if (method.equals("getPid")) {
+                    return pid;
+                } else if (method.equals("getProperties")) {
+                    Hashtable properties = storage.get(pid);
+                    return properties != null ? new Hashtable(properties) : null;
+                } else if (method.equals("update") && args != null) {
+                    calls.add("update " + pid);
+                    Hashtable properties = new Hashtable((Hashtable) args[0]);
+                    properties.put(Constants.SERVICE_PID, pid);
+                    if (factoryPid != null) {
+                        properties.put(ConfigurationAdmin.SERVICE_FACTORYPID, factoryPid);
+                    }
+                    storage.put(pid, properties);
+                } else if (method.equals("delete")) {
+                    calls.add("delete " + pid);
+                    storage.remove(pid);
+                }
+                return null;
+            }
+        });
+    }
 }
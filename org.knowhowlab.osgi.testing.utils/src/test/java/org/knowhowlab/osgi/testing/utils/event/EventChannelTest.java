@@ -0,0 +1,155 @@
+package org.knowhowlab.osgi.testing.utils.event;
+
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Test;
+import org.knowhowlab.osgi.testing.utils.async.AsyncExecutors;
+import org.knowhowlab.osgi.testing.utils.async.Promise;
+import org.osgi.framework.BundleContext;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class EventChannelTest {
+    @After
+    public void tearDown() throws Exception {
+        AsyncExecutors.shutdown();
+    }
+
+    @Test
+    public void testDispatch_byKeyAndType() throws Exception {
+        TestChannel channel = new TestChannel();
+        Promise<String[]> keyed = channel.await("a", 2, 0, MILLISECONDS);
+        Promise<String[]> unkeyed = channel.await(null, 1, 0, MILLISECONDS);
+        Assert.assertEquals(2, channel.getWaitersCount());
+
+        channel.dispatch(new String[]{"b", "2"});
+        Assert.assertFalse(keyed.isDone());
+        Assert.assertFalse(unkeyed.isDone());
+
+        String[] event = {"a", "2"};
+        channel.dispatch(event);
+        Assert.assertSame(event, keyed.get());
+        Assert.assertFalse(unkeyed.isDone());
+        Assert.assertEquals(1, channel.getWaitersCount());
+
+        channel.dispatch(new String[]{"c", "1"});
+        Assert.assertEquals("c", unkeyed.get()[0]);
+        Assert.assertEquals(0, channel.getWaitersCount());
+    }
+
+    @Test
+    public void testAwait_timeoutRemovesWaiter() throws Exception {
+        TestChannel channel = new TestChannel();
+        Promise<String[]> promise = channel.await("a", 1, 10, MILLISECONDS);
+        Assert.assertNull(promise.get(5, SECONDS));
+        Assert.assertEquals(0, channel.getWaitersCount());
+    }
+
+    @Test
+    public void testAwait_lookBack() throws Exception {
+        TestChannel channel = new TestChannel();
+        channel.open(null, 16);
+        String[] first = {"a", "1"};
+        String[] second = {"a", "1"};
+        channel.dispatch(first);
+        channel.dispatch(second);
+        channel.dispatch(new String[]{"b", "1"});
+
+        Assert.assertSame(second, channel.await("a", 1, LookBack.count(2), 0, MILLISECONDS).get(5, SECONDS));
+        Assert.assertSame(second, channel.await("a", 1, LookBack.time(3600, SECONDS), 0, MILLISECONDS).get(5, SECONDS));
+        Assert.assertEquals(0, channel.getWaitersCount());
+
+        Promise<String[]> outOfWindow = channel.await("a", 1, LookBack.count(1), 0, MILLISECONDS);
+        Assert.assertFalse(outOfWindow.isDone());
+        Promise<String[]> noLookBack = channel.await("a", 1, LookBack.NONE, 0, MILLISECONDS);
+        Assert.assertFalse(noLookBack.isDone());
+        outOfWindow.cancel(false);
+        noLookBack.cancel(false);
+        Assert.assertEquals(0, channel.getWaitersCount());
+    }
+
+    @Test
+    public void testAwaitEvents_count() throws Exception {
+        TestChannel channel = new TestChannel();
+        Promise<List<String[]>> promise = channel.awaitEvents("a", 1, matcher("a"), 3, 0, MILLISECONDS);
+        Assert.assertEquals(1, channel.getWaitersCount());
+        for (int i = 0; i < 5; i++) {
+            channel.dispatch(new String[]{"a", "1"});
+            channel.dispatch(new String[]{"b", "1"});
+        }
+        Assert.assertEquals(3, promise.get(5, SECONDS).size());
+        Assert.assertEquals(0, channel.getWaitersCount());
+    }
+
+    @Test
+    public void testAwaitAllAndAny() throws Exception {
+        TestChannel channel = new TestChannel();
+        List<EventMatcher<String[]>> matchers = Arrays.asList(matcher("a"), matcher("b"));
+        Promise<List<String[]>> all = channel.awaitAll(1, matchers, 0, MILLISECONDS);
+        Promise<String[]> any = channel.awaitAny(1, matchers, 0, MILLISECONDS);
+        Assert.assertEquals(2, channel.getWaitersCount());
+
+        channel.dispatch(new String[]{"b", "2"});
+        channel.dispatch(new String[]{"c", "1"});
+        Assert.assertFalse(any.isDone());
+        channel.dispatch(new String[]{"b", "1"});
+        Assert.assertEquals("b", any.get(5, SECONDS)[0]);
+        Assert.assertFalse(all.isDone());
+        channel.dispatch(new String[]{"b", "1"});
+        channel.dispatch(new String[]{"a", "1"});
+        List<String[]> events = all.get(5, SECONDS);
+        Assert.assertEquals(2, events.size());
+        Assert.assertEquals("b", events.get(0)[0]);
+        Assert.assertEquals("a", events.get(1)[0]);
+        Assert.assertEquals(0, channel.getWaitersCount());
+    }
+
+    private static EventMatcher<String[]> matcher(final String key) {
+        return new EventMatcher<String[]>() {
+            public boolean matches(String[] event) {
+                return key.equals(event[0]);
+            }
+        };
+    }
+
+    /**
+     * Event is array of key and type
+     */
+    private static class TestChannel extends EventChannel<String[]> {
+        public Promise<String[]> await(String key, int eventTypeMask, long timeout, TimeUnit timeUnit) {
+            return await(key, eventTypeMask, LookBack.NONE, timeout, timeUnit);
+        }
+
+        public Promise<String[]> await(String key, int eventTypeMask, LookBack lookBack, long timeout, TimeUnit timeUnit) {
+            return await(new EventWaiter<String[]>(key, eventTypeMask) {
+                @Override
+                protected boolean matches(String[] event) {
+                    return true;
+                }
+            }, lookBack, timeout, timeUnit);
+        }
+
+        @Override
+        protected void register(BundleContext bc) {
+        }
+
+        @Override
+        protected void unregister(BundleContext bc) {
+        }
+
+        @Override
+        protected int getEventType(String[] event) {
+            return Integer.parseInt(event[1]);
+        }
+
+        @Override
+        protected String[] getKeys(String[] event) {
+            return new String[]{event[0]};
+        }
+    }
+}
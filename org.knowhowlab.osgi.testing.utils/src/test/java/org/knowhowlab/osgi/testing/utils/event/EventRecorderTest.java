@@ -0,0 +1,90 @@
+package org.knowhowlab.osgi.testing.utils.event;
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.knowhowlab.osgi.testing.utils.event.EventRecorder.OverflowPolicy.DROP_NEWEST;
+
+public class EventRecorderTest {
+    @Test
+    public void testRecord_overwriteOldest() throws Exception {
+        EventRecorder recorder = new EventRecorder(3);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(recorder.record(i));
+        }
+        List<RecordedEvent> events = recorder.snapshot();
+        Assert.assertEquals(3, events.size());
+        Assert.assertEquals(2, events.get(0).getEvent());
+        Assert.assertEquals(4, events.get(2).getEvent());
+        Assert.assertEquals(2, recorder.getDroppedCount());
+        Assert.assertTrue(events.get(0).getTimestamp() <= events.get(2).getTimestamp());
+    }
+
+    @Test
+    public void testRecord_dropNewest() throws Exception {
+        EventRecorder recorder = new EventRecorder(3, DROP_NEWEST);
+        for (int i = 0; i < 5; i++) {
+            recorder.record(i);
+        }
+        List<RecordedEvent> events = recorder.snapshot();
+        Assert.assertEquals(3, events.size());
+        Assert.assertEquals(0, events.get(0).getEvent());
+        Assert.assertEquals(2, recorder.getDroppedCount());
+
+        recorder.clear();
+        Assert.assertTrue(recorder.snapshot().isEmpty());
+        Assert.assertTrue(recorder.record(5));
+        Assert.assertEquals(5, recorder.snapshot().get(0).getEvent());
+    }
+
+    @Test
+    public void testQuery() throws Exception {
+        EventRecorder recorder = new EventRecorder(10);
+        recorder.record("a");
+        recorder.record(1);
+        recorder.record("b");
+        List<RecordedEvent> strings = recorder.query(new EventPredicate() {
+            public boolean matches(RecordedEvent event) {
+                return event.getEvent(String.class) != null;
+            }
+        });
+        Assert.assertEquals(2, strings.size());
+        Assert.assertEquals("b", strings.get(1).getEvent());
+        Assert.assertEquals(1, recorder.query(null, 2).size());
+    }
+
+    @Test
+    public void testRecord_concurrentWriters() throws Exception {
+        final EventRecorder recorder = new EventRecorder(1000);
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < 250; j++) {
+                        recorder.record(j);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        List<RecordedEvent> events = recorder.snapshot();
+        Assert.assertEquals(1000, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            Assert.assertEquals(i, events.get(i).getSequence());
+        }
+    }
+}
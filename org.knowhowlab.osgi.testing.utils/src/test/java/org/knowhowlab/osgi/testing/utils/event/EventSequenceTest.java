@@ -0,0 +1,97 @@
+package org.knowhowlab.osgi.testing.utils.event;
+
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.knowhowlab.osgi.testing.utils.FakeFramework;
+import org.knowhowlab.osgi.testing.utils.async.AsyncExecutors;
+import org.osgi.framework.BundleContext;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class EventSequenceTest {
+    private EventHub hub;
+
+    @Before
+    public void setUp() throws Exception {
+        hub = EventHub.getEventHub(new FakeFramework().getBundleContext());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        hub.close();
+        AsyncExecutors.shutdown();
+    }
+
+    @Test
+    public void testAwaitSequence_inOrder() throws Exception {
+        TestChannel channel = hub.getChannel(TestChannel.class);
+        EventSequence sequence = hub.awaitSequence(Arrays.asList(step("a", 1), step("b", 2), step("a", 2)), 0, MILLISECONDS);
+        Assert.assertEquals(1, channel.getWaitersCount());
+
+        channel.dispatch(new String[]{"b", "2"});
+        channel.dispatch(new String[]{"a", "2"});
+        Assert.assertEquals(0, sequence.getCompletedSteps());
+        channel.dispatch(new String[]{"a", "1"});
+        channel.dispatch(new String[]{"a", "2"});
+        Assert.assertEquals(1, sequence.getCompletedSteps());
+        channel.dispatch(new String[]{"b", "2"});
+        channel.dispatch(new String[]{"a", "2"});
+
+        List<Object> events = sequence.get(5, SECONDS);
+        Assert.assertEquals(3, events.size());
+        Assert.assertEquals("b", ((String[]) events.get(1))[0]);
+        Assert.assertEquals(0, channel.getWaitersCount());
+    }
+
+    @Test
+    public void testAwaitSequence_timeout() throws Exception {
+        TestChannel channel = hub.getChannel(TestChannel.class);
+        EventSequence sequence = hub.awaitSequence(Arrays.asList(step("a", 1), step("b", 1)), 10, MILLISECONDS);
+        channel.dispatch(new String[]{"a", "1"});
+        Assert.assertNull(sequence.get(5, SECONDS));
+        Assert.assertEquals(1, sequence.getCompletedSteps());
+        Assert.assertEquals(0, channel.getWaitersCount());
+    }
+
+    private static EventStep<String[]> step(final String key, int eventTypeMask) {
+        return new EventStep<String[]>(TestChannel.class, eventTypeMask) {
+            @Override
+            protected EventMatcher<? super String[]> createMatcher(EventChannel<String[]> channel) {
+                return new EventMatcher<String[]>() {
+                    public boolean matches(String[] event) {
+                        return key.equals(event[0]);
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Event is array of key and type
+     */
+    public static class TestChannel extends EventChannel<String[]> {
+        @Override
+        protected void register(BundleContext bc) {
+        }
+
+        @Override
+        protected void unregister(BundleContext bc) {
+        }
+
+        @Override
+        protected int getEventType(String[] event) {
+            return Integer.parseInt(event[1]);
+        }
+
+        @Override
+        protected String[] getKeys(String[] event) {
+            return new String[]{event[0]};
+        }
+    }
+}
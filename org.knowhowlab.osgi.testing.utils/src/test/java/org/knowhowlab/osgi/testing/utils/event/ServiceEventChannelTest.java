@@ -0,0 +1,67 @@
+package org.knowhowlab.osgi.testing.utils.event;
+
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.knowhowlab.osgi.testing.utils.FakeFramework;
+import org.knowhowlab.osgi.testing.utils.async.AsyncExecutors;
+import org.knowhowlab.osgi.testing.utils.async.Promise;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Filter;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceRegistration;
+
+import java.util.Hashtable;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class ServiceEventChannelTest {
+    private FakeFramework framework;
+    private BundleContext bc;
+    private EventHub hub;
+
+    @Before
+    public void setUp() throws Exception {
+        framework = new FakeFramework();
+        bc = framework.getBundleContext();
+        hub = EventHub.getEventHub(bc);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        hub.close();
+        AsyncExecutors.shutdown();
+    }
+
+    @Test
+    public void testAwait_modifiedEndMatch() throws Exception {
+        ServiceRegistration registration = framework.registerService("test", new Object(), properties("a"));
+        ServiceEventChannel channel = hub.getChannel(ServiceEventChannel.class);
+        Filter filter = bc.createFilter("(name=a)");
+        Promise<ServiceEvent> endMatch = channel.await(null, filter, ServiceEvent.MODIFIED_ENDMATCH, true, 0, MILLISECONDS);
+        Promise<ServiceEvent> modified = channel.await(null, filter, ServiceEvent.MODIFIED, true, 0, MILLISECONDS);
+        Promise<ServiceEvent> other = channel.await(null, bc.createFilter("(name=b)"), ServiceEvent.MODIFIED_ENDMATCH, true,
+                0, MILLISECONDS);
+
+        registration.setProperties(properties("a"));
+        Assert.assertTrue(modified.isDone());
+        Assert.assertFalse(endMatch.isDone());
+
+        registration.setProperties(properties("b"));
+        ServiceEvent event = endMatch.get(5, SECONDS);
+        Assert.assertEquals(ServiceEvent.MODIFIED_ENDMATCH, event.getType());
+        Assert.assertSame(registration.getReference(), event.getServiceReference());
+        Assert.assertFalse(other.isDone());
+
+        registration.setProperties(properties("c"));
+        Assert.assertNotNull(other.get(5, SECONDS));
+    }
+
+    private static Hashtable<String, Object> properties(String name) {
+        Hashtable<String, Object> properties = new Hashtable<String, Object>();
+        properties.put("name", name);
+        return properties;
+    }
+}